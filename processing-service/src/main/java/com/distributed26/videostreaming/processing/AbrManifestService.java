@@ -2,19 +2,25 @@ package com.distributed26.videostreaming.processing;
 
 import com.distributed26.videostreaming.shared.storage.ObjectStorageClient;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -28,30 +34,98 @@ public class AbrManifestService {
     private static final Pattern LAST_DIGIT_SEQUENCE_PATTERN = Pattern.compile("(\\d+)(?!.*\\d)");
     private static final String SOURCE_MANIFEST_KEY_SUFFIX = "/chunks/output.m3u8";
     private static final String MANIFEST_ROOT = "/manifest/";
+    private static final String SERVED_ROOT = "/served/";
+    private static final String GZIP_SUFFIX = ".gz";
     private static final String VARIANT_MANIFEST_SUFFIX = ".m3u8";
     private static final String MASTER_MANIFEST_KEY = "master.m3u8";
     private static final int DEFAULT_TARGET_SEGMENT_DURATION_SECONDS = 10;
+    private static final String SEGMENT_FILE_PREFIX = "output";
+    private static final String SEGMENT_FILE_SUFFIX = ".ts";
     private static final long WAIT_INTERVAL_MILLIS = 1_000L;
-    private static final long INITIAL_POLL_INTERVAL_MILLIS = 500L;
-    private static final long MAX_POLL_INTERVAL_MILLIS = 10_000L;
-    private static final double BACKOFF_MULTIPLIER = 1.5;
+    private static final String END_LIST_TAG = "#EXT-X-ENDLIST";
+    private static final int LOCK_STRIPES = 64;
+    private static final long PROGRESSIVE_STATE_IDLE_MILLIS = 10 * 60_000L;
+    private static final String EXTINF_TAG = "#EXTINF:";
 
     private final ObjectStorageClient storageClient;
     private final int maxWaitSeconds;
+    private final Object[] videoLocks = new Object[LOCK_STRIPES];
+    private final Map<String, ProgressiveState> progressiveStates = new ConcurrentHashMap<>();
+    private final boolean servedPlaylists;
+    private final boolean gzipServedPlaylists;
 
     public AbrManifestService(ObjectStorageClient storageClient, int maxWaitSeconds) {
+        this(storageClient, maxWaitSeconds, false, false);
+    }
+
+    /**
+     * @param servedPlaylists also write client-facing copies under {@code served/}, with
+     *                        master entries pointing at {@code variant/...} and segment
+     *                        lines already rewritten to streaming-service proxy URLs
+     * @param gzipServedPlaylists write a gzip-compressed {@code .gz} twin of every served copy
+     */
+    public AbrManifestService(
+            ObjectStorageClient storageClient,
+            int maxWaitSeconds,
+            boolean servedPlaylists,
+            boolean gzipServedPlaylists
+    ) {
         this.storageClient = Objects.requireNonNull(storageClient, "storageClient");
         this.maxWaitSeconds = maxWaitSeconds;
+        this.servedPlaylists = servedPlaylists;
+        this.gzipServedPlaylists = gzipServedPlaylists;
+        for (int i = 0; i < videoLocks.length; i++) {
+            videoLocks[i] = new Object();
+        }
     }
 
     public void generateIfNeeded(String videoId, int totalSegments) throws IOException {
+        generateIfNeeded(videoId, totalSegments, Map.of());
+    }
+
+    /**
+     * Writes any missing variant and master manifests. Callers only invoke this once the
+     * database reports every profile DONE, so the transcoded segments are known to be in
+     * object storage and are not listed or polled. When {@code durationsBySegment} covers
+     * every segment the playlists are built from it directly; otherwise the source
+     * manifest is read as before.
+     */
+    public void generateIfNeeded(String videoId, int totalSegments, Map<Integer, Double> durationsBySegment)
+            throws IOException {
+        generateIfNeeded(videoId, totalSegments, durationsBySegment, List.of(ProcessingServiceApplication.PROFILES));
+    }
+
+    /**
+     * Writes final manifests for a subset of the ladder, e.g. when load shedding deferred
+     * the top rendition. The master lists only {@code renditions}; calling this again with
+     * the full ladder once the deferred renditions are backfilled rewrites it.
+     */
+    public void generateIfNeeded(
+            String videoId,
+            int totalSegments,
+            Map<Integer, Double> durationsBySegment,
+            List<TranscodingProfile> renditions
+    ) throws IOException {
         Objects.requireNonNull(videoId, "videoId");
+        synchronized (lockFor(videoId)) {
+            generateFinal(videoId, totalSegments, durationsBySegment, renditions);
+            progressiveStates.remove(videoId);
+        }
+    }
+
+    private void generateFinal(
+            String videoId,
+            int totalSegments,
+            Map<Integer, Double> durationsBySegment,
+            List<TranscodingProfile> renditions
+    ) throws IOException {
         String masterManifestKey = videoId + MANIFEST_ROOT + MASTER_MANIFEST_KEY;
-        boolean masterManifestExists = storageClient.fileExists(masterManifestKey);
+        String masterManifest = buildMasterManifest(renditions);
+        boolean masterManifestExists = hasContent(masterManifestKey, masterManifest::equals);
         List<TranscodingProfile> missingVariantProfiles = new ArrayList<>();
-        for (TranscodingProfile profile : ProcessingServiceApplication.PROFILES) {
+        for (TranscodingProfile profile : renditions) {
             String variantManifestKey = buildVariantManifestKey(videoId, profile.getName());
-            if (!storageClient.fileExists(variantManifestKey)) {
+            if (!hasContent(variantManifestKey, AbrManifestService::isEndedPlaylist)) {
                 missingVariantProfiles.add(profile);
             }
         }
@@ -63,46 +137,219 @@ public class AbrManifestService {
 
         List<SourceSegment> sourceSegments = List.of();
         if (!missingVariantProfiles.isEmpty()) {
-            sourceSegments = parseSourceSegments(videoId, totalSegments);
-            LOGGER.info("videoId={} source segment count from manifest={}", videoId, sourceSegments.size());
+            Optional<List<SourceSegment>> known = knownSegments(totalSegments, durationsBySegment);
+            if (known.isPresent()) {
+                sourceSegments = known.get();
+                LOGGER.info("videoId={} segment count from recorded durations={}", videoId, sourceSegments.size());
+            } else {
+                sourceSegments = parseSourceSegments(videoId, totalSegments);
+                LOGGER.info("videoId={} source segment count from manifest={}", videoId, sourceSegments.size());
+            }
         }
 
+        String variantPlaylist = buildVariantPlaylist(sourceSegments);
         for (TranscodingProfile profile : missingVariantProfiles) {
-            waitForAllTranscodedSegments(videoId, profile, sourceSegments);
             String variantManifestKey = buildVariantManifestKey(videoId, profile.getName());
-            String variantPlaylist = buildVariantPlaylist(sourceSegments);
+            if (servedPlaylists) {
+                uploadServed(videoId + SERVED_ROOT + profile.getName() + VARIANT_MANIFEST_SUFFIX,
+                        buildVariantPlaylist(sourceSegments, "VOD", 1.0d, true,
+                                segmentUriPrefix(videoId, profile.getName())));
+            }
             uploadString(variantManifestKey, variantPlaylist);
             LOGGER.info("Wrote missing variant manifest: {} ({} segments)", variantManifestKey, sourceSegments.size());
         }
 
         if (!masterManifestExists) {
-            String masterManifest = buildMasterManifest(videoId);
-            uploadString(masterManifestKey, masterManifest);
+            writeMaster(videoId, renditions);
             LOGGER.info("Wrote master manifest: {} for videoId={}", masterManifestKey, videoId);
         }
     }
 
     public boolean hasRequiredManifests(String videoId) {
+        return hasRequiredManifests(videoId, List.of(ProcessingServiceApplication.PROFILES));
+    }
+
+    /** Whether the final master lists exactly {@code renditions} and each has an ended playlist. */
+    public boolean hasRequiredManifests(String videoId, List<TranscodingProfile> renditions) {
         Objects.requireNonNull(videoId, "videoId");
-        if (!storageClient.fileExists(videoId + MANIFEST_ROOT + MASTER_MANIFEST_KEY)) {
+        String masterManifest = buildMasterManifest(renditions);
+        if (!hasContent(videoId + MANIFEST_ROOT + MASTER_MANIFEST_KEY, masterManifest::equals)) {
             return false;
         }
-        for (TranscodingProfile profile : ProcessingServiceApplication.PROFILES) {
-            if (!storageClient.fileExists(buildVariantManifestKey(videoId, profile.getName()))) {
+        for (TranscodingProfile profile : renditions) {
+            if (!hasContent(buildVariantManifestKey(videoId, profile.getName()), AbrManifestService::isEndedPlaylist)) {
                 return false;
             }
         }
         return true;
     }
 
-    private String buildMasterManifest(String videoId) {
+    /**
+     * Publishes EVENT playlists for the contiguous DONE prefix of each profile, plus a
+     * master that lists only renditions with at least {@code minReadySegments} segments
+     * ready. Nothing is written until the lowest profile is ready, and playlists are only
+     * rewritten when their prefix grows. Once every profile is complete this is a no-op and
+     * {@link #generateIfNeeded} replaces the playlists with their final VOD form.
+     *
+     * <p>Another replica may publish the same video from a newer snapshot, so each write is
+     * preceded by a read of the stored playlist and skipped when that one already lists as
+     * many segments (or renditions): an EVENT playlist must only ever grow.
+     *
+     * @return the number of renditions listed in the published master, or 0 if nothing is playable yet
+     */
+    public int publishProgressive(
+            String videoId,
+            int totalSegments,
+            Map<Integer, Double> durationsBySegment,
+            Map<String, Set<Integer>> doneByProfile,
+            int minReadySegments
+    ) throws IOException {
+        Objects.requireNonNull(videoId, "videoId");
+        if (totalSegments <= 0) {
+            return 0;
+        }
+        int threshold = Math.max(1, Math.min(minReadySegments, totalSegments));
+        Map<TranscodingProfile, Integer> readyPrefixes = new LinkedHashMap<>();
+        boolean complete = true;
+        for (TranscodingProfile profile : ProcessingServiceApplication.PROFILES) {
+            int prefix = contiguousPrefix(doneByProfile.getOrDefault(profile.getName(), Set.of()),
+                    durationsBySegment, totalSegments);
+            complete &= prefix == totalSegments;
+            if (prefix >= threshold) {
+                readyPrefixes.put(profile, prefix);
+            }
+        }
+        long now = System.currentTimeMillis();
+        expireProgressiveStates(now);
+        if (complete) {
+            progressiveStates.remove(videoId);
+            return 0;
+        }
+        if (!readyPrefixes.containsKey(ProcessingServiceApplication.PROFILES[0])) {
+            return 0;
+        }
+
+        double targetDuration = 1.0d;
+        for (Double duration : durationsBySegment.values()) {
+            if (duration != null) {
+                targetDuration = Math.max(targetDuration, duration);
+            }
+        }
+        synchronized (lockFor(videoId)) {
+            ProgressiveState state = progressiveStates.computeIfAbsent(videoId, ignored -> new ProgressiveState());
+            state.lastUsedMillis = now;
+            for (Map.Entry<TranscodingProfile, Integer> entry : readyPrefixes.entrySet()) {
+                String profileName = entry.getKey().getName();
+                int prefix = entry.getValue();
+                if (prefix <= state.publishedPrefixes.getOrDefault(profileName, 0)) {
+                    continue;
+                }
+                int stored = storedSegmentCount(buildVariantManifestKey(videoId, profileName));
+                if (stored >= prefix) {
+                    state.publishedPrefixes.put(profileName, stored);
+                    continue;
+                }
+                List<SourceSegment> segments = new ArrayList<>(prefix);
+                for (int segmentNumber = 0; segmentNumber < prefix; segmentNumber++) {
+                    segments.add(new SourceSegment(SEGMENT_FILE_PREFIX + segmentNumber + SEGMENT_FILE_SUFFIX,
+                            durationsBySegment.get(segmentNumber)));
+                }
+                if (servedPlaylists) {
+                    uploadServed(videoId + SERVED_ROOT + profileName + VARIANT_MANIFEST_SUFFIX,
+                            buildVariantPlaylist(segments, "EVENT", targetDuration, false,
+                                    segmentUriPrefix(videoId, profileName)));
+                }
+                uploadString(buildVariantManifestKey(videoId, profileName),
+                        buildVariantPlaylist(segments, "EVENT", targetDuration, false, ""));
+                state.publishedPrefixes.put(profileName, prefix);
+                LOGGER.info("Published progressive variant manifest videoId={} profile={} segments={}/{}",
+                        videoId, profileName, prefix, totalSegments);
+            }
+            List<TranscodingProfile> listed = List.copyOf(readyPrefixes.keySet());
+            if (!listed.equals(state.listedProfiles)) {
+                List<String> names = listed.stream().map(TranscodingProfile::getName).toList();
+                if (!storedMasterRenditions(videoId).containsAll(names)) {
+                    writeMaster(videoId, listed);
+                    LOGGER.info("Published progressive master manifest videoId={} renditions={}", videoId, names);
+                }
+                state.listedProfiles = listed;
+            }
+        }
+        return readyPrefixes.size();
+    }
+
+    /** Drops progressive state for videos this replica stopped publishing, e.g. finished elsewhere. */
+    void expireProgressiveStates(long nowMillis) {
+        progressiveStates.values().removeIf(state -> nowMillis - state.lastUsedMillis > PROGRESSIVE_STATE_IDLE_MILLIS);
+    }
+
+    int progressiveStateCount() {
+        return progressiveStates.size();
+    }
+
+    /** Segments listed by a stored variant playlist; an ended one can never be outgrown. */
+    private int storedSegmentCount(String key) {
+        String content = readStored(key);
+        if (content == null) {
+            return 0;
+        }
+        if (isEndedPlaylist(content)) {
+            return Integer.MAX_VALUE;
+        }
+        int count = 0;
+        for (int i = content.indexOf(EXTINF_TAG); i >= 0; i = content.indexOf(EXTINF_TAG, i + EXTINF_TAG.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private Set<String> storedMasterRenditions(String videoId) {
+        String content = readStored(videoId + MANIFEST_ROOT + MASTER_MANIFEST_KEY);
+        if (content == null) {
+            return Set.of();
+        }
+        Set<String> names = new HashSet<>();
+        for (String line : content.split("\n")) {
+            if (!line.isBlank() && !line.startsWith("#")) {
+                names.add(line.substring(0, line.indexOf('/') < 0 ? line.length() : line.indexOf('/')));
+            }
+        }
+        return names;
+    }
+
+    private static int contiguousPrefix(Set<Integer> done, Map<Integer, Double> durationsBySegment, int totalSegments) {
+        int prefix = 0;
+        while (prefix < totalSegments && done.contains(prefix)) {
+            Double duration = durationsBySegment.get(prefix);
+            if (duration == null || duration <= 0d) {
+                break;
+            }
+            prefix++;
+        }
+        return prefix;
+    }
+
+    /** Served copies go first so a reader that finds the canonical master also finds them. */
+    private void writeMaster(String videoId, List<TranscodingProfile> profiles) throws IOException {
+        if (servedPlaylists) {
+            uploadServed(videoId + SERVED_ROOT + MASTER_MANIFEST_KEY, buildMasterManifest(profiles, "variant/"));
+        }
+        uploadString(videoId + MANIFEST_ROOT + MASTER_MANIFEST_KEY, buildMasterManifest(profiles));
+    }
+
+    private String buildMasterManifest(List<TranscodingProfile> profiles) {
+        return buildMasterManifest(profiles, "");
+    }
+
+    private String buildMasterManifest(List<TranscodingProfile> profiles, String variantUriPrefix) {
         StringBuilder sb = new StringBuilder();
         sb.append("#EXTM3U\n");
         sb.append("#EXT-X-VERSION:6\n");
 
-        for (TranscodingProfile profile : ProcessingServiceApplication.PROFILES) {
+        for (TranscodingProfile profile : profiles) {
             sb.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(profile.getBitrate()).append('\n');
-            sb.append(profile.getName())
+            sb.append(variantUriPrefix)
+              .append(profile.getName())
               .append("/playlist")
               .append(VARIANT_MANIFEST_SUFFIX)
               .append('\n');
@@ -111,12 +358,22 @@ public class AbrManifestService {
     }
 
     private String buildVariantPlaylist(List<SourceSegment> sourceSegments) {
+        return buildVariantPlaylist(sourceSegments, "VOD", 1.0d, true, "");
+    }
+
+    private String buildVariantPlaylist(
+            List<SourceSegment> sourceSegments,
+            String playlistType,
+            double minTargetDuration,
+            boolean ended,
+            String segmentUriPrefix
+    ) {
         StringBuilder sb = new StringBuilder();
         sb.append("#EXTM3U\n");
         sb.append("#EXT-X-VERSION:6\n");
-        sb.append("#EXT-X-PLAYLIST-TYPE:VOD\n");
+        sb.append("#EXT-X-PLAYLIST-TYPE:").append(playlistType).append('\n');
 
-        double target = 1.0d;
+        double target = Math.ceil(minTargetDuration);
         for (SourceSegment segment : sourceSegments) {
             target = Math.max(target, Math.ceil(segment.durationSeconds()));
         }
@@ -127,43 +384,52 @@ public class AbrManifestService {
             sb.append("#EXTINF:")
               .append(formatDuration(segment.durationSeconds()))
               .append(",\n");
-            sb.append(segment.uri()).append('\n');
+            sb.append(segmentUriPrefix).append(segment.uri()).append('\n');
+        }
+        if (ended) {
+            sb.append(END_LIST_TAG).append('\n');
         }
-        sb.append("#EXT-X-ENDLIST\n");
         return sb.toString();
     }
 
-    private void waitForAllTranscodedSegments(String videoId, TranscodingProfile profile,
-                                             List<SourceSegment> segments) throws IOException {
-        String prefix = videoId + "/processed/" + profile.getName() + "/";
-        // Build the set of keys still outstanding; it shrinks as segments appear.
-        Set<String> remaining = new LinkedHashSet<>();
-        for (SourceSegment segment : segments) {
-            remaining.add(prefix + segment.uri());
+    private boolean hasContent(String key, Predicate<String> expected) {
+        String content = readStored(key);
+        return content != null && expected.test(content);
+    }
+
+    private String readStored(String key) {
+        if (!storageClient.fileExists(key)) {
+            return null;
+        }
+        try (InputStream is = storageClient.downloadFile(key)) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to read manifest {}, treating it as missing", key, e);
+            return null;
         }
+    }
 
-        long deadline = System.currentTimeMillis() + (maxWaitSeconds * 1_000L);
-        long pollInterval = INITIAL_POLL_INTERVAL_MILLIS;
+    private static boolean isEndedPlaylist(String content) {
+        return content.contains(END_LIST_TAG);
+    }
 
-        while (!remaining.isEmpty() && System.currentTimeMillis() < deadline) {
-            // One listFiles() call per interval instead of one fileExists() per segment.
-            Set<String> existing = new HashSet<>(storageClient.listFiles(prefix));
-            remaining.removeIf(existing::contains);
+    private Object lockFor(String videoId) {
+        return videoLocks[Math.floorMod(videoId.hashCode(), videoLocks.length)];
+    }
 
-            if (remaining.isEmpty()) {
-                return;
+    private Optional<List<SourceSegment>> knownSegments(int totalSegments, Map<Integer, Double> durationsBySegment) {
+        if (totalSegments <= 0 || durationsBySegment.size() < totalSegments) {
+            return Optional.empty();
+        }
+        List<SourceSegment> segments = new ArrayList<>(totalSegments);
+        for (int segmentNumber = 0; segmentNumber < totalSegments; segmentNumber++) {
+            Double duration = durationsBySegment.get(segmentNumber);
+            if (duration == null || duration <= 0d) {
+                return Optional.empty();
             }
-
-            LOGGER.debug("Profile {}: waiting for {}/{} transcoded segments (videoId={})",
-                    profile.getName(), remaining.size(), segments.size(), videoId);
-
-            sleepQuietly(pollInterval);
-            // Exponential backoff: slow down polling for long-running encodes.
-            pollInterval = Math.min((long) (pollInterval * BACKOFF_MULTIPLIER), MAX_POLL_INTERVAL_MILLIS);
+            segments.add(new SourceSegment(SEGMENT_FILE_PREFIX + segmentNumber + SEGMENT_FILE_SUFFIX, duration));
         }
-
-        throw new IOException("Timed out generating ABR manifests: missing segments for profile " +
-                profile.getName() + " on videoId=" + videoId);
+        return Optional.of(segments);
     }
 
     private List<SourceSegment> parseSourceSegments(String videoId, int expectedTotalSegments) throws IOException {
@@ -281,6 +547,26 @@ public class AbrManifestService {
         return videoId + MANIFEST_ROOT + profileName + VARIANT_MANIFEST_SUFFIX;
     }
 
+    /** Matches the proxy URLs the streaming service serves segments on. */
+    private static String segmentUriPrefix(String videoId, String profileName) {
+        return "/stream/" + videoId + "/segment/" + profileName + "/";
+    }
+
+    private void uploadServed(String key, String value) throws IOException {
+        uploadString(key, value);
+        if (!gzipServedPlaylists) {
+            return;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(value.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] bytes = compressed.toByteArray();
+        try (InputStream is = new ByteArrayInputStream(bytes)) {
+            storageClient.uploadFile(key + GZIP_SUFFIX, is, bytes.length);
+        }
+    }
+
     private void uploadString(String key, String value) throws IOException {
         byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
         try (InputStream is = new ByteArrayInputStream(bytes)) {
@@ -297,6 +583,12 @@ public class AbrManifestService {
         }
     }
 
+    private static final class ProgressiveState {
+        private final Map<String, Integer> publishedPrefixes = new HashMap<>();
+        private List<TranscodingProfile> listedProfiles = List.of();
+        private volatile long lastUsedMillis;
+    }
+
     private record SourceSegment(String uri, double durationSeconds) {
         SourceSegment {
             if (uri == null || uri.isBlank()) throw new IllegalArgumentException("uri is blank");
@@ -0,0 +1,114 @@
+package com.distributed26.videostreaming.processing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Live state of one FFmpeg run, fed from its {@code -progress pipe:1} output. FFmpeg writes
+ * a block of {@code key=value} lines roughly twice a second; a block counts as progress
+ * only when {@code frame} or {@code out_time_us} moved, so a process that keeps reporting
+ * without encoding anything is still seen as stalled.
+ */
+public final class FfmpegProgress {
+    private final LongSupplier nanoClock;
+    private final long startedAtNanos;
+    private volatile long lastAdvanceNanos;
+    private volatile long frame;
+    private volatile long outTimeMicros;
+    private volatile double fps;
+    private volatile double speed;
+    private volatile boolean ended;
+
+    public FfmpegProgress() {
+        this(System::nanoTime);
+    }
+
+    FfmpegProgress(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.startedAtNanos = nanoClock.getAsLong();
+        this.lastAdvanceNanos = startedAtNanos;
+    }
+
+    /** Consumes one line of FFmpeg's progress output; unknown keys and {@code N/A} values are ignored. */
+    public void accept(String line) {
+        int separator = line.indexOf('=');
+        if (separator <= 0) {
+            return;
+        }
+        String key = line.substring(0, separator).trim();
+        String value = line.substring(separator + 1).trim();
+        if ("frame".equals(key)) {
+            long parsed = parseLong(value);
+            if (parsed > frame) {
+                frame = parsed;
+                lastAdvanceNanos = nanoClock.getAsLong();
+            }
+        } else if ("out_time_us".equals(key) || "out_time_ms".equals(key)) {
+            // Both keys carry microseconds; out_time_ms is the older, misnamed spelling.
+            long parsed = parseLong(value);
+            if (parsed > outTimeMicros) {
+                outTimeMicros = parsed;
+                lastAdvanceNanos = nanoClock.getAsLong();
+            }
+        } else if ("fps".equals(key)) {
+            fps = Math.max(0d, parseDouble(value));
+        } else if ("speed".equals(key)) {
+            speed = Math.max(0d, parseDouble(value.endsWith("x") ? value.substring(0, value.length() - 1) : value));
+        } else if ("progress".equals(key) && "end".equals(value)) {
+            ended = true;
+        }
+    }
+
+    public long millisSinceProgress() {
+        return (nanoClock.getAsLong() - lastAdvanceNanos) / 1_000_000L;
+    }
+
+    public long frame() {
+        return frame;
+    }
+
+    public double fps() {
+        return fps;
+    }
+
+    /** Encode speed as a multiple of real time, e.g. {@code 2.5} for 2.5x. */
+    public double speed() {
+        return speed;
+    }
+
+    public double outTimeSeconds() {
+        return outTimeMicros / 1_000_000d;
+    }
+
+    public boolean ended() {
+        return ended;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("frame", frame);
+        snapshot.put("fps", Math.round(fps * 10.0) / 10.0);
+        snapshot.put("speed", Math.round(speed * 100.0) / 100.0);
+        snapshot.put("outTimeSeconds", Math.round(outTimeSeconds() * 1000.0) / 1000.0);
+        snapshot.put("elapsedMillis", (nanoClock.getAsLong() - startedAtNanos) / 1_000_000L);
+        snapshot.put("millisSinceProgress", millisSinceProgress());
+        return snapshot;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0d;
+        }
+    }
+}
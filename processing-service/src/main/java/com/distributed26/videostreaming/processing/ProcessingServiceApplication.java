@@ -4,10 +4,19 @@ import com.distributed26.videostreaming.processing.db.ProcessingUploadTaskReposi
 import com.distributed26.videostreaming.processing.db.ProcessingTaskClaimRepository;
 import com.distributed26.videostreaming.processing.db.TranscodedSegmentStatusRepository;
 import com.distributed26.videostreaming.processing.db.VideoProcessingRepository;
+import com.distributed26.videostreaming.processing.runtime.AdaptiveConcurrencyController;
+import com.distributed26.videostreaming.processing.runtime.EncoderPresetGovernor;
+import com.distributed26.videostreaming.processing.runtime.FairTranscodeScheduler;
+import com.distributed26.videostreaming.processing.runtime.LoadSheddingPolicy;
 import com.distributed26.videostreaming.processing.runtime.LocalSpoolUploadWorkerPool;
+import com.distributed26.videostreaming.processing.runtime.PriorityTaskExecutor;
 import com.distributed26.videostreaming.processing.runtime.ProcessingRuntime;
+import com.distributed26.videostreaming.processing.runtime.SourceChunkCache;
 import com.distributed26.videostreaming.processing.runtime.StartupRecoveryService;
+import com.distributed26.videostreaming.processing.runtime.TranscodePipeline;
+import com.distributed26.videostreaming.processing.runtime.TranscodeStateWriter;
 import com.distributed26.videostreaming.shared.config.StorageConfig;
+import com.distributed26.videostreaming.shared.db.ConnectionPools;
 import com.distributed26.videostreaming.shared.jobs.Worker;
 import com.distributed26.videostreaming.shared.jobs.WorkerStatus;
 import com.distributed26.videostreaming.shared.upload.RabbitMQDevLogPublisher;
@@ -34,10 +43,10 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -58,6 +67,7 @@ public class ProcessingServiceApplication {
     private static final long DEFAULT_RECOVERY_RECONCILIATION_MILLIS = 60_000L;
     private static final long DEFAULT_RECOVERY_QUEUED_STALE_MILLIS = 300_000L;
     private static volatile ExecutorService uploadExecutorRef;
+    private static volatile LocalSpoolUploadWorkerPool uploadPoolRef;
     private static volatile ProcessingRuntime runtimeRef;
     private static volatile Thread bucketEnsureThread;
 
@@ -86,11 +96,18 @@ public class ProcessingServiceApplication {
             TranscodeTaskBus transcodeTaskBus = RabbitMQTranscodeTaskBus.fromEnv();
             AbrManifestService manifestService = new AbrManifestService(
                     storageClient,
-                    Integer.parseInt(getEnvOrDotenv(dotenv, "ABR_MANIFEST_WAIT_SECONDS", "120"))
+                    Integer.parseInt(getEnvOrDotenv(dotenv, "ABR_MANIFEST_WAIT_SECONDS", "120")),
+                    Boolean.parseBoolean(getEnvOrDotenv(dotenv, "SERVED_PLAYLISTS_ENABLED", "true")),
+                    Boolean.parseBoolean(getEnvOrDotenv(dotenv, "SERVED_PLAYLISTS_GZIP", "true"))
             );
-            ExecutorService manifestExecutor = Executors.newSingleThreadExecutor(
-                    r -> new Thread(r, MANIFEST_PROCESSOR_EXECUTOR_NAME)
+            int manifestParallelism = Math.max(1,
+                    Integer.parseInt(getEnvOrDotenv(dotenv, "ABR_MANIFEST_PARALLELISM", "4")));
+            AtomicInteger manifestThreadIndex = new AtomicInteger();
+            ExecutorService manifestExecutor = Executors.newFixedThreadPool(
+                    manifestParallelism,
+                    r -> new Thread(r, MANIFEST_PROCESSOR_EXECUTOR_NAME + "-" + manifestThreadIndex.getAndIncrement())
             );
+            LOGGER.info("ABR manifest executor configured parallelism={}", manifestParallelism);
             LOGGER.info("RabbitMQ status/task buses connected");
             publishDevLogInfo(devLogPublisher, "Processing service connected to RabbitMQ");
 
@@ -102,6 +119,13 @@ public class ProcessingServiceApplication {
             int poolSize = Integer.parseInt(getEnvOrDotenv(dotenv, "WORKER_POOL_SIZE", String.valueOf(dynamicDefault)));
             LOGGER.info("Detected {} available CPU(s); transcoding worker pool size = {} (default would be {})",
                     availableCpus, poolSize, dynamicDefault);
+            // The adaptive controller moves the pool between 1 and ADAPTIVE_MAX_WORKERS, so
+            // worker slots and staged pipeline capacity are sized for the maximum up front.
+            boolean adaptiveConcurrency = Boolean.parseBoolean(getEnvOrDotenv(dotenv, "ADAPTIVE_CONCURRENCY_ENABLED", "true"));
+            int maxWorkers = adaptiveConcurrency
+                    ? Math.max(poolSize, Integer.parseInt(getEnvOrDotenv(
+                            dotenv, "ADAPTIVE_MAX_WORKERS", String.valueOf(availableCpus))))
+                    : poolSize;
             TranscodedSegmentStatusRepository transcodeStatusRepository = createTranscodeStatusRepository();
             VideoProcessingRepository videoProcessingRepository = createVideoProcessingRepository();
             ProcessingUploadTaskRepository processingUploadTaskRepository = createProcessingUploadTaskRepository();
@@ -149,11 +173,106 @@ public class ProcessingServiceApplication {
                     LOGGER.warn("Failed to preload failed videos into processing runtime", e);
                 }
             }
-            List<Worker> workers = createWorkers(poolSize);
+            long stateFlushMillis = Long.parseLong(getEnvOrDotenv(dotenv, "TRANSCODE_STATE_FLUSH_MILLIS", "100"));
+            if (transcodeStatusRepository != null && stateFlushMillis > 0) {
+                int stateBatchSize = Integer.parseInt(getEnvOrDotenv(dotenv, "TRANSCODE_STATE_BATCH_SIZE", "256"));
+                runtime.setTranscodeStateWriter(new TranscodeStateWriter(
+                        transcodeStatusRepository::recordStates,
+                        statusEventBus,
+                        stateFlushMillis,
+                        stateBatchSize
+                ));
+            }
+            List<Worker> workers = createWorkers(poolSize, maxWorkers);
             Map<Thread, Worker> workersByThread = new ConcurrentHashMap<>();
             ThreadPoolExecutor taskExecutor = createTaskExecutor(poolSize, workers, workersByThread);
             taskExecutor.prestartAllCoreThreads();
             LOGGER.info("Started {} transcoding worker(s)", poolSize);
+            if (Boolean.parseBoolean(getEnvOrDotenv(dotenv, "PROGRESSIVE_MANIFESTS_ENABLED", "true"))) {
+                runtime.setProgressiveManifests(
+                        Integer.parseInt(getEnvOrDotenv(dotenv, "PROGRESSIVE_MIN_SEGMENTS", "3")));
+            }
+            boolean streamSourceInput = Boolean.parseBoolean(getEnvOrDotenv(dotenv, "TRANSCODE_STREAM_SOURCE", "false"));
+            runtime.setStreamSourceInput(streamSourceInput);
+            long chunkCacheMaxBytes = streamSourceInput ? 0L : Long.parseLong(getEnvOrDotenv(
+                    dotenv, "PROCESSING_CHUNK_CACHE_MAX_BYTES", String.valueOf(512L * 1024 * 1024)));
+            if (chunkCacheMaxBytes > 0) {
+                runtime.setSourceChunkCache(createSourceChunkCache(
+                        getEnvOrDotenv(dotenv, "PROCESSING_CHUNK_CACHE_DIR", "processing-chunk-cache"),
+                        chunkCacheMaxBytes
+                ));
+            }
+            if (Boolean.parseBoolean(getEnvOrDotenv(dotenv, "TRANSCODE_PIPELINE_ENABLED", "true"))) {
+                // Prefetch and bookkeeping run on their own I/O threads, so worker threads only
+                // run FFmpeg. Staged capacity = one chunk per encoder plus the prefetch depth.
+                int prefetchDepth = Integer.parseInt(getEnvOrDotenv(
+                        dotenv, "TRANSCODE_PREFETCH_DEPTH", String.valueOf(poolSize)));
+                int ioThreads = Integer.parseInt(getEnvOrDotenv(
+                        dotenv, "TRANSCODE_IO_THREADS", String.valueOf(Math.max(2, poolSize))));
+                runtime.setTranscodePipeline(new TranscodePipeline(ioThreads, maxWorkers + Math.max(0, prefetchDepth)));
+            }
+            int stagedAhead = runtime.transcodePipeline() == null
+                    ? 0
+                    : Math.max(0, Integer.parseInt(getEnvOrDotenv(
+                            dotenv, "TRANSCODE_PREFETCH_DEPTH", String.valueOf(poolSize))));
+            if (Boolean.parseBoolean(getEnvOrDotenv(dotenv, "FAIR_SCHEDULING_ENABLED", "true"))) {
+                // Admit as many jobs as the executors can hold (the pipeline's staged capacity
+                // when enabled) and keep the rest in per-video queues.
+                int maxConcurrentJobs = poolSize + stagedAhead;
+                int maxInFlightPerVideo = Integer.parseInt(getEnvOrDotenv(
+                        dotenv, "FAIR_MAX_INFLIGHT_PER_VIDEO", String.valueOf(Math.max(1, maxConcurrentJobs / 2))));
+                runtime.setFairScheduler(new FairTranscodeScheduler(maxConcurrentJobs, maxInFlightPerVideo));
+            }
+            if (adaptiveConcurrency) {
+                FairTranscodeScheduler fairScheduler = runtime.fairScheduler();
+                runtime.setConcurrencyController(new AdaptiveConcurrencyController(
+                        (workerCount, ffmpegThreads, prefetch) -> {
+                            resizeTaskExecutor(taskExecutor, workerCount);
+                            TranscodingTask.setFfmpegThreads(ffmpegThreads);
+                            if (fairScheduler != null) {
+                                fairScheduler.setMaxConcurrentJobs(workerCount + stagedAhead);
+                            }
+                            transcodeTaskBus.setPrefetch(prefetch);
+                        },
+                        () -> taskExecutor.getQueue().size()
+                                + (fairScheduler == null ? 0 : fairScheduler.queued()),
+                        poolSize,
+                        Integer.parseInt(getEnvOrDotenv(dotenv, "ADAPTIVE_MIN_WORKERS", "1")),
+                        maxWorkers,
+                        Integer.parseInt(getEnvOrDotenv(dotenv, "RABBITMQ_TASK_PREFETCH", "0")),
+                        Long.parseLong(getEnvOrDotenv(dotenv, "ADAPTIVE_CONCURRENCY_INTERVAL_MILLIS", "15000"))
+                ));
+            }
+            if (Boolean.parseBoolean(getEnvOrDotenv(dotenv, "PRESET_GOVERNOR_ENABLED", "true"))) {
+                FairTranscodeScheduler fairScheduler = runtime.fairScheduler();
+                try {
+                    runtime.setPresetGovernor(new EncoderPresetGovernor(
+                            TranscodingTask::setFfmpegPreset,
+                            transcodeTaskBus::pendingTasks,
+                            () -> taskExecutor.getQueue().size() + (fairScheduler == null ? 0 : fairScheduler.queued()),
+                            TranscodingTask.ffmpegPreset(),
+                            getEnvOrDotenv(dotenv, "PRESET_GOVERNOR_SLOWEST", "medium"),
+                            Long.parseLong(getEnvOrDotenv(dotenv, "PRESET_GOVERNOR_FAST_DRAIN_SECONDS", "300")),
+                            Long.parseLong(getEnvOrDotenv(dotenv, "PRESET_GOVERNOR_SLOW_DRAIN_SECONDS", "60")),
+                            Long.parseLong(getEnvOrDotenv(dotenv, "PRESET_GOVERNOR_INTERVAL_MILLIS", "10000"))
+                    ));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.warn("Encoder preset governor disabled: {}", e.getMessage());
+                }
+            }
+            if (Boolean.parseBoolean(getEnvOrDotenv(dotenv, "LOAD_SHEDDING_ENABLED", "false"))) {
+                FairTranscodeScheduler fairScheduler = runtime.fairScheduler();
+                runtime.setLoadSheddingPolicy(new LoadSheddingPolicy(
+                        List.of(getEnvOrDotenv(dotenv, "LOAD_SHED_PROFILES", "high").split(",")),
+                        transcodeTaskBus::pendingTasks,
+                        () -> taskExecutor.getQueue().size() + (fairScheduler == null ? 0 : fairScheduler.queued()),
+                        runtime::republishDeferred,
+                        Long.parseLong(getEnvOrDotenv(dotenv, "LOAD_SHED_ENTER_BACKLOG", "200")),
+                        Long.parseLong(getEnvOrDotenv(dotenv, "LOAD_SHED_EXIT_BACKLOG", "50")),
+                        Integer.parseInt(getEnvOrDotenv(dotenv, "LOAD_SHED_BACKFILL_BATCH", "8")),
+                        Long.parseLong(getEnvOrDotenv(dotenv, "LOAD_SHED_INTERVAL_MILLIS", "10000"))
+                ));
+            }
 
             if (processingUploadTaskRepository == null) {
                 throw new IllegalStateException("Processing upload queue requires Postgres configuration");
@@ -194,12 +313,20 @@ public class ProcessingServiceApplication {
             int uploadWorkerCount = Integer.parseInt(getEnvOrDotenv(dotenv, "LOCAL_UPLOAD_WORKER_COUNT", "2"));
             long uploadPollMillis = Long.parseLong(getEnvOrDotenv(dotenv, "LOCAL_UPLOAD_POLL_MILLIS", "20000"));
             long uploadClaimTimeoutMillis = Long.parseLong(getEnvOrDotenv(dotenv, "LOCAL_UPLOAD_CLAIM_TIMEOUT_MILLIS", "60000"));
-            ExecutorService uploadExecutor = new LocalSpoolUploadWorkerPool(PROFILES, runtime, devLogPublisher).startUploadWorkers(
+            int uploadBatchSize = Integer.parseInt(getEnvOrDotenv(dotenv, "LOCAL_UPLOAD_BATCH_SIZE", "8"));
+            int uploadConcurrency = Integer.parseInt(getEnvOrDotenv(dotenv, "LOCAL_UPLOAD_CONCURRENCY", "4"));
+            long uploadMaxInFlightBytes = Long.parseLong(getEnvOrDotenv(dotenv, "LOCAL_UPLOAD_MAX_INFLIGHT_BYTES", "67108864"));
+            LocalSpoolUploadWorkerPool uploadPool = new LocalSpoolUploadWorkerPool(PROFILES, runtime, devLogPublisher);
+            ExecutorService uploadExecutor = uploadPool.startUploadWorkers(
                     uploadWorkerCount,
                     uploadPollMillis,
                     uploadClaimTimeoutMillis,
+                    uploadBatchSize,
+                    uploadConcurrency,
+                    uploadMaxInFlightBytes,
                     storageClient
             );
+            uploadPoolRef = uploadPool;
             uploadExecutorRef = uploadExecutor;
 
 
@@ -226,6 +353,7 @@ public class ProcessingServiceApplication {
                 try { transcodeTaskBus.close(); } catch (Exception e) { LOGGER.warn("Error closing transcode task bus", e); }
                 try { statusEventBus.close(); } catch (Exception e) { LOGGER.warn("Error closing status event bus", e); }
                 try { storageClient.close(); } catch (Exception e) { LOGGER.warn("Error closing storage client", e); }
+                ConnectionPools.closeAll();
                 closeDevLogPublisher(devLogPublisher);
             }));
             devLogPublisherOwnedByShutdownHook = true;
@@ -259,14 +387,50 @@ public class ProcessingServiceApplication {
 
         // GET /workers — worker pool snapshot for operational visibility
         app.get("/workers", ctx -> {
-            var snapshot = workers.stream().map(w -> java.util.Map.of(
-                    "id",     w.getId(),
-                    "status", w.getStatus().name()
-            )).toList();
-            ctx.json(java.util.Map.of(
-                    "workers",   snapshot,
-                    "queued",    taskExecutor.getQueue().size()
-            ));
+            ProcessingRuntime runtime = runtimeRef;
+            var snapshot = workers.stream().map(w -> {
+                Map<String, Object> entry = new java.util.LinkedHashMap<>();
+                entry.put("id", w.getId());
+                entry.put("status", w.getStatus().name());
+                Map<String, Object> encode = runtime == null ? null : runtime.encodeProgress(w.getId());
+                if (encode != null) {
+                    entry.put("encode", encode);
+                }
+                return entry;
+            }).toList();
+            Map<String, Object> body = new java.util.LinkedHashMap<>();
+            body.put("workers", snapshot);
+            body.put("queued", taskExecutor.getQueue().size());
+            body.put("dbPools", ConnectionPools.stats());
+            if (runtime != null && runtime.transcodePipeline() != null) {
+                body.put("transcodePipeline", runtime.transcodePipeline().stats());
+            }
+            if (runtime != null && runtime.sourceChunkCache() != null) {
+                body.put("chunkCache", runtime.sourceChunkCache().stats());
+            }
+            if (runtime != null && runtime.fairScheduler() != null) {
+                body.put("fairScheduler", runtime.fairScheduler().stats());
+            }
+            if (runtime != null && runtime.concurrencyController() != null) {
+                body.put("concurrency", runtime.concurrencyController().stats());
+            }
+            if (runtime != null && runtime.presetGovernor() != null) {
+                body.put("presetGovernor", runtime.presetGovernor().stats());
+            }
+            if (runtime != null && runtime.loadSheddingPolicy() != null) {
+                body.put("loadShedding", runtime.loadSheddingPolicy().stats());
+            }
+            if (runtime != null) {
+                body.put("claimHeartbeats", runtime.claimHeartbeats().stats());
+            }
+            if (runtime != null && runtime.transcodeStateWriter() != null) {
+                body.put("stateWriter", runtime.transcodeStateWriter().stats());
+            }
+            LocalSpoolUploadWorkerPool uploadPool = uploadPoolRef;
+            if (uploadPool != null) {
+                body.put("uploads", uploadPool.stats());
+            }
+            ctx.json(body);
         });
 
         return app;
@@ -448,38 +612,81 @@ public class ProcessingServiceApplication {
         }
     }
 
-    private static List<Worker> createWorkers(int poolSize) {
-        List<Worker> workers = new ArrayList<>(poolSize);
+    /** One slot per possible worker thread; slots beyond the initial pool start OFFLINE. */
+    private static List<Worker> createWorkers(int poolSize, int maxWorkers) {
+        List<Worker> workers = new ArrayList<>(maxWorkers);
         java.time.Instant now = java.time.Instant.now();
-        for (int i = 0; i < poolSize; i++) {
-            workers.add(new Worker("worker-" + i, now));
+        for (int i = 0; i < maxWorkers; i++) {
+            Worker worker = new Worker("worker-" + i, now);
+            if (i >= poolSize) {
+                worker.setStatus(WorkerStatus.OFFLINE);
+            }
+            workers.add(worker);
         }
         return Collections.unmodifiableList(workers);
     }
 
+    /**
+     * Each thread takes the lowest free worker slot and hands it back when it exits, so
+     * the pool can be resized without the slots drifting past the end of the list.
+     */
     private static ThreadPoolExecutor createTaskExecutor(int poolSize, List<Worker> workers, Map<Thread, Worker> workersByThread) {
         ThreadFactory factory = new ThreadFactory() {
-            private int index = 0;
+            private final boolean[] taken = new boolean[workers.size()];
 
             @Override
             public synchronized Thread newThread(Runnable runnable) {
+                int slot = 0;
+                while (slot < taken.length && taken[slot]) {
+                    slot++;
+                }
+                if (slot == taken.length) {
+                    // A retiring thread has not released its slot yet; run unattributed.
+                    return new Thread(runnable, "processing-worker-extra");
+                }
+                taken[slot] = true;
+                int index = slot;
                 Worker worker = workers.get(index);
-                Thread thread = new Thread(runnable, "processing-worker-" + index);
+                worker.setStatus(WorkerStatus.IDLE);
+                Thread thread = new Thread(() -> {
+                    try {
+                        runnable.run();
+                    } finally {
+                        release(index);
+                    }
+                }, "processing-worker-" + index);
                 workersByThread.put(thread, worker);
-                index++;
                 return thread;
             }
+
+            private synchronized void release(int index) {
+                workersByThread.remove(Thread.currentThread());
+                workers.get(index).setStatus(WorkerStatus.OFFLINE);
+                taken[index] = false;
+            }
         };
         return new ThreadPoolExecutor(
                 poolSize,
                 poolSize,
                 0L,
                 TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<>(),
+                PriorityTaskExecutor.newQueue(),
                 factory
         );
     }
 
+    /** Idle surplus threads exit at once; busy ones finish their current encode first. */
+    private static void resizeTaskExecutor(ThreadPoolExecutor taskExecutor, int poolSize) {
+        if (poolSize > taskExecutor.getMaximumPoolSize()) {
+            taskExecutor.setMaximumPoolSize(poolSize);
+            taskExecutor.setCorePoolSize(poolSize);
+            taskExecutor.prestartAllCoreThreads();
+        } else {
+            taskExecutor.setCorePoolSize(poolSize);
+            taskExecutor.setMaximumPoolSize(poolSize);
+        }
+    }
+
 
     private static TranscodedSegmentStatusRepository createTranscodeStatusRepository() {
         try {
@@ -517,6 +724,15 @@ public class ProcessingServiceApplication {
         }
     }
 
+    private static SourceChunkCache createSourceChunkCache(String rawPath, long maxBytes) {
+        try {
+            return new SourceChunkCache(Path.of(rawPath).toAbsolutePath().normalize(), maxBytes);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to initialize source chunk cache '{}'; downloading per task", rawPath, e);
+            return null;
+        }
+    }
+
     private static Path initializeSpoolRoot(String rawPath) {
         try {
             Path path = Path.of(rawPath).toAbsolutePath().normalize();
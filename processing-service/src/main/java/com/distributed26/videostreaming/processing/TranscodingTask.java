@@ -3,9 +3,11 @@ package com.distributed26.videostreaming.processing;
 import com.distributed26.videostreaming.shared.jobs.Task;
 import com.distributed26.videostreaming.shared.jobs.TaskType;
 import com.distributed26.videostreaming.shared.storage.ObjectStorageClient;
+import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -13,13 +15,20 @@ import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.builder.FFmpegOutputBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
- * Transcodes one source chunk to a single {@link TranscodingProfile} using FFmpeg.
+ * Transcodes one source chunk to a single {@link TranscodingProfile} using FFmpeg,
+ * or to several profiles in one FFmpeg pass via {@link #encodeToSpool} and
+ * {@link #encodeStreamToSpool}.
  *
  * Source: {@code {videoId}/chunks/{fileName}}
  * Output: {@code {videoId}/processed/{profile}/{fileName}}
@@ -29,6 +38,11 @@ public class TranscodingTask extends Task {
     private static final int DOWNLOAD_MAX_ATTEMPTS;
     private static final long DOWNLOAD_RETRY_INITIAL_DELAY_MILLIS;
     private static final long DOWNLOAD_RETRY_MAX_DELAY_MILLIS;
+    private static final String PIPE_INPUT = "pipe:0";
+    /** An encode whose frame count and output time have not moved for this long is killed; 0 disables. */
+    private static final long STALL_TIMEOUT_MILLIS = parseLongEnv("FFMPEG_STALL_TIMEOUT_MILLIS", 60_000L);
+    private static final long STALL_POLL_MILLIS = 1_000L;
+    private static final long STALL_STDERR_WAIT_MILLIS = 5_000L;
 
     /** Rate-limiting state for the safeFileExists WARN log. */
     private static final long FILE_EXISTS_WARN_INTERVAL_MS = parseLongEnv("FILE_EXISTS_WARN_INTERVAL_MS", 30_000L);
@@ -40,9 +54,11 @@ public class TranscodingTask extends Task {
      * Defaults to 2 so that multiple concurrent workers don't fight over all CPU cores.
      * Override with the THREADS_PER_WORKER env var.
      * The default worker pool size is 3/4 of available CPUs (see ProcessingServiceApplication).
+     * The adaptive concurrency controller retunes it at runtime through {@link #setFfmpegThreads}.
      */
-    static final int FFMPEG_THREADS;
-    static final String FFMPEG_PRESET;
+    private static volatile int ffmpegThreads;
+    /** x264 preset for new encodes; the encoder preset governor retunes it under backlog. */
+    private static volatile String ffmpegPreset;
     static final int CHUNK_DURATION_SECONDS;
     static {
         String val = System.getenv("THREADS_PER_WORKER");
@@ -50,13 +66,13 @@ public class TranscodingTask extends Task {
         if (val != null && !val.isBlank()) {
             try { parsed = Integer.parseInt(val.trim()); } catch (NumberFormatException ignored) {}
         }
-        FFMPEG_THREADS = parsed;
+        ffmpegThreads = parsed;
 
         String preset = System.getenv("FFMPEG_PRESET");
         if (preset == null || preset.isBlank()) {
-            FFMPEG_PRESET = "veryfast";
+            ffmpegPreset = "veryfast";
         } else {
-            FFMPEG_PRESET = preset.trim();
+            ffmpegPreset = preset.trim();
         }
 
         CHUNK_DURATION_SECONDS = parseIntEnv("CHUNK_DURATION_SECONDS", 10);
@@ -72,6 +88,7 @@ public class TranscodingTask extends Task {
     private final String chunkKey;
     private final String outputKey;
     private final double outputTsOffsetSeconds;
+    private volatile String encoderPreset;
 
     public TranscodingTask(String id, String jobId, String chunkKey, TranscodingProfile profile) {
         this(id, jobId, chunkKey, profile, -1d);
@@ -89,6 +106,12 @@ public class TranscodingTask extends Task {
     public String getChunkKey() { return chunkKey; }
     public String getOutputKey() { return outputKey; }
 
+    /** Preset of this task's last encode, or the current preset if it has not been encoded. */
+    public String getEncoderPreset() {
+        String pinned = encoderPreset;
+        return pinned == null ? ffmpegPreset : pinned;
+    }
+
     /**
      * Download source, transcode, upload result. Idempotent — skips if outputKey already exists.
      */
@@ -128,33 +151,193 @@ public class TranscodingTask extends Task {
     }
 
     public CompletedTranscode transcodeToSpool(ObjectStorageClient storageClient, Path spoolRoot) throws IOException {
-        if (safeFileExists(storageClient, outputKey)) {
+        if (outputExists(storageClient)) {
             LOGGER.info("Output already exists in object storage, skipping local spool: {}", outputKey);
             return null;
         }
 
+        Path inputTemp = prefetchSource(storageClient);
+        try {
+            Path partialPath = encodeToSpool(inputTemp, List.of(this), spoolRoot).get(0);
+            try {
+                return spoolOutput(partialPath, spoolRoot);
+            } finally {
+                Files.deleteIfExists(partialPath);
+            }
+        } finally {
+            Files.deleteIfExists(inputTemp);
+        }
+    }
+
+    public boolean outputExists(ObjectStorageClient storageClient) {
+        return safeFileExists(storageClient, outputKey);
+    }
+
+    /**
+     * Downloads the source chunk into a fresh temp file and returns it. The caller owns
+     * the file and must delete it once every encode reading it has finished.
+     */
+    public Path prefetchSource(ObjectStorageClient storageClient) throws IOException {
         Path inputTemp = Files.createTempFile("transcode-in-", ".ts");
-        Path outputTemp = Files.createTempFile("transcode-out-", ".ts");
+        try {
+            downloadSourceTo(storageClient, inputTemp);
+            return inputTemp;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(inputTemp);
+            throw e;
+        }
+    }
+
+    /** Downloads the source chunk to {@code target}, retrying transient storage failures. */
+    public void downloadSourceTo(ObjectStorageClient storageClient, Path target) throws IOException {
+        LOGGER.info("Downloading source chunk: {}", chunkKey);
+        downloadChunkWithRetry(storageClient, target);
+    }
+
+    /**
+     * Runs FFmpeg over an already-downloaded source chunk, writing each rung straight
+     * into its spool {@code .part} file. One rung uses the plain single-output command;
+     * several rungs share one decode via {@link #buildLadderCommand}. Returns the
+     * {@code .part} paths index-aligned with {@code rungs}; publish them with
+     * {@link #spoolOutput}.
+     */
+    public static List<Path> encodeToSpool(Path input, List<TranscodingTask> rungs, Path spoolRoot) throws IOException {
+        return encodeToSpool(input, rungs, spoolRoot, new FfmpegProgress());
+    }
+
+    /** Like {@link #encodeToSpool(Path, List, Path)}, reporting FFmpeg's live progress into {@code progress}. */
+    public static List<Path> encodeToSpool(Path input, List<TranscodingTask> rungs, Path spoolRoot, FfmpegProgress progress)
+            throws IOException {
+        return encode(input.toString(), null, rungs, spoolRoot, progress);
+    }
+
+    /**
+     * Like {@link #encodeToSpool(Path, List, Path)} but streams the source chunk from object
+     * storage into FFmpeg's stdin, so no local copy of the input is ever written. Opening the
+     * stream is retried; a failure mid-stream fails the encode and the task is retried whole.
+     */
+    public static List<Path> encodeStreamToSpool(
+            ObjectStorageClient storageClient,
+            List<TranscodingTask> rungs,
+            Path spoolRoot
+    ) throws IOException {
+        return encodeStreamToSpool(storageClient, rungs, spoolRoot, new FfmpegProgress());
+    }
+
+    public static List<Path> encodeStreamToSpool(
+            ObjectStorageClient storageClient,
+            List<TranscodingTask> rungs,
+            Path spoolRoot,
+            FfmpegProgress progress
+    ) throws IOException {
+        TranscodingTask leader = rungs.get(0);
+        try (InputStream source = leader.openSourceWithRetry(storageClient)) {
+            LOGGER.info("Streaming source chunk into FFmpeg: {}", leader.chunkKey);
+            return encode(PIPE_INPUT, source, rungs, spoolRoot, progress);
+        }
+    }
 
+    private static List<Path> encode(
+            String input,
+            InputStream stdin,
+            List<TranscodingTask> rungs,
+            Path spoolRoot,
+            FfmpegProgress progress
+    ) throws IOException {
+        TranscodingTask leader = rungs.get(0);
+        for (TranscodingTask rung : rungs) {
+            if (!rung.chunkKey.equals(leader.chunkKey)) {
+                throw new IllegalArgumentException("Ladder rungs must share one chunk: "
+                        + leader.chunkKey + " vs " + rung.chunkKey);
+            }
+        }
+        List<Path> partialPaths = new ArrayList<>(rungs.size());
+        try {
+            String preset = ffmpegPreset;
+            for (TranscodingTask rung : rungs) {
+                rung.encoderPreset = preset;
+                Path partialPath = rung.partialSpoolPath(spoolRoot);
+                Files.createDirectories(partialPath.getParent());
+                partialPaths.add(partialPath);
+            }
+            if (rungs.size() == 1) {
+                LOGGER.info("Transcoding chunk={} profile={}", leader.chunkKey, leader.profile.getName());
+                leader.runFfmpegWithDiagnostics(
+                        leader.buildSingleCommand(input, partialPaths.get(0)), leader.profile.getName(), stdin, progress);
+            } else {
+                String label = ladderLabel(rungs);
+                LOGGER.info("Transcoding chunk={} profiles={} in one pass", leader.chunkKey, label);
+                leader.runFfmpegWithDiagnostics(buildLadderCommand(input, rungs, partialPaths), label, stdin, progress);
+            }
+            return partialPaths;
+        } catch (IOException | RuntimeException e) {
+            for (Path partialPath : partialPaths) {
+                Files.deleteIfExists(partialPath);
+            }
+            throw e;
+        }
+    }
+
+    /** Publishes an encoded file (normally this task's {@code .part}) into its spool slot. */
+    public CompletedTranscode spoolOutput(Path encoded, Path spoolRoot) throws IOException {
+        return moveToSpool(encoded, spoolRoot, extractEffectiveOffsetSeconds());
+    }
+
+    static FFmpegBuilder buildLadderCommand(Path input, List<TranscodingTask> rungs, List<Path> outputs) {
+        return buildLadderCommand(input.toString(), rungs, outputs);
+    }
+
+    static FFmpegBuilder buildLadderCommand(String input, List<TranscodingTask> rungs, List<Path> outputs) {
+        StringBuilder filter = new StringBuilder("[0:v]split=").append(rungs.size());
+        for (int i = 0; i < rungs.size(); i++) {
+            filter.append("[s").append(i).append(']');
+        }
+        for (int i = 0; i < rungs.size(); i++) {
+            filter.append(";[s").append(i).append("]scale=-2:")
+                    .append(rungs.get(i).profile.getVerticalResolution())
+                    .append("[v").append(i).append(']');
+        }
+
+        FFmpegBuilder builder = newBuilder(input)
+                .setComplexFilter(filter.toString());
+        for (int i = 0; i < rungs.size(); i++) {
+            TranscodingTask rung = rungs.get(i);
+            FFmpegOutputBuilder output = builder.addOutput(outputs.get(i).toString())
+                    .setFormat("mpegts")
+                    .addExtraArgs("-map", "[v" + i + "]")
+                    .addExtraArgs("-map", "0:a?")
+                    .addExtraArgs("-output_ts_offset", formatOffset(rung.extractEffectiveOffsetSeconds()));
+            applyEncoderArgs(output, rung.profile, rung.getEncoderPreset()).done();
+        }
+        return builder;
+    }
+
+    private static FFmpegBuilder newBuilder(String input) {
+        FFmpegBuilder builder = new FFmpegBuilder().setInput(input);
+        // A pipe cannot be seeked for probing, so name the container explicitly.
+        return PIPE_INPUT.equals(input) ? builder.setFormat("mpegts") : builder;
+    }
+
+    private CompletedTranscode moveToSpool(Path encoded, Path spoolRoot, double effectiveOffsetSeconds)
+            throws IOException {
+        Path finalPath = spoolPath(spoolRoot);
+        Files.createDirectories(finalPath.getParent());
+        Path partialPath = partialSpoolPath(spoolRoot);
+        if (!encoded.equals(partialPath)) {
+            Files.copy(encoded, partialPath, StandardCopyOption.REPLACE_EXISTING);
+        }
         try {
-            CompletedTranscode completed = transcodeInternal(storageClient, inputTemp, outputTemp);
-            Path finalPath = spoolPath(spoolRoot);
-            Files.createDirectories(finalPath.getParent());
-            Path partialPath = finalPath.resolveSibling(finalPath.getFileName() + ".part");
-            Files.copy(outputTemp, partialPath, StandardCopyOption.REPLACE_EXISTING);
             Files.move(partialPath, finalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-            long size = Files.size(finalPath);
-            return new CompletedTranscode(finalPath, outputKey, size, completed.outputTsOffsetSeconds());
         } catch (java.nio.file.AtomicMoveNotSupportedException e) {
-            Path finalPath = spoolPath(spoolRoot);
-            Files.createDirectories(finalPath.getParent());
-            Files.copy(outputTemp, finalPath, StandardCopyOption.REPLACE_EXISTING);
-            long size = Files.size(finalPath);
-            return new CompletedTranscode(finalPath, outputKey, size, extractEffectiveOffsetSeconds());
-        } finally {
-            Files.deleteIfExists(inputTemp);
-            Files.deleteIfExists(outputTemp);
+            Files.move(partialPath, finalPath, StandardCopyOption.REPLACE_EXISTING);
         }
+        long size = Files.size(finalPath);
+        return new CompletedTranscode(finalPath, outputKey, size, effectiveOffsetSeconds);
+    }
+
+    public Path partialSpoolPath(Path spoolRoot) {
+        Path finalPath = spoolPath(spoolRoot);
+        return finalPath.resolveSibling(finalPath.getFileName() + ".part");
     }
 
     public Path spoolPath(Path spoolRoot) {
@@ -174,34 +357,52 @@ public class TranscodingTask extends Task {
         downloadChunkWithRetry(storageClient, inputTemp);
 
         LOGGER.info("Transcoding chunk={} profile={}", chunkKey, profile.getName());
+        runFfmpegWithDiagnostics(
+                buildSingleCommand(inputTemp.toString(), outputTemp), profile.getName(), null, new FfmpegProgress());
+        return new CompletedTranscode(outputTemp, outputKey, Files.size(outputTemp), extractEffectiveOffsetSeconds());
+    }
+
+    private FFmpegBuilder buildSingleCommand(String input, Path output) {
+        FFmpegBuilder builder = newBuilder(input);
+        FFmpegOutputBuilder outputBuilder = builder.addOutput(output.toString())
+                .setFormat("mpegts")
+                .addExtraArgs("-output_ts_offset", formatOffset(extractEffectiveOffsetSeconds()))
+                .addExtraArgs("-vf", "scale=-2:" + profile.getVerticalResolution());
+        applyEncoderArgs(outputBuilder, profile, getEncoderPreset()).done();
+        return builder;
+    }
+
+    private static FFmpegOutputBuilder applyEncoderArgs(FFmpegOutputBuilder output, TranscodingProfile profile, String preset) {
         String maxrate = profile.getBitrate() + "";
         String bufsize = (profile.getBitrate() * 2) + "";
-        double effectiveOutputTsOffsetSeconds = extractEffectiveOffsetSeconds();
-        FFmpegBuilder builder = new FFmpegBuilder()
-                .setInput(inputTemp.toString())
-                .addOutput(outputTemp.toString())
-                .setFormat("mpegts")
-                    .addExtraArgs("-output_ts_offset", String.format(java.util.Locale.US, "%.3f", effectiveOutputTsOffsetSeconds))
-                    .addExtraArgs("-vf", "scale=-2:" + profile.getVerticalResolution())
-                    .addExtraArgs("-c:v", "libx264")
-                    .addExtraArgs("-preset", FFMPEG_PRESET)
-                    .addExtraArgs("-crf", "23")
-                    .addExtraArgs("-pix_fmt", "yuv420p")
-                    .addExtraArgs("-maxrate", maxrate)
-                    .addExtraArgs("-bufsize", bufsize)
-                    .addExtraArgs("-x264-params", "scenecut=0:open_gop=0")
-                    .addExtraArgs("-threads", String.valueOf(FFMPEG_THREADS))
-                    .addExtraArgs("-c:a", "aac")
-                    .addExtraArgs("-b:a", "128k")
-                    .addExtraArgs("-ac", "2")
-                    .addExtraArgs("-ar", "48000")
-                    .addExtraArgs("-af", "aresample=async=1:first_pts=0")
-                    .addExtraArgs("-muxpreload", "0")
-                    .addExtraArgs("-muxdelay", "0")
-                    .done();
-
-        runFfmpegWithDiagnostics(builder);
-        return new CompletedTranscode(outputTemp, outputKey, Files.size(outputTemp), effectiveOutputTsOffsetSeconds);
+        return output
+                .addExtraArgs("-c:v", "libx264")
+                .addExtraArgs("-preset", preset)
+                .addExtraArgs("-crf", "23")
+                .addExtraArgs("-pix_fmt", "yuv420p")
+                .addExtraArgs("-maxrate", maxrate)
+                .addExtraArgs("-bufsize", bufsize)
+                .addExtraArgs("-x264-params", "scenecut=0:open_gop=0")
+                .addExtraArgs("-threads", String.valueOf(ffmpegThreads))
+                .addExtraArgs("-c:a", "aac")
+                .addExtraArgs("-b:a", "128k")
+                .addExtraArgs("-ac", "2")
+                .addExtraArgs("-ar", "48000")
+                .addExtraArgs("-af", "aresample=async=1:first_pts=0")
+                .addExtraArgs("-muxpreload", "0")
+                .addExtraArgs("-muxdelay", "0");
+    }
+
+    private static String formatOffset(double offsetSeconds) {
+        return String.format(java.util.Locale.US, "%.3f", offsetSeconds);
+    }
+
+    private static String ladderLabel(List<TranscodingTask> rungs) {
+        List<String> names = new ArrayList<>(rungs.size());
+        for (TranscodingTask rung : rungs) {
+            names.add(rung.profile.getName());
+        }
+        return String.join(",", names);
     }
 
     private double extractEffectiveOffsetSeconds() {
@@ -215,14 +416,29 @@ public class TranscodingTask extends Task {
 
     /**
      * Runs the FFmpeg command built by the given {@link FFmpegBuilder} using a
-     * {@link ProcessBuilder} so that both stdout and stderr are fully captured.
+     * {@link ProcessBuilder} so that stderr is fully captured.
      * On a non-zero exit code the captured output is logged at ERROR level before
      * throwing an {@link IOException} — this replaces the opaque
      * "Check stdout" message from the bramp FFmpegExecutor.
+     *
+     * <p>When {@code stdin} is non-null it is pumped into the process on a separate thread;
+     * a failure while reading it fails the run even if FFmpeg exits cleanly, because FFmpeg
+     * treats a truncated pipe as a short input rather than an error.
+     *
+     * <p>FFmpeg reports progress on stdout ({@code -progress pipe:1}) into {@code progress}.
+     * If neither the frame count nor the output time advances for
+     * {@code FFMPEG_STALL_TIMEOUT_MILLIS}, the process is killed and the run fails, so the
+     * task is requeued instead of holding a worker and its claim indefinitely.
      */
-    private void runFfmpegWithDiagnostics(FFmpegBuilder builder) throws IOException {
+    private void runFfmpegWithDiagnostics(
+            FFmpegBuilder builder,
+            String profileLabel,
+            InputStream stdin,
+            FfmpegProgress progress
+    ) throws IOException {
         List<String> command = new ArrayList<>();
         command.add("ffmpeg");
+        command.addAll(List.of("-nostats", "-progress", "pipe:1"));
         command.addAll(builder.build());
 
         LOGGER.debug("FFmpeg command: {}", () -> String.join(" ", command));
@@ -234,60 +450,113 @@ public class TranscodingTask extends Task {
             process = pb.start();
         } catch (IOException e) {
             throw new IOException("Failed to start FFmpeg process for chunk=" + chunkKey
-                    + " profile=" + profile.getName() + ": " + e.getMessage(), e);
+                    + " profile=" + profileLabel + ": " + e.getMessage(), e);
         }
 
+        // The pipes block for the whole encode, so each gets its own thread rather than the
+        // common pool, where a few concurrent encodes would starve later progress readers.
+        CompletableFuture<IOException> stdinFuture = stdin == null
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.supplyAsync(() -> pumpStdin(stdin, process.getOutputStream()), pipeThread("stdin"));
+
         // Read stdout and stderr in parallel to prevent pipe buffer deadlocks
-        CompletableFuture<String> stdoutFuture = CompletableFuture.supplyAsync(() -> {
-            try { return new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8); }
-            catch (IOException e) { return "[failed to read stdout: " + e.getMessage() + "]"; }
-        });
+        CompletableFuture<Void> stdoutFuture = CompletableFuture.runAsync(() -> {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    progress.accept(line);
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Failed to read FFmpeg progress for chunk={}: {}", chunkKey, e.getMessage());
+            }
+        }, pipeThread("progress"));
         CompletableFuture<String> stderrFuture = CompletableFuture.supplyAsync(() -> {
             try { return new String(process.getErrorStream().readAllBytes(), StandardCharsets.UTF_8); }
             catch (IOException e) { return "[failed to read stderr: " + e.getMessage() + "]"; }
-        });
+        }, pipeThread("stderr"));
 
         int exitCode;
         try {
-            exitCode = process.waitFor();
+            while (!process.waitFor(STALL_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (STALL_TIMEOUT_MILLIS > 0 && progress.millisSinceProgress() > STALL_TIMEOUT_MILLIS) {
+                    long stalledMillis = progress.millisSinceProgress();
+                    process.destroyForcibly();
+                    String stderr;
+                    try {
+                        stderr = stderrFuture.get(STALL_STDERR_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (ExecutionException | TimeoutException e) {
+                        stderr = "[stderr unavailable: " + e + "]";
+                    }
+                    LOGGER.warn("Killed stalled FFmpeg for chunk={} profile={} stalledMillis={} progress={}.\n--- stderr ---\n{}",
+                            chunkKey, profileLabel, stalledMillis, progress.snapshot(), truncateStderr(stderr));
+                    throw new IOException("FFmpeg made no progress for " + STALL_TIMEOUT_MILLIS
+                            + " ms for chunk=" + chunkKey + " profile=" + profileLabel);
+                }
+            }
+            exitCode = process.exitValue();
         } catch (InterruptedException e) {
             process.destroyForcibly();
             Thread.currentThread().interrupt();
             throw new IOException("FFmpeg process interrupted for chunk=" + chunkKey
-                    + " profile=" + profile.getName(), e);
+                    + " profile=" + profileLabel, e);
         }
 
-        String stdout = stdoutFuture.join();
+        stdoutFuture.join();
         String stderr = stderrFuture.join();
 
         if (exitCode != 0) {
-            // Truncate very long output to keep logs manageable
-            String stderrTrunc = stderr.length() > 4000
-                    ? "…(truncated)…\n" + stderr.substring(stderr.length() - 4000)
-                    : stderr;
-            String stdoutTrunc = stdout.length() > 2000
-                    ? "…(truncated)…\n" + stdout.substring(stdout.length() - 2000)
-                    : stdout;
-
-            LOGGER.error("FFmpeg exited with code {} for chunk={} profile={}.\n--- stderr ---\n{}\n--- stdout ---\n{}",
-                    exitCode, chunkKey, profile.getName(), stderrTrunc, stdoutTrunc);
+            LOGGER.error("FFmpeg exited with code {} for chunk={} profile={} progress={}.\n--- stderr ---\n{}",
+                    exitCode, chunkKey, profileLabel, progress.snapshot(), truncateStderr(stderr));
 
             // Build a concise exception message with the last 500 chars of stderr
             String detail = stderr.length() > 500
                     ? stderr.substring(stderr.length() - 500)
                     : stderr;
             throw new IOException("FFmpeg returned exit code " + exitCode
-                    + " for chunk=" + chunkKey + " profile=" + profile.getName()
+                    + " for chunk=" + chunkKey + " profile=" + profileLabel
                     + ". stderr: " + detail.strip());
         }
 
+        // Only joined on a clean exit: after a failed run the pump may be parked on a source
+        // read, and it is released when the caller closes the source stream.
+        IOException stdinError = stdinFuture.join();
+        if (stdinError != null) {
+            throw new IOException("Source stream failed while feeding FFmpeg for chunk=" + chunkKey
+                    + " profile=" + profileLabel + ": " + describeDownloadError(stdinError), stdinError);
+        }
+
         if (!stderr.isBlank()) {
             LOGGER.debug("FFmpeg stderr (exit 0) for chunk={} profile={}:\n{}",
-                    chunkKey, profile.getName(),
+                    chunkKey, profileLabel,
                     stderr.length() > 2000 ? stderr.substring(stderr.length() - 2000) : stderr);
         }
     }
 
+    /** Truncates very long output to keep logs manageable. */
+    private static String truncateStderr(String stderr) {
+        return stderr.length() > 4000
+                ? "…(truncated)…\n" + stderr.substring(stderr.length() - 4000)
+                : stderr;
+    }
+
+    private Executor pipeThread(String role) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, "ffmpeg-" + role + "-" + getId());
+            thread.setDaemon(true);
+            thread.start();
+        };
+    }
+
+    private static IOException pumpStdin(InputStream source, java.io.OutputStream processStdin) {
+        try (java.io.OutputStream sink = processStdin) {
+            source.transferTo(sink);
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
     public record CompletedTranscode(Path localPath, String outputKey, long sizeBytes, double outputTsOffsetSeconds) {
     }
 
@@ -295,6 +564,24 @@ public class TranscodingTask extends Task {
         return CHUNK_DURATION_SECONDS;
     }
 
+    public static int ffmpegThreads() {
+        return ffmpegThreads;
+    }
+
+    public static String ffmpegPreset() {
+        return ffmpegPreset;
+    }
+
+    /** Applies to encodes started after the call; running FFmpeg processes keep their preset. */
+    public static void setFfmpegPreset(String preset) {
+        ffmpegPreset = preset;
+    }
+
+    /** Applies to encodes started after the call; running FFmpeg processes keep their threads. */
+    public static void setFfmpegThreads(int threads) {
+        ffmpegThreads = Math.max(1, threads);
+    }
+
     /**
      * Checks whether a file exists in object storage, returning {@code false}
      * (rather than crashing) when MinIO is unreachable. Because all MinIO writes
@@ -330,6 +617,28 @@ public class TranscodingTask extends Task {
         }
     }
 
+    private InputStream openSourceWithRetry(ObjectStorageClient storageClient) throws IOException {
+        RuntimeException lastError = null;
+        long delayMillis = Math.max(1L, DOWNLOAD_RETRY_INITIAL_DELAY_MILLIS);
+        int attempts = Math.max(1, DOWNLOAD_MAX_ATTEMPTS);
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            try {
+                return storageClient.downloadFile(chunkKey);
+            } catch (RuntimeException e) {
+                lastError = e;
+                if (attempt == attempts) {
+                    break;
+                }
+                LOGGER.warn("Opening source chunk stream failed (attempt {}/{}) chunk={}: {}",
+                        attempt, attempts, chunkKey, describeDownloadError(e));
+                sleepBeforeRetry(delayMillis);
+                delayMillis = Math.min(Math.max(1L, DOWNLOAD_RETRY_MAX_DELAY_MILLIS), delayMillis * 2);
+            }
+        }
+        throw new IOException("Failed to open source chunk stream after " + attempts + " attempt(s): chunk="
+                + chunkKey + " — " + describeDownloadError(lastError), lastError);
+    }
+
     private void downloadChunkWithRetry(ObjectStorageClient storageClient, Path inputTemp) throws IOException {
         IOException lastIo = null;
         RuntimeException lastRuntime = null;
@@ -1,10 +1,13 @@
 package com.distributed26.videostreaming.processing.db;
 
+import com.distributed26.videostreaming.shared.db.ConnectionPools;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
+import javax.sql.DataSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -17,14 +20,14 @@ public class ProcessingTaskClaimRepository {
         ERROR
     }
 
-    private final String jdbcUrl;
-    private final String username;
-    private final String password;
+    private final DataSource dataSource;
 
     public ProcessingTaskClaimRepository(String jdbcUrl, String username, String password) {
-        this.jdbcUrl = jdbcUrl;
-        this.username = username;
-        this.password = password;
+        this(ConnectionPools.forUrl(jdbcUrl, username, password));
+    }
+
+    public ProcessingTaskClaimRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     public static ProcessingTaskClaimRepository fromEnv() {
@@ -60,7 +63,7 @@ public class ProcessingTaskClaimRepository {
                OR processing_task_claim.updated_at < NOW() - (? * INTERVAL '1 millisecond')
             RETURNING id
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, profile);
@@ -88,7 +91,7 @@ public class ProcessingTaskClaimRepository {
               AND updated_at >= NOW() - (? * INTERVAL '1 millisecond')
             LIMIT 1
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, profile);
@@ -114,7 +117,7 @@ public class ProcessingTaskClaimRepository {
               AND segment_number = ?
               AND claimed_by = ?
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, stage);
             ps.setObject(2, UUID.fromString(videoId));
@@ -129,6 +132,36 @@ public class ProcessingTaskClaimRepository {
         }
     }
 
+    /**
+     * Refreshes every claim in {@code stagesByKey} still held by {@code claimedBy} with a
+     * single statement and returns how many rows were refreshed. Claims that went stale
+     * and were taken over by another instance are not touched.
+     */
+    public int heartbeatAll(String claimedBy, Map<ClaimKey, String> stagesByKey) {
+        if (stagesByKey.isEmpty()) {
+            return 0;
+        }
+        String sql = """
+            UPDATE processing_task_claim c
+            SET stage = k.stage,
+                updated_at = NOW()
+            FROM unnest(?::uuid[], ?::varchar[], ?::int[], ?::varchar[]) AS k(video_id, profile, segment_number, stage)
+            WHERE c.claimed_by = ?
+              AND c.video_id = k.video_id
+              AND c.profile = k.profile
+              AND c.segment_number = k.segment_number
+            """;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            bindKeyArrays(conn, ps, 1, stagesByKey.keySet());
+            ps.setArray(4, conn.createArrayOf("varchar", stagesByKey.values().toArray(String[]::new)));
+            ps.setString(5, claimedBy);
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to heartbeat processing_task_claim", e);
+        }
+    }
+
     public java.util.Set<Integer> findClaimedSegmentNumbers(String videoId, String profile, long staleMillis) {
         String sql = """
             SELECT segment_number
@@ -138,7 +171,7 @@ public class ProcessingTaskClaimRepository {
               AND updated_at >= NOW() - (? * INTERVAL '1 millisecond')
             """;
         java.util.Set<Integer> segmentNumbers = new java.util.HashSet<>();
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, profile);
@@ -161,7 +194,7 @@ public class ProcessingTaskClaimRepository {
             DELETE FROM processing_task_claim
             WHERE video_id = ? AND profile = ? AND segment_number = ?
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, profile);
@@ -174,4 +207,51 @@ public class ProcessingTaskClaimRepository {
             return false;
         }
     }
+
+    /** Releases every claim in {@code keys} with a single statement. */
+    public boolean releaseAll(Collection<ClaimKey> keys) {
+        if (keys.isEmpty()) {
+            return true;
+        }
+        String sql = """
+            DELETE FROM processing_task_claim c
+            USING unnest(?::uuid[], ?::varchar[], ?::int[]) AS k(video_id, profile, segment_number)
+            WHERE c.video_id = k.video_id
+              AND c.profile = k.profile
+              AND c.segment_number = k.segment_number
+            """;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            bindKeyArrays(conn, ps, 1, keys);
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.warn("Failed to release {} processing_task_claim row(s)", keys.size(), e);
+            return false;
+        }
+    }
+
+    private static void bindKeyArrays(
+            Connection conn,
+            PreparedStatement ps,
+            int firstIndex,
+            Collection<ClaimKey> keys
+    ) throws SQLException {
+        UUID[] videoIds = new UUID[keys.size()];
+        String[] profiles = new String[keys.size()];
+        Integer[] segmentNumbers = new Integer[keys.size()];
+        int i = 0;
+        for (ClaimKey key : keys) {
+            videoIds[i] = UUID.fromString(key.videoId());
+            profiles[i] = key.profile();
+            segmentNumbers[i] = key.segmentNumber();
+            i++;
+        }
+        ps.setArray(firstIndex, conn.createArrayOf("uuid", videoIds));
+        ps.setArray(firstIndex + 1, conn.createArrayOf("varchar", profiles));
+        ps.setArray(firstIndex + 2, conn.createArrayOf("integer", segmentNumbers));
+    }
+
+    public record ClaimKey(String videoId, String profile, int segmentNumber) {
+    }
 }
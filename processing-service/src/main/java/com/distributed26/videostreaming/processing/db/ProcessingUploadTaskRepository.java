@@ -1,27 +1,30 @@
 package com.distributed26.videostreaming.processing.db;
 
 import com.distributed26.videostreaming.processing.LocalSpoolUploadTask;
+import com.distributed26.videostreaming.shared.db.ConnectionPools;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import javax.sql.DataSource;
 
 public class ProcessingUploadTaskRepository {
-    private final String jdbcUrl;
-    private final String username;
-    private final String password;
+    private final DataSource dataSource;
 
     public ProcessingUploadTaskRepository(String jdbcUrl, String username, String password) {
-        this.jdbcUrl = jdbcUrl;
-        this.username = username;
-        this.password = password;
+        this(ConnectionPools.forUrl(jdbcUrl, username, password));
+    }
+
+    public ProcessingUploadTaskRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
         ensureSpoolOwnerColumn();
     }
 
@@ -77,7 +80,7 @@ public class ProcessingUploadTaskRepository {
                 claimed_by = NULL,
                 updated_at = NOW()
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, spoolOwner);
@@ -95,8 +98,12 @@ public class ProcessingUploadTaskRepository {
     }
 
     public Optional<LocalSpoolUploadTask> claimNextReady(String claimedBy, long staleMillis) {
+        return claimNextReadyBatch(claimedBy, staleMillis, 1).stream().findFirst();
+    }
+
+    public List<LocalSpoolUploadTask> claimNextReadyBatch(String claimedBy, long staleMillis, int limit) {
         String sql = """
-            WITH next_task AS (
+            WITH next_tasks AS (
                 SELECT id
                 FROM processing_upload_task
                 WHERE spool_owner = ?
@@ -105,7 +112,7 @@ public class ProcessingUploadTaskRepository {
                      OR (state = 'UPLOADING' AND updated_at < NOW() - (? * INTERVAL '1 millisecond'))
                   )
                 ORDER BY updated_at ASC, id ASC
-                LIMIT 1
+                LIMIT ?
                 FOR UPDATE SKIP LOCKED
             )
             UPDATE processing_upload_task t
@@ -113,8 +120,8 @@ public class ProcessingUploadTaskRepository {
                 claimed_by = ?,
                 attempt_count = t.attempt_count + 1,
                 updated_at = NOW()
-            FROM next_task
-            WHERE t.id = next_task.id
+            FROM next_tasks
+            WHERE t.id = next_tasks.id
             RETURNING t.id,
                       t.video_id,
                       t.spool_owner,
@@ -127,17 +134,20 @@ public class ProcessingUploadTaskRepository {
                       t.output_ts_offset_seconds,
                       t.attempt_count
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        List<LocalSpoolUploadTask> tasks = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, claimedBy);
             ps.setLong(2, staleMillis);
-            ps.setString(3, claimedBy);
+            ps.setInt(3, Math.max(1, limit));
+            ps.setString(4, claimedBy);
             try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) {
-                    return Optional.empty();
+                while (rs.next()) {
+                    tasks.add(mapRow(rs));
                 }
-                return Optional.of(mapRow(rs));
             }
+            tasks.sort(Comparator.comparingLong(LocalSpoolUploadTask::id));
+            return tasks;
         } catch (SQLException e) {
             throw new RuntimeException("Failed to claim processing_upload_task", e);
         }
@@ -147,13 +157,53 @@ public class ProcessingUploadTaskRepository {
         updateState(id, "PENDING");
     }
 
+    public int markPendingByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String sql = """
+            UPDATE processing_upload_task
+            SET state = 'PENDING', claimed_by = NULL, updated_at = NOW()
+            WHERE id = ANY(?)
+            """;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setArray(1, conn.createArrayOf("bigint", ids.toArray(Long[]::new)));
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to update processing_upload_task state", e);
+        }
+    }
+
+    /** Refreshes {@code updated_at} of rows still claimed by {@code claimedBy} so they are not reclaimed as stale. */
+    public int touchClaimed(String claimedBy, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String sql = """
+            UPDATE processing_upload_task
+            SET updated_at = NOW()
+            WHERE id = ANY(?)
+              AND state = 'UPLOADING'
+              AND claimed_by = ?
+            """;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setArray(1, conn.createArrayOf("bigint", ids.toArray(Long[]::new)));
+            ps.setString(2, claimedBy);
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to refresh processing_upload_task claims", e);
+        }
+    }
+
     public int resetUploadingTasks() {
         String sql = """
             UPDATE processing_upload_task
             SET state = 'PENDING', claimed_by = NULL, updated_at = NOW()
             WHERE state = 'UPLOADING'
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             return ps.executeUpdate();
         } catch (SQLException e) {
@@ -163,7 +213,7 @@ public class ProcessingUploadTaskRepository {
 
     public void deleteById(long id) {
         String sql = "DELETE FROM processing_upload_task WHERE id = ?";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setLong(1, id);
             ps.executeUpdate();
@@ -172,6 +222,20 @@ public class ProcessingUploadTaskRepository {
         }
     }
 
+    public int deleteByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String sql = "DELETE FROM processing_upload_task WHERE id = ANY(?)";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setArray(1, conn.createArrayOf("bigint", ids.toArray(Long[]::new)));
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete processing_upload_task", e);
+        }
+    }
+
     public boolean hasOpenTask(String videoId, String profile, int segmentNumber) {
         String sql = """
             SELECT 1
@@ -179,7 +243,7 @@ public class ProcessingUploadTaskRepository {
             WHERE video_id = ? AND profile = ? AND segment_number = ?
             LIMIT 1
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, profile);
@@ -199,7 +263,7 @@ public class ProcessingUploadTaskRepository {
             WHERE video_id = ? AND profile = ?
             """;
         Set<Integer> segmentNumbers = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, profile);
@@ -217,7 +281,7 @@ public class ProcessingUploadTaskRepository {
     public List<String> findVideoIdsWithOpenTasks() {
         String sql = "SELECT DISTINCT video_id FROM processing_upload_task";
         List<String> videoIds = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
@@ -231,7 +295,7 @@ public class ProcessingUploadTaskRepository {
 
     public int countByState(String state) {
         String sql = "SELECT COUNT(*) FROM processing_upload_task WHERE state = ?";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, state);
             try (ResultSet rs = ps.executeQuery()) {
@@ -251,7 +315,7 @@ public class ProcessingUploadTaskRepository {
             SET state = ?, claimed_by = NULL, updated_at = NOW()
             WHERE id = ?
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, state);
             ps.setLong(2, id);
@@ -282,7 +346,7 @@ public class ProcessingUploadTaskRepository {
             ALTER TABLE processing_upload_task
             ADD COLUMN IF NOT EXISTS spool_owner VARCHAR(128)
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.executeUpdate();
         } catch (SQLException e) {
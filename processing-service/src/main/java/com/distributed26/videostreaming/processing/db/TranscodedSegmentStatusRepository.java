@@ -1,24 +1,31 @@
 package com.distributed26.videostreaming.processing.db;
 
+import com.distributed26.videostreaming.shared.db.ConnectionPools;
 import com.distributed26.videostreaming.shared.upload.events.TranscodeSegmentState;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import javax.sql.DataSource;
 
 public class TranscodedSegmentStatusRepository {
-    private final String jdbcUrl;
-    private final String username;
-    private final String password;
+    private final DataSource dataSource;
 
     public TranscodedSegmentStatusRepository(String jdbcUrl, String username, String password) {
-        this.jdbcUrl = jdbcUrl;
-        this.username = username;
-        this.password = password;
+        this(ConnectionPools.forUrl(jdbcUrl, username, password));
+    }
+
+    public TranscodedSegmentStatusRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+        ensureProgressTable();
+        ensureColumns();
     }
 
     public static TranscodedSegmentStatusRepository fromEnv() {
@@ -36,35 +43,332 @@ public class TranscodedSegmentStatusRepository {
     }
 
     public void upsertState(String videoId, String profile, int segmentNumber, TranscodeSegmentState state) {
+        recordState(videoId, profile, segmentNumber, state);
+    }
+
+    /**
+     * Upserts one segment state and maintains the per-profile DONE and DEFERRED counters
+     * in the same statement. DONE is sticky: later non-DONE writes leave a DONE row
+     * untouched, so the DONE counter only moves on the first transition into DONE. The
+     * DEFERRED counter follows rows into and out of DEFERRED here and in
+     * {@link #claimDeferred}; other exits are not tracked, so it is an upper bound.
+     */
+    public StateTransition recordState(String videoId, String profile, int segmentNumber, TranscodeSegmentState state) {
         String sql = """
-            INSERT INTO transcoded_segment_status (video_id, profile, segment_number, state)
-            VALUES (?, ?, ?, ?)
-            ON CONFLICT (video_id, profile, segment_number) DO UPDATE
-            SET state = CASE
-                WHEN transcoded_segment_status.state = 'DONE' AND EXCLUDED.state <> 'DONE'
-                    THEN transcoded_segment_status.state
-                ELSE EXCLUDED.state
-            END,
-            updated_at = NOW()
-            """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+            WITH input AS (
+                SELECT ?::uuid AS video_id, ?::varchar AS profile, ?::int AS segment_number, ?::varchar AS state
+            ),
+            previous AS (
+                SELECT s.state FROM transcoded_segment_status s, input i
+                WHERE s.video_id = i.video_id AND s.profile = i.profile AND s.segment_number = i.segment_number
+            ),
+            upserted AS (
+                INSERT INTO transcoded_segment_status (video_id, profile, segment_number, state)
+                SELECT video_id, profile, segment_number, state FROM input
+                ON CONFLICT (video_id, profile, segment_number) DO UPDATE
+                SET state = EXCLUDED.state,
+                    updated_at = NOW()
+                WHERE transcoded_segment_status.state <> 'DONE'
+                RETURNING state
+            ),
+            delta AS (
+                SELECT COALESCE(SUM(CASE WHEN u.state = 'DONE' THEN 1 ELSE 0 END), 0)::int AS newly_done,
+                       COALESCE(SUM(CASE WHEN u.state = 'DEFERRED' THEN 1 ELSE 0 END
+                                    - CASE WHEN p.state = 'DEFERRED' THEN 1 ELSE 0 END), 0)::int AS deferred_delta
+                FROM upserted u
+                LEFT JOIN previous p ON TRUE
+            ),
+            seeded AS (
+                SELECT EXISTS (
+                    SELECT 1 FROM video_profile_progress pp, input i
+                    WHERE pp.video_id = i.video_id AND pp.profile = i.profile
+                ) AS present
+            ),
+            progress AS (
+                INSERT INTO video_profile_progress (video_id, profile, done_segments, deferred_segments)
+                SELECT i.video_id,
+                       i.profile,
+                       delta.newly_done + CASE WHEN seeded.present THEN 0 ELSE (
+                           SELECT COUNT(*)::int FROM transcoded_segment_status s
+                           WHERE s.video_id = i.video_id AND s.profile = i.profile AND s.state = 'DONE'
+                       ) END,
+                       GREATEST(0, delta.deferred_delta + CASE WHEN seeded.present THEN 0 ELSE (
+                           SELECT COUNT(*)::int FROM transcoded_segment_status s
+                           WHERE s.video_id = i.video_id AND s.profile = i.profile AND s.state = 'DEFERRED'
+                       ) END)
+                FROM input i, delta, seeded
+                WHERE delta.newly_done > 0 OR delta.deferred_delta <> 0
+                ON CONFLICT (video_id, profile) DO UPDATE
+                SET done_segments = video_profile_progress.done_segments + (SELECT newly_done FROM delta),
+                    deferred_segments = GREATEST(0,
+                        video_profile_progress.deferred_segments + (SELECT deferred_delta FROM delta)),
+                    updated_at = NOW()
+                RETURNING done_segments, deferred_segments
+            )
+            SELECT delta.newly_done,
+                   COALESCE(pr.done_segments, cur.done_segments, 0) AS done_segments,
+                   COALESCE(pr.deferred_segments, cur.deferred_segments, 0) AS deferred_segments,
+                   COALESCE(v.total_segments, 0) AS total_segments
+            FROM input i
+            CROSS JOIN delta
+            LEFT JOIN progress pr ON TRUE
+            LEFT JOIN video_profile_progress cur ON cur.video_id = i.video_id AND cur.profile = i.profile
+            LEFT JOIN video_upload v ON v.video_id = i.video_id
+            """;
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, profile);
             ps.setInt(3, segmentNumber);
             ps.setString(4, state.name());
-            ps.executeUpdate();
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return new StateTransition(
+                        rs.getInt("newly_done") > 0,
+                        rs.getInt("done_segments"),
+                        rs.getInt("deferred_segments"),
+                        rs.getInt("total_segments")
+                );
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to upsert transcoded_segment_status", e);
         }
     }
 
+    /**
+     * Admission check for one transcode task in a single round trip: looks for a DONE
+     * state row, an open local upload task and a live processing claim, and records QUEUED
+     * only if none of them is present. A processing claim counts as live when it was
+     * refreshed within {@code claimStaleMillis}. A positive {@code durationSeconds} is kept
+     * with the row so manifests can be written without reading the source playlist.
+     */
+    public Admission admit(String videoId, String profile, int segmentNumber, long claimStaleMillis) {
+        return admit(videoId, profile, segmentNumber, claimStaleMillis, -1d);
+    }
+
+    public Admission admit(String videoId, String profile, int segmentNumber, long claimStaleMillis,
+                           double durationSeconds) {
+        String sql = """
+            WITH input AS (
+                SELECT ?::uuid AS video_id,
+                       ?::varchar AS profile,
+                       ?::int AS segment_number,
+                       ?::bigint AS stale_millis,
+                       NULLIF(GREATEST(?::double precision, 0), 0) AS duration_seconds
+            ),
+            checks AS (
+                SELECT
+                    EXISTS (
+                        SELECT 1 FROM transcoded_segment_status s, input i
+                        WHERE s.video_id = i.video_id AND s.profile = i.profile
+                          AND s.segment_number = i.segment_number AND s.state = 'DONE'
+                    ) AS done,
+                    EXISTS (
+                        SELECT 1 FROM processing_upload_task u, input i
+                        WHERE u.video_id = i.video_id AND u.profile = i.profile
+                          AND u.segment_number = i.segment_number
+                    ) AS upload_pending,
+                    EXISTS (
+                        SELECT 1 FROM processing_task_claim c, input i
+                        WHERE c.video_id = i.video_id AND c.profile = i.profile
+                          AND c.segment_number = i.segment_number
+                          AND c.updated_at >= NOW() - (i.stale_millis * INTERVAL '1 millisecond')
+                    ) AS claimed
+            ),
+            queued AS (
+                INSERT INTO transcoded_segment_status (video_id, profile, segment_number, state, duration_seconds)
+                SELECT i.video_id, i.profile, i.segment_number, 'QUEUED', i.duration_seconds
+                FROM input i, checks
+                WHERE NOT checks.done AND NOT checks.upload_pending AND NOT checks.claimed
+                ON CONFLICT (video_id, profile, segment_number) DO UPDATE
+                SET state = EXCLUDED.state,
+                    duration_seconds = COALESCE(EXCLUDED.duration_seconds, transcoded_segment_status.duration_seconds),
+                    updated_at = NOW()
+                WHERE transcoded_segment_status.state <> 'DONE'
+                RETURNING 1
+            )
+            SELECT checks.done,
+                   checks.upload_pending,
+                   checks.claimed,
+                   EXISTS (SELECT 1 FROM queued) AS queued,
+                   COALESCE(p.done_segments, 0) AS done_segments,
+                   COALESCE(v.total_segments, 0) AS total_segments
+            FROM input i
+            CROSS JOIN checks
+            LEFT JOIN video_profile_progress p ON p.video_id = i.video_id AND p.profile = i.profile
+            LEFT JOIN video_upload v ON v.video_id = i.video_id
+            """;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, UUID.fromString(videoId));
+            ps.setString(2, profile);
+            ps.setInt(3, segmentNumber);
+            ps.setLong(4, Math.max(0L, claimStaleMillis));
+            ps.setDouble(5, durationSeconds);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                AdmissionVerdict verdict;
+                if (rs.getBoolean("done")) {
+                    verdict = AdmissionVerdict.ALREADY_DONE;
+                } else if (rs.getBoolean("upload_pending")) {
+                    verdict = AdmissionVerdict.UPLOAD_PENDING;
+                } else if (rs.getBoolean("claimed")) {
+                    verdict = AdmissionVerdict.CLAIMED;
+                } else if (rs.getBoolean("queued")) {
+                    verdict = AdmissionVerdict.ADMITTED;
+                } else {
+                    // Lost a race with a concurrent DONE write between the checks and the upsert.
+                    verdict = AdmissionVerdict.ALREADY_DONE;
+                }
+                return new Admission(verdict, rs.getInt("done_segments"), rs.getInt("total_segments"));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to admit transcode task", e);
+        }
+    }
+
+    /**
+     * Upserts a batch of in-progress segment states in one statement, locking rows in key
+     * order so concurrent writers cannot deadlock. DONE and DEFERRED must go through
+     * {@link #recordState} because it maintains the progress counters. Rows already DONE
+     * or DEFERRED are left untouched and are absent from the result, so a flush that raced
+     * a shed cannot pull the rendition back to an in-progress state; {@link #claimDeferred}
+     * is the only way out of DEFERRED.
+     */
+    public List<RecordedState> recordStates(List<SegmentState> states) {
+        if (states.isEmpty()) {
+            return List.of();
+        }
+        String sql = """
+            WITH input AS (
+                SELECT *
+                FROM unnest(?::uuid[], ?::varchar[], ?::int[], ?::varchar[])
+                    AS i(video_id, profile, segment_number, state)
+            ),
+            upserted AS (
+                INSERT INTO transcoded_segment_status (video_id, profile, segment_number, state)
+                SELECT video_id, profile, segment_number, state
+                FROM input
+                ORDER BY video_id, profile, segment_number
+                ON CONFLICT (video_id, profile, segment_number) DO UPDATE
+                SET state = EXCLUDED.state,
+                    updated_at = NOW()
+                WHERE transcoded_segment_status.state NOT IN ('DONE', 'DEFERRED')
+                RETURNING video_id, profile, segment_number, state
+            )
+            SELECT u.video_id,
+                   u.profile,
+                   u.segment_number,
+                   u.state,
+                   COALESCE(p.done_segments, 0) AS done_segments,
+                   COALESCE(v.total_segments, 0) AS total_segments
+            FROM upserted u
+            LEFT JOIN video_profile_progress p ON p.video_id = u.video_id AND p.profile = u.profile
+            LEFT JOIN video_upload v ON v.video_id = u.video_id
+            """;
+        UUID[] videoIds = new UUID[states.size()];
+        String[] profiles = new String[states.size()];
+        Integer[] segmentNumbers = new Integer[states.size()];
+        String[] stateNames = new String[states.size()];
+        for (int i = 0; i < states.size(); i++) {
+            SegmentState state = states.get(i);
+            if (state.state() == TranscodeSegmentState.DONE || state.state() == TranscodeSegmentState.DEFERRED) {
+                throw new IllegalArgumentException(state.state() + " must be recorded with recordState");
+            }
+            videoIds[i] = UUID.fromString(state.videoId());
+            profiles[i] = state.profile();
+            segmentNumbers[i] = state.segmentNumber();
+            stateNames[i] = state.state().name();
+        }
+        List<RecordedState> recorded = new ArrayList<>(states.size());
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setArray(1, conn.createArrayOf("uuid", videoIds));
+            ps.setArray(2, conn.createArrayOf("varchar", profiles));
+            ps.setArray(3, conn.createArrayOf("integer", segmentNumbers));
+            ps.setArray(4, conn.createArrayOf("varchar", stateNames));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    recorded.add(new RecordedState(
+                            rs.getString("video_id"),
+                            rs.getString("profile"),
+                            rs.getInt("segment_number"),
+                            TranscodeSegmentState.valueOf(rs.getString("state")),
+                            rs.getInt("done_segments"),
+                            rs.getInt("total_segments")
+                    ));
+                }
+            }
+            return recorded;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to batch upsert transcoded_segment_status", e);
+        }
+    }
+
+    public VideoProgress findProgress(String videoId) {
+        String sql = """
+            SELECT v.total_segments, p.profile, p.done_segments, p.deferred_segments
+            FROM video_upload v
+            LEFT JOIN video_profile_progress p ON p.video_id = v.video_id
+            WHERE v.video_id = ?
+            """;
+        Map<String, Integer> doneByProfile = new HashMap<>();
+        Map<String, Integer> deferredByProfile = new HashMap<>();
+        int totalSegments = 0;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, UUID.fromString(videoId));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    totalSegments = rs.getInt("total_segments");
+                    String profile = rs.getString("profile");
+                    if (profile != null) {
+                        doneByProfile.put(profile, rs.getInt("done_segments"));
+                        deferredByProfile.put(profile, rs.getInt("deferred_segments"));
+                    }
+                }
+            }
+            return new VideoProgress(totalSegments, Map.copyOf(doneByProfile), Map.copyOf(deferredByProfile));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load video_profile_progress", e);
+        }
+    }
+
+    /**
+     * Recounts DONE and DEFERRED rows into the progress counters for one video. DONE
+     * counters never move backwards, so this only repairs their undercounts (e.g. rows
+     * written by an older release); DEFERRED counters are reset to the exact count.
+     */
+    public void refreshProgress(String videoId) {
+        String sql = """
+            INSERT INTO video_profile_progress (video_id, profile, done_segments, deferred_segments)
+            SELECT video_id,
+                   profile,
+                   COUNT(*) FILTER (WHERE state = 'DONE'),
+                   COUNT(*) FILTER (WHERE state = 'DEFERRED')
+            FROM transcoded_segment_status
+            WHERE video_id = ?
+            GROUP BY video_id, profile
+            ON CONFLICT (video_id, profile) DO UPDATE
+            SET done_segments = GREATEST(video_profile_progress.done_segments, EXCLUDED.done_segments),
+                deferred_segments = EXCLUDED.deferred_segments,
+                updated_at = NOW()
+            """;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, UUID.fromString(videoId));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to refresh video_profile_progress", e);
+        }
+    }
+
     public int countByState(String videoId, String profile, TranscodeSegmentState state) {
         String sql = """
             SELECT COUNT(*) FROM transcoded_segment_status
             WHERE video_id = ? AND profile = ? AND state = ?
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, profile);
@@ -86,7 +390,7 @@ public class TranscodedSegmentStatusRepository {
             WHERE video_id = ? AND profile = ? AND segment_number = ? AND state = ?
             LIMIT 1
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, profile);
@@ -106,7 +410,7 @@ public class TranscodedSegmentStatusRepository {
             WHERE video_id = ? AND profile = ? AND state = ?
             """;
         Set<Integer> segmentNumbers = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, profile);
@@ -134,7 +438,7 @@ public class TranscodedSegmentStatusRepository {
               AND updated_at >= NOW() - (? * INTERVAL '1 millisecond')
             """;
         Set<Integer> segmentNumbers = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, profile);
@@ -150,4 +454,286 @@ public class TranscodedSegmentStatusRepository {
             throw new RuntimeException("Failed to list fresh transcoded_segment_status", e);
         }
     }
+
+    /**
+     * Source segment durations recorded at admission, keyed by segment number. Segments
+     * admitted before durations were carried on the task event are absent.
+     */
+    public Map<Integer, Double> findSegmentDurations(String videoId) {
+        String sql = """
+            SELECT segment_number, MAX(duration_seconds) AS duration_seconds
+            FROM transcoded_segment_status
+            WHERE video_id = ? AND duration_seconds IS NOT NULL
+            GROUP BY segment_number
+            """;
+        Map<Integer, Double> durations = new HashMap<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, UUID.fromString(videoId));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    durations.put(rs.getInt("segment_number"), rs.getDouble("duration_seconds"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to query transcoded segment durations", e);
+        }
+        return durations;
+    }
+
+    /**
+     * Hands the oldest DEFERRED renditions back to the transcode queue: up to {@code limit}
+     * rows are moved to QUEUED in one statement and returned. Rows locked by a concurrent
+     * claim on another replica are skipped, so each deferred rendition is requeued once.
+     * The DEFERRED counters of the affected profiles drop by the rows moved, their rows
+     * locked in key order so concurrent claims cannot deadlock.
+     */
+    public List<DeferredSegment> claimDeferred(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        String sql = """
+            WITH picked AS (
+                SELECT video_id, profile, segment_number
+                FROM transcoded_segment_status
+                WHERE state = 'DEFERRED'
+                ORDER BY updated_at, video_id, segment_number
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            ),
+            moved AS (
+                UPDATE transcoded_segment_status s
+                SET state = 'QUEUED',
+                    updated_at = NOW()
+                FROM picked
+                WHERE s.video_id = picked.video_id
+                  AND s.profile = picked.profile
+                  AND s.segment_number = picked.segment_number
+                RETURNING s.video_id, s.profile, s.segment_number, s.duration_seconds
+            ),
+            released AS (
+                SELECT video_id, profile, COUNT(*)::int AS requeued
+                FROM moved
+                GROUP BY video_id, profile
+            ),
+            locked AS (
+                SELECT p.video_id, p.profile, r.requeued
+                FROM video_profile_progress p
+                JOIN released r ON r.video_id = p.video_id AND r.profile = p.profile
+                ORDER BY p.video_id, p.profile
+                FOR UPDATE OF p
+            ),
+            decremented AS (
+                UPDATE video_profile_progress p
+                SET deferred_segments = GREATEST(0, p.deferred_segments - locked.requeued),
+                    updated_at = NOW()
+                FROM locked
+                WHERE p.video_id = locked.video_id AND p.profile = locked.profile
+            )
+            SELECT video_id, profile, segment_number, duration_seconds FROM moved
+            """;
+        List<DeferredSegment> claimed = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    double duration = rs.getDouble("duration_seconds");
+                    claimed.add(new DeferredSegment(
+                            rs.getObject("video_id", UUID.class).toString(),
+                            rs.getString("profile"),
+                            rs.getInt("segment_number"),
+                            rs.wasNull() ? -1d : duration
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to claim deferred transcoded_segment_status", e);
+        }
+        return claimed;
+    }
+
+    /**
+     * Records the x264 preset the given profiles of one segment were encoded with, so
+     * segments encoded fast under backlog can be found and re-encoded later.
+     */
+    public void recordEncoderPreset(String videoId, int segmentNumber, List<String> profiles, String preset) {
+        if (profiles.isEmpty()) {
+            return;
+        }
+        String sql = """
+            UPDATE transcoded_segment_status
+            SET encoder_preset = ?
+            WHERE video_id = ? AND segment_number = ? AND profile = ANY(?)
+            """;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, preset);
+            ps.setObject(2, UUID.fromString(videoId));
+            ps.setInt(3, segmentNumber);
+            ps.setArray(4, conn.createArrayOf("varchar", profiles.toArray(String[]::new)));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to record encoder preset", e);
+        }
+    }
+
+    public String findEncoderPreset(String videoId, String profile, int segmentNumber) {
+        String sql = """
+            SELECT encoder_preset
+            FROM transcoded_segment_status
+            WHERE video_id = ? AND profile = ? AND segment_number = ?
+            """;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, UUID.fromString(videoId));
+            ps.setString(2, profile);
+            ps.setInt(3, segmentNumber);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString("encoder_preset") : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to query encoder preset", e);
+        }
+    }
+
+    private void ensureColumns() {
+        String sql = """
+            ALTER TABLE transcoded_segment_status
+            ADD COLUMN IF NOT EXISTS duration_seconds DOUBLE PRECISION,
+            ADD COLUMN IF NOT EXISTS encoder_preset VARCHAR(16)
+            """;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to ensure transcoded_segment_status columns", e);
+        }
+    }
+
+    private void ensureProgressTable() {
+        String lockSql = "SELECT pg_advisory_xact_lock(hashtext('video_profile_progress'))";
+        String existsSql = "SELECT to_regclass('video_profile_progress') IS NOT NULL";
+        String createSql = """
+            CREATE TABLE video_profile_progress (
+                video_id UUID NOT NULL REFERENCES video_upload(video_id) ON DELETE CASCADE,
+                profile VARCHAR(32) NOT NULL,
+                done_segments INTEGER NOT NULL DEFAULT 0,
+                deferred_segments INTEGER NOT NULL DEFAULT 0,
+                updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+                PRIMARY KEY (video_id, profile)
+            )
+            """;
+        String backfillSql = """
+            INSERT INTO video_profile_progress (video_id, profile, done_segments, deferred_segments)
+            SELECT video_id,
+                   profile,
+                   COUNT(*) FILTER (WHERE state = 'DONE'),
+                   COUNT(*) FILTER (WHERE state = 'DEFERRED')
+            FROM transcoded_segment_status
+            GROUP BY video_id, profile
+            """;
+        String deferredColumnSql = """
+            SELECT 1 FROM information_schema.columns
+            WHERE table_schema = current_schema()
+              AND table_name = 'video_profile_progress' AND column_name = 'deferred_segments'
+            """;
+        String addDeferredSql = """
+            ALTER TABLE video_profile_progress ADD COLUMN deferred_segments INTEGER NOT NULL DEFAULT 0
+            """;
+        String backfillDeferredSql = """
+            UPDATE video_profile_progress p
+            SET deferred_segments = c.deferred
+            FROM (
+                SELECT video_id, profile, COUNT(*)::int AS deferred
+                FROM transcoded_segment_status
+                WHERE state = 'DEFERRED'
+                GROUP BY video_id, profile
+            ) c
+            WHERE p.video_id = c.video_id AND p.profile = c.profile
+            """;
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement lock = conn.prepareStatement(lockSql);
+                 PreparedStatement exists = conn.prepareStatement(existsSql)) {
+                lock.execute();
+                boolean present;
+                try (ResultSet rs = exists.executeQuery()) {
+                    present = rs.next() && rs.getBoolean(1);
+                }
+                if (!present) {
+                    try (PreparedStatement create = conn.prepareStatement(createSql);
+                         PreparedStatement backfill = conn.prepareStatement(backfillSql)) {
+                        create.executeUpdate();
+                        backfill.executeUpdate();
+                    }
+                } else {
+                    boolean tracksDeferred;
+                    try (PreparedStatement column = conn.prepareStatement(deferredColumnSql);
+                         ResultSet rs = column.executeQuery()) {
+                        tracksDeferred = rs.next();
+                    }
+                    if (!tracksDeferred) {
+                        try (PreparedStatement add = conn.prepareStatement(addDeferredSql);
+                             PreparedStatement backfill = conn.prepareStatement(backfillDeferredSql)) {
+                            add.executeUpdate();
+                            backfill.executeUpdate();
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to ensure video_profile_progress", e);
+        }
+    }
+
+    public record StateTransition(boolean newlyDone, int doneSegments, int deferredSegments, int totalSegments) {
+    }
+
+    public enum AdmissionVerdict {
+        ADMITTED,
+        ALREADY_DONE,
+        UPLOAD_PENDING,
+        CLAIMED
+    }
+
+    public record Admission(AdmissionVerdict verdict, int doneSegments, int totalSegments) {
+    }
+
+    public record SegmentState(String videoId, String profile, int segmentNumber, TranscodeSegmentState state) {
+    }
+
+    public record RecordedState(
+            String videoId,
+            String profile,
+            int segmentNumber,
+            TranscodeSegmentState state,
+            int doneSegments,
+            int totalSegments
+    ) {
+    }
+
+    public record DeferredSegment(String videoId, String profile, int segmentNumber, double durationSeconds) {
+    }
+
+    public record VideoProgress(
+            int totalSegments,
+            Map<String, Integer> doneByProfile,
+            Map<String, Integer> deferredByProfile
+    ) {
+        public int doneSegments(String profile) {
+            return doneByProfile.getOrDefault(profile, 0);
+        }
+
+        /** An upper bound on the profile's DEFERRED rows; see {@link #recordState}. */
+        public int deferredSegments(String profile) {
+            return deferredByProfile.getOrDefault(profile, 0);
+        }
+    }
 }
@@ -0,0 +1,245 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Tunes this replica's transcode concurrency from what it measures. Every interval it
+ * compares the segments encoded per second with the previous window and hill-climbs the
+ * number of encode workers: a change that raised throughput is repeated, one that lowered
+ * it is reversed, and a flat result only adds a worker while the CPU has headroom. When
+ * the container's cgroup is throttled for about a third of its quota, meaning it asks
+ * for roughly 1.5x the CPU it is allowed, the worker count is cut by a quarter
+ * (multiplicative decrease) regardless of throughput. Both signals are container-scoped,
+ * so other tenants of a shared node do not push the controller down.
+ *
+ * <p>Throughput only measures capacity while work is waiting, so without a backlog the
+ * controller holds. Each decision sets the workers and the FFmpeg threads per encode (the
+ * CPUs split between the workers) through the {@link Actuator}. The broker prefetch (three
+ * tasks per worker) is only resized once the worker count has moved more than one step
+ * from the count it was sized for, since every resize re-registers the task consumers,
+ * and never when the operator pinned it.
+ */
+public final class AdaptiveConcurrencyController implements AutoCloseable {
+    private static final Logger LOGGER = LogManager.getLogger(AdaptiveConcurrencyController.class);
+    static final int PREFETCH_PER_WORKER = 3;
+    static final double THROUGHPUT_TOLERANCE = 0.05;
+    static final double CPU_HEADROOM = 0.85;
+    static final double OVERLOADED_THROTTLE = 0.33;
+
+    @FunctionalInterface
+    public interface Actuator {
+        void apply(int workers, int ffmpegThreads, int prefetch);
+    }
+
+    /** One window of host measurements; negative values mean the platform cannot report them. */
+    record HostSample(double cpuLoad, double throttled) {
+    }
+
+    private final Actuator actuator;
+    private final IntSupplier backlog;
+    private final int minWorkers;
+    private final int maxWorkers;
+    private final int cpus;
+    private final ScheduledExecutorService scheduler;
+    private final CgroupCpuThrottle throttle = CgroupCpuThrottle.detect();
+    private final AtomicLong encodedSegments = new AtomicLong();
+    private final AtomicLong encodeNanos = new AtomicLong();
+    private final AtomicLong adjustments = new AtomicLong();
+    private long windowStartNanos = System.nanoTime();
+    private int workers;
+    private int ffmpegThreads;
+    private int prefetch;
+    private final boolean prefetchPinned;
+    private int prefetchWorkers;
+    private int direction = 1;
+    private double lastThroughput = -1;
+    private double lastCpuLoad = -1;
+    private double lastThrottled = -1;
+    private double lastEncodeMillis;
+    private String lastDecision = "start";
+
+    public AdaptiveConcurrencyController(
+            Actuator actuator,
+            IntSupplier backlog,
+            int initialWorkers,
+            int minWorkers,
+            int maxWorkers,
+            int pinnedPrefetch,
+            long intervalMillis
+    ) {
+        this(actuator, backlog, initialWorkers, minWorkers, maxWorkers, pinnedPrefetch,
+                Runtime.getRuntime().availableProcessors(), intervalMillis);
+    }
+
+    /**
+     * @param pinnedPrefetch the operator's {@code RABBITMQ_TASK_PREFETCH}, kept as is, or
+     *                       0 to size the prefetch from the worker count
+     */
+    AdaptiveConcurrencyController(
+            Actuator actuator,
+            IntSupplier backlog,
+            int initialWorkers,
+            int minWorkers,
+            int maxWorkers,
+            int pinnedPrefetch,
+            int cpus,
+            long intervalMillis
+    ) {
+        this.actuator = actuator;
+        this.backlog = backlog;
+        this.minWorkers = Math.max(1, minWorkers);
+        this.maxWorkers = Math.max(this.minWorkers, maxWorkers);
+        this.cpus = Math.max(1, cpus);
+        this.workers = clamp(initialWorkers);
+        this.ffmpegThreads = threadsFor(workers);
+        this.prefetchPinned = pinnedPrefetch > 0;
+        this.prefetchWorkers = workers;
+        this.prefetch = prefetchPinned ? pinnedPrefetch : workers * PREFETCH_PER_WORKER;
+        if (intervalMillis > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "processing-concurrency-controller");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::tickQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+        LOGGER.info("Adaptive concurrency started workers={} minWorkers={} maxWorkers={} ffmpegThreads={} prefetch={}",
+                workers, this.minWorkers, this.maxWorkers, ffmpegThreads, prefetch);
+    }
+
+    /** Records one finished encode of {@code segments} renditions. */
+    public void recordEncode(int segments, long elapsedNanos) {
+        encodedSegments.addAndGet(Math.max(0, segments));
+        encodeNanos.addAndGet(Math.max(0L, elapsedNanos));
+    }
+
+    public synchronized int workers() {
+        return workers;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", workers);
+        stats.put("minWorkers", minWorkers);
+        stats.put("maxWorkers", maxWorkers);
+        stats.put("ffmpegThreads", ffmpegThreads);
+        stats.put("prefetch", prefetch);
+        stats.put("segmentsPerSecond", lastThroughput < 0 ? 0.0 : round(lastThroughput));
+        stats.put("avgEncodeMillis", round(lastEncodeMillis));
+        stats.put("cpuLoad", round(lastCpuLoad));
+        stats.put("cpuThrottled", round(lastThrottled));
+        stats.put("lastDecision", lastDecision);
+        stats.put("adjustments", adjustments.get());
+        return stats;
+    }
+
+    private void tickQuietly() {
+        try {
+            tick(sampleHost());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Adaptive concurrency tick failed", e);
+        }
+    }
+
+    /** Closes the current window and applies one decision. Package-private for tests. */
+    synchronized void tick(HostSample host) {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - windowStartNanos) / 1e9);
+        windowStartNanos = now;
+        long segments = encodedSegments.getAndSet(0L);
+        long nanos = encodeNanos.getAndSet(0L);
+        double throughput = segments / seconds;
+        lastEncodeMillis = segments == 0 ? 0.0 : nanos / 1e6 / segments;
+        lastCpuLoad = host.cpuLoad();
+        lastThrottled = host.throttled();
+
+        int target = workers;
+        if (lastThrottled > OVERLOADED_THROTTLE && workers > minWorkers) {
+            target = Math.min(workers - 1, (workers * 3) / 4);
+            direction = -1;
+            lastDecision = "backoff";
+        } else if (backlog.getAsInt() <= 0) {
+            lastDecision = "idle";
+            // Throughput without a backlog reflects demand, not capacity; restart the climb later.
+            lastThroughput = -1;
+            return;
+        } else if (lastThroughput < 0) {
+            direction = 1;
+            target = workers + 1;
+            lastDecision = "probe";
+        } else if (throughput > lastThroughput * (1 + THROUGHPUT_TOLERANCE)) {
+            target = workers + direction;
+            lastDecision = direction > 0 ? "increase" : "decrease";
+        } else if (throughput < lastThroughput * (1 - THROUGHPUT_TOLERANCE)) {
+            direction = -direction;
+            target = workers + direction;
+            lastDecision = "reverse";
+        } else if (lastCpuLoad >= 0 && lastCpuLoad < CPU_HEADROOM) {
+            direction = 1;
+            target = workers + 1;
+            lastDecision = "headroom";
+        } else {
+            lastDecision = "hold";
+        }
+        lastThroughput = throughput;
+        apply(clamp(target));
+    }
+
+    private void apply(int target) {
+        int threads = threadsFor(target);
+        int targetPrefetch = prefetch;
+        if (!prefetchPinned && Math.abs(target - prefetchWorkers) > 1) {
+            targetPrefetch = target * PREFETCH_PER_WORKER;
+            prefetchWorkers = target;
+        }
+        if (target == workers && threads == ffmpegThreads && targetPrefetch == prefetch) {
+            return;
+        }
+        LOGGER.info("Adaptive concurrency decision={} workers={}->{} ffmpegThreads={} prefetch={} segmentsPerSecond={} cpuLoad={} cpuThrottled={}",
+                lastDecision, workers, target, threads, targetPrefetch, round(lastThroughput),
+                round(lastCpuLoad), round(lastThrottled));
+        workers = target;
+        ffmpegThreads = threads;
+        prefetch = targetPrefetch;
+        adjustments.incrementAndGet();
+        actuator.apply(workers, ffmpegThreads, prefetch);
+    }
+
+    private int clamp(int value) {
+        return Math.max(minWorkers, Math.min(maxWorkers, value));
+    }
+
+    private int threadsFor(int workerCount) {
+        return Math.max(1, Math.round((float) cpus / workerCount));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    /** {@code getCpuLoad} reads the container's cgroup usage when the JVM runs under a limit. */
+    private HostSample sampleHost() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        double cpuLoad = os instanceof com.sun.management.OperatingSystemMXBean sunOs ? sunOs.getCpuLoad() : -1;
+        return new HostSample(cpuLoad, throttle.sample(cpus));
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
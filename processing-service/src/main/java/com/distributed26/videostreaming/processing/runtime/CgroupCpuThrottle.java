@@ -0,0 +1,81 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Reads how long this container's cgroup was held back by its CPU quota. Unlike the load
+ * average this only sees the container's own demand, so neighbours on a shared node do
+ * not register as overload. Each {@link #sample} returns the throttled time since the
+ * previous call per allotted CPU: about 0.33 means the container wanted roughly 1.5x its
+ * quota. It stays at 0 without a quota and reports -1 when no cgroup CPU stats exist.
+ */
+final class CgroupCpuThrottle {
+    private static final List<Path> CANDIDATES = List.of(
+            Path.of("/sys/fs/cgroup/cpu.stat"),
+            Path.of("/sys/fs/cgroup/cpu/cpu.stat"),
+            Path.of("/sys/fs/cgroup/cpu,cpuacct/cpu.stat"));
+
+    private final Path statFile;
+    private final LongSupplier nanoClock;
+    private long lastThrottledNanos = -1;
+    private long lastSampleNanos;
+
+    CgroupCpuThrottle(Path statFile, LongSupplier nanoClock) {
+        this.statFile = statFile;
+        this.nanoClock = nanoClock;
+    }
+
+    static CgroupCpuThrottle detect() {
+        for (Path candidate : CANDIDATES) {
+            if (Files.isReadable(candidate)) {
+                return new CgroupCpuThrottle(candidate, System::nanoTime);
+            }
+        }
+        return new CgroupCpuThrottle(null, System::nanoTime);
+    }
+
+    synchronized double sample(int cpus) {
+        long throttled = readThrottledNanos();
+        long now = nanoClock.getAsLong();
+        if (throttled < 0) {
+            lastThrottledNanos = -1;
+            return -1;
+        }
+        long previous = lastThrottledNanos;
+        long elapsed = now - lastSampleNanos;
+        lastThrottledNanos = throttled;
+        lastSampleNanos = now;
+        if (previous < 0 || elapsed <= 0) {
+            return -1;
+        }
+        return Math.max(0L, throttled - previous) / ((double) elapsed * Math.max(1, cpus));
+    }
+
+    /** cgroup v2 reports {@code throttled_usec}, v1 {@code throttled_time} in nanoseconds. */
+    private long readThrottledNanos() {
+        if (statFile == null) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(statFile)) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length != 2) {
+                    continue;
+                }
+                if ("throttled_usec".equals(parts[0])) {
+                    return Long.parseLong(parts[1]) * 1_000L;
+                }
+                if ("throttled_time".equals(parts[0])) {
+                    return Long.parseLong(parts[1]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,146 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import com.distributed26.videostreaming.processing.db.ProcessingTaskClaimRepository.ClaimKey;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps every live processing claim of this instance fresh with one batched UPDATE per
+ * interval, instead of one scheduled job and one statement per claim. Lag is reported as
+ * the age of the oldest live claim's last successful refresh; once it nears the claim
+ * stale window, other replicas may start taking the work over.
+ */
+public final class ClaimHeartbeatManager implements AutoCloseable {
+    private static final Logger LOGGER = LogManager.getLogger(ClaimHeartbeatManager.class);
+
+    @FunctionalInterface
+    public interface Refresher {
+        /** Refreshes the given claims and returns how many rows were still held. */
+        int refresh(Map<ClaimKey, String> stagesByKey);
+    }
+
+    private final Refresher refresher;
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Map<ClaimKey, Registration> live = new ConcurrentHashMap<>();
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong lostClaims = new AtomicLong();
+    private volatile long lastTickMillis;
+
+    public ClaimHeartbeatManager(Refresher refresher, long intervalMillis) {
+        this.refresher = refresher;
+        this.intervalMillis = Math.max(1L, intervalMillis);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "processing-claim-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tickQuietly, this.intervalMillis, this.intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Starts refreshing the claim until the returned registration is closed. */
+    public Registration register(String videoId, String profile, int segmentNumber, String stage) {
+        Registration registration = new Registration(this, new ClaimKey(videoId, profile, segmentNumber), stage);
+        live.put(registration.key, registration);
+        return registration;
+    }
+
+    /** Refreshes all live claims once. Runs on the heartbeat thread; package-private for tests. */
+    void tick() {
+        List<Registration> snapshot = new ArrayList<>(live.values());
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        Map<ClaimKey, String> stagesByKey = new LinkedHashMap<>();
+        snapshot.forEach(registration -> stagesByKey.put(registration.key, registration.stage));
+        long startedAt = System.currentTimeMillis();
+        int refreshed;
+        try {
+            refreshed = refresher.refresh(stagesByKey);
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            LOGGER.warn("Claim heartbeat failed liveClaims={} maxLagMillis={}", snapshot.size(), maxLagMillis(), e);
+            return;
+        }
+        snapshot.forEach(registration -> registration.refreshedAt = startedAt);
+        ticks.incrementAndGet();
+        lastTickMillis = System.currentTimeMillis() - startedAt;
+        if (refreshed < snapshot.size()) {
+            lostClaims.addAndGet(snapshot.size() - refreshed);
+            LOGGER.warn("Claim heartbeat refreshed {} of {} live claim(s); the rest are no longer held by this instance",
+                    refreshed, snapshot.size());
+        }
+        if (lastTickMillis > intervalMillis) {
+            LOGGER.warn("Claim heartbeat took {}ms, longer than its {}ms interval liveClaims={}",
+                    lastTickMillis, intervalMillis, snapshot.size());
+        }
+    }
+
+    /** Milliseconds since the least recently refreshed live claim was last written. */
+    public long maxLagMillis() {
+        long now = System.currentTimeMillis();
+        long oldest = now;
+        for (Registration registration : live.values()) {
+            oldest = Math.min(oldest, registration.refreshedAt);
+        }
+        return now - oldest;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("liveClaims", live.size());
+        stats.put("intervalMillis", intervalMillis);
+        stats.put("maxLagMillis", maxLagMillis());
+        stats.put("lastTickMillis", lastTickMillis);
+        stats.put("ticks", ticks.get());
+        stats.put("failures", failures.get());
+        stats.put("lostClaims", lostClaims.get());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        live.clear();
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (Exception e) {
+            LOGGER.warn("Claim heartbeat tick failed", e);
+        }
+    }
+
+    public static final class Registration implements AutoCloseable {
+        static final Registration NOOP = new Registration(null, null, null);
+
+        private final ClaimHeartbeatManager manager;
+        private final ClaimKey key;
+        private final String stage;
+        private volatile long refreshedAt = System.currentTimeMillis();
+
+        private Registration(ClaimHeartbeatManager manager, ClaimKey key, String stage) {
+            this.manager = manager;
+            this.key = key;
+            this.stage = stage;
+        }
+
+        @Override
+        public void close() {
+            if (manager != null) {
+                manager.live.remove(key, this);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Trades compression for speed while the transcode backlog is deep. Every interval it
+ * estimates how long the shared queue plus this replica's local queue would take to
+ * drain at the recent encode rate; above {@code fastDrainSeconds} the x264 preset steps
+ * one notch faster (towards {@code ultrafast}), and below {@code slowDrainSeconds} or
+ * with nothing queued it steps one notch back towards {@code slowestPreset}.
+ *
+ * <p>One step per interval keeps the preset from oscillating on a single noisy sample.
+ * The preset an encode used is recorded per segment, so fast-encoded segments can be
+ * re-encoded at a better preset once the cluster is quiet.
+ */
+public final class EncoderPresetGovernor implements AutoCloseable {
+    private static final Logger LOGGER = LogManager.getLogger(EncoderPresetGovernor.class);
+    static final List<String> PRESETS = List.of(
+            "ultrafast", "superfast", "veryfast", "faster", "fast", "medium", "slow", "slower", "veryslow");
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private final Consumer<String> applyPreset;
+    private final LongSupplier sharedBacklog;
+    private final IntSupplier localBacklog;
+    private final int slowestIndex;
+    private final long fastDrainSeconds;
+    private final long slowDrainSeconds;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong encodedSegments = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+    private long windowStartNanos = System.nanoTime();
+    private int presetIndex;
+    private double segmentsPerSecond = -1;
+    private long lastBacklog;
+    private double lastDrainSeconds = -1;
+
+    public EncoderPresetGovernor(
+            Consumer<String> applyPreset,
+            LongSupplier sharedBacklog,
+            IntSupplier localBacklog,
+            String initialPreset,
+            String slowestPreset,
+            long fastDrainSeconds,
+            long slowDrainSeconds,
+            long intervalMillis
+    ) {
+        this.applyPreset = applyPreset;
+        this.sharedBacklog = sharedBacklog;
+        this.localBacklog = localBacklog;
+        this.presetIndex = indexOf(initialPreset);
+        this.slowestIndex = Math.max(presetIndex, indexOf(slowestPreset));
+        this.fastDrainSeconds = Math.max(1L, fastDrainSeconds);
+        this.slowDrainSeconds = Math.min(this.fastDrainSeconds, Math.max(0L, slowDrainSeconds));
+        if (intervalMillis > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "processing-preset-governor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::tickQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+        LOGGER.info("Encoder preset governor started preset={} slowestPreset={} fastDrainSeconds={} slowDrainSeconds={}",
+                preset(), PRESETS.get(slowestIndex), this.fastDrainSeconds, this.slowDrainSeconds);
+    }
+
+    /** Records finished encodes; the drain estimate uses their recent rate. */
+    public void recordEncode(int segments) {
+        encodedSegments.addAndGet(Math.max(0, segments));
+    }
+
+    public synchronized String preset() {
+        return PRESETS.get(presetIndex);
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("preset", preset());
+        stats.put("slowestPreset", PRESETS.get(slowestIndex));
+        stats.put("backlog", lastBacklog);
+        stats.put("segmentsPerSecond", segmentsPerSecond < 0 ? 0.0 : Math.round(segmentsPerSecond * 100.0) / 100.0);
+        stats.put("drainSeconds", Math.round(lastDrainSeconds));
+        stats.put("changes", changes.get());
+        return stats;
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Encoder preset governor tick failed", e);
+        }
+    }
+
+    /** Closes the current window and moves the preset at most one step. Package-private for tests. */
+    synchronized void tick() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - windowStartNanos) / 1e9);
+        windowStartNanos = now;
+        long segments = encodedSegments.getAndSet(0L);
+        double rate = segments / seconds;
+        if (segments > 0) {
+            segmentsPerSecond = segmentsPerSecond < 0 ? rate : segmentsPerSecond + RATE_SMOOTHING * (rate - segmentsPerSecond);
+        }
+
+        long shared = sharedBacklog.getAsLong();
+        lastBacklog = Math.max(0L, shared) + Math.max(0, localBacklog.getAsInt());
+        if (lastBacklog == 0) {
+            lastDrainSeconds = 0;
+            step(1, "idle");
+            return;
+        }
+        if (segmentsPerSecond <= 0) {
+            // Nothing has finished yet, so the drain time is unknown.
+            lastDrainSeconds = -1;
+            return;
+        }
+        lastDrainSeconds = lastBacklog / segmentsPerSecond;
+        if (lastDrainSeconds > fastDrainSeconds) {
+            step(-1, "backlog");
+        } else if (lastDrainSeconds < slowDrainSeconds) {
+            step(1, "draining");
+        }
+    }
+
+    private void step(int direction, String reason) {
+        int target = Math.max(0, Math.min(slowestIndex, presetIndex + direction));
+        if (target == presetIndex) {
+            return;
+        }
+        LOGGER.info("Encoder preset changed from={} to={} reason={} backlog={} drainSeconds={}",
+                PRESETS.get(presetIndex), PRESETS.get(target), reason, lastBacklog, Math.round(lastDrainSeconds));
+        presetIndex = target;
+        changes.incrementAndGet();
+        applyPreset.accept(PRESETS.get(target));
+    }
+
+    private static int indexOf(String preset) {
+        int index = preset == null ? -1 : PRESETS.indexOf(preset.trim().toLowerCase(java.util.Locale.ROOT));
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown x264 preset: " + preset);
+        }
+        return index;
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
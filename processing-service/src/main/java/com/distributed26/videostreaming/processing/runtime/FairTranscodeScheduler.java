@@ -0,0 +1,239 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Per-video fair share of this replica's transcode capacity. Delivered tasks wait in one
+ * virtual queue per video and at most {@code maxConcurrentJobs} run at once; the next job
+ * is chosen by deficit round robin over the videos with queued work, charging each job
+ * its encode cost, so a long upload cannot crowd out the uploads that arrive after it.
+ *
+ * <p>Within a video, jobs run highest priority first. Videos whose next job is a leading
+ * segment ({@link #URGENT_PRIORITY} and above) are served before the rest, and a video
+ * with {@code maxInFlightPerVideo} jobs running is skipped while any other video can
+ * run. The cap is work-conserving: when no other video has runnable work it is lifted,
+ * so a single upload still uses the whole replica.
+ */
+public final class FairTranscodeScheduler {
+    private static final Logger LOGGER = LogManager.getLogger(FairTranscodeScheduler.class);
+    static final int URGENT_PRIORITY = 5;
+
+    private static final Comparator<PendingJob> JOB_ORDER = Comparator
+            .comparingInt((PendingJob job) -> job.priority).reversed()
+            .thenComparingLong(job -> job.sequence);
+
+    private int maxConcurrentJobs;
+    private final int maxInFlightPerVideo;
+    private final Object lock = new Object();
+    private final ArrayDeque<VideoQueue> backlogged = new ArrayDeque<>();
+    private final Map<String, VideoQueue> queues = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong capOverrides = new AtomicLong();
+    private int quantum = 1;
+    private int running;
+    private int queued;
+
+    public FairTranscodeScheduler(int maxConcurrentJobs, int maxInFlightPerVideo) {
+        this.maxConcurrentJobs = Math.max(1, maxConcurrentJobs);
+        this.maxInFlightPerVideo = Math.max(1, maxInFlightPerVideo);
+        LOGGER.info("Fair transcode scheduler started maxConcurrentJobs={} maxInFlightPerVideo={}",
+                this.maxConcurrentJobs, this.maxInFlightPerVideo);
+    }
+
+    /**
+     * Queues {@code job} for {@code videoId}; it is started once the scheduler picks it.
+     * The returned future completes with the started job's result.
+     */
+    public CompletableFuture<Boolean> submit(
+            String videoId,
+            int priority,
+            int cost,
+            Supplier<CompletableFuture<Boolean>> job
+    ) {
+        PendingJob pending = new PendingJob(videoId, job, priority, Math.max(1, cost), sequence.getAndIncrement());
+        synchronized (lock) {
+            VideoQueue queue = queues.computeIfAbsent(videoId, VideoQueue::new);
+            if (queue.pending.isEmpty()) {
+                backlogged.addLast(queue);
+            }
+            queue.pending.add(pending);
+            quantum = Math.max(quantum, pending.cost);
+            queued++;
+        }
+        dispatch();
+        return pending.result;
+    }
+
+    /** Changes how many jobs may run at once; raising it starts queued jobs immediately. */
+    public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+        synchronized (lock) {
+            this.maxConcurrentJobs = Math.max(1, maxConcurrentJobs);
+        }
+        dispatch();
+    }
+
+    public int queued() {
+        synchronized (lock) {
+            return queued;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (lock) {
+            stats.put("maxConcurrentJobs", maxConcurrentJobs);
+            stats.put("maxInFlightPerVideo", maxInFlightPerVideo);
+            stats.put("running", running);
+            stats.put("queued", queued);
+            stats.put("videos", queues.size());
+            Map<String, Integer> inFlightByVideo = new LinkedHashMap<>();
+            queues.values().stream()
+                    .filter(queue -> queue.inFlight > 0)
+                    .forEach(queue -> inFlightByVideo.put(queue.videoId, queue.inFlight));
+            stats.put("inFlightByVideo", inFlightByVideo);
+        }
+        stats.put("dispatched", dispatched.get());
+        stats.put("capOverrides", capOverrides.get());
+        return stats;
+    }
+
+    private void dispatch() {
+        while (true) {
+            PendingJob next;
+            synchronized (lock) {
+                if (running >= maxConcurrentJobs) {
+                    return;
+                }
+                next = pickNext();
+                if (next == null) {
+                    return;
+                }
+                running++;
+                queued--;
+            }
+            start(next);
+        }
+    }
+
+    /** Deficit round robin over backlogged videos; urgent heads first, then the cap, then anything. */
+    private PendingJob pickNext() {
+        PendingJob next = pickNext(true, true);
+        if (next == null) {
+            next = pickNext(false, true);
+        }
+        if (next == null) {
+            next = pickNext(false, false);
+            if (next != null) {
+                capOverrides.incrementAndGet();
+            }
+        }
+        return next;
+    }
+
+    private PendingJob pickNext(boolean urgentOnly, boolean enforceCap) {
+        // Every visit to an eligible queue either serves it or adds a quantum that covers
+        // any single job, so two passes over the ring are always enough.
+        int visits = backlogged.size() * 2;
+        for (int i = 0; i < visits; i++) {
+            VideoQueue queue = backlogged.peekFirst();
+            PendingJob head = queue.pending.peek();
+            boolean eligible = (!urgentOnly || head.priority >= URGENT_PRIORITY)
+                    && (!enforceCap || queue.inFlight < maxInFlightPerVideo);
+            if (!eligible) {
+                backlogged.addLast(backlogged.pollFirst());
+                continue;
+            }
+            if (queue.deficit < head.cost) {
+                queue.deficit += quantum;
+                backlogged.addLast(backlogged.pollFirst());
+                continue;
+            }
+            queue.deficit -= head.cost;
+            queue.pending.poll();
+            queue.inFlight++;
+            if (queue.pending.isEmpty()) {
+                backlogged.pollFirst();
+                queue.deficit = 0;
+            }
+            return head;
+        }
+        return null;
+    }
+
+    private void start(PendingJob job) {
+        dispatched.incrementAndGet();
+        CompletableFuture<Boolean> execution;
+        try {
+            execution = job.job.get();
+        } catch (RuntimeException e) {
+            execution = CompletableFuture.failedFuture(e);
+        }
+        execution.whenComplete((result, failure) -> {
+            finished(job);
+            if (failure != null) {
+                job.result.completeExceptionally(failure);
+            } else {
+                job.result.complete(result);
+            }
+        });
+    }
+
+    private void finished(PendingJob job) {
+        synchronized (lock) {
+            running--;
+            VideoQueue queue = queues.get(job.videoId);
+            if (queue != null) {
+                queue.inFlight--;
+                if (queue.inFlight == 0 && queue.pending.isEmpty()) {
+                    queues.remove(queue.videoId);
+                }
+            }
+        }
+        dispatch();
+    }
+
+    private static final class PendingJob {
+        private final String videoId;
+        private final Supplier<CompletableFuture<Boolean>> job;
+        private final int priority;
+        private final int cost;
+        private final long sequence;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private PendingJob(
+                String videoId,
+                Supplier<CompletableFuture<Boolean>> job,
+                int priority,
+                int cost,
+                long sequence
+        ) {
+            this.videoId = videoId;
+            this.job = job;
+            this.priority = priority;
+            this.cost = cost;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class VideoQueue {
+        private final String videoId;
+        private final PriorityQueue<PendingJob> pending = new PriorityQueue<>(JOB_ORDER);
+        private int deficit;
+        private int inFlight;
+
+        private VideoQueue(String videoId) {
+            this.videoId = videoId;
+        }
+    }
+}
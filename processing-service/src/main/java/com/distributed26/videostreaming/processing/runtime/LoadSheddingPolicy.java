@@ -0,0 +1,147 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Sheds the most expensive renditions while the cluster is saturated. Once the shared
+ * plus local transcode backlog exceeds {@code enterBacklog}, tasks for the deferrable
+ * profiles are parked as DEFERRED instead of encoded, so videos complete with the
+ * remaining renditions; shedding stops when the backlog falls to {@code exitBacklog}.
+ *
+ * <p>DEFERRED rows are the backfill queue. While the backlog is at or below
+ * {@code exitBacklog}, each interval hands up to {@code backfillBatch} of them back to the
+ * transcode queue, oldest first. The backlog is sampled on the same background thread,
+ * so admission never waits on the broker.
+ */
+public final class LoadSheddingPolicy implements AutoCloseable {
+    private static final Logger LOGGER = LogManager.getLogger(LoadSheddingPolicy.class);
+
+    private final Set<String> deferrableProfiles;
+    private final LongSupplier sharedBacklog;
+    private final IntSupplier localBacklog;
+    private final IntUnaryOperator backfill;
+    private final long enterBacklog;
+    private final long exitBacklog;
+    private final int backfillBatch;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong backfilled = new AtomicLong();
+    private volatile boolean shedding;
+    private volatile long lastBacklog;
+
+    /**
+     * @param backfill requeues up to the given number of DEFERRED renditions and returns how many it requeued
+     */
+    public LoadSheddingPolicy(
+            Collection<String> deferrableProfiles,
+            LongSupplier sharedBacklog,
+            IntSupplier localBacklog,
+            IntUnaryOperator backfill,
+            long enterBacklog,
+            long exitBacklog,
+            int backfillBatch,
+            long intervalMillis
+    ) {
+        this.deferrableProfiles = deferrableProfiles.stream()
+                .map(profile -> profile.trim().toLowerCase(Locale.ROOT))
+                .filter(profile -> !profile.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.sharedBacklog = sharedBacklog;
+        this.localBacklog = localBacklog;
+        this.backfill = backfill;
+        this.enterBacklog = Math.max(1L, enterBacklog);
+        this.exitBacklog = Math.max(0L, Math.min(this.enterBacklog - 1, exitBacklog));
+        this.backfillBatch = Math.max(1, backfillBatch);
+        if (intervalMillis > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "processing-load-shedding");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::tickQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+        LOGGER.info("Load shedding configured deferrableProfiles={} enterBacklog={} exitBacklog={} backfillBatch={}",
+                this.deferrableProfiles, this.enterBacklog, this.exitBacklog, this.backfillBatch);
+    }
+
+    public boolean isDeferrable(String profile) {
+        return profile != null && deferrableProfiles.contains(profile.toLowerCase(Locale.ROOT));
+    }
+
+    /** Whether a newly admitted task for {@code profile} should be parked instead of encoded. */
+    public boolean shouldDefer(String profile) {
+        if (shedding && isDeferrable(profile)) {
+            deferred.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isShedding() {
+        return shedding;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shedding", shedding);
+        stats.put("backlog", lastBacklog);
+        stats.put("enterBacklog", enterBacklog);
+        stats.put("exitBacklog", exitBacklog);
+        stats.put("deferrableProfiles", deferrableProfiles);
+        stats.put("deferred", deferred.get());
+        stats.put("backfilled", backfilled.get());
+        return stats;
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Load shedding tick failed", e);
+        }
+    }
+
+    /** Samples the backlog, updates the shedding state and backfills when idle. Package-private for tests. */
+    void tick() {
+        long backlog = Math.max(0L, sharedBacklog.getAsLong()) + Math.max(0, localBacklog.getAsInt());
+        lastBacklog = backlog;
+        if (!shedding && backlog > enterBacklog) {
+            shedding = true;
+            LOGGER.info("Load shedding started backlog={} deferring={}", backlog, deferrableProfiles);
+        } else if (shedding && backlog <= exitBacklog) {
+            shedding = false;
+            LOGGER.info("Load shedding stopped backlog={}", backlog);
+        }
+        if (shedding || backlog > exitBacklog) {
+            return;
+        }
+        int requeued = backfill.applyAsInt(backfillBatch);
+        if (requeued > 0) {
+            backfilled.addAndGet(requeued);
+            LOGGER.info("Backfilled {} deferred rendition(s) backlog={}", requeued, backlog);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.distributed26.videostreaming.processing.runtime;
 
 import com.distributed26.videostreaming.processing.LocalSpoolUploadTask;
 import com.distributed26.videostreaming.processing.TranscodingProfile;
+import com.distributed26.videostreaming.processing.db.ProcessingTaskClaimRepository;
 import com.distributed26.videostreaming.shared.storage.ObjectStorageClient;
 import com.distributed26.videostreaming.shared.upload.RabbitMQDevLogPublisher;
 import com.distributed26.videostreaming.shared.upload.TranscodeTaskBus;
@@ -10,18 +11,38 @@ import com.distributed26.videostreaming.shared.upload.events.TranscodeTaskEvent;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 public final class LocalSpoolUploadWorkerPool {
+    static final int DEFAULT_BATCH_SIZE = 8;
+    static final int DEFAULT_TRANSFER_CONCURRENCY = 4;
+    static final long SETTLE_FLUSH_MILLIS = 100L;
+
     private static final Logger LOGGER = LogManager.getLogger(LocalSpoolUploadWorkerPool.class);
 
     private final TranscodingProfile[] profiles;
     private final ProcessingRuntime runtime;
     private final ProcessingStorageStateTracker storageStateTracker;
+    private final AtomicLong uploaded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Set<Long> claimedIds = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<Settlement> settlements = new ConcurrentLinkedQueue<>();
+    private volatile UploadBudget uploadBudget = new UploadBudget(0L);
 
     public LocalSpoolUploadWorkerPool(TranscodingProfile[] profiles, ProcessingRuntime runtime) {
         this(profiles, runtime, null);
@@ -47,8 +68,43 @@ public final class LocalSpoolUploadWorkerPool {
             long uploadClaimTimeoutMillis,
             ObjectStorageClient storageClient
     ) {
+        return startUploadWorkers(
+                uploadWorkerCount,
+                uploadPollMillis,
+                uploadClaimTimeoutMillis,
+                DEFAULT_BATCH_SIZE,
+                DEFAULT_TRANSFER_CONCURRENCY,
+                0L,
+                storageClient
+        );
+    }
+
+    /**
+     * Starts {@code uploadWorkerCount} claim loops that each keep up to {@code batchSize}
+     * rows claimed, topping up in one round trip as transfers finish, and hand the
+     * transfers to {@code transferConcurrency} shared upload threads with at most
+     * {@code maxInFlightBytes} in flight (0 = no cap). Each transfer publishes DONE as soon
+     * as it finishes; a settle loop deletes or requeues finished rows in batched statements
+     * every {@value #SETTLE_FLUSH_MILLIS} ms and keeps rows still waiting for a slot from
+     * going stale. Shutting down the returned executor stops all of them.
+     */
+    public ExecutorService startUploadWorkers(
+            int uploadWorkerCount,
+            long uploadPollMillis,
+            long uploadClaimTimeoutMillis,
+            int batchSize,
+            int transferConcurrency,
+            long maxInFlightBytes,
+            ObjectStorageClient storageClient
+    ) {
+        int claimers = Math.max(1, uploadWorkerCount);
+        int transfers = Math.max(1, transferConcurrency);
+        int claimBatch = Math.max(1, batchSize);
+        uploadBudget = new UploadBudget(maxInFlightBytes);
+        // Claim loops and the settle loop never return while running, so exactly `transfers`
+        // threads are left for the upload jobs they submit to the same pool.
         ExecutorService executor = Executors.newFixedThreadPool(
-                Math.max(1, uploadWorkerCount),
+                claimers + transfers + 1,
                 new ThreadFactory() {
                     private int index = 0;
 
@@ -60,36 +116,65 @@ public final class LocalSpoolUploadWorkerPool {
                     }
                 }
         );
-        for (int i = 0; i < Math.max(1, uploadWorkerCount); i++) {
+        for (int i = 0; i < claimers; i++) {
             final int uploaderIndex = i;
             executor.execute(() -> runUploadLoop(
                     "processing-uploader-" + uploaderIndex,
                     uploadPollMillis,
                     uploadClaimTimeoutMillis,
+                    claimBatch,
+                    executor,
                     storageClient
             ));
         }
-        LOGGER.info("Started {} local upload worker(s)", Math.max(1, uploadWorkerCount));
+        executor.execute(() -> runSettleLoop(uploadClaimTimeoutMillis));
+        LOGGER.info("Started {} local upload worker(s) batchSize={} transferConcurrency={} maxInFlightBytes={}",
+                claimers, claimBatch, transfers, maxInFlightBytes);
         return executor;
     }
 
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(uploadBudget.stats());
+        stats.put("uploaded", uploaded.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
     private void runUploadLoop(
             String uploaderId,
             long uploadPollMillis,
             long uploadClaimTimeoutMillis,
+            int batchSize,
+            ExecutorService transferExecutor,
             ObjectStorageClient storageClient
     ) {
+        UploadReadySignal readySignal = runtime.uploadReadySignal();
+        // One permit per row this loop may hold claimed; a finished transfer returns its permit.
+        Semaphore slots = new Semaphore(batchSize);
         while (!Thread.currentThread().isInterrupted()) {
             try {
                 if (runtime.processingUploadTaskRepository() == null) {
                     return;
                 }
-                var task = runtime.processingUploadTaskRepository().claimNextReady(runtime.processorInstanceId(), uploadClaimTimeoutMillis);
-                if (task.isEmpty()) {
-                    Thread.sleep(Math.max(50L, uploadPollMillis));
+                slots.acquire();
+                int free = 1 + slots.drainPermits();
+                List<LocalSpoolUploadTask> batch;
+                try {
+                    readySignal.clear();
+                    batch = runtime.processingUploadTaskRepository()
+                            .claimNextReadyBatch(runtime.processorInstanceId(), uploadClaimTimeoutMillis, free);
+                } catch (RuntimeException e) {
+                    slots.release(free);
+                    throw e;
+                }
+                slots.release(free - batch.size());
+                if (batch.isEmpty()) {
+                    readySignal.await(Math.max(50L, uploadPollMillis));
                     continue;
                 }
-                uploadSpoolTask(task.get(), storageClient);
+                // Pass the baton: more work may be ready, so let another idle worker look.
+                readySignal.signal();
+                submitBatch(batch, slots, transferExecutor, storageClient);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 return;
@@ -105,8 +190,62 @@ public final class LocalSpoolUploadWorkerPool {
         }
     }
 
+    private void submitBatch(
+            List<LocalSpoolUploadTask> batch,
+            Semaphore slots,
+            ExecutorService transferExecutor,
+            ObjectStorageClient storageClient
+    ) throws InterruptedException {
+        batch.forEach(task -> claimedIds.add(task.id()));
+        UploadBudget budget = uploadBudget;
+        for (int i = 0; i < batch.size(); i++) {
+            LocalSpoolUploadTask task = batch.get(i);
+            try {
+                budget.acquire(task.sizeBytes());
+            } catch (InterruptedException e) {
+                abandon(batch.subList(i, batch.size()), slots);
+                throw e;
+            }
+            try {
+                transferExecutor.execute(() -> {
+                    UploadOutcome outcome = UploadOutcome.FAILED;
+                    try {
+                        outcome = transfer(task, storageClient);
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Local upload task {} failed unexpectedly", task.id(), e);
+                    } finally {
+                        budget.release(task.sizeBytes());
+                        settle(task, outcome);
+                        slots.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                budget.release(task.sizeBytes());
+                abandon(batch.subList(i, batch.size()), slots);
+                throw new InterruptedException("Upload executor is shutting down");
+            }
+        }
+    }
+
+    /** Rows claimed but never started stay UPLOADING and are reclaimed once stale. */
+    private void abandon(List<LocalSpoolUploadTask> tasks, Semaphore slots) {
+        tasks.forEach(task -> claimedIds.remove(task.id()));
+        slots.release(tasks.size());
+    }
+
     /** Package-private for testability. */
     void uploadSpoolTask(LocalSpoolUploadTask task, ObjectStorageClient storageClient) {
+        claimedIds.add(task.id());
+        settle(task, transfer(task, storageClient));
+        flushSettlements();
+    }
+
+    /**
+     * Runs everything for one row that needs object storage or the spool file. Row and
+     * claim bookkeeping for the outcome is left to {@link #completeBatch}, except for the
+     * rare missing-spool requeue, which is handled inline.
+     */
+    private UploadOutcome transfer(LocalSpoolUploadTask task, ObjectStorageClient storageClient) {
         Path spoolPath = Path.of(task.spoolPath());
         if (runtime.processingTaskClaimRepository() != null) {
             runtime.processingTaskClaimRepository().claim(
@@ -121,13 +260,13 @@ public final class LocalSpoolUploadWorkerPool {
         try (AutoCloseable ignored = runtime.startUploadClaimHeartbeat(task.videoId(), task.profile(), task.segmentNumber())) {
             if (runtime.isVideoFailed(task.videoId())) {
                 LOGGER.info("Dropping local upload task {} for failed videoId={}", task.id(), task.videoId());
-                discardUploadTask(task, spoolPath);
-                return;
+                deleteSpoolFile(task, spoolPath);
+                return UploadOutcome.DISCARDED;
             }
             if (safeFileExists(storageClient, task.outputKey())) {
                 LOGGER.info("Local upload task {} already present in object storage, cleaning up spool", task.id());
-                completeUploadTask(task, spoolPath);
-                return;
+                deleteSpoolFile(task, spoolPath);
+                return UploadOutcome.UPLOADED;
             }
             if (!Files.exists(spoolPath)) {
                 LOGGER.warn("Local spool file missing for upload task {} path={}, requeueing transcode", task.id(), spoolPath);
@@ -147,12 +286,12 @@ public final class LocalSpoolUploadWorkerPool {
                             task.outputTsOffsetSeconds()
                     ));
                 }
-                return;
+                return UploadOutcome.REQUEUED;
             }
             if (runtime.isVideoFailed(task.videoId())) {
                 LOGGER.info("Dropping local upload task {} before upload for failed videoId={}", task.id(), task.videoId());
-                discardUploadTask(task, spoolPath);
-                return;
+                deleteSpoolFile(task, spoolPath);
+                return UploadOutcome.DISCARDED;
             }
             runtime.publishTranscodeState(task.videoId(), task.profile(), task.segmentNumber(),
                     TranscodeSegmentState.UPLOADING, profiles);
@@ -162,16 +301,107 @@ public final class LocalSpoolUploadWorkerPool {
             if (storageStateTracker.isVideoWaiting(task.videoId())) {
                 storageStateTracker.endStorageWait(task.videoId());
             }
-            completeUploadTask(task, spoolPath);
+            deleteSpoolFile(task, spoolPath);
+            return UploadOutcome.UPLOADED;
         } catch (Exception e) {
             LOGGER.warn("Failed local upload task {} videoId={} profile={} segment={} attempt={}",
                     task.id(), task.videoId(), task.profile(), task.segmentNumber(), task.attemptCount(), e);
             storageStateTracker.beginStorageWait(task.videoId(), e.getMessage());
-            runtime.processingUploadTaskRepository().markPending(task.id());
+            return UploadOutcome.FAILED;
+        }
+    }
+
+    /**
+     * Publishes an upload's DONE right away; the row itself is settled by the next
+     * {@link #flushSettlements}. The requeue path already removed its row.
+     */
+    private void settle(LocalSpoolUploadTask task, UploadOutcome outcome) {
+        if (outcome == UploadOutcome.REQUEUED) {
+            claimedIds.remove(task.id());
+            return;
+        }
+        if (outcome == UploadOutcome.FAILED) {
+            failed.incrementAndGet();
+        }
+        settlements.add(new Settlement(task, outcome));
+        if (outcome == UploadOutcome.UPLOADED) {
+            uploaded.incrementAndGet();
+            runtime.publishTranscodeState(task.videoId(), task.profile(), task.segmentNumber(),
+                    TranscodeSegmentState.DONE, profiles);
+        }
+    }
+
+    private void runSettleLoop(long uploadClaimTimeoutMillis) {
+        // Refresh well inside the claim timeout so queued rows never look stale to another claim loop.
+        long touchEveryNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(SETTLE_FLUSH_MILLIS, uploadClaimTimeoutMillis / 3));
+        long lastTouchNanos = System.nanoTime();
+        while (true) {
+            try {
+                Thread.sleep(SETTLE_FLUSH_MILLIS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                flushSettlements();
+                if (System.nanoTime() - lastTouchNanos >= touchEveryNanos) {
+                    touchClaimedRows();
+                    lastTouchNanos = System.nanoTime();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to settle local upload tasks", e);
+            }
+        }
+        try {
+            flushSettlements();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to settle local upload tasks on shutdown", e);
+        } finally {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Settles finished rows with one delete, one requeue and one claim release. */
+    private synchronized void flushSettlements() {
+        List<Settlement> drained = new ArrayList<>();
+        for (Settlement settlement = settlements.poll(); settlement != null; settlement = settlements.poll()) {
+            drained.add(settlement);
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+        List<Long> finishedIds = new ArrayList<>();
+        List<Long> failedIds = new ArrayList<>();
+        List<ProcessingTaskClaimRepository.ClaimKey> releasedClaims = new ArrayList<>();
+        for (Settlement settlement : drained) {
+            LocalSpoolUploadTask task = settlement.task();
+            if (settlement.outcome() == UploadOutcome.FAILED) {
+                failedIds.add(task.id());
+            } else {
+                finishedIds.add(task.id());
+            }
+            releasedClaims.add(new ProcessingTaskClaimRepository.ClaimKey(
+                    task.videoId(), task.profile(), task.segmentNumber()));
+        }
+        try {
+            runtime.processingUploadTaskRepository().deleteByIds(finishedIds);
+            runtime.processingUploadTaskRepository().markPendingByIds(failedIds);
             if (runtime.processingTaskClaimRepository() != null) {
-                runtime.processingTaskClaimRepository().release(task.videoId(), task.profile(), task.segmentNumber());
+                runtime.processingTaskClaimRepository().releaseAll(releasedClaims);
             }
+        } catch (RuntimeException e) {
+            // Every statement is idempotent, so the whole set is retried on the next flush.
+            settlements.addAll(drained);
+            throw e;
         }
+        drained.forEach(settlement -> claimedIds.remove(settlement.task().id()));
+    }
+
+    private void touchClaimedRows() {
+        if (claimedIds.isEmpty()) {
+            return;
+        }
+        runtime.processingUploadTaskRepository().touchClaimed(runtime.processorInstanceId(), List.copyOf(claimedIds));
     }
 
     /**
@@ -188,29 +418,21 @@ public final class LocalSpoolUploadWorkerPool {
         }
     }
 
-    private void discardUploadTask(LocalSpoolUploadTask task, Path spoolPath) {
+    private void deleteSpoolFile(LocalSpoolUploadTask task, Path spoolPath) {
         try {
             Files.deleteIfExists(spoolPath);
         } catch (Exception e) {
-            LOGGER.warn("Failed to delete discarded spool file for upload task {} path={}", task.id(), spoolPath, e);
-        }
-        runtime.processingUploadTaskRepository().deleteById(task.id());
-        if (runtime.processingTaskClaimRepository() != null) {
-            runtime.processingTaskClaimRepository().release(task.videoId(), task.profile(), task.segmentNumber());
+            LOGGER.warn("Failed to delete local spool file for upload task {} path={}", task.id(), spoolPath, e);
         }
     }
 
-    private void completeUploadTask(LocalSpoolUploadTask task, Path spoolPath) {
-        try {
-            Files.deleteIfExists(spoolPath);
-        } catch (Exception e) {
-            LOGGER.warn("Failed to delete local spool file after upload task {} path={}", task.id(), spoolPath, e);
-        }
-        runtime.processingUploadTaskRepository().deleteById(task.id());
-        if (runtime.processingTaskClaimRepository() != null) {
-            runtime.processingTaskClaimRepository().release(task.videoId(), task.profile(), task.segmentNumber());
-        }
-        runtime.publishTranscodeState(task.videoId(), task.profile(), task.segmentNumber(),
-                TranscodeSegmentState.DONE, profiles);
+    private record Settlement(LocalSpoolUploadTask task, UploadOutcome outcome) {
+    }
+
+    private enum UploadOutcome {
+        UPLOADED,
+        DISCARDED,
+        REQUEUED,
+        FAILED
     }
 }
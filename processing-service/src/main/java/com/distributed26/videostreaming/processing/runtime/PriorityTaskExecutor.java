@@ -0,0 +1,60 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import java.util.Comparator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Priority ordering for {@link java.util.concurrent.ThreadPoolExecutor} work queues.
+ * Pools built on {@link #newQueue()} run queued work highest priority first and FIFO
+ * within a priority. Work reaches them through {@link #withPriority}, which tags each
+ * runnable, including the internal ones {@code CompletableFuture} submits, with the
+ * priority of the task it belongs to. Untagged work queues behind tagged work of the
+ * same priority.
+ */
+public final class PriorityTaskExecutor {
+    public static final int DEFAULT_PRIORITY = 0;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final Comparator<Runnable> ORDER = Comparator
+            .comparingInt(PriorityTaskExecutor::priorityOf).reversed()
+            .thenComparingLong(PriorityTaskExecutor::sequenceOf);
+
+    private PriorityTaskExecutor() {
+    }
+
+    public static BlockingQueue<Runnable> newQueue() {
+        return new PriorityBlockingQueue<>(64, ORDER);
+    }
+
+    public static Executor withPriority(Executor executor, int priority) {
+        return command -> executor.execute(new PrioritizedRunnable(command, priority, SEQUENCE.getAndIncrement()));
+    }
+
+    private static int priorityOf(Runnable runnable) {
+        return runnable instanceof PrioritizedRunnable prioritized ? prioritized.priority : DEFAULT_PRIORITY;
+    }
+
+    private static long sequenceOf(Runnable runnable) {
+        return runnable instanceof PrioritizedRunnable prioritized ? prioritized.sequence : Long.MAX_VALUE;
+    }
+
+    private static final class PrioritizedRunnable implements Runnable {
+        private final Runnable delegate;
+        private final int priority;
+        private final long sequence;
+
+        private PrioritizedRunnable(Runnable delegate, int priority, long sequence) {
+            this.delegate = delegate;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            delegate.run();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.distributed26.videostreaming.processing.runtime;
 
 import com.distributed26.videostreaming.processing.AbrManifestService;
+import com.distributed26.videostreaming.processing.FfmpegProgress;
 import com.distributed26.videostreaming.processing.TranscodingProfile;
 import com.distributed26.videostreaming.processing.TranscodingTask;
 import com.distributed26.videostreaming.processing.TranscodingTask.CompletedTranscode;
@@ -15,14 +16,20 @@ import com.distributed26.videostreaming.shared.storage.ObjectStorageClient;
 import com.distributed26.videostreaming.shared.upload.FailedVideoRegistry;
 import com.distributed26.videostreaming.shared.upload.StatusEventBus;
 import com.distributed26.videostreaming.shared.upload.TranscodeTaskBus;
+import com.distributed26.videostreaming.shared.upload.TranscodeTaskPriority;
 import com.distributed26.videostreaming.shared.upload.events.JobEvent;
 import com.distributed26.videostreaming.shared.upload.events.TranscodeProgressEvent;
 import com.distributed26.videostreaming.shared.upload.events.TranscodeSegmentState;
 import com.distributed26.videostreaming.shared.upload.events.TranscodeTaskEvent;
 import com.distributed26.videostreaming.shared.upload.events.UploadFailedEvent;
 import com.distributed26.videostreaming.shared.upload.events.UploadMetaEvent;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -30,12 +37,8 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -44,6 +47,8 @@ public final class ProcessingRuntime {
     private static final java.util.regex.Pattern SEGMENT_NUMBER_PATTERN = java.util.regex.Pattern.compile("(\\d+)");
     private static final long DEFAULT_CLAIM_STALE_MILLIS = 10_000L;
     private final Set<String> manifestsInFlight = ConcurrentHashMap.newKeySet();
+    private final Set<String> progressiveManifestsQueued = ConcurrentHashMap.newKeySet();
+    private final Map<String, FfmpegProgress> encodesByWorker = new ConcurrentHashMap<>();
 
     private TranscodedSegmentStatusRepository transcodeStatusRepository;
     private VideoProcessingRepository videoProcessingRepository;
@@ -54,10 +59,20 @@ public final class ProcessingRuntime {
     private AbrManifestService manifestServiceRef;
     private ExecutorService manifestExecutorRef;
     private Path localUploadSpoolRoot;
+    private TranscodePipeline transcodePipeline;
+    private SourceChunkCache sourceChunkCache;
+    private volatile TranscodeStateWriter transcodeStateWriter;
+    private volatile boolean streamSourceInput;
+    private volatile int progressiveMinSegments;
+    private volatile FairTranscodeScheduler fairScheduler;
+    private volatile AdaptiveConcurrencyController concurrencyController;
+    private volatile EncoderPresetGovernor presetGovernor;
+    private volatile LoadSheddingPolicy loadSheddingPolicy;
     private FailedVideoRegistry failedVideoRegistry;
     private final String processorInstanceId;
     private final long claimStaleMillis;
-    private final ScheduledExecutorService claimHeartbeatExecutor;
+    private final ClaimHeartbeatManager claimHeartbeats;
+    private final UploadReadySignal uploadReadySignal = new UploadReadySignal();
 
     public ProcessingRuntime(
             TranscodedSegmentStatusRepository transcodeStatusRepository,
@@ -111,15 +126,29 @@ public final class ProcessingRuntime {
         this.failedVideoRegistry = new FailedVideoRegistry();
         this.processorInstanceId = processorInstanceId;
         this.claimStaleMillis = Math.max(0L, claimStaleMillis);
-        this.claimHeartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread thread = new Thread(r, "processing-claim-heartbeat");
-            thread.setDaemon(true);
-            return thread;
-        });
+        this.claimHeartbeats = new ClaimHeartbeatManager(stagesByKey -> {
+            ProcessingTaskClaimRepository repository = this.processingTaskClaimRepository;
+            return repository == null ? stagesByKey.size() : repository.heartbeatAll(processorInstanceId, stagesByKey);
+        }, claimHeartbeatMillis());
     }
 
     public void resetForTests() {
         manifestsInFlight.clear();
+        progressiveManifestsQueued.clear();
+        progressiveMinSegments = 0;
+        fairScheduler = null;
+        if (concurrencyController != null) {
+            concurrencyController.close();
+            concurrencyController = null;
+        }
+        if (presetGovernor != null) {
+            presetGovernor.close();
+            presetGovernor = null;
+        }
+        if (loadSheddingPolicy != null) {
+            loadSheddingPolicy.close();
+            loadSheddingPolicy = null;
+        }
         transcodeStatusRepository = null;
         videoProcessingRepository = null;
         processingUploadTaskRepository = null;
@@ -129,8 +158,18 @@ public final class ProcessingRuntime {
         manifestServiceRef = null;
         manifestExecutorRef = null;
         localUploadSpoolRoot = null;
+        if (transcodePipeline != null) {
+            transcodePipeline.close();
+            transcodePipeline = null;
+        }
+        sourceChunkCache = null;
+        if (transcodeStateWriter != null) {
+            transcodeStateWriter.close();
+            transcodeStateWriter = null;
+        }
+        streamSourceInput = false;
         failedVideoRegistry = new FailedVideoRegistry();
-        claimHeartbeatExecutor.shutdownNow();
+        claimHeartbeats.close();
     }
 
     public void setTranscodeStatusRepository(TranscodedSegmentStatusRepository repository) {
@@ -169,6 +208,95 @@ public final class ProcessingRuntime {
         localUploadSpoolRoot = spoolRoot;
     }
 
+    /** Routes transcodes through the staged pipeline; {@code null} runs each task serially on one worker. */
+    public void setTranscodePipeline(TranscodePipeline pipeline) {
+        transcodePipeline = pipeline;
+    }
+
+    public TranscodePipeline transcodePipeline() {
+        return transcodePipeline;
+    }
+
+    /** Shares downloaded source chunks across profile tasks; {@code null} downloads per task. */
+    public void setSourceChunkCache(SourceChunkCache cache) {
+        sourceChunkCache = cache;
+    }
+
+    /**
+     * Buffers non-DONE state writes and flushes them in batches off the caller's thread;
+     * {@code null} writes every state synchronously. DONE is always written synchronously.
+     */
+    public void setTranscodeStateWriter(TranscodeStateWriter writer) {
+        transcodeStateWriter = writer;
+    }
+
+    /**
+     * Publishes playable EVENT manifests while a video is still transcoding, once the
+     * lowest profile has {@code minReadySegments} contiguous DONE segments. {@code 0}
+     * disables progressive publication.
+     */
+    public void setProgressiveManifests(int minReadySegments) {
+        progressiveMinSegments = Math.max(0, minReadySegments);
+    }
+
+    /** Shares this replica's transcode capacity fairly between videos; {@code null} runs tasks as delivered. */
+    public void setFairScheduler(FairTranscodeScheduler scheduler) {
+        fairScheduler = scheduler;
+    }
+
+    public FairTranscodeScheduler fairScheduler() {
+        return fairScheduler;
+    }
+
+    /** Feeds encode timings to the controller that tunes worker concurrency; {@code null} disables sampling. */
+    public void setConcurrencyController(AdaptiveConcurrencyController controller) {
+        concurrencyController = controller;
+    }
+
+    public AdaptiveConcurrencyController concurrencyController() {
+        return concurrencyController;
+    }
+
+    /** Feeds encode completions to the backlog-aware preset governor; {@code null} keeps the preset fixed. */
+    public void setPresetGovernor(EncoderPresetGovernor governor) {
+        presetGovernor = governor;
+    }
+
+    public EncoderPresetGovernor presetGovernor() {
+        return presetGovernor;
+    }
+
+    /** Parks deferrable renditions as DEFERRED while the backlog is deep; {@code null} encodes every rendition. */
+    public void setLoadSheddingPolicy(LoadSheddingPolicy policy) {
+        loadSheddingPolicy = policy;
+    }
+
+    public LoadSheddingPolicy loadSheddingPolicy() {
+        return loadSheddingPolicy;
+    }
+
+    /** Live FFmpeg progress of the encode running on the given worker, or {@code null} when it is idle. */
+    public Map<String, Object> encodeProgress(String workerId) {
+        FfmpegProgress progress = encodesByWorker.get(workerId);
+        return progress == null ? null : progress.snapshot();
+    }
+
+    public TranscodeStateWriter transcodeStateWriter() {
+        return transcodeStateWriter;
+    }
+
+    public SourceChunkCache sourceChunkCache() {
+        return sourceChunkCache;
+    }
+
+    /**
+     * Streams source chunks from object storage straight into FFmpeg instead of staging
+     * them on local disk. Takes precedence over the source chunk cache.
+     */
+    public void setStreamSourceInput(boolean enabled) {
+        streamSourceInput = enabled;
+    }
+
     public void onStatusEvent(JobEvent event) {
         String videoId = event.getJobId();
         if (event instanceof UploadFailedEvent failed) {
@@ -188,7 +316,7 @@ public final class ProcessingRuntime {
             }
             LOGGER.info("UploadMetaEvent: videoId={} totalSegments={} (tasks already in flight)",
                     videoId, meta.getTotalSegments());
-            if (meta.getTotalSegments() > 0 && areAllProfilesDone(videoId, meta.getTotalSegments())) {
+            if (meta.getTotalSegments() > 0 && readyRenditions(videoId, meta.getTotalSegments()) != null) {
                 scheduleManifestGeneration(videoId, meta.getTotalSegments());
             } else {
                 LOGGER.info("Deferring manifest generation until all profiles are DONE for videoId={}", videoId);
@@ -209,7 +337,6 @@ public final class ProcessingRuntime {
             return null;
         }
         String chunkKey = taskEvent.getChunkKey();
-        int segmentNumber = taskEvent.getSegmentNumber();
         if (chunkKey == null || !chunkKey.contains("/chunks/") || !chunkKey.endsWith(".ts")) {
             LOGGER.debug("Ignoring malformed transcode task chunkKey={} for videoId={}", chunkKey, videoId);
             return null;
@@ -220,59 +347,127 @@ public final class ProcessingRuntime {
                     taskEvent.getProfile(), videoId, chunkKey);
             return null;
         }
-        if (segmentNumber < 0) {
-            segmentNumber = parseSegmentNumber(chunkKey);
+        return admitRung(taskEvent, profile, resolveSegmentNumber(taskEvent), profiles);
+    }
+
+    /**
+     * Admits every profile of a ladder task that still needs work. Each admitted rung
+     * gets its own QUEUED state row, exactly as if per-profile tasks had been published.
+     */
+    public List<TranscodingTask> onLadderTaskEvent(TranscodeTaskEvent taskEvent, TranscodingProfile[] profiles) {
+        String videoId = taskEvent.getJobId();
+        if (isVideoFailed(videoId)) {
+            LOGGER.info("Skipping ladder transcode task for failed videoId={} chunk={}", videoId, taskEvent.getChunkKey());
+            return List.of();
+        }
+        String chunkKey = taskEvent.getChunkKey();
+        if (chunkKey == null || !chunkKey.contains("/chunks/") || !chunkKey.endsWith(".ts")) {
+            LOGGER.debug("Ignoring malformed ladder transcode task chunkKey={} for videoId={}", chunkKey, videoId);
+            return List.of();
+        }
+        int segmentNumber = resolveSegmentNumber(taskEvent);
+        List<TranscodingTask> rungs = new ArrayList<>(profiles.length);
+        for (TranscodingProfile profile : profiles) {
+            TranscodingTask rung = admitRung(taskEvent, profile, segmentNumber, profiles);
+            if (rung != null) {
+                rungs.add(rung);
+            }
+        }
+        return rungs;
+    }
+
+    public CompletionStage<Boolean> submitTranscodeTask(
+            TranscodeTaskEvent taskEvent,
+            ThreadPoolExecutor taskExecutor,
+            ObjectStorageClient storageClient,
+            java.util.Map<Thread, Worker> workersByThread,
+            TranscodingProfile[] profiles
+    ) {
+        if (isVideoFailed(taskEvent.getJobId())) {
+            LOGGER.info("Dropping submitted transcode task for failed videoId={} profile={} chunk={}",
+                    taskEvent.getJobId(), taskEvent.getProfile(), taskEvent.getChunkKey());
+            return CompletableFuture.completedFuture(true);
         }
-        if (isAlreadyDone(videoId, profile.getName(), segmentNumber)) {
+        List<TranscodingTask> rungs;
+        if (TranscodeTaskEvent.LADDER_PROFILE.equalsIgnoreCase(taskEvent.getProfile())) {
+            rungs = onLadderTaskEvent(taskEvent, profiles);
+        } else {
+            TranscodingTask task = onTranscodeTaskEvent(taskEvent, profiles);
+            rungs = task == null ? List.of() : List.of(task);
+        }
+        if (rungs.isEmpty()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        int priority = TranscodeTaskPriority.of(taskEvent.getProfile(), resolveSegmentNumber(taskEvent));
+        Supplier<CompletableFuture<Boolean>> start = () -> transcodePipeline == null
+                ? CompletableFuture.supplyAsync(
+                        () -> executeTranscodingTask(rungs, storageClient, workersByThread, profiles),
+                        PriorityTaskExecutor.withPriority(taskExecutor, priority))
+                : submitStagedTranscode(rungs, priority, taskExecutor, storageClient, workersByThread, profiles);
+        FairTranscodeScheduler scheduler = fairScheduler;
+        CompletableFuture<Boolean> execution = scheduler == null
+                ? start.get()
+                : scheduler.submit(taskEvent.getJobId(), priority, encodeCost(rungs), start);
+        return execution.exceptionally(e -> {
+            LOGGER.error("Transcode task execution crashed jobId={} chunk={} profiles={}",
+                    taskEvent.getJobId(), taskEvent.getChunkKey(), profileNames(rungs), e);
+            return false;
+        });
+    }
+
+    /** Relative encode cost of a job, in units of one LOW rendition. */
+    private static int encodeCost(List<TranscodingTask> rungs) {
+        int cost = 0;
+        for (TranscodingTask rung : rungs) {
+            cost += Math.max(1, Math.round((float) rung.getProfile().getBitrate() / TranscodingProfile.LOW.getBitrate()));
+        }
+        return cost;
+    }
+
+    private TranscodingTask admitRung(
+            TranscodeTaskEvent taskEvent,
+            TranscodingProfile profile,
+            int segmentNumber,
+            TranscodingProfile[] profiles
+    ) {
+        String videoId = taskEvent.getJobId();
+        TranscodedSegmentStatusRepository.AdmissionVerdict verdict = admit(
+                videoId, profile.getName(), segmentNumber, taskEvent.getSegmentDurationSeconds(), profiles);
+        if (verdict == TranscodedSegmentStatusRepository.AdmissionVerdict.ALREADY_DONE) {
             LOGGER.info("Skipping already uploaded segment videoId={} profile={} segment={}",
                     videoId, profile.getName(), segmentNumber);
             publishTranscodeState(videoId, profile.getName(), segmentNumber, TranscodeSegmentState.DONE, profiles);
             return null;
         }
-        if (hasOpenLocalUploadTask(videoId, profile.getName(), segmentNumber)) {
+        if (verdict == TranscodedSegmentStatusRepository.AdmissionVerdict.UPLOAD_PENDING) {
             LOGGER.info("Skipping segment with existing local upload task videoId={} profile={} segment={}",
                     videoId, profile.getName(), segmentNumber);
             return null;
         }
-        if (hasActiveClaim(videoId, profile.getName(), segmentNumber)) {
+        if (verdict == TranscodedSegmentStatusRepository.AdmissionVerdict.CLAIMED) {
             LOGGER.info("Skipping segment already claimed by another processing instance videoId={} profile={} segment={}",
                     videoId, profile.getName(), segmentNumber);
             return null;
         }
-        publishTranscodeState(videoId, profile.getName(), segmentNumber, TranscodeSegmentState.QUEUED, profiles);
+        LoadSheddingPolicy policy = loadSheddingPolicy;
+        if (policy != null && profile != profiles[0] && policy.shouldDefer(profile.getName())) {
+            LOGGER.info("Deferring rendition under load videoId={} profile={} segment={}",
+                    videoId, profile.getName(), segmentNumber);
+            publishTranscodeState(videoId, profile.getName(), segmentNumber, TranscodeSegmentState.DEFERRED, profiles);
+            return null;
+        }
         return new TranscodingTask(
                 UUID.randomUUID().toString(),
                 videoId,
-                chunkKey,
+                taskEvent.getChunkKey(),
                 profile,
                 taskEvent.getOutputTsOffsetSeconds()
         );
     }
 
-    public CompletionStage<Boolean> submitTranscodeTask(
-            TranscodeTaskEvent taskEvent,
-            ThreadPoolExecutor taskExecutor,
-            ObjectStorageClient storageClient,
-            java.util.Map<Thread, Worker> workersByThread,
-            TranscodingProfile[] profiles
-    ) {
-        if (isVideoFailed(taskEvent.getJobId())) {
-            LOGGER.info("Dropping submitted transcode task for failed videoId={} profile={} chunk={}",
-                    taskEvent.getJobId(), taskEvent.getProfile(), taskEvent.getChunkKey());
-            return CompletableFuture.completedFuture(true);
-        }
-        TranscodingTask task = onTranscodeTaskEvent(taskEvent, profiles);
-        if (task == null) {
-            return CompletableFuture.completedFuture(true);
-        }
-        return CompletableFuture.supplyAsync(
-                () -> executeTranscodingTask(task, storageClient, workersByThread, profiles),
-                taskExecutor
-        ).exceptionally(e -> {
-            LOGGER.error("Transcode task execution crashed jobId={} chunk={} profile={}",
-                    task.getJobId(), task.getChunkKey(), task.getProfile().getName(), e);
-            return false;
-        });
+    private static int resolveSegmentNumber(TranscodeTaskEvent taskEvent) {
+        int segmentNumber = taskEvent.getSegmentNumber();
+        return segmentNumber < 0 ? parseSegmentNumber(taskEvent.getChunkKey()) : segmentNumber;
     }
 
     public void publishTranscodeState(
@@ -285,16 +480,32 @@ public final class ProcessingRuntime {
         if (transcodeStatusRepository == null || statusBus == null || segmentNumber < 0) {
             return;
         }
+        TranscodeStateWriter writer = transcodeStateWriter;
+        boolean terminal = state == TranscodeSegmentState.DONE || state == TranscodeSegmentState.DEFERRED;
+        if (writer != null) {
+            if (!terminal) {
+                writer.enqueue(videoId, profile, segmentNumber, state);
+                return;
+            }
+            writer.discard(videoId, profile, segmentNumber);
+        }
         try {
-            transcodeStatusRepository.upsertState(videoId, profile, segmentNumber, state);
-            int done = transcodeStatusRepository.countByState(videoId, profile, TranscodeSegmentState.DONE);
-            int total = findTotalSegments(videoId);
+            TranscodedSegmentStatusRepository.StateTransition transition =
+                    transcodeStatusRepository.recordState(videoId, profile, segmentNumber, state);
+            int done = transition.doneSegments();
+            int total = transition.totalSegments();
             statusBus.publish(new TranscodeProgressEvent(videoId, profile, segmentNumber, state, done, total));
-            if (state == TranscodeSegmentState.DONE
+            // DONE and DEFERRED together settle a profile; the DEFERRED count is an upper bound,
+            // so readyRenditions confirms it before anything is finalized.
+            boolean profileSettled = done + transition.deferredSegments() >= total;
+            if (terminal
                     && total > 0
+                    && profileSettled
                     && !manifestsInFlight.contains(videoId)
-                    && areAllProfilesDone(videoId, total)) {
+                    && readyRenditions(videoId, total) != null) {
                 scheduleManifestGeneration(videoId, total);
+            } else if (state == TranscodeSegmentState.DONE && total > 0) {
+                scheduleProgressiveManifest(videoId, total);
             }
         } catch (Exception e) {
             LOGGER.warn("Failed to persist/publish transcode progress videoId={} profile={} segment={} state={}",
@@ -306,6 +517,10 @@ public final class ProcessingRuntime {
         return processingUploadTaskRepository;
     }
 
+    public UploadReadySignal uploadReadySignal() {
+        return uploadReadySignal;
+    }
+
     public ProcessingTaskClaimRepository processingTaskClaimRepository() {
         return processingTaskClaimRepository;
     }
@@ -350,15 +565,84 @@ public final class ProcessingRuntime {
             return false;
         }
         TranscodingProfile[] activeProfiles = profiles == null ? defaultProfiles() : profiles;
+        TranscodedSegmentStatusRepository.VideoProgress progress = transcodeStatusRepository.findProgress(videoId);
         for (TranscodingProfile profile : activeProfiles) {
-            int done = transcodeStatusRepository.countByState(videoId, profile.getName(), TranscodeSegmentState.DONE);
-            if (done < totalSegments) {
+            if (progress.doneSegments(profile.getName()) < totalSegments) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * The renditions a final manifest can list, or {@code null} while any is still
+     * outstanding. A profile above the lowest counts as settled when its DONE and
+     * DEFERRED segments cover the video; it is then left out until it is backfilled.
+     */
+    public List<TranscodingProfile> readyRenditions(String videoId, int totalSegments) {
+        if (transcodeStatusRepository == null || totalSegments <= 0) {
+            return null;
+        }
+        TranscodingProfile[] activeProfiles = defaultProfiles();
+        TranscodedSegmentStatusRepository.VideoProgress progress = transcodeStatusRepository.findProgress(videoId);
+        List<TranscodingProfile> ready = new ArrayList<>(activeProfiles.length);
+        for (int i = 0; i < activeProfiles.length; i++) {
+            TranscodingProfile profile = activeProfiles[i];
+            int done = progress.doneSegments(profile.getName());
+            if (done >= totalSegments) {
+                ready.add(profile);
+                continue;
+            }
+            if (i == 0 || done + transcodeStatusRepository.countByState(
+                    videoId, profile.getName(), TranscodeSegmentState.DEFERRED) < totalSegments) {
+                return null;
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Requeues up to {@code limit} DEFERRED renditions on the task bus, oldest first.
+     * Their rows move back to QUEUED, so the final manifests wait for them again and are
+     * rewritten with the full ladder once they are DONE.
+     *
+     * @return how many renditions were requeued
+     */
+    public int republishDeferred(int limit) {
+        TranscodeTaskBus bus = transcodeTaskBusRef;
+        if (transcodeStatusRepository == null || bus == null) {
+            return 0;
+        }
+        List<TranscodedSegmentStatusRepository.DeferredSegment> claimed = transcodeStatusRepository.claimDeferred(limit);
+        Map<String, Map<Integer, Double>> durationsByVideo = new HashMap<>();
+        for (TranscodedSegmentStatusRepository.DeferredSegment segment : claimed) {
+            Map<Integer, Double> durations = durationsByVideo.computeIfAbsent(segment.videoId(), this::findSegmentDurations);
+            bus.publish(new TranscodeTaskEvent(
+                    segment.videoId(),
+                    segment.videoId() + "/chunks/output" + segment.segmentNumber() + ".ts",
+                    segment.profile(),
+                    segment.segmentNumber(),
+                    outputOffset(segment.segmentNumber(), durations),
+                    segment.durationSeconds()
+            ));
+            LOGGER.info("Requeued deferred rendition videoId={} profile={} segment={}",
+                    segment.videoId(), segment.profile(), segment.segmentNumber());
+        }
+        return claimed.size();
+    }
+
+    private static double outputOffset(int segmentNumber, Map<Integer, Double> durations) {
+        double offset = 0d;
+        for (int n = 0; n < segmentNumber; n++) {
+            Double duration = durations.get(n);
+            if (duration == null) {
+                return fallbackOffsetForSegment(segmentNumber);
+            }
+            offset += duration;
+        }
+        return offset;
+    }
+
     public int findTotalSegments(String videoId) {
         if (videoProcessingRepository == null) {
             return 0;
@@ -384,12 +668,15 @@ public final class ProcessingRuntime {
         }
     }
 
+    /** Checks the manifests against the renditions currently owed, so shed videos count as reconciled. */
     public boolean hasRequiredManifests(String videoId) {
         if (manifestServiceRef == null) {
             return false;
         }
         try {
-            return manifestServiceRef.hasRequiredManifests(videoId);
+            // Renditions still owed (e.g. a backfill just requeued) mean the manifests are not final.
+            List<TranscodingProfile> renditions = readyRenditions(videoId, findTotalSegments(videoId));
+            return renditions != null && manifestServiceRef.hasRequiredManifests(videoId, renditions);
         } catch (Exception e) {
             LOGGER.warn("Failed to verify manifests for videoId={}", videoId, e);
             return false;
@@ -416,7 +703,20 @@ public final class ProcessingRuntime {
         try {
             manifestExecutorRef.execute(() -> {
                 try {
-                    manifestServiceRef.generateIfNeeded(videoId, totalSegments);
+                    List<TranscodingProfile> renditions = readyRenditions(videoId, totalSegments);
+                    if (renditions == null) {
+                        // Lost a race with a backfill that moved deferred rows back to QUEUED; the
+                        // last of those segments reschedules generation once it is DONE.
+                        LOGGER.debug("Skipping manifest generation while renditions are outstanding videoId={}",
+                                videoId);
+                        return;
+                    }
+                    if (renditions.size() < defaultProfiles().length) {
+                        LOGGER.info("Writing manifests without deferred renditions videoId={} renditions={}",
+                                videoId, renditions.stream().map(TranscodingProfile::getName).toList());
+                    }
+                    manifestServiceRef.generateIfNeeded(
+                            videoId, totalSegments, findSegmentDurations(videoId), renditions);
                     if (videoProcessingRepository != null) {
                         videoProcessingRepository.updateStatus(videoId, "COMPLETED");
                     }
@@ -432,6 +732,69 @@ public final class ProcessingRuntime {
         }
     }
 
+    /**
+     * Queues at most one progressive manifest update per video; DONE transitions that land
+     * while an update is queued are picked up by it, and ones that land while it runs queue
+     * the next.
+     */
+    void scheduleProgressiveManifest(String videoId, int totalSegments) {
+        int minReadySegments = progressiveMinSegments;
+        if (minReadySegments <= 0 || manifestServiceRef == null || manifestExecutorRef == null
+                || transcodeStatusRepository == null || manifestsInFlight.contains(videoId)) {
+            return;
+        }
+        if (!progressiveManifestsQueued.add(videoId)) {
+            return;
+        }
+        try {
+            manifestExecutorRef.execute(() -> {
+                progressiveManifestsQueued.remove(videoId);
+                publishProgressiveManifest(videoId, totalSegments, minReadySegments);
+            });
+        } catch (RuntimeException e) {
+            progressiveManifestsQueued.remove(videoId);
+            LOGGER.warn("Failed to submit progressive manifest update for videoId={}", videoId, e);
+        }
+    }
+
+    private void publishProgressiveManifest(String videoId, int totalSegments, int minReadySegments) {
+        if (manifestsInFlight.contains(videoId)) {
+            return;
+        }
+        // Backfilled renditions of a completed video must not turn its final playlists back into EVENT ones.
+        if (findVideoStatus(videoId).filter("COMPLETED"::equalsIgnoreCase).isPresent()) {
+            return;
+        }
+        try {
+            Map<String, Set<Integer>> doneByProfile = new HashMap<>();
+            for (TranscodingProfile profile : defaultProfiles()) {
+                doneByProfile.put(profile.getName(), transcodeStatusRepository.findSegmentNumbersByState(
+                        videoId, profile.getName(), TranscodeSegmentState.DONE));
+            }
+            int renditions = manifestServiceRef.publishProgressive(videoId, totalSegments,
+                    transcodeStatusRepository.findSegmentDurations(videoId), doneByProfile, minReadySegments);
+            // The last DONE may have been written, and final manifests generated, by another
+            // replica while this update ran; reconcile so the EVENT playlists are replaced.
+            if (renditions > 0 && readyRenditions(videoId, totalSegments) != null) {
+                scheduleManifestGeneration(videoId, totalSegments);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Progressive manifest update failed for videoId={}", videoId, e);
+        }
+    }
+
+    private Map<Integer, Double> findSegmentDurations(String videoId) {
+        if (transcodeStatusRepository == null) {
+            return Map.of();
+        }
+        try {
+            return transcodeStatusRepository.findSegmentDurations(videoId);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to load segment durations for videoId={}, falling back to source manifest", videoId, e);
+            return Map.of();
+        }
+    }
+
     public static int parseSegmentNumber(String chunkKey) {
         if (chunkKey == null || chunkKey.isBlank()) {
             return -1;
@@ -487,102 +850,274 @@ public final class ProcessingRuntime {
     }
 
     private boolean executeTranscodingTask(
-            TranscodingTask task,
+            List<TranscodingTask> rungs,
             ObjectStorageClient storageClient,
             java.util.Map<Thread, Worker> workersByThread,
             TranscodingProfile[] profiles
     ) {
         Worker worker = workersByThread.get(Thread.currentThread());
-        int segmentNumber = parseSegmentNumber(task.getChunkKey());
-        boolean claimAcquired = false;
+        TranscodeJob job = new TranscodeJob(rungs);
+        Throwable failure = null;
         try {
             if (worker != null) {
                 worker.setStatus(WorkerStatus.BUSY);
             }
-            if (isVideoFailed(task.getJobId())) {
-                LOGGER.info("Skipping queued transcode task for failed videoId={} profile={} chunk={}",
-                        task.getJobId(), task.getProfile().getName(), task.getChunkKey());
-                return true;
+            if (prefetchTranscode(job, storageClient, profiles)) {
+                encodeTranscode(job, storageClient, worker);
             }
-            if (processingTaskClaimRepository != null) {
-                ProcessingTaskClaimRepository.ClaimResult claimResult = processingTaskClaimRepository.claim(
-                        task.getJobId(),
-                        task.getProfile().getName(),
-                        segmentNumber,
-                        "TRANSCODING",
-                        processorInstanceId,
-                        claimStaleMillis
-                );
-                if (claimResult != ProcessingTaskClaimRepository.ClaimResult.ACQUIRED) {
-                    if (claimResult == ProcessingTaskClaimRepository.ClaimResult.HELD_BY_OTHER) {
-                        LOGGER.info("Skipping execution of transcode task already claimed elsewhere videoId={} profile={} chunk={}",
-                                task.getJobId(), task.getProfile().getName(), task.getChunkKey());
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            if (worker != null) {
+                worker.setStatus(WorkerStatus.IDLE);
+                worker.heartbeat();
+            }
+        }
+        return completeTranscode(job, failure, profiles);
+    }
+
+    private CompletableFuture<Boolean> submitStagedTranscode(
+            List<TranscodingTask> rungs,
+            int priority,
+            ThreadPoolExecutor taskExecutor,
+            ObjectStorageClient storageClient,
+            java.util.Map<Thread, Worker> workersByThread,
+            TranscodingProfile[] profiles
+    ) {
+        return transcodePipeline.submit(
+                new TranscodeJob(rungs),
+                priority,
+                taskExecutor,
+                job -> prefetchTranscode(job, storageClient, profiles),
+                job -> {
+                    Worker worker = workersByThread.get(Thread.currentThread());
+                    if (worker != null) {
+                        worker.setStatus(WorkerStatus.BUSY);
                     }
-                    return true;
-                }
-                claimAcquired = true;
+                    try {
+                        encodeTranscode(job, storageClient, worker);
+                        return true;
+                    } finally {
+                        if (worker != null) {
+                            worker.setStatus(WorkerStatus.IDLE);
+                            worker.heartbeat();
+                        }
+                    }
+                },
+                (job, failure) -> completeTranscode(job, failure, profiles)
+        );
+    }
+
+    /**
+     * I/O stage: claims the rungs, drops rungs whose output already exists and
+     * downloads the source chunk unless it will be streamed into FFmpeg. Returns
+     * {@code false} when nothing is left to encode.
+     */
+    private boolean prefetchTranscode(
+            TranscodeJob job,
+            ObjectStorageClient storageClient,
+            TranscodingProfile[] profiles
+    ) throws IOException {
+        TranscodingTask lead = job.lead();
+        if (isVideoFailed(lead.getJobId())) {
+            LOGGER.info("Skipping queued transcode task for failed videoId={} profiles={} chunk={}",
+                    lead.getJobId(), profileNames(job.rungs), lead.getChunkKey());
+            return false;
+        }
+        for (TranscodingTask task : job.rungs) {
+            if (acquireClaim(task, job.segmentNumber)) {
+                job.claimed.add(task);
             }
-            markVideoProcessing(task.getJobId());
+        }
+        if (job.claimed.isEmpty()) {
+            return false;
+        }
+        markVideoProcessing(lead.getJobId());
+        LOGGER.info("Picked up task {} (chunk={} profiles={})",
+                lead.getId(), lead.getChunkKey(), profileNames(job.claimed));
+        for (TranscodingTask task : job.claimed) {
             task.setStatus(Status.RUNNING);
-            LOGGER.info("Worker {} picked up task {} (chunk={} profile={})",
-                    worker == null ? "unknown" : worker.getId(),
-                    task.getId(),
-                    task.getChunkKey(),
-                    task.getProfile().getName());
             emitState(task, TranscodeSegmentState.TRANSCODING, profiles);
-            try (ClaimHeartbeat ignored = startClaimHeartbeat(
+            job.heartbeats.add(startClaimHeartbeat(
                     task.getJobId(),
                     task.getProfile().getName(),
-                    segmentNumber,
+                    job.segmentNumber,
                     "TRANSCODING"
-            )) {
-                CompletedTranscode completed = task.transcodeToSpool(storageClient, localUploadSpoolRoot);
-                if (completed == null) {
-                    task.setStatus(Status.SUCCEEDED);
-                    emitState(task, TranscodeSegmentState.DONE, profiles);
-                    LOGGER.info("Task {} skipped because output already exists", task.getId());
+            ));
+        }
+        for (TranscodingTask task : job.claimed) {
+            if (task.outputExists(storageClient)) {
+                LOGGER.info("Output already exists in object storage, skipping local spool: {}", task.getOutputKey());
+            } else {
+                job.pending.add(task);
+            }
+        }
+        if (job.pending.isEmpty()) {
+            return false;
+        }
+        if (streamSourceInput) {
+            return true;
+        }
+        TranscodingTask source = job.pending.get(0);
+        if (sourceChunkCache != null) {
+            job.sourceLease = sourceChunkCache.acquire(
+                    source.getChunkKey(),
+                    target -> source.downloadSourceTo(storageClient, target)
+            );
+            job.source = job.sourceLease.path();
+        } else {
+            job.source = source.prefetchSource(storageClient);
+        }
+        return true;
+    }
+
+    /** CPU stage: the only part of a transcode that holds a worker slot. */
+    private void encodeTranscode(TranscodeJob job, ObjectStorageClient storageClient, Worker worker) throws IOException {
+        if (isVideoFailed(job.lead().getJobId())) {
+            LOGGER.info("Skipping encode for failed videoId={} chunk={}", job.lead().getJobId(), job.lead().getChunkKey());
+            return;
+        }
+        long startedAt = System.nanoTime();
+        FfmpegProgress progress = new FfmpegProgress();
+        if (worker != null) {
+            encodesByWorker.put(worker.getId(), progress);
+        }
+        try {
+            job.outputs = job.source == null
+                    ? TranscodingTask.encodeStreamToSpool(storageClient, job.pending, localUploadSpoolRoot, progress)
+                    : TranscodingTask.encodeToSpool(job.source, job.pending, localUploadSpoolRoot, progress);
+        } finally {
+            if (worker != null) {
+                encodesByWorker.remove(worker.getId(), progress);
+            }
+        }
+        AdaptiveConcurrencyController controller = concurrencyController;
+        if (controller != null) {
+            controller.recordEncode(job.pending.size(), System.nanoTime() - startedAt);
+        }
+        EncoderPresetGovernor governor = presetGovernor;
+        if (governor != null) {
+            governor.recordEncode(job.pending.size());
+        }
+    }
+
+    /**
+     * I/O stage: publishes encoded outputs to the spool, records upload tasks and
+     * states, and always releases heartbeats, claims and temp files.
+     */
+    private boolean completeTranscode(TranscodeJob job, Throwable failure, TranscodingProfile[] profiles) {
+        int segmentNumber = job.segmentNumber;
+        try {
+            if (failure == null) {
+                try {
+                    publishTranscodeOutputs(job, profiles);
                     return true;
+                } catch (Exception e) {
+                    failure = e;
                 }
-                if (isVideoFailed(task.getJobId())) {
-                    Files.deleteIfExists(completed.localPath());
-                    LOGGER.info("Discarded transcoded spool for failed videoId={} profile={} segment={}",
-                            task.getJobId(), task.getProfile().getName(), segmentNumber);
-                    return true;
+            }
+            if (job.sourceLease != null && job.outputs == null) {
+                // FFmpeg may have rejected the cached bytes; make the retry fetch a fresh copy.
+                sourceChunkCache.invalidate(job.sourceLease.chunkKey());
+            }
+            for (TranscodingTask task : job.claimed) {
+                if (task.getStatus() != Status.SUCCEEDED) {
+                    task.setStatus(Status.FAILED);
+                    emitState(task, TranscodeSegmentState.FAILED, profiles);
                 }
-                processingUploadTaskRepository.upsertPending(
-                        task.getJobId(),
-                        processorInstanceId,
-                        task.getProfile().getName(),
-                        segmentNumber,
-                        task.getChunkKey(),
-                        completed.outputKey(),
-                        completed.localPath().toString(),
-                        completed.sizeBytes(),
-                        completed.outputTsOffsetSeconds()
-                );
-                emitState(task, TranscodeSegmentState.TRANSCODED, profiles);
-                task.setStatus(Status.SUCCEEDED);
-                LOGGER.info("Task {} succeeded", task.getId());
-                return true;
             }
-        } catch (Exception e) {
-            task.setStatus(Status.FAILED);
-            emitState(task, TranscodeSegmentState.FAILED, profiles);
-            LOGGER.error("Task {} failed: {}", task.getId(), e.getMessage(), e);
+            LOGGER.error("Task {} failed: {}", job.lead().getId(), failure.getMessage(), failure);
             return false;
         } finally {
-            if (claimAcquired && processingTaskClaimRepository != null) {
-                processingTaskClaimRepository.release(
-                        task.getJobId(),
-                        task.getProfile().getName(),
-                        segmentNumber
-                );
+            job.heartbeats.forEach(ClaimHeartbeatManager.Registration::close);
+            if (processingTaskClaimRepository != null) {
+                for (TranscodingTask task : job.claimed) {
+                    processingTaskClaimRepository.release(
+                            task.getJobId(),
+                            task.getProfile().getName(),
+                            segmentNumber
+                    );
+                }
             }
-            if (worker != null) {
-                worker.setStatus(WorkerStatus.IDLE);
-                worker.heartbeat();
+            job.deleteTempFiles();
+        }
+    }
+
+    private void publishTranscodeOutputs(TranscodeJob job, TranscodingProfile[] profiles) throws IOException {
+        int segmentNumber = job.segmentNumber;
+        List<String> encoded = new ArrayList<>(job.claimed.size());
+        for (TranscodingTask task : job.claimed) {
+            int pendingIndex = job.pending.indexOf(task);
+            if (pendingIndex < 0) {
+                task.setStatus(Status.SUCCEEDED);
+                emitState(task, TranscodeSegmentState.DONE, profiles);
+                LOGGER.info("Task {} skipped because output already exists", task.getId());
+                continue;
+            }
+            if (job.outputs == null || isVideoFailed(task.getJobId())) {
+                LOGGER.info("Discarded transcode for failed videoId={} profile={} segment={}",
+                        task.getJobId(), task.getProfile().getName(), segmentNumber);
+                continue;
             }
+            CompletedTranscode completed = task.spoolOutput(job.outputs.get(pendingIndex), localUploadSpoolRoot);
+            processingUploadTaskRepository.upsertPending(
+                    task.getJobId(),
+                    processorInstanceId,
+                    task.getProfile().getName(),
+                    segmentNumber,
+                    task.getChunkKey(),
+                    completed.outputKey(),
+                    completed.localPath().toString(),
+                    completed.sizeBytes(),
+                    completed.outputTsOffsetSeconds()
+            );
+            uploadReadySignal.signal();
+            emitState(task, TranscodeSegmentState.TRANSCODED, profiles);
+            task.setStatus(Status.SUCCEEDED);
+            encoded.add(task.getProfile().getName());
+            LOGGER.info("Task {} succeeded", task.getId());
+        }
+        recordEncoderPreset(job, encoded);
+    }
+
+    private void recordEncoderPreset(TranscodeJob job, List<String> encodedProfiles) {
+        if (transcodeStatusRepository == null || encodedProfiles.isEmpty()) {
+            return;
+        }
+        try {
+            transcodeStatusRepository.recordEncoderPreset(
+                    job.lead().getJobId(), job.segmentNumber, encodedProfiles, job.lead().getEncoderPreset());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to record encoder preset videoId={} segment={} profiles={}",
+                    job.lead().getJobId(), job.segmentNumber, encodedProfiles, e);
+        }
+    }
+
+    private boolean acquireClaim(TranscodingTask task, int segmentNumber) {
+        if (processingTaskClaimRepository == null) {
+            return true;
+        }
+        ProcessingTaskClaimRepository.ClaimResult claimResult = processingTaskClaimRepository.claim(
+                task.getJobId(),
+                task.getProfile().getName(),
+                segmentNumber,
+                "TRANSCODING",
+                processorInstanceId,
+                claimStaleMillis
+        );
+        if (claimResult == ProcessingTaskClaimRepository.ClaimResult.HELD_BY_OTHER) {
+            LOGGER.info("Skipping execution of transcode task already claimed elsewhere videoId={} profile={} chunk={}",
+                    task.getJobId(), task.getProfile().getName(), task.getChunkKey());
+        }
+        return claimResult == ProcessingTaskClaimRepository.ClaimResult.ACQUIRED;
+    }
+
+    private static String profileNames(List<TranscodingTask> tasks) {
+        List<String> names = new ArrayList<>(tasks.size());
+        for (TranscodingTask task : tasks) {
+            names.add(task.getProfile().getName());
         }
+        return String.join(",", names);
     }
 
     private void emitState(TranscodingTask task, TranscodeSegmentState state, TranscodingProfile[] profiles) {
@@ -605,6 +1140,51 @@ public final class ProcessingRuntime {
         return null;
     }
 
+    /**
+     * Runs the done / open-upload / live-claim checks and records QUEUED in one statement,
+     * then publishes the QUEUED progress event from the returned counters. Falls back to
+     * the individual lookups when the combined statement is unavailable.
+     */
+    private TranscodedSegmentStatusRepository.AdmissionVerdict admit(
+            String videoId,
+            String profile,
+            int segmentNumber,
+            double durationSeconds,
+            TranscodingProfile[] profiles
+    ) {
+        if (transcodeStatusRepository != null && segmentNumber >= 0) {
+            TranscodeStateWriter writer = transcodeStateWriter;
+            if (writer != null) {
+                writer.discard(videoId, profile, segmentNumber);
+            }
+            try {
+                TranscodedSegmentStatusRepository.Admission admission =
+                        transcodeStatusRepository.admit(
+                                videoId, profile, segmentNumber, claimStaleMillis, durationSeconds);
+                if (admission.verdict() == TranscodedSegmentStatusRepository.AdmissionVerdict.ADMITTED
+                        && statusBus != null) {
+                    statusBus.publish(new TranscodeProgressEvent(videoId, profile, segmentNumber,
+                            TranscodeSegmentState.QUEUED, admission.doneSegments(), admission.totalSegments()));
+                }
+                return admission.verdict();
+            } catch (Exception e) {
+                LOGGER.warn("Combined admission check failed videoId={} profile={} segment={}, falling back",
+                        videoId, profile, segmentNumber, e);
+            }
+        }
+        if (isAlreadyDone(videoId, profile, segmentNumber)) {
+            return TranscodedSegmentStatusRepository.AdmissionVerdict.ALREADY_DONE;
+        }
+        if (hasOpenLocalUploadTask(videoId, profile, segmentNumber)) {
+            return TranscodedSegmentStatusRepository.AdmissionVerdict.UPLOAD_PENDING;
+        }
+        if (hasActiveClaim(videoId, profile, segmentNumber)) {
+            return TranscodedSegmentStatusRepository.AdmissionVerdict.CLAIMED;
+        }
+        publishTranscodeState(videoId, profile, segmentNumber, TranscodeSegmentState.QUEUED, profiles);
+        return TranscodedSegmentStatusRepository.AdmissionVerdict.ADMITTED;
+    }
+
     private boolean isAlreadyDone(String videoId, String profile, int segmentNumber) {
         if (segmentNumber < 0) {
             return false;
@@ -646,65 +1226,59 @@ public final class ProcessingRuntime {
         return startClaimHeartbeat(videoId, profile, segmentNumber, "UPLOADING");
     }
 
-    private ClaimHeartbeat startClaimHeartbeat(String videoId, String profile, int segmentNumber, String stage) {
+    private ClaimHeartbeatManager.Registration startClaimHeartbeat(
+            String videoId,
+            String profile,
+            int segmentNumber,
+            String stage
+    ) {
         if (segmentNumber < 0 || processingTaskClaimRepository == null) {
-            return ClaimHeartbeat.NOOP;
+            return ClaimHeartbeatManager.Registration.NOOP;
         }
-        ClaimHeartbeat heartbeat = new ClaimHeartbeat(
-                videoId,
-                profile,
-                segmentNumber,
-                stage,
-                processorInstanceId,
-                processingTaskClaimRepository,
-                claimHeartbeatExecutor,
-                claimHeartbeatMillis()
-        );
-        heartbeat.start();
-        return heartbeat;
-    }
-
-    private static final class ClaimHeartbeat implements AutoCloseable {
-        private static final ClaimHeartbeat NOOP = new ClaimHeartbeat();
-
-        private final AtomicBoolean running;
-        private final ScheduledFuture<?> future;
-
-        private ClaimHeartbeat() {
-            this.running = null;
-            this.future = null;
-        }
-
-        private ClaimHeartbeat(
-                String videoId,
-                String profile,
-                int segmentNumber,
-                String stage,
-                String claimedBy,
-                ProcessingTaskClaimRepository repository,
-                ScheduledExecutorService scheduler,
-                long intervalMillis
-        ) {
-            this.running = new AtomicBoolean(true);
-            this.future = scheduler.scheduleAtFixedRate(() -> {
-                if (!running.get()) {
-                    return;
-                }
-                repository.heartbeat(videoId, profile, segmentNumber, stage, claimedBy);
-            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return claimHeartbeats.register(videoId, profile, segmentNumber, stage);
+    }
+
+    public ClaimHeartbeatManager claimHeartbeats() {
+        return claimHeartbeats;
+    }
+
+    /** Per-submission state handed from stage to stage. */
+    private static final class TranscodeJob {
+        private final List<TranscodingTask> rungs;
+        private final int segmentNumber;
+        private final List<TranscodingTask> claimed = new ArrayList<>();
+        private final List<TranscodingTask> pending = new ArrayList<>();
+        private final List<ClaimHeartbeatManager.Registration> heartbeats = new ArrayList<>();
+        private Path source;
+        private SourceChunkCache.Lease sourceLease;
+        private List<Path> outputs;
+
+        private TranscodeJob(List<TranscodingTask> rungs) {
+            this.rungs = rungs;
+            this.segmentNumber = parseSegmentNumber(rungs.get(0).getChunkKey());
         }
 
-        private void start() {
-            // Scheduled on construction.
+        private TranscodingTask lead() {
+            return rungs.get(0);
         }
 
-        @Override
-        public void close() {
-            if (running == null || future == null) {
-                return;
+        private void deleteTempFiles() {
+            List<Path> files = new ArrayList<>();
+            if (sourceLease != null) {
+                sourceLease.close();
+            } else if (source != null) {
+                files.add(source);
+            }
+            if (outputs != null) {
+                files.addAll(outputs);
+            }
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to delete transcode temp file path={}", file, e);
+                }
             }
-            running.set(false);
-            future.cancel(false);
         }
     }
 
@@ -0,0 +1,261 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Node-local, size-bounded LRU cache of downloaded source chunks keyed by chunk key.
+ *
+ * <p>Concurrent requests for the same chunk share one download (single-flight).
+ * Callers hold a {@link Lease} while FFmpeg reads the file; leased entries are
+ * never evicted, so the byte bound can be exceeded briefly while every cached
+ * chunk is in use. Eviction catches up as leases are released.
+ */
+public final class SourceChunkCache {
+    private static final Logger LOGGER = LogManager.getLogger(SourceChunkCache.class);
+
+    @FunctionalInterface
+    public interface Downloader {
+        void downloadTo(Path target) throws IOException;
+    }
+
+    private final Path root;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, CompletableFuture<Void>> inFlight = new HashMap<>();
+    private long cachedBytes;
+    private final AtomicLong fileSequence = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong downloadFailures = new AtomicLong();
+
+    public SourceChunkCache(Path root, long maxBytes) throws IOException {
+        this.root = root;
+        this.maxBytes = Math.max(0L, maxBytes);
+        Files.createDirectories(root);
+        purgeLeftovers(root);
+        LOGGER.info("Source chunk cache ready path={} maxBytes={}", root, this.maxBytes);
+    }
+
+    /**
+     * Returns a lease on the cached copy of {@code chunkKey}, downloading it with
+     * {@code downloader} if no copy exists and no other caller is already fetching it.
+     */
+    public Lease acquire(String chunkKey, Downloader downloader) throws IOException {
+        boolean waited = false;
+        while (true) {
+            CompletableFuture<Void> pending;
+            boolean leader = false;
+            synchronized (this) {
+                Entry entry = entries.get(chunkKey);
+                if (entry != null) {
+                    if (!waited) {
+                        hits.incrementAndGet();
+                    }
+                    entry.refCount++;
+                    return new Lease(entry);
+                }
+                pending = inFlight.get(chunkKey);
+                if (pending == null) {
+                    pending = new CompletableFuture<>();
+                    inFlight.put(chunkKey, pending);
+                    misses.incrementAndGet();
+                    leader = true;
+                } else if (!waited) {
+                    coalesced.incrementAndGet();
+                }
+            }
+            if (leader) {
+                return download(chunkKey, downloader, pending);
+            }
+            waited = true;
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for shared download chunk=" + chunkKey, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException("Shared download failed chunk=" + chunkKey, cause);
+            }
+        }
+    }
+
+    /** Drops {@code chunkKey} so the next caller re-downloads it, e.g. after FFmpeg rejected it. */
+    public void invalidate(String chunkKey) {
+        List<Path> doomed = new ArrayList<>(1);
+        synchronized (this) {
+            Entry entry = entries.remove(chunkKey);
+            if (entry == null) {
+                return;
+            }
+            cachedBytes -= entry.sizeBytes;
+            entry.removed = true;
+            if (entry.refCount == 0) {
+                doomed.add(entry.path);
+            }
+        }
+        deleteQuietly(doomed);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", cachedBytes);
+            stats.put("inFlight", inFlight.size());
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("evictions", evictions.get());
+        stats.put("downloadFailures", downloadFailures.get());
+        return stats;
+    }
+
+    private Lease download(String chunkKey, Downloader downloader, CompletableFuture<Void> pending) throws IOException {
+        Path target = root.resolve(fileSequence.incrementAndGet() + "-" + fileNameFor(chunkKey));
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        Entry entry;
+        try {
+            downloader.downloadTo(partial);
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            entry = new Entry(chunkKey, target, Files.size(target));
+        } catch (IOException | RuntimeException e) {
+            downloadFailures.incrementAndGet();
+            Files.deleteIfExists(partial);
+            synchronized (this) {
+                inFlight.remove(chunkKey);
+            }
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        List<Path> evicted;
+        synchronized (this) {
+            entry.refCount = 1;
+            entries.put(chunkKey, entry);
+            cachedBytes += entry.sizeBytes;
+            inFlight.remove(chunkKey);
+            evicted = evictOverflow();
+        }
+        pending.complete(null);
+        deleteQuietly(evicted);
+        return new Lease(entry);
+    }
+
+    private void release(Entry entry) {
+        List<Path> doomed;
+        synchronized (this) {
+            entry.refCount--;
+            if (entry.refCount > 0) {
+                return;
+            }
+            doomed = entry.removed ? List.of(entry.path) : evictOverflow();
+        }
+        deleteQuietly(doomed);
+    }
+
+    private List<Path> evictOverflow() {
+        List<Path> evicted = new ArrayList<>();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (cachedBytes > maxBytes && iterator.hasNext()) {
+            Entry candidate = iterator.next();
+            if (candidate.refCount > 0) {
+                continue;
+            }
+            iterator.remove();
+            candidate.removed = true;
+            cachedBytes -= candidate.sizeBytes;
+            evictions.incrementAndGet();
+            evicted.add(candidate.path);
+            LOGGER.debug("Evicted cached source chunk={} bytes={}", candidate.chunkKey, candidate.sizeBytes);
+        }
+        return evicted;
+    }
+
+    private static String fileNameFor(String chunkKey) {
+        return chunkKey.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static void deleteQuietly(List<Path> paths) {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to delete cached source chunk path={}", path, e);
+            }
+        }
+    }
+
+    private static void purgeLeftovers(Path root) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final String chunkKey;
+        private final Path path;
+        private final long sizeBytes;
+        private int refCount;
+        private boolean removed;
+
+        private Entry(String chunkKey, Path path, long sizeBytes) {
+            this.chunkKey = chunkKey;
+            this.path = path;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean closed;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public Path path() {
+            return entry.path;
+        }
+
+        public String chunkKey() {
+            return entry.chunkKey;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(entry);
+        }
+    }
+}
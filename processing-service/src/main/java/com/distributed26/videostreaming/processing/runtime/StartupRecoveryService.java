@@ -25,6 +25,7 @@ public final class StartupRecoveryService {
     private static final Logger LOGGER = LogManager.getLogger(StartupRecoveryService.class);
     private static final java.util.regex.Pattern EXTINF_PATTERN = java.util.regex.Pattern.compile("^#EXTINF:([^,]+),?");
     private static final long DEFAULT_QUEUED_RECOVERY_STALE_MILLIS = 300_000L;
+    private static final long PART_FILE_STALE_MILLIS = 300_000L;
 
     private final TranscodingProfile[] profiles;
     private final ProcessingRuntime runtime;
@@ -67,7 +68,9 @@ public final class StartupRecoveryService {
      *   <li>Otherwise → create a PENDING upload task so the upload workers pick it up</li>
      * </ul>
      *
-     * <p>Also cleans up stale {@code .part} files from incomplete writes.
+     * <p>Also cleans up stale {@code .part} files from incomplete writes; {@code .part}
+     * files modified within the last {@value #PART_FILE_STALE_MILLIS} ms are assumed to
+     * belong to a running encode and are left alone.
      *
      * @param storageClient object storage client for checking existing uploads
      * @param spoolRoot     root directory of the local spool (e.g. {@code /app/processing-spool})
@@ -122,9 +125,13 @@ public final class StartupRecoveryService {
 
                         try (Stream<Path> files = Files.list(profileDir)) {
                             for (Path file : files.toList()) {
-                                // Clean up incomplete .part files from interrupted writes
+                                // Clean up incomplete .part files from interrupted writes. FFmpeg
+                                // encodes straight into .part, so recently written ones are live.
                                 if (file.toString().endsWith(".part")) {
                                     try {
+                                        if (!isStalePartFile(file)) {
+                                            continue;
+                                        }
                                         Files.deleteIfExists(file);
                                         cleanedPartFiles++;
                                     } catch (IOException e) {
@@ -176,6 +183,7 @@ public final class StartupRecoveryService {
                                         sizeBytes,
                                         offsetSeconds
                                 );
+                                runtime.uploadReadySignal().signal();
                                 if (existingTask) {
                                     reassignedExisting++;
                                     LOGGER.info("Spool recovery: reassigned local upload task ownership videoId={} profile={} segment={} path={} owner={}",
@@ -261,6 +269,7 @@ public final class StartupRecoveryService {
             }
 
             int totalSegments = Math.max(runtime.findTotalSegments(videoId), chunkKeys.size());
+            refreshProgressCounters(videoId);
             Map<String, Set<Integer>> doneSegmentsByProfile = loadDoneSegmentsByProfile(videoId);
             Map<String, Set<Integer>> inFlightSegmentsByProfile = loadInFlightSegmentsByProfile(videoId);
             int republished = 0;
@@ -301,7 +310,7 @@ public final class StartupRecoveryService {
                 LOGGER.info("Startup recovery found no missing transcode tasks for videoId={}", videoId);
             }
 
-            if (totalSegments > 0 && runtime.areAllProfilesDone(videoId, totalSegments, profiles)) {
+            if (totalSegments > 0 && runtime.readyRenditions(videoId, totalSegments) != null) {
                 runtime.scheduleManifestGeneration(videoId, totalSegments);
             }
         } catch (Exception e) {
@@ -309,6 +318,17 @@ public final class StartupRecoveryService {
         }
     }
 
+    private void refreshProgressCounters(String videoId) {
+        if (runtime.transcodeStatusRepository() == null) {
+            return;
+        }
+        try {
+            runtime.transcodeStatusRepository().refreshProgress(videoId);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Startup recovery failed to refresh progress counters for videoId={}", videoId, e);
+        }
+    }
+
     private List<String> listSourceChunkKeys(String videoId, ObjectStorageClient storageClient) {
         String prefix = videoId + "/chunks/";
         List<String> chunkKeys = new ArrayList<>(storageClient.listFiles(prefix).stream()
@@ -364,6 +384,9 @@ public final class StartupRecoveryService {
                             .findSegmentNumbersByState(videoId, profile.getName(), TranscodeSegmentState.TRANSCODED));
                     inFlightSegments.addAll(runtime.transcodeStatusRepository()
                             .findSegmentNumbersByState(videoId, profile.getName(), TranscodeSegmentState.UPLOADING));
+                    // Shed renditions are backfilled by LoadSheddingPolicy once the backlog drains.
+                    inFlightSegments.addAll(runtime.transcodeStatusRepository()
+                            .findSegmentNumbersByState(videoId, profile.getName(), TranscodeSegmentState.DEFERRED));
                 }
                 if (runtime.processingUploadTaskRepository() != null) {
                     inFlightSegments.addAll(
@@ -466,6 +489,11 @@ public final class StartupRecoveryService {
         return null;
     }
 
+    private static boolean isStalePartFile(Path file) throws IOException {
+        long ageMillis = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+        return ageMillis > PART_FILE_STALE_MILLIS;
+    }
+
     private void deleteDirectoryRecursive(Path dir) {
         try (Stream<Path> walk = Files.walk(dir)) {
             walk.sorted(Comparator.reverseOrder())
@@ -0,0 +1,212 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Splits a transcode into prefetch → encode → complete stages so that only the
+ * encode stage occupies a CPU worker. Prefetch (claims, source download) and
+ * completion (spool publish, DB bookkeeping, claim release) run on their own
+ * bounded I/O pools, which lets the next chunk download while the current one
+ * encodes.
+ *
+ * <p>A permit pool of {@code stagedCapacity} caps how many jobs may sit between
+ * the start of prefetch and the end of encode, i.e. how many downloaded source
+ * chunks can pile up on local disk ahead of the encoders. Prefetch threads block
+ * on that pool; completion threads never do, so bookkeeping always drains.
+ */
+public final class TranscodePipeline implements AutoCloseable {
+    private static final Logger LOGGER = LogManager.getLogger(TranscodePipeline.class);
+
+    private final ThreadPoolExecutor prefetchExecutor;
+    private final ThreadPoolExecutor completionExecutor;
+    private final Semaphore stagedPermits;
+    private final int stagedCapacity;
+    private final AtomicInteger awaitingEncode = new AtomicInteger();
+
+    public TranscodePipeline(int ioThreads, int stagedCapacity) {
+        int threads = Math.max(1, ioThreads);
+        this.stagedCapacity = Math.max(1, stagedCapacity);
+        this.stagedPermits = new Semaphore(this.stagedCapacity, true);
+        this.prefetchExecutor = newIoPool(threads, "transcode-prefetch-", true);
+        this.completionExecutor = newIoPool(threads, "transcode-complete-", false);
+        LOGGER.info("Transcode pipeline started ioThreads={} stagedCapacity={}", threads, this.stagedCapacity);
+    }
+
+    @FunctionalInterface
+    public interface Stage<J> {
+        /** Returns {@code false} when the job has nothing left for later stages to do. */
+        boolean run(J job) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Completion<J> {
+        /** Always invoked exactly once; {@code failure} is the first stage error, if any. */
+        boolean complete(J job, Throwable failure);
+    }
+
+    /**
+     * Runs {@code prefetch} on the I/O pool, {@code encode} on {@code cpuExecutor} and
+     * {@code completion} back on the I/O pool. The returned future carries the
+     * completion stage's verdict.
+     */
+    public <J> CompletableFuture<Boolean> submit(
+            J job,
+            Executor cpuExecutor,
+            Stage<J> prefetch,
+            Stage<J> encode,
+            Completion<J> completion
+    ) {
+        return submit(job, PriorityTaskExecutor.DEFAULT_PRIORITY, cpuExecutor, prefetch, encode, completion);
+    }
+
+    /**
+     * Same as {@link #submit(Object, Executor, Stage, Stage, Completion)}, with prefetch and
+     * encode queued at {@code priority} so higher-priority jobs overtake queued ones.
+     */
+    public <J> CompletableFuture<Boolean> submit(
+            J job,
+            int priority,
+            Executor cpuExecutor,
+            Stage<J> prefetch,
+            Stage<J> encode,
+            Completion<J> completion
+    ) {
+        Executor prefetchStage = PriorityTaskExecutor.withPriority(prefetchExecutor, priority);
+        Executor encodeStage = PriorityTaskExecutor.withPriority(cpuExecutor, priority);
+        StagedPermit permit = new StagedPermit();
+        return CompletableFuture.supplyAsync(() -> {
+                    permit.acquire();
+                    try {
+                        boolean ready = invoke(prefetch, job);
+                        if (ready) {
+                            permit.markAwaitingEncode();
+                        } else {
+                            permit.release();
+                        }
+                        return ready;
+                    } catch (RuntimeException e) {
+                        permit.release();
+                        throw e;
+                    }
+                }, prefetchStage)
+                .thenApplyAsync(ready -> {
+                    if (!ready) {
+                        return false;
+                    }
+                    permit.clearAwaitingEncode();
+                    try {
+                        return invoke(encode, job);
+                    } finally {
+                        permit.release();
+                    }
+                }, encodeStage)
+                .handleAsync((encoded, failure) -> {
+                    permit.clearAwaitingEncode();
+                    permit.release();
+                    return completion.complete(job, unwrap(failure));
+                }, completionExecutor);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("stagedCapacity", stagedCapacity);
+        stats.put("staged", stagedCapacity - stagedPermits.availablePermits());
+        stats.put("awaitingEncode", awaitingEncode.get());
+        stats.put("prefetchActive", prefetchExecutor.getActiveCount());
+        stats.put("prefetchQueued", prefetchExecutor.getQueue().size());
+        stats.put("completionActive", completionExecutor.getActiveCount());
+        stats.put("completionQueued", completionExecutor.getQueue().size());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        prefetchExecutor.shutdownNow();
+        completionExecutor.shutdown();
+    }
+
+    private static <J> boolean invoke(Stage<J> stage, J job) {
+        try {
+            return stage.run(job);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        Throwable current = failure;
+        while (current instanceof CompletionException && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    private static ThreadPoolExecutor newIoPool(int threads, String namePrefix, boolean prioritized) {
+        ThreadFactory factory = new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + index.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        return new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                prioritized ? PriorityTaskExecutor.newQueue() : new LinkedBlockingQueue<>(),
+                factory
+        );
+    }
+
+    private final class StagedPermit {
+        private final AtomicBoolean held = new AtomicBoolean();
+        private final AtomicBoolean awaiting = new AtomicBoolean();
+
+        private void acquire() {
+            try {
+                stagedPermits.acquire();
+                held.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }
+
+        private void markAwaitingEncode() {
+            if (awaiting.compareAndSet(false, true)) {
+                awaitingEncode.incrementAndGet();
+            }
+        }
+
+        private void clearAwaitingEncode() {
+            if (awaiting.compareAndSet(true, false)) {
+                awaitingEncode.decrementAndGet();
+            }
+        }
+
+        private void release() {
+            if (held.compareAndSet(true, false)) {
+                stagedPermits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import com.distributed26.videostreaming.processing.db.TranscodedSegmentStatusRepository.RecordedState;
+import com.distributed26.videostreaming.processing.db.TranscodedSegmentStatusRepository.SegmentState;
+import com.distributed26.videostreaming.shared.upload.StatusEventBus;
+import com.distributed26.videostreaming.shared.upload.events.TranscodeProgressEvent;
+import com.distributed26.videostreaming.shared.upload.events.TranscodeSegmentState;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Write-behind buffer for non-DONE transcode segment states. Transitions are coalesced
+ * per (video, profile, segment) so only the latest state is written, flushed by a single
+ * background thread in one multi-row upsert every {@code flushIntervalMillis} or as soon
+ * as {@code maxBatchSize} keys are pending. Progress events go out only after the batch
+ * commits, and only for rows the database actually changed.
+ *
+ * <p>DONE is not buffered: callers write it synchronously and call {@link #discard}
+ * first so an older buffered state can never be published after it.
+ */
+public final class TranscodeStateWriter implements AutoCloseable {
+    private static final Logger LOGGER = LogManager.getLogger(TranscodeStateWriter.class);
+
+    @FunctionalInterface
+    public interface BatchStore {
+        List<RecordedState> recordStates(List<SegmentState> states);
+    }
+
+    private static final Comparator<SegmentState> KEY_ORDER = Comparator
+            .comparing(SegmentState::videoId)
+            .thenComparing(SegmentState::profile)
+            .thenComparingInt(SegmentState::segmentNumber);
+
+    private final BatchStore store;
+    private final StatusEventBus statusBus;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService flusher;
+    private final Map<Key, TranscodeSegmentState> pending = new LinkedHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public TranscodeStateWriter(BatchStore store, StatusEventBus statusBus, long flushIntervalMillis, int maxBatchSize) {
+        this.store = store;
+        this.statusBus = statusBus;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "transcode-state-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1L, flushIntervalMillis);
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        LOGGER.info("Transcode state writer started flushIntervalMillis={} maxBatchSize={}", interval, this.maxBatchSize);
+    }
+
+    /** Buffers a non-DONE state; never touches the database on the calling thread. */
+    public void enqueue(String videoId, String profile, int segmentNumber, TranscodeSegmentState state) {
+        if (state == TranscodeSegmentState.DONE) {
+            throw new IllegalArgumentException("DONE must be written synchronously");
+        }
+        int size;
+        synchronized (pending) {
+            if (pending.put(new Key(videoId, profile, segmentNumber), state) != null) {
+                coalesced.incrementAndGet();
+            }
+            size = pending.size();
+        }
+        if (size >= maxBatchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /** Drops any buffered state for the segment, e.g. because DONE is about to be written. */
+    public void discard(String videoId, String profile, int segmentNumber) {
+        synchronized (pending) {
+            pending.remove(new Key(videoId, profile, segmentNumber));
+        }
+    }
+
+    /** Writes everything buffered so far. Only the flusher thread and {@link #close} call this. */
+    void flush() {
+        flushRequested.set(false);
+        List<SegmentState> batch;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending.size());
+            pending.forEach((key, state) -> batch.add(
+                    new SegmentState(key.videoId(), key.profile(), key.segmentNumber(), state)));
+            pending.clear();
+        }
+        batch.sort(KEY_ORDER);
+        List<RecordedState> recorded;
+        try {
+            recorded = store.recordStates(batch);
+        } catch (RuntimeException e) {
+            // One bad row (e.g. a deleted video) must not lose the rest of the batch.
+            LOGGER.warn("Batched transcode state write failed size={}, retrying row by row", batch.size(), e);
+            recorded = new ArrayList<>(batch.size());
+            for (SegmentState state : batch) {
+                try {
+                    recorded.addAll(store.recordStates(List.of(state)));
+                } catch (RuntimeException rowFailure) {
+                    failures.incrementAndGet();
+                    LOGGER.warn("Failed to persist transcode state videoId={} profile={} segment={} state={}",
+                            state.videoId(), state.profile(), state.segmentNumber(), state.state(), rowFailure);
+                }
+            }
+        }
+        flushes.incrementAndGet();
+        written.addAndGet(recorded.size());
+        if (statusBus == null) {
+            return;
+        }
+        for (RecordedState state : recorded) {
+            try {
+                statusBus.publish(new TranscodeProgressEvent(
+                        state.videoId(),
+                        state.profile(),
+                        state.segmentNumber(),
+                        state.state(),
+                        state.doneSegments(),
+                        state.totalSegments()
+                ));
+            } catch (Exception e) {
+                LOGGER.warn("Failed to publish transcode progress videoId={} profile={} segment={} state={}",
+                        state.videoId(), state.profile(), state.segmentNumber(), state.state(), e);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (pending) {
+            stats.put("pending", pending.size());
+        }
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("flushes", flushes.get());
+        stats.put("written", written.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    /** Stops the flusher and writes whatever is still buffered. */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            flusher.shutdownNow();
+        }
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            LOGGER.warn("Transcode state flush failed", e);
+        }
+    }
+
+    private record Key(String videoId, String profile, int segmentNumber) {
+    }
+}
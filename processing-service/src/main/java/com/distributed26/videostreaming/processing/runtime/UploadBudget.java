@@ -0,0 +1,43 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caps the bytes that local upload workers may have in flight to object storage at once.
+ * A transfer larger than the whole budget is still admitted when nothing else is in
+ * flight, so an oversized segment can never wedge the uploaders.
+ */
+final class UploadBudget {
+    private final long maxInFlightBytes;
+    private long inFlightBytes;
+    private int inFlight;
+
+    /** {@code maxInFlightBytes <= 0} disables the byte cap. */
+    UploadBudget(long maxInFlightBytes) {
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    synchronized void acquire(long bytes) throws InterruptedException {
+        long size = Math.max(0L, bytes);
+        while (maxInFlightBytes > 0 && inFlight > 0 && inFlightBytes + size > maxInFlightBytes) {
+            wait();
+        }
+        inFlight++;
+        inFlightBytes += size;
+    }
+
+    synchronized void release(long bytes) {
+        inFlight--;
+        inFlightBytes -= Math.max(0L, bytes);
+        notifyAll();
+    }
+
+    synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight);
+        stats.put("inFlightBytes", inFlightBytes);
+        stats.put("maxInFlightBytes", maxInFlightBytes);
+        return stats;
+    }
+}
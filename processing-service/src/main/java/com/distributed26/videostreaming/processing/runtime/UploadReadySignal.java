@@ -0,0 +1,31 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process wakeup for local spool upload workers. Upload tasks are always owned by
+ * the instance that spooled them, so every producer of PENDING work lives in this
+ * JVM and a database-level NOTIFY would add nothing over a local signal.
+ *
+ * <p>Workers drain outstanding permits before each claim attempt and only then wait,
+ * so a signal raised between a failed claim and the wait is never lost. The poll
+ * interval remains as a fallback for work that appears without a signal.
+ */
+public final class UploadReadySignal {
+    private final Semaphore permits = new Semaphore(0);
+
+    /** Wakes one idle upload worker. Call after the PENDING row is committed. */
+    public void signal() {
+        permits.release();
+    }
+
+    void clear() {
+        permits.drainPermits();
+    }
+
+    /** Returns {@code true} if woken by a signal, {@code false} if the fallback timeout elapsed. */
+    boolean await(long timeoutMillis) throws InterruptedException {
+        return permits.tryAcquire(Math.max(1L, timeoutMillis), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,210 @@
+package com.distributed26.videostreaming.processing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.distributed26.videostreaming.shared.storage.ObjectStorageClient;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+class AbrManifestServiceTest {
+    private static final String VIDEO_ID = "00000000-0000-0000-0000-000000000001";
+
+    @Test
+    void writesManifestsFromRecordedDurationsWithoutTouchingSourceObjects() throws Exception {
+        InMemoryStorage storage = new InMemoryStorage();
+        AbrManifestService service = new AbrManifestService(storage, 0);
+
+        service.generateIfNeeded(VIDEO_ID, 3, Map.of(0, 4.0, 1, 4.0, 2, 2.5));
+
+        assertEquals(0, storage.lists.get(), "known durations must not list object storage");
+        assertEquals(0, storage.downloads.get(), "known durations must not read the source manifest");
+        String variant = storage.read(VIDEO_ID + "/manifest/low.m3u8");
+        assertTrue(variant.contains("#EXT-X-TARGETDURATION:4\n"));
+        assertTrue(variant.contains("#EXTINF:2.5,\noutput2.ts\n"));
+        assertTrue(variant.endsWith("#EXT-X-ENDLIST\n"));
+        assertTrue(service.hasRequiredManifests(VIDEO_ID));
+    }
+
+    @Test
+    void fallsBackToSourceManifestWhenDurationsAreIncomplete() throws Exception {
+        InMemoryStorage storage = new InMemoryStorage();
+        storage.put(VIDEO_ID + "/chunks/output.m3u8",
+                "#EXTM3U\n#EXTINF:3.0,\noutput0.ts\n#EXTINF:1.5,\noutput1.ts\n#EXT-X-ENDLIST\n");
+        AbrManifestService service = new AbrManifestService(storage, 1);
+
+        service.generateIfNeeded(VIDEO_ID, 2, Map.of(0, 3.0));
+
+        assertEquals(1, storage.downloads.get());
+        assertTrue(storage.read(VIDEO_ID + "/manifest/high.m3u8").contains("#EXTINF:1.5,\noutput1.ts\n"));
+    }
+
+    @Test
+    void progressiveManifestsListOnlyReadyRenditionsUntilFinalGenerationReplacesThem() throws Exception {
+        InMemoryStorage storage = new InMemoryStorage();
+        AbrManifestService service = new AbrManifestService(storage, 0);
+        Map<Integer, Double> durations = Map.of(0, 4.0, 1, 4.0, 2, 4.0, 3, 2.0);
+
+        assertEquals(0, service.publishProgressive(VIDEO_ID, 4, durations,
+                Map.of("low", Set.of(0, 2), "medium", Set.of(0, 1)), 2), "LOW has no contiguous prefix yet");
+        assertFalse(storage.fileExists(VIDEO_ID + "/manifest/master.m3u8"));
+
+        assertEquals(2, service.publishProgressive(VIDEO_ID, 4, durations,
+                Map.of("low", Set.of(0, 1, 2), "medium", Set.of(0, 1), "high", Set.of(1, 2)), 2));
+        String master = storage.read(VIDEO_ID + "/manifest/master.m3u8");
+        assertTrue(master.contains("low/playlist.m3u8") && master.contains("medium/playlist.m3u8"));
+        assertFalse(master.contains("high/playlist.m3u8"));
+        String low = storage.read(VIDEO_ID + "/manifest/low.m3u8");
+        assertTrue(low.contains("#EXT-X-PLAYLIST-TYPE:EVENT\n"));
+        assertTrue(low.contains("output2.ts\n"));
+        assertFalse(low.contains("#EXT-X-ENDLIST"));
+        assertFalse(service.hasRequiredManifests(VIDEO_ID));
+
+        service.generateIfNeeded(VIDEO_ID, 4, durations);
+
+        assertTrue(storage.read(VIDEO_ID + "/manifest/low.m3u8").endsWith("#EXT-X-ENDLIST\n"));
+        assertTrue(storage.read(VIDEO_ID + "/manifest/master.m3u8").contains("high/playlist.m3u8"));
+        assertTrue(service.hasRequiredManifests(VIDEO_ID));
+    }
+
+    @Test
+    void olderProgressiveSnapshotFromAnotherReplicaNeverShrinksAnEventPlaylist() throws Exception {
+        InMemoryStorage storage = new InMemoryStorage();
+        AbrManifestService newer = new AbrManifestService(storage, 0);
+        AbrManifestService older = new AbrManifestService(storage, 0);
+        Map<Integer, Double> durations = Map.of(0, 4.0, 1, 4.0, 2, 4.0, 3, 2.0);
+
+        newer.publishProgressive(VIDEO_ID, 4, durations,
+                Map.of("low", Set.of(0, 1, 2), "medium", Set.of(0, 1, 2)), 1);
+        String low = storage.read(VIDEO_ID + "/manifest/low.m3u8");
+        String master = storage.read(VIDEO_ID + "/manifest/master.m3u8");
+
+        older.publishProgressive(VIDEO_ID, 4, durations, Map.of("low", Set.of(0, 1)), 1);
+
+        assertEquals(low, storage.read(VIDEO_ID + "/manifest/low.m3u8"));
+        assertEquals(master, storage.read(VIDEO_ID + "/manifest/master.m3u8"));
+    }
+
+    @Test
+    void progressiveStateIsDroppedOnceTheVideoCompletesOrGoesIdle() throws Exception {
+        InMemoryStorage storage = new InMemoryStorage();
+        AbrManifestService service = new AbrManifestService(storage, 0);
+        Map<Integer, Double> durations = Map.of(0, 4.0, 1, 4.0);
+        Set<Integer> all = Set.of(0, 1);
+
+        service.publishProgressive(VIDEO_ID, 2, durations, Map.of("low", all), 1);
+        assertEquals(1, service.progressiveStateCount());
+        service.publishProgressive(VIDEO_ID, 2, durations, Map.of("low", all, "medium", all, "high", all), 1);
+        assertEquals(0, service.progressiveStateCount(), "a complete snapshot releases the state");
+
+        service.publishProgressive(VIDEO_ID, 2, durations, Map.of("low", all), 1);
+        service.expireProgressiveStates(System.currentTimeMillis() + 60 * 60_000L);
+        assertEquals(0, service.progressiveStateCount(), "state finished by another replica expires");
+    }
+
+    @Test
+    void shedRenditionIsLeftOutOfTheMasterUntilItIsBackfilled() throws Exception {
+        InMemoryStorage storage = new InMemoryStorage();
+        AbrManifestService service = new AbrManifestService(storage, 0);
+        Map<Integer, Double> durations = Map.of(0, 4.0, 1, 4.0);
+
+        service.generateIfNeeded(VIDEO_ID, 2, durations, List.of(TranscodingProfile.LOW, TranscodingProfile.MEDIUM));
+
+        String master = storage.read(VIDEO_ID + "/manifest/master.m3u8");
+        assertTrue(master.contains("medium/playlist.m3u8"));
+        assertFalse(master.contains("high/playlist.m3u8"));
+        assertFalse(storage.fileExists(VIDEO_ID + "/manifest/high.m3u8"));
+        assertFalse(service.hasRequiredManifests(VIDEO_ID), "the full ladder is still owed");
+        assertTrue(service.hasRequiredManifests(VIDEO_ID, List.of(TranscodingProfile.LOW, TranscodingProfile.MEDIUM)),
+                "a shed video is reconciled for the renditions it currently owes");
+
+        service.generateIfNeeded(VIDEO_ID, 2, durations);
+
+        assertTrue(storage.read(VIDEO_ID + "/manifest/master.m3u8").contains("high/playlist.m3u8"));
+        assertTrue(service.hasRequiredManifests(VIDEO_ID));
+    }
+
+    @Test
+    void writesClientReadyServedPlaylistsWithGzipTwins() throws Exception {
+        InMemoryStorage storage = new InMemoryStorage();
+        AbrManifestService service = new AbrManifestService(storage, 0, true, true);
+
+        service.generateIfNeeded(VIDEO_ID, 2, Map.of(0, 4.0, 1, 3.5));
+
+        String master = storage.read(VIDEO_ID + "/served/master.m3u8");
+        assertTrue(master.contains("\nvariant/low/playlist.m3u8\n"));
+        String low = storage.read(VIDEO_ID + "/served/low.m3u8");
+        assertTrue(low.contains("#EXTINF:3.5,\n/stream/" + VIDEO_ID + "/segment/low/output1.ts\n"));
+        assertTrue(low.endsWith("#EXT-X-ENDLIST\n"));
+        try (InputStream gzip = new GZIPInputStream(storage.downloadFile(VIDEO_ID + "/served/low.m3u8.gz"))) {
+            assertEquals(low, new String(gzip.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertTrue(storage.read(VIDEO_ID + "/manifest/low.m3u8").contains("\noutput1.ts\n"),
+                "canonical manifests keep relative segment names");
+    }
+
+    private static final class InMemoryStorage implements ObjectStorageClient {
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        private final AtomicInteger lists = new AtomicInteger();
+        private final AtomicInteger downloads = new AtomicInteger();
+
+        void put(String key, String value) {
+            objects.put(key, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String read(String key) {
+            return new String(objects.get(key), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void uploadFile(String key, InputStream data, long size) {
+            try {
+                objects.put(key, data.readAllBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public InputStream downloadFile(String key) {
+            downloads.incrementAndGet();
+            return new ByteArrayInputStream(objects.get(key));
+        }
+
+        @Override
+        public void deleteFile(String key) {
+            objects.remove(key);
+        }
+
+        @Override
+        public boolean fileExists(String key) {
+            return objects.containsKey(key);
+        }
+
+        @Override
+        public List<String> listFiles(String prefix) {
+            lists.incrementAndGet();
+            return objects.keySet().stream().filter(key -> key.startsWith(prefix)).sorted().toList();
+        }
+
+        @Override
+        public void ensureBucketExists() {
+        }
+
+        @Override
+        public String generatePresignedUrl(String key, long durationSeconds) {
+            return key;
+        }
+    }
+}
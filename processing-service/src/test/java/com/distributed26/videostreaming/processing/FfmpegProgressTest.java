@@ -0,0 +1,38 @@
+package com.distributed26.videostreaming.processing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class FfmpegProgressTest {
+
+    @Test
+    void parsesProgressBlocksAndOnlyCountsAdvancingOutputAsProgress() {
+        AtomicLong clock = new AtomicLong(0);
+        FfmpegProgress progress = new FfmpegProgress(clock::get);
+
+        clock.set(2_000_000_000L);
+        for (String line : new String[] {"frame=48", "fps=24.00", "out_time_us=2000000", "speed=N/A", "progress=continue"}) {
+            progress.accept(line);
+        }
+        assertEquals(48, progress.frame());
+        assertEquals(2.0, progress.outTimeSeconds());
+        assertEquals(0.0, progress.speed(), "N/A is ignored");
+        assertEquals(0, progress.millisSinceProgress());
+
+        clock.set(5_000_000_000L);
+        for (String line : new String[] {"frame=48", "out_time_ms=2000000", "speed=1.5x", "progress=continue"}) {
+            progress.accept(line);
+        }
+        assertEquals(1.5, progress.speed());
+        assertEquals(3_000, progress.millisSinceProgress(), "a repeated frame and output time is a stall");
+
+        progress.accept("out_time_us=2500000");
+        progress.accept("progress=end");
+        assertEquals(0, progress.millisSinceProgress());
+        assertTrue(progress.ended());
+        assertEquals(5_000L, progress.snapshot().get("elapsedMillis"));
+    }
+}
@@ -40,6 +40,7 @@ import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -632,6 +633,254 @@ class ProcessingServiceIntegrationTest {
         }
     }
 
+    @Test
+    void claimNextReadyBatchClaimsUpToLimitAndCompletesInOneStatement() throws Exception {
+        loadDatabaseConfig();
+        assumeDatabaseReachable();
+
+        String videoId = UUID.randomUUID().toString();
+        seedVideoRecord(videoId, 3, "PROCESSING");
+        ProcessingUploadTaskRepository uploadTaskRepo =
+                new ProcessingUploadTaskRepository(jdbcUrl, username, password);
+        try {
+            for (int segment = 0; segment < 3; segment++) {
+                uploadTaskRepo.upsertPending(
+                        videoId,
+                        "batch-instance",
+                        "low",
+                        segment,
+                        videoId + "/chunks/output" + segment + ".ts",
+                        videoId + "/processed/low/output" + segment + ".ts",
+                        "/tmp/spool/output" + segment + ".ts",
+                        10L,
+                        0d
+                );
+            }
+
+            List<LocalSpoolUploadTask> first = uploadTaskRepo.claimNextReadyBatch("batch-instance", 60_000, 2);
+            List<LocalSpoolUploadTask> second = uploadTaskRepo.claimNextReadyBatch("batch-instance", 60_000, 2);
+            assertEquals(2, first.size());
+            assertEquals(1, second.size(), "rows claimed by the first batch should not be handed out again");
+
+            assertEquals(2, uploadTaskRepo.deleteByIds(first.stream().map(LocalSpoolUploadTask::id).toList()));
+            assertEquals(1, uploadTaskRepo.markPendingByIds(List.of(second.get(0).id())));
+            assertEquals(Set.of(second.get(0).segmentNumber()), uploadTaskRepo.findOpenSegmentNumbers(videoId, "low"));
+            assertEquals(1, uploadTaskRepo.claimNextReadyBatch("batch-instance", 60_000, 2).size(),
+                    "requeued row should be claimable again");
+        } finally {
+            cleanupProcessingRows(videoId);
+        }
+    }
+
+    @Test
+    void touchClaimedKeepsQueuedUploadRowsFromGoingStale() throws Exception {
+        loadDatabaseConfig();
+        assumeDatabaseReachable();
+
+        String videoId = UUID.randomUUID().toString();
+        seedVideoRecord(videoId, 1, "PROCESSING");
+        ProcessingUploadTaskRepository uploadTaskRepo =
+                new ProcessingUploadTaskRepository(jdbcUrl, username, password);
+        try {
+            uploadTaskRepo.upsertPending(
+                    videoId,
+                    "touch-instance",
+                    "low",
+                    0,
+                    videoId + "/chunks/output0.ts",
+                    videoId + "/processed/low/output0.ts",
+                    "/tmp/spool/output0.ts",
+                    10L,
+                    0d
+            );
+            List<LocalSpoolUploadTask> claimed = uploadTaskRepo.claimNextReadyBatch("touch-instance", 300, 1);
+            assertEquals(1, claimed.size());
+            List<Long> ids = List.of(claimed.get(0).id());
+
+            Thread.sleep(400);
+            assertEquals(0, uploadTaskRepo.touchClaimed("other-instance", ids), "only the claimant refreshes a row");
+            assertEquals(1, uploadTaskRepo.touchClaimed("touch-instance", ids));
+            assertTrue(uploadTaskRepo.claimNextReadyBatch("touch-instance", 300, 1).isEmpty(),
+                    "a refreshed claim must not be handed out again");
+
+            Thread.sleep(400);
+            assertEquals(1, uploadTaskRepo.claimNextReadyBatch("touch-instance", 300, 1).size(),
+                    "without refreshes the claim goes stale");
+        } finally {
+            cleanupProcessingRows(videoId);
+        }
+    }
+
+    @Test
+    void recordStateCountsEachDoneOnceAndSeedsAMissingCounterFromDoneRows() throws Exception {
+        loadDatabaseConfig();
+        assumeDatabaseReachable();
+
+        String videoId = UUID.randomUUID().toString();
+        seedVideoRecord(videoId, 4, "PROCESSING");
+        TranscodedSegmentStatusRepository transcodeRepo =
+                new TranscodedSegmentStatusRepository(jdbcUrl, username, password);
+        try {
+            var first = transcodeRepo.recordState(videoId, "low", 0, TranscodeSegmentState.DONE);
+            var repeated = transcodeRepo.recordState(videoId, "low", 0, TranscodeSegmentState.DONE);
+
+            assertTrue(first.newlyDone());
+            assertEquals(1, first.doneSegments());
+            assertFalse(repeated.newlyDone(), "a redelivered DONE must not count again");
+            assertEquals(1, repeated.doneSegments());
+            assertEquals(4, repeated.totalSegments());
+
+            transcodeRepo.recordState(videoId, "low", 1, TranscodeSegmentState.DONE);
+            deleteByVideoId("video_profile_progress", videoId);
+            var seeded = transcodeRepo.recordState(videoId, "low", 2, TranscodeSegmentState.DONE);
+            assertEquals(3, seeded.doneSegments(), "a missing counter row is seeded from the DONE rows");
+
+            deleteByVideoId("video_profile_progress", videoId);
+            assertEquals(0, transcodeRepo.findProgress(videoId).doneSegments("low"));
+            transcodeRepo.refreshProgress(videoId);
+            assertEquals(3, transcodeRepo.findProgress(videoId).doneSegments("low"));
+        } finally {
+            cleanupProcessingRows(videoId);
+        }
+    }
+
+    @Test
+    void recordStatesBatchUpsertsAndLeavesDoneAndDeferredRowsAlone() throws Exception {
+        loadDatabaseConfig();
+        assumeDatabaseReachable();
+
+        String videoId = UUID.randomUUID().toString();
+        seedVideoRecord(videoId, 2, "PROCESSING");
+        TranscodedSegmentStatusRepository transcodeRepo =
+                new TranscodedSegmentStatusRepository(jdbcUrl, username, password);
+        try {
+            transcodeRepo.recordState(videoId, "low", 0, TranscodeSegmentState.DONE);
+            transcodeRepo.recordState(videoId, "high", 1, TranscodeSegmentState.DEFERRED);
+
+            var recorded = transcodeRepo.recordStates(List.of(
+                    new TranscodedSegmentStatusRepository.SegmentState(videoId, "low", 0, TranscodeSegmentState.QUEUED),
+                    new TranscodedSegmentStatusRepository.SegmentState(videoId, "low", 1, TranscodeSegmentState.TRANSCODING),
+                    new TranscodedSegmentStatusRepository.SegmentState(videoId, "high", 1, TranscodeSegmentState.TRANSCODING)
+            ));
+
+            assertEquals(1, recorded.size(), "DONE row should not be rewritten");
+            assertEquals(1, recorded.get(0).segmentNumber());
+            assertEquals(TranscodeSegmentState.TRANSCODING, recorded.get(0).state());
+            assertEquals(1, recorded.get(0).doneSegments());
+            assertEquals(2, recorded.get(0).totalSegments());
+            assertTrue(transcodeRepo.hasState(videoId, "low", 0, TranscodeSegmentState.DONE));
+            assertTrue(transcodeRepo.hasState(videoId, "high", 1, TranscodeSegmentState.DEFERRED),
+                    "a racing flush must not pull a shed rendition back to TRANSCODING");
+        } finally {
+            cleanupProcessingRows(videoId);
+        }
+    }
+
+    @Test
+    void admitReturnsVerdictAndRecordsQueuedInOneStatement() throws Exception {
+        loadDatabaseConfig();
+        assumeDatabaseReachable();
+
+        String videoId = UUID.randomUUID().toString();
+        seedVideoRecord(videoId, 4, "PROCESSING");
+        TranscodedSegmentStatusRepository transcodeRepo =
+                new TranscodedSegmentStatusRepository(jdbcUrl, username, password);
+        ProcessingUploadTaskRepository uploadTaskRepo =
+                new ProcessingUploadTaskRepository(jdbcUrl, username, password);
+        ProcessingTaskClaimRepository claimRepo =
+                new ProcessingTaskClaimRepository(jdbcUrl, username, password);
+        try {
+            transcodeRepo.recordState(videoId, "low", 0, TranscodeSegmentState.DONE);
+            uploadTaskRepo.upsertPending(videoId, "admit-instance", "low", 1,
+                    videoId + "/chunks/output1.ts", videoId + "/processed/low/output1.ts",
+                    "/tmp/spool/output1.ts", 10L, 0d);
+            claimRepo.claim(videoId, "low", 2, "TRANSCODING", "admit-instance", 60_000);
+
+            assertEquals(TranscodedSegmentStatusRepository.AdmissionVerdict.ALREADY_DONE,
+                    transcodeRepo.admit(videoId, "low", 0, 60_000).verdict());
+            assertEquals(TranscodedSegmentStatusRepository.AdmissionVerdict.UPLOAD_PENDING,
+                    transcodeRepo.admit(videoId, "low", 1, 60_000).verdict());
+            assertEquals(TranscodedSegmentStatusRepository.AdmissionVerdict.CLAIMED,
+                    transcodeRepo.admit(videoId, "low", 2, 60_000).verdict());
+            TranscodedSegmentStatusRepository.Admission admitted = transcodeRepo.admit(videoId, "low", 3, 60_000, 4.0);
+
+            assertEquals(TranscodedSegmentStatusRepository.AdmissionVerdict.ADMITTED, admitted.verdict());
+            assertEquals(1, admitted.doneSegments());
+            assertEquals(4, admitted.totalSegments());
+            assertTrue(transcodeRepo.hasState(videoId, "low", 3, TranscodeSegmentState.QUEUED));
+            assertFalse(transcodeRepo.hasState(videoId, "low", 2, TranscodeSegmentState.QUEUED),
+                    "rejected segments should not be marked QUEUED");
+            assertEquals(Map.of(3, 4.0), transcodeRepo.findSegmentDurations(videoId),
+                    "admission should record the source segment duration");
+
+            transcodeRepo.recordEncoderPreset(videoId, 3, List.of("low"), "superfast");
+            assertEquals("superfast", transcodeRepo.findEncoderPreset(videoId, "low", 3));
+            assertNull(transcodeRepo.findEncoderPreset(videoId, "low", 0));
+        } finally {
+            cleanupProcessingRows(videoId);
+        }
+    }
+
+    @Test
+    void claimDeferredRequeuesEachDeferredRenditionOnce() throws Exception {
+        loadDatabaseConfig();
+        assumeDatabaseReachable();
+
+        String videoId = UUID.randomUUID().toString();
+        seedVideoRecord(videoId, 2, "PROCESSING");
+        TranscodedSegmentStatusRepository transcodeRepo =
+                new TranscodedSegmentStatusRepository(jdbcUrl, username, password);
+        try {
+            transcodeRepo.admit(videoId, "high", 1, 60_000, 3.5);
+            assertEquals(1, transcodeRepo.recordState(videoId, "high", 1, TranscodeSegmentState.DEFERRED)
+                    .deferredSegments());
+            var settled = transcodeRepo.recordState(videoId, "high", 0, TranscodeSegmentState.DONE);
+            assertEquals(2, settled.doneSegments() + settled.deferredSegments(),
+                    "DONE and DEFERRED together settle the profile");
+
+            var claimed = transcodeRepo.claimDeferred(100).stream()
+                    .filter(segment -> segment.videoId().equals(videoId))
+                    .toList();
+
+            assertEquals(List.of(new TranscodedSegmentStatusRepository.DeferredSegment(videoId, "high", 1, 3.5)), claimed);
+            assertTrue(transcodeRepo.hasState(videoId, "high", 1, TranscodeSegmentState.QUEUED));
+            assertEquals(0, transcodeRepo.findProgress(videoId).deferredSegments("high"),
+                    "a requeued rendition no longer counts as DEFERRED");
+            assertTrue(transcodeRepo.claimDeferred(100).stream().noneMatch(segment -> segment.videoId().equals(videoId)),
+                    "a requeued rendition must not be claimed again");
+        } finally {
+            cleanupProcessingRows(videoId);
+        }
+    }
+
+    @Test
+    void heartbeatAllRefreshesOnlyClaimsHeldByThisInstance() throws Exception {
+        loadDatabaseConfig();
+        assumeDatabaseReachable();
+
+        String videoId = UUID.randomUUID().toString();
+        seedVideoRecord(videoId, 2, "PROCESSING");
+        ProcessingTaskClaimRepository claimRepo =
+                new ProcessingTaskClaimRepository(jdbcUrl, username, password);
+        try {
+            claimRepo.claim(videoId, "low", 0, "TRANSCODING", "heartbeat-instance", 60_000);
+            claimRepo.claim(videoId, "low", 1, "TRANSCODING", "other-instance", 60_000);
+            ProcessingTaskClaimRepository.ClaimKey own = new ProcessingTaskClaimRepository.ClaimKey(videoId, "low", 0);
+            ProcessingTaskClaimRepository.ClaimKey foreign = new ProcessingTaskClaimRepository.ClaimKey(videoId, "low", 1);
+            Map<ProcessingTaskClaimRepository.ClaimKey, String> stages = new java.util.LinkedHashMap<>();
+            stages.put(own, "UPLOADING");
+            stages.put(foreign, "UPLOADING");
+
+            assertEquals(1, claimRepo.heartbeatAll("heartbeat-instance", stages));
+
+            assertTrue(claimRepo.releaseAll(List.of(own, foreign)));
+            assertFalse(claimRepo.hasActiveClaim(videoId, "low", 0, 60_000));
+            assertFalse(claimRepo.hasActiveClaim(videoId, "low", 1, 60_000));
+        } finally {
+            cleanupProcessingRows(videoId);
+        }
+    }
+
     private void loadDatabaseConfig() {
         Dotenv dotenv = Dotenv.configure().directory("../").ignoreIfMissing().load();
         jdbcUrl = normalizeJdbcUrl(firstNonBlank(System.getenv("PG_URL"), dotenv.get("PG_URL")));
@@ -699,6 +948,12 @@ class ProcessingServiceIntegrationTest {
         }
     }
 
+    private void deleteByVideoId(String tableName, String videoId) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password)) {
+            deleteByVideoId(conn, tableName, videoId);
+        }
+    }
+
     private void deleteByVideoId(Connection conn, String tableName, String videoId) throws SQLException {
         try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + tableName + " WHERE video_id = ?")) {
             ps.setObject(1, UUID.fromString(videoId));
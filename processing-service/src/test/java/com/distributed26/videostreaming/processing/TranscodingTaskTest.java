@@ -0,0 +1,77 @@
+package com.distributed26.videostreaming.processing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TranscodingTaskTest {
+
+    @Test
+    void ladderCommand_splitsOneDecodeAcrossEveryProfile() {
+        String chunkKey = "video-1/chunks/output3.ts";
+        List<TranscodingTask> rungs = List.of(
+                new TranscodingTask("t1", "video-1", chunkKey, TranscodingProfile.LOW, 18d),
+                new TranscodingTask("t2", "video-1", chunkKey, TranscodingProfile.MEDIUM, 18d),
+                new TranscodingTask("t3", "video-1", chunkKey, TranscodingProfile.HIGH, 18d)
+        );
+        List<Path> outputs = List.of(Path.of("/tmp/low.ts"), Path.of("/tmp/medium.ts"), Path.of("/tmp/high.ts"));
+
+        List<String> args = TranscodingTask.buildLadderCommand(Path.of("/tmp/in.ts"), rungs, outputs).build();
+
+        assertEquals(1, Collections.frequency(args, "-i"));
+        assertTrue(args.contains(
+                "[0:v]split=3[s0][s1][s2];[s0]scale=-2:480[v0];[s1]scale=-2:720[v1];[s2]scale=-2:1080[v2]"));
+        assertEquals(3, Collections.frequency(args, "0:a?"));
+        assertEquals(3, Collections.frequency(args, "18.000"));
+        for (int i = 0; i < outputs.size(); i++) {
+            int mapIndex = args.indexOf("[v" + i + "]");
+            int outputIndex = args.indexOf(outputs.get(i).toString());
+            assertTrue(mapIndex > 0 && mapIndex < outputIndex, "output " + i + " maps its own scaled stream");
+            int maxrateIndex = args.subList(mapIndex, outputIndex).indexOf("-maxrate") + mapIndex;
+            assertEquals(String.valueOf(rungs.get(i).getProfile().getBitrate()), args.get(maxrateIndex + 1));
+        }
+    }
+
+    @Test
+    void pipedLadderCommand_declaresContainerBeforeStdinInput() {
+        String chunkKey = "video-1/chunks/output0.ts";
+        List<TranscodingTask> rungs = List.of(
+                new TranscodingTask("t1", "video-1", chunkKey, TranscodingProfile.LOW),
+                new TranscodingTask("t2", "video-1", chunkKey, TranscodingProfile.HIGH)
+        );
+
+        List<String> args = TranscodingTask.buildLadderCommand(
+                "pipe:0", rungs, List.of(Path.of("/tmp/low.ts.part"), Path.of("/tmp/high.ts.part"))).build();
+
+        int inputIndex = args.indexOf("pipe:0");
+        assertEquals("-i", args.get(inputIndex - 1));
+        assertEquals("mpegts", args.get(args.indexOf("-f") + 1));
+        assertTrue(args.indexOf("-f") < inputIndex, "input format must precede -i");
+    }
+
+    @Test
+    void spoolOutput_publishesEncodedPartFileWithoutCopy() throws Exception {
+        Path spoolRoot = Files.createTempDirectory("spool-test-");
+        try {
+            TranscodingTask task = new TranscodingTask("t1", "video-1", "video-1/chunks/output4.ts", TranscodingProfile.LOW);
+            Path partial = task.partialSpoolPath(spoolRoot);
+            Files.createDirectories(partial.getParent());
+            Files.write(partial, new byte[42]);
+
+            TranscodingTask.CompletedTranscode completed = task.spoolOutput(partial, spoolRoot);
+
+            assertEquals(task.spoolPath(spoolRoot), completed.localPath());
+            assertEquals(42, completed.sizeBytes());
+            assertFalse(Files.exists(partial));
+            assertEquals("video-1/processed/low/output4.ts", completed.outputKey());
+        } finally {
+            try (var paths = Files.walk(spoolRoot)) {
+                paths.sorted(java.util.Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
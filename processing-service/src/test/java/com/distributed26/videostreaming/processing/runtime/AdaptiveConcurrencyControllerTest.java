@@ -0,0 +1,70 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.distributed26.videostreaming.processing.runtime.AdaptiveConcurrencyController.HostSample;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyControllerTest {
+    private static final HostSample BUSY = new HostSample(0.95, 0.0);
+
+    @Test
+    void climbsWhileThroughputRisesAndReversesWhenItDrops() throws Exception {
+        List<int[]> applied = new ArrayList<>();
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(
+                (workers, threads, prefetch) -> applied.add(new int[] {workers, threads, prefetch}),
+                () -> 10, 4, 1, 8, 0, 8, 0);
+
+        window(controller, 100, BUSY);
+        assertEquals(5, controller.workers(), "first saturated window probes upwards");
+        window(controller, 200, BUSY);
+        assertEquals(6, controller.workers(), "throughput rose, keep climbing");
+        window(controller, 100, BUSY);
+        assertEquals(5, controller.workers(), "throughput fell, step back");
+
+        int[] last = applied.get(applied.size() - 1);
+        assertEquals(5, last[0]);
+        assertEquals(2, last[1], "8 CPUs split over 5 workers");
+        assertEquals(18, last[2], "prefetch was sized at 6 workers and a one-step move keeps it");
+        assertEquals(12, applied.get(0)[2], "a one-step move from 4 workers keeps the prefetch");
+    }
+
+    @Test
+    void leavesAPinnedPrefetchAlone() throws Exception {
+        List<Integer> prefetches = new ArrayList<>();
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(
+                (workers, threads, prefetch) -> prefetches.add(prefetch), () -> 10, 8, 1, 8, 20, 8, 0);
+
+        window(controller, 100, new HostSample(1.0, 0.5));
+        window(controller, 100, new HostSample(1.0, 0.5));
+        assertEquals(4, controller.workers());
+        assertEquals(List.of(20, 20), prefetches);
+        assertEquals(20, controller.stats().get("prefetch"));
+    }
+
+    @Test
+    void backsOffWhenOversubscribedAndHoldsWithoutBacklog() throws Exception {
+        AtomicInteger backlog = new AtomicInteger(0);
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(
+                (workers, threads, prefetch) -> { }, backlog::get, 8, 1, 8, 0, 8, 0);
+
+        window(controller, 100, new HostSample(0.5, 0.0));
+        assertEquals(8, controller.workers(), "no backlog means no capacity signal");
+        assertEquals("idle", controller.stats().get("lastDecision"));
+
+        window(controller, 100, new HostSample(1.0, 0.5));
+        assertEquals(6, controller.workers());
+        assertEquals("backoff", controller.stats().get("lastDecision"));
+    }
+
+    private static void window(AdaptiveConcurrencyController controller, int segments, HostSample host)
+            throws InterruptedException {
+        // Equal-length windows keep the throughput comparison proportional to segments.
+        Thread.sleep(50);
+        controller.recordEncode(segments, 1_000_000L);
+        controller.tick(host);
+    }
+}
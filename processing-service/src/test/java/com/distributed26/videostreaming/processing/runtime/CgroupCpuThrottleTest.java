@@ -0,0 +1,43 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CgroupCpuThrottleTest {
+
+    @Test
+    void reportsThrottledTimePerCpuBetweenSamples(@TempDir Path dir) throws Exception {
+        Path stat = dir.resolve("cpu.stat");
+        AtomicLong now = new AtomicLong();
+        CgroupCpuThrottle throttle = new CgroupCpuThrottle(stat, now::get);
+
+        Files.writeString(stat, "usage_usec 100\nnr_periods 10\nnr_throttled 0\nthrottled_usec 0\n");
+        assertEquals(-1.0, throttle.sample(4), "the first sample only sets the baseline");
+
+        now.addAndGet(1_000_000_000L);
+        Files.writeString(stat, "usage_usec 900\nnr_periods 20\nnr_throttled 10\nthrottled_usec 2000000\n");
+        assertEquals(0.5, throttle.sample(4), 1e-9, "2s throttled over 1s on 4 CPUs");
+
+        now.addAndGet(1_000_000_000L);
+        assertEquals(0.0, throttle.sample(4), 1e-9);
+    }
+
+    @Test
+    void readsCgroupV1NanosecondsAndReportsMissingStats(@TempDir Path dir) throws Exception {
+        Path stat = dir.resolve("cpu.stat");
+        AtomicLong now = new AtomicLong();
+        CgroupCpuThrottle throttle = new CgroupCpuThrottle(stat, now::get);
+        assertEquals(-1.0, throttle.sample(2));
+
+        Files.writeString(stat, "nr_periods 5\nnr_throttled 1\nthrottled_time 0\n");
+        throttle.sample(2);
+        now.addAndGet(1_000_000_000L);
+        Files.writeString(stat, "nr_periods 15\nnr_throttled 4\nthrottled_time 500000000\n");
+        assertEquals(0.25, throttle.sample(2), 1e-9);
+    }
+}
@@ -0,0 +1,61 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.distributed26.videostreaming.processing.db.ProcessingTaskClaimRepository.ClaimKey;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+
+class ClaimHeartbeatManagerTest {
+
+    @Test
+    void refreshesAllLiveClaimsWithOneCallPerTick() {
+        List<Map<ClaimKey, String>> calls = new CopyOnWriteArrayList<>();
+        try (ClaimHeartbeatManager manager = new ClaimHeartbeatManager(stages -> {
+            calls.add(Map.copyOf(stages));
+            return stages.size();
+        }, 60_000)) {
+            ClaimHeartbeatManager.Registration low = manager.register("v1", "low", 0, "TRANSCODING");
+            manager.register("v1", "high", 0, "UPLOADING");
+
+            manager.tick();
+            low.close();
+            manager.tick();
+
+            assertEquals(2, calls.size());
+            assertEquals(Map.of(
+                    new ClaimKey("v1", "low", 0), "TRANSCODING",
+                    new ClaimKey("v1", "high", 0), "UPLOADING"
+            ), calls.get(0));
+            assertEquals(Map.of(new ClaimKey("v1", "high", 0), "UPLOADING"), calls.get(1));
+            assertEquals(1, manager.stats().get("liveClaims"));
+        }
+    }
+
+    @Test
+    void reportsLostClaimsAndLagWhenRefreshFails() throws Exception {
+        boolean[] fail = {true};
+        try (ClaimHeartbeatManager manager = new ClaimHeartbeatManager(stages -> {
+            if (fail[0]) {
+                throw new RuntimeException("database unavailable");
+            }
+            return stages.size() - 1;
+        }, 60_000)) {
+            manager.register("v1", "low", 0, "TRANSCODING");
+            manager.register("v1", "low", 1, "TRANSCODING");
+            Thread.sleep(20);
+
+            manager.tick();
+            assertEquals(1L, manager.stats().get("failures"));
+            assertTrue(manager.maxLagMillis() >= 20, "failed refresh should leave the lag growing");
+
+            fail[0] = false;
+            manager.tick();
+            assertEquals(1L, manager.stats().get("lostClaims"));
+            assertTrue(manager.maxLagMillis() < 20);
+        }
+    }
+}
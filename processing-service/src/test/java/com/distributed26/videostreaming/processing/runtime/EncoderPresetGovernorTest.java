@@ -0,0 +1,38 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class EncoderPresetGovernorTest {
+
+    @Test
+    void stepsFasterUnderBacklogAndBackToTheSlowestPresetWhenIdle() {
+        AtomicLong shared = new AtomicLong(10_000_000);
+        List<String> applied = new ArrayList<>();
+        EncoderPresetGovernor governor = new EncoderPresetGovernor(
+                applied::add, shared::get, () -> 0, "veryfast", "faster", 300, 60, 0);
+
+        governor.tick();
+        assertEquals("veryfast", governor.preset(), "no encode rate yet, so the drain time is unknown");
+
+        governor.recordEncode(1);
+        governor.tick();
+        governor.recordEncode(1);
+        governor.tick();
+        governor.recordEncode(1);
+        governor.tick();
+        assertEquals("ultrafast", governor.preset(), "one step per tick, never past ultrafast");
+
+        shared.set(0);
+        governor.tick();
+        governor.tick();
+        governor.tick();
+        governor.tick();
+        assertEquals("faster", governor.preset(), "idle climbs back but stops at the slowest preset");
+        assertEquals(List.of("superfast", "ultrafast", "superfast", "veryfast", "faster"), applied);
+    }
+}
@@ -0,0 +1,68 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+class FairTranscodeSchedulerTest {
+
+    @Test
+    void laterSmallUploadIsInterleavedWithALongBacklog() {
+        FairTranscodeScheduler scheduler = new FairTranscodeScheduler(1, 1);
+        List<String> started = new ArrayList<>();
+        List<CompletableFuture<Boolean>> running = new ArrayList<>();
+        for (int segment = 0; segment < 6; segment++) {
+            submit(scheduler, "long", "long-" + segment, 0, 1, started, running);
+        }
+        submit(scheduler, "short", "short-0", 0, 1, started, running);
+        submit(scheduler, "short", "short-1", 0, 1, started, running);
+
+        while (started.size() < 8) {
+            running.get(started.size() - 1).complete(true);
+        }
+
+        assertEquals(List.of("long-0", "long-1", "short-0", "long-2", "short-1", "long-3", "long-4", "long-5"),
+                started);
+    }
+
+    @Test
+    void urgentSegmentsRunFirstAndTheCapYieldsOnlyToOtherVideos() {
+        FairTranscodeScheduler scheduler = new FairTranscodeScheduler(2, 1);
+        List<String> started = new ArrayList<>();
+        List<CompletableFuture<Boolean>> running = new ArrayList<>();
+        submit(scheduler, "long", "long-40", 0, 1, started, running);
+        submit(scheduler, "long", "long-41", 0, 1, started, running);
+        assertEquals(List.of("long-40", "long-41"), started, "an idle replica lifts the per-video cap");
+
+        submit(scheduler, "long", "long-42", 0, 1, started, running);
+        submit(scheduler, "new", "new-5", 0, 1, started, running);
+        submit(scheduler, "new", "new-0", 9, 1, started, running);
+        running.get(0).complete(true);
+        running.get(1).complete(true);
+
+        assertEquals("new-0", started.get(2), "leading segment of the new upload goes first");
+        assertEquals("long-42", started.get(3));
+        assertTrue((Long) scheduler.stats().get("capOverrides") >= 1L);
+    }
+
+    private static void submit(
+            FairTranscodeScheduler scheduler,
+            String videoId,
+            String name,
+            int priority,
+            int cost,
+            List<String> started,
+            List<CompletableFuture<Boolean>> running
+    ) {
+        scheduler.submit(videoId, priority, cost, () -> {
+            CompletableFuture<Boolean> execution = new CompletableFuture<>();
+            started.add(name);
+            running.add(execution);
+            return execution;
+        });
+    }
+}
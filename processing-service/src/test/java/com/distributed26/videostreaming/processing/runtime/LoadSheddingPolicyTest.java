@@ -0,0 +1,46 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class LoadSheddingPolicyTest {
+
+    @Test
+    void shedsBetweenTheThresholdsAndBackfillsOnlyOnceDrained() {
+        AtomicLong shared = new AtomicLong(0);
+        List<Integer> backfills = new ArrayList<>();
+        LoadSheddingPolicy policy = new LoadSheddingPolicy(
+                List.of("HIGH", " "), shared::get, () -> 5, batch -> {
+                    backfills.add(batch);
+                    return 2;
+                }, 100, 20, 4, 0);
+
+        shared.set(200);
+        policy.tick();
+        assertTrue(policy.isShedding());
+        assertTrue(policy.shouldDefer("high"));
+        assertFalse(policy.shouldDefer("medium"));
+
+        shared.set(50);
+        policy.tick();
+        assertTrue(policy.isShedding(), "stays on until the backlog reaches the exit threshold");
+
+        shared.set(10);
+        policy.tick();
+        assertFalse(policy.isShedding());
+        assertFalse(policy.shouldDefer("high"));
+        assertEquals(List.of(4), backfills, "backfill starts on the tick that stops shedding");
+
+        shared.set(50);
+        policy.tick();
+        assertEquals(List.of(4), backfills, "no backfill above the exit threshold");
+        assertEquals(1L, policy.stats().get("deferred"));
+        assertEquals(2L, policy.stats().get("backfilled"));
+    }
+}
@@ -0,0 +1,47 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class PriorityTaskExecutorTest {
+
+    @Test
+    void queuedWorkRunsHighestPriorityFirstAndFifoWithinAPriority() throws Exception {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1, 0L, TimeUnit.MILLISECONDS, PriorityTaskExecutor.newQueue());
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        try {
+            executor.execute(() -> awaitQuietly(release));
+            CompletableFuture<?> midVideo = CompletableFuture.runAsync(
+                    () -> order.add("high-40"), PriorityTaskExecutor.withPriority(executor, 0));
+            CompletableFuture<?> firstLow = CompletableFuture.runAsync(
+                    () -> order.add("low-0"), PriorityTaskExecutor.withPriority(executor, 9));
+            CompletableFuture<?> secondLow = CompletableFuture.runAsync(
+                    () -> order.add("low-1"), PriorityTaskExecutor.withPriority(executor, 9));
+            CompletableFuture<?> untagged = CompletableFuture.runAsync(() -> order.add("untagged"), executor);
+
+            release.countDown();
+            CompletableFuture.allOf(midVideo, firstLow, secondLow, untagged).get(5, TimeUnit.SECONDS);
+
+            assertEquals(List.of("low-0", "low-1", "high-40", "untagged"), order);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
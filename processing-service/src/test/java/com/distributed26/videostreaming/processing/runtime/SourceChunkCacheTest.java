@@ -0,0 +1,102 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SourceChunkCacheTest {
+    private Path root;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        root = Files.createTempDirectory("chunk-cache-test-");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (var paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void concurrentAcquiresShareOneDownload() throws Exception {
+        SourceChunkCache cache = new SourceChunkCache(root, 1024);
+        AtomicInteger downloads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<?>[] futures = new Future<?>[3];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(() -> {
+                    try (SourceChunkCache.Lease lease = cache.acquire("v1/chunks/output0.ts", target -> {
+                        downloads.incrementAndGet();
+                        awaitQuietly(release);
+                        Files.write(target, new byte[100]);
+                    })) {
+                        assertEquals(100, Files.size(lease.path()));
+                    }
+                    return null;
+                });
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, downloads.get());
+        assertEquals(1L, cache.stats().get("misses"));
+        assertEquals(2L, (Long) cache.stats().get("hits") + (Long) cache.stats().get("coalesced"),
+                "every follower counts once, either as a hit or as a coalesced wait");
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedUnleasedChunks() throws Exception {
+        SourceChunkCache cache = new SourceChunkCache(root, 250);
+        Path first;
+        try (SourceChunkCache.Lease lease = cache.acquire("v1/chunks/output0.ts", target -> Files.write(target, new byte[100]))) {
+            first = lease.path();
+        }
+        cache.acquire("v1/chunks/output1.ts", target -> Files.write(target, new byte[100])).close();
+        cache.acquire("v1/chunks/output0.ts", target -> Files.write(target, new byte[100])).close();
+        cache.acquire("v1/chunks/output2.ts", target -> Files.write(target, new byte[100])).close();
+
+        assertEquals(1L, cache.stats().get("evictions"));
+        assertEquals(200L, cache.stats().get("bytes"));
+        assertTrue(Files.exists(first), "recently used chunk should survive eviction");
+        assertEquals(1L, cache.stats().get("hits"));
+
+        AtomicInteger downloads = new AtomicInteger();
+        cache.acquire("v1/chunks/output1.ts", target -> {
+            downloads.incrementAndGet();
+            Files.write(target, new byte[100]);
+        }).close();
+        assertEquals(1, downloads.get(), "evicted chunk should be fetched again");
+        assertFalse(cache.stats().get("bytes").equals(0L));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
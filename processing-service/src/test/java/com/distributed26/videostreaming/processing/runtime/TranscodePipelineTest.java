@@ -0,0 +1,79 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class TranscodePipelineTest {
+
+    @Test
+    void prefetchesNextJobWhileEncoderIsBusy() throws Exception {
+        ExecutorService cpu = Executors.newSingleThreadExecutor(r -> new Thread(r, "cpu-worker"));
+        CountDownLatch firstEncodeStarted = new CountDownLatch(1);
+        CountDownLatch secondPrefetched = new CountDownLatch(1);
+        List<String> encodeThreads = new CopyOnWriteArrayList<>();
+        try (TranscodePipeline pipeline = new TranscodePipeline(2, 2)) {
+            var first = pipeline.submit("a", cpu,
+                    job -> true,
+                    job -> {
+                        encodeThreads.add(Thread.currentThread().getName());
+                        firstEncodeStarted.countDown();
+                        return secondPrefetched.await(5, TimeUnit.SECONDS);
+                    },
+                    (job, failure) -> failure == null);
+            assertTrue(firstEncodeStarted.await(5, TimeUnit.SECONDS));
+            var second = pipeline.submit("b", cpu,
+                    job -> {
+                        secondPrefetched.countDown();
+                        return true;
+                    },
+                    job -> {
+                        encodeThreads.add(Thread.currentThread().getName());
+                        return true;
+                    },
+                    (job, failure) -> failure == null);
+
+            assertTrue(first.get(5, TimeUnit.SECONDS), "first encode should observe the overlapping prefetch");
+            assertTrue(second.get(5, TimeUnit.SECONDS));
+            assertEquals(List.of("cpu-worker", "cpu-worker"), encodeThreads);
+            assertEquals(0, pipeline.stats().get("staged"));
+        } finally {
+            cpu.shutdownNow();
+        }
+    }
+
+    @Test
+    void prefetchFailureSkipsEncodeAndReachesCompletion() throws Exception {
+        ExecutorService cpu = Executors.newSingleThreadExecutor();
+        AtomicReference<Throwable> seen = new AtomicReference<>();
+        try (TranscodePipeline pipeline = new TranscodePipeline(1, 1)) {
+            boolean result = pipeline.submit("a", cpu,
+                    job -> {
+                        throw new IOException("download failed");
+                    },
+                    job -> {
+                        throw new AssertionError("encode must not run");
+                    },
+                    (job, failure) -> {
+                        seen.set(failure);
+                        return false;
+                    }).get(5, TimeUnit.SECONDS);
+
+            assertFalse(result);
+            assertTrue(seen.get() instanceof IOException);
+            assertEquals(0, pipeline.stats().get("staged"));
+        } finally {
+            cpu.shutdownNow();
+        }
+    }
+}
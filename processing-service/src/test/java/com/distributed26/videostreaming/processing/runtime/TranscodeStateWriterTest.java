@@ -0,0 +1,93 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.distributed26.videostreaming.processing.db.TranscodedSegmentStatusRepository.RecordedState;
+import com.distributed26.videostreaming.processing.db.TranscodedSegmentStatusRepository.SegmentState;
+import com.distributed26.videostreaming.shared.upload.JobEventListener;
+import com.distributed26.videostreaming.shared.upload.StatusEventBus;
+import com.distributed26.videostreaming.shared.upload.events.JobEvent;
+import com.distributed26.videostreaming.shared.upload.events.TranscodeProgressEvent;
+import com.distributed26.videostreaming.shared.upload.events.TranscodeSegmentState;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+
+class TranscodeStateWriterTest {
+    private static final String VIDEO_ID = "00000000-0000-0000-0000-000000000001";
+
+    @Test
+    void coalescesPerSegmentAndPublishesAfterTheBatchIsWritten() {
+        List<List<SegmentState>> batches = new CopyOnWriteArrayList<>();
+        RecordingStatusBus bus = new RecordingStatusBus();
+        TranscodeStateWriter writer = new TranscodeStateWriter(states -> {
+            batches.add(states);
+            return states.stream().map(TranscodeStateWriterTest::recorded).toList();
+        }, bus, 60_000, 100);
+        try {
+            writer.enqueue(VIDEO_ID, "low", 1, TranscodeSegmentState.QUEUED);
+            writer.enqueue(VIDEO_ID, "low", 0, TranscodeSegmentState.QUEUED);
+            writer.enqueue(VIDEO_ID, "low", 1, TranscodeSegmentState.TRANSCODING);
+            writer.enqueue(VIDEO_ID, "high", 0, TranscodeSegmentState.QUEUED);
+            writer.discard(VIDEO_ID, "high", 0);
+            assertEquals(0, bus.events.size(), "nothing is published before the batch commits");
+
+            writer.flush();
+
+            assertEquals(1, batches.size());
+            assertEquals(List.of(
+                    new SegmentState(VIDEO_ID, "low", 0, TranscodeSegmentState.QUEUED),
+                    new SegmentState(VIDEO_ID, "low", 1, TranscodeSegmentState.TRANSCODING)
+            ), batches.get(0), "latest state per segment, in key order");
+            assertEquals(List.of(TranscodeSegmentState.QUEUED, TranscodeSegmentState.TRANSCODING),
+                    bus.events.stream().map(TranscodeProgressEvent::getState).toList());
+            assertEquals(1L, writer.stats().get("coalesced"));
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    void failedBatchFallsBackToRowByRowWrites() {
+        RecordingStatusBus bus = new RecordingStatusBus();
+        TranscodeStateWriter writer = new TranscodeStateWriter(states -> {
+            if (states.size() > 1 || states.get(0).segmentNumber() == 1) {
+                throw new RuntimeException("foreign key violation");
+            }
+            return states.stream().map(TranscodeStateWriterTest::recorded).toList();
+        }, bus, 60_000, 100);
+        try {
+            writer.enqueue(VIDEO_ID, "low", 0, TranscodeSegmentState.QUEUED);
+            writer.enqueue(VIDEO_ID, "low", 1, TranscodeSegmentState.QUEUED);
+
+            writer.flush();
+
+            assertEquals(1, bus.events.size());
+            assertEquals(0, bus.events.get(0).getSegmentNumber());
+            assertEquals(1L, writer.stats().get("failures"));
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static RecordedState recorded(SegmentState state) {
+        return new RecordedState(state.videoId(), state.profile(), state.segmentNumber(), state.state(), 0, 2);
+    }
+
+    private static final class RecordingStatusBus implements StatusEventBus {
+        private final List<TranscodeProgressEvent> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void publish(JobEvent event) {
+            events.add((TranscodeProgressEvent) event);
+        }
+
+        @Override
+        public void subscribe(String jobId, JobEventListener listener) {
+        }
+
+        @Override
+        public void unsubscribe(String jobId, JobEventListener listener) {
+        }
+    }
+}
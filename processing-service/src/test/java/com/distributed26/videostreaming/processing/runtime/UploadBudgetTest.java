@@ -0,0 +1,44 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class UploadBudgetTest {
+
+    @Test
+    void blocksTransfersThatWouldExceedTheByteBudget() throws Exception {
+        UploadBudget budget = new UploadBudget(100);
+        budget.acquire(60);
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                budget.acquire(60);
+                admitted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+
+        assertFalse(admitted.await(100, TimeUnit.MILLISECONDS), "second transfer should wait for budget");
+        budget.release(60);
+        assertTrue(admitted.await(5, TimeUnit.SECONDS));
+        assertEquals(60L, budget.stats().get("inFlightBytes"));
+        waiter.join();
+    }
+
+    @Test
+    void admitsOversizedTransferWhenNothingElseIsInFlight() throws Exception {
+        UploadBudget budget = new UploadBudget(100);
+        budget.acquire(500);
+
+        assertEquals(1, budget.stats().get("inFlight"));
+        budget.release(500);
+        assertEquals(0L, budget.stats().get("inFlightBytes"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.distributed26.videostreaming.processing.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class UploadReadySignalTest {
+
+    @Test
+    void signalWakesWaitingWorkerBeforeFallbackPoll() throws Exception {
+        UploadReadySignal signal = new UploadReadySignal();
+        CompletableFuture<Boolean> woken = CompletableFuture.supplyAsync(() -> {
+            try {
+                return signal.await(30_000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+
+        Thread.sleep(50);
+        signal.signal();
+
+        assertTrue(woken.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void signalRaisedBeforeWaitIsNotLostButClearDropsStaleOnes() throws Exception {
+        UploadReadySignal signal = new UploadReadySignal();
+        signal.signal();
+        assertTrue(signal.await(10L), "signal raised after the claim attempt must still wake the worker");
+
+        signal.signal();
+        signal.signal();
+        signal.clear();
+        assertFalse(signal.await(10L), "signals seen before a claim attempt are covered by that claim");
+    }
+}
@@ -0,0 +1,73 @@
+package com.distributed26.videostreaming.shared.db;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import java.util.function.Function;
+
+/**
+ * Sizing and health settings for the per-process Postgres connection pool.
+ * Every repository in a service borrows from the same pool, so the maximum size
+ * caps the connections one replica can hold against {@code max_connections}.
+ */
+record ConnectionPoolConfig(
+        int maxSize,
+        int minIdle,
+        long connectionTimeoutMillis,
+        long validationTimeoutMillis,
+        long idleTimeoutMillis,
+        long maxLifetimeMillis,
+        long keepaliveMillis,
+        long leakDetectionMillis
+) {
+    static ConnectionPoolConfig fromEnv() {
+        Dotenv dotenv = Dotenv.configure().directory("./").ignoreIfMissing().load();
+        return from(key -> getEnvOrDotenv(dotenv, key));
+    }
+
+    /** Parses the settings from {@code lookup}; missing or malformed values fall back to the defaults. */
+    static ConnectionPoolConfig from(Function<String, String> lookup) {
+        int maxSize = Math.max(1, getInt(lookup, "PG_POOL_MAX_SIZE", 10));
+        return new ConnectionPoolConfig(
+                maxSize,
+                Math.min(maxSize, Math.max(0, getInt(lookup, "PG_POOL_MIN_IDLE", 2))),
+                getLong(lookup, "PG_POOL_CONNECTION_TIMEOUT_MILLIS", 10_000L),
+                getLong(lookup, "PG_POOL_VALIDATION_TIMEOUT_MILLIS", 3_000L),
+                getLong(lookup, "PG_POOL_IDLE_TIMEOUT_MILLIS", 60_000L),
+                getLong(lookup, "PG_POOL_MAX_LIFETIME_MILLIS", 1_800_000L),
+                getLong(lookup, "PG_POOL_KEEPALIVE_MILLIS", 120_000L),
+                getLong(lookup, "PG_POOL_LEAK_DETECTION_MILLIS", 30_000L)
+        );
+    }
+
+    private static int getInt(Function<String, String> lookup, String key, int defaultValue) {
+        String value = lookup.apply(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ignored) {
+            return defaultValue;
+        }
+    }
+
+    private static long getLong(Function<String, String> lookup, String key, long defaultValue) {
+        String value = lookup.apply(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ignored) {
+            return defaultValue;
+        }
+    }
+
+    private static String getEnvOrDotenv(Dotenv dotenv, String key) {
+        String envVal = System.getenv(key);
+        if (envVal != null && !envVal.isBlank()) {
+            return envVal;
+        }
+        String dotenvVal = dotenv.get(key);
+        return dotenvVal == null || dotenvVal.isBlank() ? null : dotenvVal;
+    }
+}
@@ -0,0 +1,11 @@
+package com.distributed26.videostreaming.shared.db;
+
+public record ConnectionPoolStats(
+        String poolName,
+        int activeConnections,
+        int idleConnections,
+        int totalConnections,
+        int threadsAwaitingConnection,
+        int maxSize
+) {
+}
@@ -0,0 +1,92 @@
+package com.distributed26.videostreaming.shared.db;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Process-wide registry of pooled Postgres {@link DataSource}s.
+ *
+ * <p>Repositories built for the same JDBC URL and user share one bounded pool, so a
+ * heartbeat, claim or upsert borrows an open connection instead of paying a TCP and
+ * auth handshake per query. Pools start lazily: creating one opens no connection
+ * until the first checkout (though some repositories run DDL from their constructors,
+ * which is that first checkout). Services close every pool from their shutdown hook
+ * via {@link #closeAll}. Connections are validated with
+ * {@code Connection.isValid} on checkout and kept alive while idle, and a connection
+ * held longer than {@code PG_POOL_LEAK_DETECTION_MILLIS} is logged with the stack
+ * trace of the borrower.</p>
+ */
+public final class ConnectionPools {
+    private static final Logger LOGGER = LogManager.getLogger(ConnectionPools.class);
+    private static final Map<String, HikariDataSource> POOLS = new ConcurrentHashMap<>();
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private ConnectionPools() {
+    }
+
+    public static DataSource forUrl(String jdbcUrl, String username, String password) {
+        String key = jdbcUrl + "|" + username;
+        return POOLS.computeIfAbsent(key, ignored -> createPool(jdbcUrl, username, password, ConnectionPoolConfig.fromEnv()));
+    }
+
+    public static List<ConnectionPoolStats> stats() {
+        List<ConnectionPoolStats> stats = new ArrayList<>();
+        for (HikariDataSource pool : POOLS.values()) {
+            HikariPoolMXBean mxBean = pool.getHikariPoolMXBean();
+            if (mxBean == null) {
+                stats.add(new ConnectionPoolStats(pool.getPoolName(), 0, 0, 0, 0, pool.getMaximumPoolSize()));
+                continue;
+            }
+            stats.add(new ConnectionPoolStats(
+                    pool.getPoolName(),
+                    mxBean.getActiveConnections(),
+                    mxBean.getIdleConnections(),
+                    mxBean.getTotalConnections(),
+                    mxBean.getThreadsAwaitingConnection(),
+                    pool.getMaximumPoolSize()
+            ));
+        }
+        return stats;
+    }
+
+    public static void closeAll() {
+        for (HikariDataSource pool : POOLS.values()) {
+            pool.close();
+        }
+        POOLS.clear();
+    }
+
+    private static HikariDataSource createPool(
+            String jdbcUrl,
+            String username,
+            String password,
+            ConnectionPoolConfig config
+    ) {
+        // The no-arg constructor defers pool start-up (and driver lookup) until the first getConnection().
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("pg-pool-" + POOL_COUNTER.incrementAndGet());
+        dataSource.setJdbcUrl(jdbcUrl);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(config.maxSize());
+        dataSource.setMinimumIdle(config.minIdle());
+        dataSource.setConnectionTimeout(config.connectionTimeoutMillis());
+        dataSource.setValidationTimeout(config.validationTimeoutMillis());
+        dataSource.setIdleTimeout(config.idleTimeoutMillis());
+        dataSource.setMaxLifetime(config.maxLifetimeMillis());
+        dataSource.setKeepaliveTime(config.keepaliveMillis());
+        dataSource.setLeakDetectionThreshold(config.leakDetectionMillis());
+        dataSource.setInitializationFailTimeout(-1);
+        LOGGER.info("Created Postgres connection pool name={} url={} maxSize={} minIdle={} leakDetectionMillis={}",
+                dataSource.getPoolName(), jdbcUrl, config.maxSize(), config.minIdle(), config.leakDetectionMillis());
+        return dataSource;
+    }
+}
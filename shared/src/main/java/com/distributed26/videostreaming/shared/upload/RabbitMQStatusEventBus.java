@@ -65,9 +65,13 @@ public class RabbitMQStatusEventBus implements StatusEventBus {
 
         try {
             if (consumeStatus) {
-                this.consumerQueueName = declareConsumerQueue(config);
-                channel.queueBind(this.consumerQueueName, this.exchange, config.statusBinding());
-                startConsumer(this.consumerQueueName);
+                if (shouldConsumeFailuresOnly()) {
+                    this.consumerQueueName = null;
+                } else {
+                    this.consumerQueueName = declareConsumerQueue(config);
+                    channel.queueBind(this.consumerQueueName, this.exchange, config.statusBinding());
+                    startConsumer(this.consumerQueueName);
+                }
                 this.failureQueueName = declareFailureQueue(config);
                 if (this.failureQueueName != null) {
                     channel.queueBind(this.failureQueueName, this.exchange, config.failureBinding());
@@ -180,7 +184,8 @@ public class RabbitMQStatusEventBus implements StatusEventBus {
         String mode = System.getenv("SERVICE_MODE");
         return "status".equalsIgnoreCase(mode)
                 || "processing".equalsIgnoreCase(mode)
-                || "upload".equalsIgnoreCase(mode);
+                || "upload".equalsIgnoreCase(mode)
+                || "streaming".equalsIgnoreCase(mode);
     }
 
     private static boolean shouldUseReplicaStatusQueue() {
@@ -191,7 +196,14 @@ public class RabbitMQStatusEventBus implements StatusEventBus {
 
     private static boolean shouldUseReplicaFailureQueue() {
         String mode = System.getenv("SERVICE_MODE");
-        return "processing".equalsIgnoreCase(mode);
+        return "processing".equalsIgnoreCase(mode)
+                || "streaming".equalsIgnoreCase(mode);
+    }
+
+    /** Streaming only reacts to failures, so it skips the per-segment progress traffic. */
+    private static boolean shouldConsumeFailuresOnly() {
+        String mode = System.getenv("SERVICE_MODE");
+        return "streaming".equalsIgnoreCase(mode);
     }
 
     @Override
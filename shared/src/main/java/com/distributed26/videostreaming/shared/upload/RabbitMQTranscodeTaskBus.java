@@ -3,6 +3,7 @@ package com.distributed26.videostreaming.shared.upload;
 import com.distributed26.videostreaming.shared.upload.events.TranscodeTaskEvent;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.BuiltinExchangeType;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
@@ -10,18 +11,42 @@ import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.DeliverCallback;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * RabbitMQ-backed bus for distributed transcoding work. This queue path is the
  * shared work scheduler across processing containers.
+ *
+ * <p>With {@code RABBITMQ_TASK_PARTITIONS > 0} tasks are routed to
+ * {@code <taskQueue>.p<i>} by chunk, so every profile of a chunk lands in the same
+ * partition. Each replica consumes every partition with a consumer priority drawn
+ * from a rendezvous hash of its instance id and the partition: the broker delivers
+ * a partition's tasks to the replica with the highest score and spills to the next
+ * one only while that replica's prefetch window is full. Replicas joining or
+ * leaving rebalance implicitly because the broker re-ranks the live consumers.
+ *
+ * <p>Every task consumer runs on its own channel and {@code RABBITMQ_TASK_PREFETCH} is
+ * split between them, so a replica holds at most {@code max(prefetch, partitions + 1)}
+ * unacked tasks however many queues it drains. Quorum queues reject channel-global QoS,
+ * which is why the window is split rather than shared. A changed prefetch reaches each
+ * consumer only once it holds no unacked tasks, so while a resize is pending the bound
+ * is the larger of the old and new windows.
+ *
+ * <p>Tasks carry their {@link TranscodeTaskPriority} as the AMQP message priority, but
+ * the deployed RabbitMQ 3.x quorum queues ignore it and deliver in FIFO order. Leading
+ * segments are put first only by the processing worker's local priority queue, over the
+ * tasks already inside this replica's prefetch window.
  */
 public class RabbitMQTranscodeTaskBus implements TranscodeTaskBus {
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
@@ -31,8 +56,12 @@ public class RabbitMQTranscodeTaskBus implements TranscodeTaskBus {
     private final Channel channel;
     private final String exchange;
     private final String taskBinding;
-    private final int taskPrefetch;
+    private volatile int taskPrefetch;
+    private final int taskPartitions;
+    private final String instanceId;
+    private final List<String> taskQueues = new ArrayList<>();
     private final List<TranscodeTaskListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<TaskConsumer> consumers = new CopyOnWriteArrayList<>();
 
     public static RabbitMQTranscodeTaskBus fromEnv() {
         return new RabbitMQTranscodeTaskBus(RabbitMQBusConfig.fromEnv(), shouldConsumeTasks());
@@ -42,6 +71,12 @@ public class RabbitMQTranscodeTaskBus implements TranscodeTaskBus {
         this.exchange = Objects.requireNonNull(config.exchange(), "exchange is null");
         this.taskBinding = Objects.requireNonNull(config.taskBinding(), "taskBinding is null");
         this.taskPrefetch = resolveTaskPrefetch();
+        this.taskPartitions = resolveTaskPartitions();
+        this.instanceId = resolveInstanceId();
+        taskQueues.add(config.taskQueue());
+        for (int partition = 0; partition < taskPartitions; partition++) {
+            taskQueues.add(partitionQueue(config.taskQueue(), partition));
+        }
         RabbitMQResources resources = RabbitMQRetrySupport.retry(
                 "initialize RabbitMQ transcode task bus",
                 () -> {
@@ -53,6 +88,12 @@ public class RabbitMQTranscodeTaskBus implements TranscodeTaskBus {
                         channel.queueDeclare(config.taskQueue(), true, false, false,
                                 Map.of("x-queue-type", "quorum"));
                         channel.queueBind(config.taskQueue(), this.exchange, config.taskBinding());
+                        for (int partition = 0; partition < taskPartitions; partition++) {
+                            String partitionQueue = partitionQueue(config.taskQueue(), partition);
+                            channel.queueDeclare(partitionQueue, true, false, false,
+                                    Map.of("x-queue-type", "quorum"));
+                            channel.queueBind(partitionQueue, this.exchange, partitionRoutingKey(partition));
+                        }
                         return new RabbitMQResources(connection, channel);
                     } catch (IOException | RuntimeException e) {
                         try {
@@ -69,8 +110,19 @@ public class RabbitMQTranscodeTaskBus implements TranscodeTaskBus {
 
         try {
             if (consumeTasks) {
-                channel.basicQos(taskPrefetch);
-                startConsumer(config.taskQueue());
+                int consumerCount = taskPartitions + 1;
+                // The unpartitioned queue is always drained so tasks published before
+                // partitioning was enabled are not stranded.
+                startConsumer(config.taskQueue(), Map.of(), consumerPrefetch(taskPrefetch, consumerCount, 0));
+                for (int partition = 0; partition < taskPartitions; partition++) {
+                    startConsumer(partitionQueue(config.taskQueue(), partition),
+                            Map.<String, Object>of("x-priority", affinityPriority(instanceId, partition)),
+                            consumerPrefetch(taskPrefetch, consumerCount, partition + 1));
+                }
+                if (taskPartitions > 0) {
+                    LOGGER.info("Consuming {} transcode task partition(s) with chunk affinity instanceId={}",
+                            taskPartitions, instanceId);
+                }
             } else {
                 LOGGER.info("Transcode task consumer disabled for {}", this.exchange);
             }
@@ -85,7 +137,7 @@ public class RabbitMQTranscodeTaskBus implements TranscodeTaskBus {
         try {
             byte[] body = OBJECT_MAPPER.writeValueAsBytes(event);
             synchronized (channel) {
-                channel.basicPublish(exchange, taskBinding, null, body);
+                channel.basicPublish(exchange, routingKeyFor(event), propertiesFor(event), body);
             }
         } catch (IOException e) {
             throw new RuntimeException("Failed to publish transcode task", e);
@@ -98,35 +150,133 @@ public class RabbitMQTranscodeTaskBus implements TranscodeTaskBus {
         listeners.add(listener);
     }
 
-    private void startConsumer(String queueName) throws IOException {
-        DeliverCallback callback = (consumerTag, delivery) -> {
+    /**
+     * Records the new split on every task consumer. Each applies it the next time it holds
+     * no unacked tasks, which may be right away or when its last task settles.
+     */
+    @Override
+    public synchronized void setPrefetch(int prefetch) {
+        int next = Math.max(1, prefetch);
+        if (next == taskPrefetch || consumers.isEmpty()) {
+            return;
+        }
+        for (int index = 0; index < consumers.size(); index++) {
+            TaskConsumer consumer = consumers.get(index);
+            consumer.targetPrefetch = consumerPrefetch(next, consumers.size(), index);
+            consumer.resizeWhenIdle();
+        }
+        LOGGER.info("Transcode task prefetch changed from {} to {} consumers={}", taskPrefetch, next, consumers.size());
+        taskPrefetch = next;
+    }
+
+    /** Ready messages in the task queue and its partitions, from passive declares. */
+    @Override
+    public long pendingTasks() {
+        long pending = 0;
+        synchronized (channel) {
+            try {
+                for (String queue : taskQueues) {
+                    pending += channel.queueDeclarePassive(queue).getMessageCount();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read transcode task queue depth", e);
+            }
+        }
+        return pending;
+    }
+
+    /** Informational on RabbitMQ 3.x quorum queues; consumers reorder by it locally. */
+    private static AMQP.BasicProperties propertiesFor(TranscodeTaskEvent event) {
+        return new AMQP.BasicProperties.Builder()
+                .priority(TranscodeTaskPriority.of(event))
+                .build();
+    }
+
+    private String routingKeyFor(TranscodeTaskEvent event) {
+        if (taskPartitions <= 0) {
+            return taskBinding;
+        }
+        return partitionRoutingKey(partitionFor(event, taskPartitions));
+    }
+
+    private String partitionRoutingKey(int partition) {
+        return taskBinding + ".p" + partition;
+    }
+
+    private static String partitionQueue(String taskQueue, int partition) {
+        return taskQueue + ".p" + partition;
+    }
+
+    /** All profiles of one chunk share a partition; the chunk key is identical across them. */
+    static int partitionFor(TranscodeTaskEvent event, int partitions) {
+        return Math.floorMod(mix(event.getChunkKey().hashCode()), partitions);
+    }
+
+    /**
+     * Rendezvous weight of {@code instanceId} for {@code partition}, used as the consumer
+     * priority. Every replica computes its own weight independently; the highest live
+     * weight owns the partition, and removing a replica only moves the partitions it owned.
+     */
+    static int affinityPriority(String instanceId, int partition) {
+        int weight = mix((instanceId + "#" + partition).hashCode()) & Integer.MAX_VALUE;
+        return Math.max(1, weight);
+    }
+
+    private static int mix(int hash) {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Share of the replica's prefetch window for consumer {@code index}; the shares add up
+     * to {@code total}, and every consumer gets at least one so no queue is starved.
+     */
+    static int consumerPrefetch(int total, int consumers, int index) {
+        int share = total / consumers + (index < total % consumers ? 1 : 0);
+        return Math.max(1, share);
+    }
+
+    private void startConsumer(String queueName, Map<String, Object> consumerArgs, int prefetch) throws IOException {
+        TaskConsumer consumer = new TaskConsumer(
+                queueName, consumerArgs, prefetch, connection::createChannel, this::deliverCallback);
+        consumer.register(connection.createChannel());
+        consumers.add(consumer);
+    }
+
+    private DeliverCallback deliverCallback(TaskConsumer consumer, Channel consumerChannel) {
+        return (consumerTag, delivery) -> {
+            consumer.delivered(consumerChannel);
             long deliveryTag = delivery.getEnvelope().getDeliveryTag();
             String json = new String(delivery.getBody(), StandardCharsets.UTF_8);
             try {
                 JsonNode node = OBJECT_MAPPER.readTree(json);
                 if (!"transcode_task".equals(node.path("type").asText())) {
-                    acknowledge(deliveryTag);
+                    acknowledge(consumer, consumerChannel, deliveryTag);
                     return;
                 }
                 TranscodeTaskEvent taskEvent = RabbitMQTranscodeTaskCodec.toEvent(node);
                 invokeListeners(taskEvent).whenComplete((handled, error) -> {
                     if (error != null) {
                         LOGGER.warn("Failed to process transcode task payload={}", json, error);
-                        rejectAndRequeue(deliveryTag);
+                        rejectAndRequeue(consumer, consumerChannel, deliveryTag);
                         return;
                     }
                     if (Boolean.TRUE.equals(handled)) {
-                        acknowledge(deliveryTag);
+                        acknowledge(consumer, consumerChannel, deliveryTag);
                     } else {
-                        rejectAndRequeue(deliveryTag);
+                        rejectAndRequeue(consumer, consumerChannel, deliveryTag);
                     }
                 });
             } catch (Exception e) {
                 LOGGER.warn("Failed to consume transcode task payload={}", json, e);
-                rejectAndRequeue(deliveryTag);
+                rejectAndRequeue(consumer, consumerChannel, deliveryTag);
             }
         };
-        channel.basicConsume(queueName, false, callback, consumerTag -> {});
     }
 
     private CompletionStage<Boolean> invokeListeners(TranscodeTaskEvent taskEvent) {
@@ -146,23 +296,27 @@ public class RabbitMQTranscodeTaskBus implements TranscodeTaskBus {
         return stage;
     }
 
-    private void acknowledge(long deliveryTag) {
-        synchronized (channel) {
-            try {
+    private static void acknowledge(TaskConsumer consumer, Channel channel, long deliveryTag) {
+        try {
+            synchronized (channel) {
                 channel.basicAck(deliveryTag, false);
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to ack transcode task deliveryTag=" + deliveryTag, e);
             }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to ack transcode task deliveryTag=" + deliveryTag, e);
+        } finally {
+            consumer.settled(channel);
         }
     }
 
-    private void rejectAndRequeue(long deliveryTag) {
-        synchronized (channel) {
-            try {
+    private static void rejectAndRequeue(TaskConsumer consumer, Channel channel, long deliveryTag) {
+        try {
+            synchronized (channel) {
                 channel.basicNack(deliveryTag, false, true);
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to nack transcode task deliveryTag=" + deliveryTag, e);
             }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to nack transcode task deliveryTag=" + deliveryTag, e);
+        } finally {
+            consumer.settled(channel);
         }
     }
 
@@ -176,16 +330,150 @@ public class RabbitMQTranscodeTaskBus implements TranscodeTaskBus {
         if (prefetch != null && !prefetch.isBlank()) {
             return Math.max(1, Integer.parseInt(prefetch));
         }
+        // Three tasks per worker: two fill the transcode pipeline's staging (one encoding,
+        // one prefetched) and the third gives the per-video fair scheduler a mix of videos
+        // to choose from.
         String poolSize = System.getenv("WORKER_POOL_SIZE");
         if (poolSize != null && !poolSize.isBlank()) {
-            return Math.max(1, Integer.parseInt(poolSize));
+            return Math.max(1, Integer.parseInt(poolSize)) * 3;
         }
         // Match the processing-service default: 3/4 of available CPUs
-        return Math.max(1, (Runtime.getRuntime().availableProcessors() * 3) / 4);
+        return Math.max(1, (Runtime.getRuntime().availableProcessors() * 3) / 4) * 3;
+    }
+
+    private static int resolveTaskPartitions() {
+        String partitions = System.getenv("RABBITMQ_TASK_PARTITIONS");
+        if (partitions == null || partitions.isBlank()) {
+            return 0;
+        }
+        return Math.max(0, Integer.parseInt(partitions.trim()));
+    }
+
+    private static String resolveInstanceId() {
+        String hostname = System.getenv("HOSTNAME");
+        if (hostname != null && !hostname.isBlank()) {
+            return hostname;
+        }
+        return java.util.UUID.randomUUID().toString();
+    }
+
+    @FunctionalInterface
+    interface ChannelOpener {
+        Channel open() throws IOException;
+    }
+
+    /**
+     * One task queue subscription on its own channel. Per-consumer QoS only binds consumers
+     * registered after it is set, and deliveries held across a re-registration count against
+     * no window, so a new prefetch is applied only while nothing is unacked on the channel.
+     */
+    static final class TaskConsumer {
+        private final String queueName;
+        private final Map<String, Object> consumerArgs;
+        private final ChannelOpener opener;
+        private final BiFunction<TaskConsumer, Channel, DeliverCallback> callbacks;
+        private final AtomicInteger unacked = new AtomicInteger();
+        volatile int targetPrefetch;
+        private volatile Channel channel;
+        private String consumerTag;
+        private int prefetch;
+
+        TaskConsumer(
+                String queueName,
+                Map<String, Object> consumerArgs,
+                int prefetch,
+                ChannelOpener opener,
+                BiFunction<TaskConsumer, Channel, DeliverCallback> callbacks
+        ) {
+            this.queueName = queueName;
+            this.consumerArgs = consumerArgs;
+            this.targetPrefetch = prefetch;
+            this.opener = opener;
+            this.callbacks = callbacks;
+        }
+
+        synchronized void register(Channel next) throws IOException {
+            if (next != channel) {
+                unacked.set(0);
+                channel = next;
+            }
+            int share = targetPrefetch;
+            next.basicQos(share);
+            consumerTag = next.basicConsume(queueName, false, consumerArgs, callbacks.apply(this, next), tag -> {});
+            prefetch = share;
+        }
+
+        void delivered(Channel from) {
+            if (from == channel) {
+                unacked.incrementAndGet();
+            }
+        }
+
+        void settled(Channel from) {
+            if (from == channel && unacked.decrementAndGet() <= 0) {
+                resizeWhenIdle();
+            }
+        }
+
+        synchronized void resizeWhenIdle() {
+            if (consumerTag != null && prefetch == targetPrefetch || unacked.get() > 0) {
+                return;
+            }
+            try {
+                if (consumerTag != null) {
+                    channel.basicCancel(consumerTag);
+                    consumerTag = null;
+                    if (unacked.get() > 0) {
+                        // A delivery raced the cancel; subscribe again once it settles.
+                        return;
+                    }
+                }
+                register(channel);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Failed to apply transcode task prefetch={} queue={}", targetPrefetch, queueName, e);
+                restore();
+            }
+        }
+
+        /** Keeps the queue consumed after a failed resize, on a fresh channel if this one closed. */
+        private void restore() {
+            try {
+                if (!channel.isOpen()) {
+                    register(opener.open());
+                } else if (consumerTag == null) {
+                    register(channel);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Transcode task queue={} has no consumer on this replica until the next resize",
+                        queueName, e);
+            }
+        }
+
+        synchronized boolean subscribed() {
+            return consumerTag != null && channel.isOpen();
+        }
+
+        synchronized int prefetch() {
+            return prefetch;
+        }
+
+        int unacked() {
+            return unacked.get();
+        }
+
+        void close() throws IOException, TimeoutException {
+            Channel current = channel;
+            if (current != null && current.isOpen()) {
+                current.close();
+            }
+        }
     }
 
     @Override
     public void close() throws Exception {
+        for (TaskConsumer consumer : consumers) {
+            consumer.close();
+        }
         if (channel != null && channel.isOpen()) {
             channel.close();
         }
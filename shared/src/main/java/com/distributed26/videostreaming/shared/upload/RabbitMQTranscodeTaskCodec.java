@@ -13,6 +13,7 @@ final class RabbitMQTranscodeTaskCodec {
         String profile = node.path("profile").asText("");
         int segmentNumber = node.path("segmentNumber").asInt(-1);
         double outputTsOffsetSeconds = node.path("outputTsOffsetSeconds").asDouble(-1d);
-        return new TranscodeTaskEvent(jobId, chunkKey, profile, segmentNumber, outputTsOffsetSeconds);
+        double segmentDurationSeconds = node.path("segmentDurationSeconds").asDouble(-1d);
+        return new TranscodeTaskEvent(jobId, chunkKey, profile, segmentNumber, outputTsOffsetSeconds, segmentDurationSeconds);
     }
 }
@@ -11,6 +11,17 @@ public interface TranscodeTaskBus extends AutoCloseable {
 
     void subscribe(TranscodeTaskListener listener);
 
+    /**
+     * Changes how many unacknowledged tasks this consumer may hold. Buses without a
+     * delivery window ignore it.
+     */
+    default void setPrefetch(int prefetch) {}
+
+    /** Tasks waiting in the shared queue across all replicas, or {@code -1} when unknown. */
+    default long pendingTasks() {
+        return -1;
+    }
+
     @Override
     default void close() throws Exception {}
 }
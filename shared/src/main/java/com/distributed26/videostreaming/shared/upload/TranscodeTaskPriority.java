@@ -0,0 +1,63 @@
+package com.distributed26.videostreaming.shared.upload;
+
+import com.distributed26.videostreaming.shared.upload.events.TranscodeTaskEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Scheduling priority of a transcode task, {@code 0} (lowest) to {@link #MAX} (highest).
+ * The first {@code TRANSCODE_PRIORITY_LEADING_SEGMENTS} segments of every video run ahead
+ * of mid-video work so a new upload becomes playable quickly, and within each band
+ * cheaper profiles run first. LOW (and ladder tasks, which include LOW) for a leading
+ * segment always gets {@link #MAX}.
+ *
+ * <p>Leading segments map to 5..9 and the rest to 0..4.
+ */
+public final class TranscodeTaskPriority {
+    private static final Logger LOGGER = LogManager.getLogger(TranscodeTaskPriority.class);
+    public static final int MAX = 9;
+    private static final int DEFAULT_LEADING_SEGMENTS = 3;
+    private static final int LEADING_SEGMENTS = resolveLeadingSegments();
+
+    private TranscodeTaskPriority() {
+    }
+
+    public static int of(TranscodeTaskEvent event) {
+        return of(event.getProfile(), event.getSegmentNumber());
+    }
+
+    public static int of(String profile, int segmentNumber) {
+        return of(profile, segmentNumber, LEADING_SEGMENTS);
+    }
+
+    static int of(String profile, int segmentNumber, int leadingSegments) {
+        int band = segmentNumber >= 0 && segmentNumber < leadingSegments ? MAX : 4;
+        return Math.max(0, band - 2 * profileCost(profile));
+    }
+
+    private static int profileCost(String profile) {
+        if (profile == null) {
+            return 1;
+        }
+        if ("low".equalsIgnoreCase(profile) || TranscodeTaskEvent.LADDER_PROFILE.equalsIgnoreCase(profile)) {
+            return 0;
+        }
+        if ("high".equalsIgnoreCase(profile)) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static int resolveLeadingSegments() {
+        String value = System.getenv("TRANSCODE_PRIORITY_LEADING_SEGMENTS");
+        if (value == null || value.isBlank()) {
+            return DEFAULT_LEADING_SEGMENTS;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid TRANSCODE_PRIORITY_LEADING_SEGMENTS={}, using default={}", value, DEFAULT_LEADING_SEGMENTS);
+            return DEFAULT_LEADING_SEGMENTS;
+        }
+    }
+}
@@ -6,5 +6,7 @@ public enum TranscodeSegmentState {
     TRANSCODED,
     UPLOADING,
     DONE,
-    FAILED
+    FAILED,
+    /** Skipped by load shedding; backfilled once the cluster has spare capacity. */
+    DEFERRED
 }
@@ -3,22 +3,39 @@ package com.distributed26.videostreaming.shared.upload.events;
 import java.util.Objects;
 
 public class TranscodeTaskEvent extends JobEvent {
+    /** Profile name for a task that transcodes one chunk to every rendition in a single FFmpeg pass. */
+    public static final String LADDER_PROFILE = "ladder";
+
     private final String type = "transcode_task";
     private final String chunkKey;
     private final String profile;
     private final int segmentNumber;
     private final double outputTsOffsetSeconds;
+    private final double segmentDurationSeconds;
 
     public TranscodeTaskEvent(String jobId, String chunkKey, String profile, int segmentNumber) {
         this(jobId, chunkKey, profile, segmentNumber, -1d);
     }
 
     public TranscodeTaskEvent(String jobId, String chunkKey, String profile, int segmentNumber, double outputTsOffsetSeconds) {
+        this(jobId, chunkKey, profile, segmentNumber, outputTsOffsetSeconds, -1d);
+    }
+
+    /** {@code segmentDurationSeconds} is the source EXTINF duration, or a negative value when unknown. */
+    public TranscodeTaskEvent(
+            String jobId,
+            String chunkKey,
+            String profile,
+            int segmentNumber,
+            double outputTsOffsetSeconds,
+            double segmentDurationSeconds
+    ) {
         super(jobId, buildTaskId(profile, segmentNumber));
         this.chunkKey = Objects.requireNonNull(chunkKey, "chunkKey is null");
         this.profile = Objects.requireNonNull(profile, "profile is null");
         this.segmentNumber = segmentNumber;
         this.outputTsOffsetSeconds = outputTsOffsetSeconds;
+        this.segmentDurationSeconds = segmentDurationSeconds;
     }
 
     public String getType() {
@@ -41,6 +58,10 @@ public class TranscodeTaskEvent extends JobEvent {
         return outputTsOffsetSeconds;
     }
 
+    public double getSegmentDurationSeconds() {
+        return segmentDurationSeconds;
+    }
+
     private static String buildTaskId(String profile, int segmentNumber) {
         return "transcode:" + Objects.requireNonNull(profile, "profile is null") + ":" + segmentNumber;
     }
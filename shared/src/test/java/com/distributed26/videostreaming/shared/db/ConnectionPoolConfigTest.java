@@ -0,0 +1,41 @@
+package com.distributed26.videostreaming.shared.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ConnectionPoolConfigTest {
+
+    @Test
+    void usesDefaultsWhenNothingIsSet() {
+        ConnectionPoolConfig config = ConnectionPoolConfig.from(key -> null);
+
+        assertEquals(10, config.maxSize());
+        assertEquals(2, config.minIdle());
+        assertEquals(10_000L, config.connectionTimeoutMillis());
+        assertEquals(3_000L, config.validationTimeoutMillis());
+        assertEquals(60_000L, config.idleTimeoutMillis());
+        assertEquals(1_800_000L, config.maxLifetimeMillis());
+        assertEquals(120_000L, config.keepaliveMillis());
+        assertEquals(30_000L, config.leakDetectionMillis());
+    }
+
+    @Test
+    void parsesOverridesAndFallsBackOnMalformedValues() {
+        Map<String, String> env = Map.of(
+                "PG_POOL_MAX_SIZE", " 4 ",
+                "PG_POOL_MIN_IDLE", "9",
+                "PG_POOL_CONNECTION_TIMEOUT_MILLIS", "2500",
+                "PG_POOL_LEAK_DETECTION_MILLIS", "soon");
+
+        ConnectionPoolConfig config = ConnectionPoolConfig.from(env::get);
+
+        assertEquals(4, config.maxSize());
+        assertEquals(4, config.minIdle(), "minIdle is capped at maxSize");
+        assertEquals(2_500L, config.connectionTimeoutMillis());
+        assertEquals(30_000L, config.leakDetectionMillis());
+        assertEquals(1, ConnectionPoolConfig.from(Map.of("PG_POOL_MAX_SIZE", "0")::get).maxSize());
+        assertEquals(0, ConnectionPoolConfig.from(Map.of("PG_POOL_MIN_IDLE", "-3")::get).minIdle());
+    }
+}
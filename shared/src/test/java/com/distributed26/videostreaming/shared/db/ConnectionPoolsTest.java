@@ -0,0 +1,45 @@
+package com.distributed26.videostreaming.shared.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zaxxer.hikari.HikariDataSource;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ConnectionPoolsTest {
+    private static final String URL = "jdbc:postgresql://localhost:5432/pools_test";
+
+    @AfterEach
+    void tearDown() {
+        ConnectionPools.closeAll();
+    }
+
+    @Test
+    void sharesOnePoolPerUrlAndUser() {
+        DataSource first = ConnectionPools.forUrl(URL, "app", "secret");
+        DataSource again = ConnectionPools.forUrl(URL, "app", "other-secret");
+        DataSource otherUser = ConnectionPools.forUrl(URL, "admin", "secret");
+        DataSource otherUrl = ConnectionPools.forUrl(URL + "_2", "app", "secret");
+
+        assertSame(first, again, "the password is not part of the key");
+        assertNotSame(first, otherUser);
+        assertNotSame(first, otherUrl);
+        assertEquals(3, ConnectionPools.stats().size());
+    }
+
+    @Test
+    void closeAllClosesEveryPoolAndLaterLookupsStartFresh() {
+        HikariDataSource first = (HikariDataSource) ConnectionPools.forUrl(URL, "app", "secret");
+
+        ConnectionPools.closeAll();
+
+        assertTrue(first.isClosed());
+        assertTrue(ConnectionPools.stats().isEmpty());
+        DataSource replacement = ConnectionPools.forUrl(URL, "app", "secret");
+        assertNotSame(first, replacement);
+    }
+}
@@ -0,0 +1,148 @@
+package com.distributed26.videostreaming.shared.upload;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.distributed26.videostreaming.shared.upload.events.TranscodeTaskEvent;
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class RabbitMQTranscodeTaskBusTest {
+
+    @Test
+    void everyProfileOfAChunkRoutesToOnePartition() {
+        Set<Integer> partitions = new HashSet<>();
+        for (String profile : List.of("low", "medium", "high")) {
+            partitions.add(RabbitMQTranscodeTaskBus.partitionFor(
+                    new TranscodeTaskEvent("video-1", "video-1/chunks/output7.ts", profile, 7), 8));
+        }
+        assertEquals(1, partitions.size());
+
+        Set<Integer> spread = new HashSet<>();
+        for (int segment = 0; segment < 64; segment++) {
+            spread.add(RabbitMQTranscodeTaskBus.partitionFor(
+                    new TranscodeTaskEvent("video-1", "video-1/chunks/output" + segment + ".ts", "low", segment), 8));
+        }
+        assertTrue(spread.size() > 4, "chunks of one video should spread across partitions");
+    }
+
+    @Test
+    void removingAReplicaOnlyMovesThePartitionsItOwned() {
+        List<String> replicas = List.of("processing-0", "processing-1", "processing-2");
+        int partitions = 16;
+        for (int partition = 0; partition < partitions; partition++) {
+            String before = owner(replicas, partition);
+            String after = owner(List.of("processing-0", "processing-1"), partition);
+            if (!"processing-2".equals(before)) {
+                assertEquals(before, after, "partition " + partition + " should keep its owner");
+            }
+            assertTrue(RabbitMQTranscodeTaskBus.affinityPriority(before, partition) > 0);
+        }
+    }
+
+    @Test
+    void prefetchWindowIsSplitAcrossConsumers() {
+        int total = 0;
+        for (int index = 0; index < 5; index++) {
+            total += RabbitMQTranscodeTaskBus.consumerPrefetch(18, 5, index);
+        }
+        assertEquals(18, total);
+        assertEquals(4, RabbitMQTranscodeTaskBus.consumerPrefetch(18, 5, 0));
+        assertEquals(3, RabbitMQTranscodeTaskBus.consumerPrefetch(18, 5, 4));
+        assertEquals(1, RabbitMQTranscodeTaskBus.consumerPrefetch(2, 5, 4), "every consumer keeps a window");
+    }
+
+    @Test
+    void prefetchResizeWaitsUntilTheConsumerHoldsNoUnackedTasks() throws Exception {
+        FakeChannel fake = new FakeChannel();
+        RabbitMQTranscodeTaskBus.TaskConsumer consumer = new RabbitMQTranscodeTaskBus.TaskConsumer(
+                "tasks", Map.of(), 4, () -> { throw new IOException("unused"); }, (c, ch) -> (tag, delivery) -> {});
+        consumer.register(fake.channel);
+        consumer.delivered(fake.channel);
+        consumer.delivered(fake.channel);
+
+        consumer.targetPrefetch = 2;
+        consumer.resizeWhenIdle();
+        assertEquals(List.of("basicQos:4", "basicConsume"), fake.calls, "held deliveries keep the old window");
+
+        consumer.settled(fake.channel);
+        assertEquals(4, consumer.prefetch());
+        consumer.settled(fake.channel);
+        assertEquals(List.of("basicQos:4", "basicConsume", "basicCancel", "basicQos:2", "basicConsume"), fake.calls);
+        assertEquals(2, consumer.prefetch());
+        assertEquals(0, consumer.unacked());
+    }
+
+    @Test
+    void failedResizeResubscribesOnAFreshChannel() throws Exception {
+        FakeChannel broken = new FakeChannel();
+        FakeChannel fresh = new FakeChannel();
+        RabbitMQTranscodeTaskBus.TaskConsumer consumer = new RabbitMQTranscodeTaskBus.TaskConsumer(
+                "tasks", Map.of(), 4, () -> fresh.channel, (c, ch) -> (tag, delivery) -> {});
+        consumer.register(broken.channel);
+
+        broken.failConsume = true;
+        consumer.targetPrefetch = 6;
+        consumer.resizeWhenIdle();
+
+        assertTrue(consumer.subscribed(), "the queue must not be left without a consumer");
+        assertEquals(List.of("basicQos:6", "basicConsume"), fresh.calls);
+        assertEquals(6, consumer.prefetch());
+    }
+
+    private static final class FakeChannel {
+        private final List<String> calls = new ArrayList<>();
+        private boolean open = true;
+        private boolean failConsume;
+        private final Channel channel = (Channel) Proxy.newProxyInstance(
+                Channel.class.getClassLoader(), new Class<?>[] {Channel.class}, this::invoke);
+
+        private Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "isOpen":
+                    return open;
+                case "basicQos":
+                    calls.add("basicQos:" + args[0]);
+                    return null;
+                case "basicCancel":
+                    calls.add("basicCancel");
+                    return null;
+                case "basicConsume":
+                    if (failConsume) {
+                        // A failed basic.consume closes the channel.
+                        open = false;
+                        throw new IOException("consume refused");
+                    }
+                    calls.add("basicConsume");
+                    return "tag-" + calls.size();
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static String owner(List<String> replicas, int partition) {
+        String best = null;
+        int bestPriority = -1;
+        for (String replica : replicas) {
+            int priority = RabbitMQTranscodeTaskBus.affinityPriority(replica, partition);
+            if (priority > bestPriority) {
+                best = replica;
+                bestPriority = priority;
+            }
+        }
+        return best;
+    }
+}
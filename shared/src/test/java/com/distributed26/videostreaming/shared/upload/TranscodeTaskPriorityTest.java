@@ -0,0 +1,20 @@
+package com.distributed26.videostreaming.shared.upload;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TranscodeTaskPriorityTest {
+
+    @Test
+    void leadingLowSegmentsOutrankEverythingAndStayInTheQuorumHighBand() {
+        assertEquals(TranscodeTaskPriority.MAX, TranscodeTaskPriority.of("low", 0, 3));
+        assertEquals(TranscodeTaskPriority.MAX, TranscodeTaskPriority.of("ladder", 2, 3));
+        assertTrue(TranscodeTaskPriority.of("medium", 0, 3) > TranscodeTaskPriority.of("high", 0, 3));
+        assertTrue(TranscodeTaskPriority.of("high", 2, 3) > 4, "every leading segment is high priority");
+        assertTrue(TranscodeTaskPriority.of("low", 3, 3) <= 4);
+        assertTrue(TranscodeTaskPriority.of("low", 40, 3) > TranscodeTaskPriority.of("high", 40, 3));
+        assertEquals(0, TranscodeTaskPriority.of("high", 40, 3));
+    }
+}
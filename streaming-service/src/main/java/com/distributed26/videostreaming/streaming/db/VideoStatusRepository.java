@@ -1,8 +1,8 @@
 package com.distributed26.videostreaming.streaming.db;
 
+import com.distributed26.videostreaming.shared.db.ConnectionPools;
 import io.github.cdimascio.dotenv.Dotenv;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -10,19 +10,20 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import javax.sql.DataSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 public class VideoStatusRepository {
     private static final Logger logger = LogManager.getLogger(VideoStatusRepository.class);
-    private final String jdbcUrl;
-    private final String username;
-    private final String password;
+    private final DataSource dataSource;
 
     public VideoStatusRepository(String jdbcUrl, String username, String password) {
-        this.jdbcUrl = jdbcUrl;
-        this.username = username;
-        this.password = password;
+        this(ConnectionPools.forUrl(jdbcUrl, username, password));
+    }
+
+    public VideoStatusRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     public static VideoStatusRepository fromEnv() {
@@ -42,7 +43,7 @@ public class VideoStatusRepository {
 
     public Optional<String> findStatusByVideoId(String videoId) {
         String sql = "SELECT status FROM video_upload WHERE video_id = ?";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             try (ResultSet rs = ps.executeQuery()) {
@@ -58,7 +59,7 @@ public class VideoStatusRepository {
 
     public List<String> findCompletedVideoIds(int limit) {
         String sql = "SELECT video_id FROM video_upload WHERE status = 'COMPLETED' ORDER BY id DESC LIMIT ?";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, limit);
             try (ResultSet rs = ps.executeQuery()) {
@@ -75,7 +76,7 @@ public class VideoStatusRepository {
 
     public List<ReadyVideoRecord> findCompletedVideos(int limit) {
         String sql = "SELECT video_id, video_name FROM video_upload WHERE status = 'COMPLETED' ORDER BY id DESC LIMIT ?";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, limit);
             try (ResultSet rs = ps.executeQuery()) {
@@ -95,7 +96,7 @@ public class VideoStatusRepository {
 
     public void updateStatus(String videoId, String status) {
         String sql = "UPDATE video_upload SET status = ? WHERE video_id = ?";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, status);
             ps.setObject(2, UUID.fromString(videoId));
@@ -111,7 +112,7 @@ public class VideoStatusRepository {
         }
         String placeholders = String.join(", ", java.util.Collections.nCopies(statuses.size(), "?"));
         String sql = "SELECT video_id FROM video_upload WHERE status IN (" + placeholders + ") ORDER BY id ASC LIMIT ?";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             int index = 1;
             for (String status : statuses) {
@@ -132,7 +133,7 @@ public class VideoStatusRepository {
 
     public boolean deleteByVideoId(String videoId) {
         String sql = "DELETE FROM video_upload WHERE video_id = ?";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             return ps.executeUpdate() > 0;
@@ -0,0 +1,56 @@
+package com.distributed26.videostreaming.streaming.service;
+
+/**
+ * A single inclusive byte range resolved against a resource size, parsed from an HTTP
+ * {@code Range} header. Only one range is honoured; multi-range and malformed headers
+ * are treated as absent, which RFC 9110 allows, and the full body is served instead.
+ */
+public record ByteRange(long start, long end) {
+    /** Returned when the header is well-formed but no byte of it lies inside the resource. */
+    public static final ByteRange UNSATISFIABLE = new ByteRange(-1L, -1L);
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    public String contentRange(long size) {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+
+    /** Returns the range, {@link #UNSATISFIABLE}, or {@code null} when the full body should be sent. */
+    public static ByteRange parse(String header, long size) {
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0 || spec.indexOf(',') >= 0) {
+            return null;
+        }
+        String first = spec.substring(0, dash).trim();
+        String last = spec.substring(dash + 1).trim();
+        try {
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(Math.max(0L, size - suffix), size - 1);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= size) {
+                return UNSATISFIABLE;
+            }
+            return new ByteRange(start, Math.min(end, size - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.distributed26.videostreaming.streaming.service;
+
+import com.distributed26.videostreaming.streaming.service.PlaylistService.Playlist;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * LRU cache of rewritten master and variant playlists, bounded by total body bytes. Each
+ * entry carries its own lifetime (the playlist's max-age), and concurrent misses for one
+ * key share a single load from object storage.
+ */
+final class PlaylistCache {
+    private final long maxBytes;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, CompletableFuture<Playlist>> inFlight = new HashMap<>();
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    PlaylistCache(long maxBytes) {
+        this(maxBytes, System::nanoTime);
+    }
+
+    PlaylistCache(long maxBytes, LongSupplier nanoClock) {
+        this.maxBytes = Math.max(0L, maxBytes);
+        this.nanoClock = nanoClock;
+    }
+
+    Playlist get(String key, Loader loader) throws IOException {
+        CompletableFuture<Playlist> pending;
+        boolean leader = false;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && nanoClock.getAsLong() < entry.expiresAtNanos()) {
+                hits.incrementAndGet();
+                return entry.playlist();
+            }
+            pending = inFlight.get(key);
+            if (pending == null) {
+                pending = new CompletableFuture<>();
+                inFlight.put(key, pending);
+                misses.incrementAndGet();
+                leader = true;
+            } else {
+                coalesced.incrementAndGet();
+            }
+        }
+        if (!leader) {
+            return await(key, pending);
+        }
+        Playlist playlist;
+        try {
+            playlist = loader.load();
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                inFlight.remove(key);
+            }
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            if (inFlight.remove(key, pending)) {
+                put(key, playlist);
+            }
+        }
+        pending.complete(playlist);
+        return playlist;
+    }
+
+    synchronized void invalidatePrefix(String prefix) {
+        inFlight.keySet().removeIf(key -> key.startsWith(prefix));
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix)) {
+                bytes -= entry.getValue().playlist().weight();
+                iterator.remove();
+            }
+        }
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", bytes);
+            stats.put("inFlight", inFlight.size());
+        }
+        stats.put("maxBytes", maxBytes);
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get() + coalesced.get();
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("hitRatio", lookups == 0 ? 0.0 : Math.round(hitCount * 1000.0 / lookups) / 1000.0);
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    private void put(String key, Playlist playlist) {
+        long size = playlist.weight();
+        if (playlist.maxAgeSeconds() <= 0 || size > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key,
+                new Entry(playlist, nanoClock.getAsLong() + playlist.maxAgeSeconds() * 1_000_000_000L));
+        if (previous != null) {
+            bytes -= previous.playlist().weight();
+        }
+        bytes += size;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Entry candidate = iterator.next();
+            iterator.remove();
+            bytes -= candidate.playlist().weight();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static Playlist await(String key, CompletableFuture<Playlist> pending) throws IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for shared playlist load key=" + key, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("Shared playlist load failed key=" + key, cause);
+        }
+    }
+
+    @FunctionalInterface
+    interface Loader {
+        Playlist load() throws IOException;
+    }
+
+    private record Entry(Playlist playlist, long expiresAtNanos) {
+    }
+}
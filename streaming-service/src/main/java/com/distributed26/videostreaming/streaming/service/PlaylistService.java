@@ -1,11 +1,18 @@
 package com.distributed26.videostreaming.streaming.service;
 
 import com.distributed26.videostreaming.shared.storage.ObjectStorageClient;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPInputStream;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
 public final class PlaylistService {
@@ -16,47 +23,99 @@ public final class PlaylistService {
      */
     private static final long SEGMENT_PRESIGNED_URL_TTL_SECONDS = 10;
 
-    private static final long PLAYLIST_CACHE_TTL_MILLIS = 30 * 60 * 1000L;
+    /**
+     * Cache lifetime of an ended (VOD) variant playlist. Its segment list never changes
+     * again, so clients and the in-process cache may keep it for a long time.
+     */
+    public static final int ENDED_PLAYLIST_MAX_AGE_SECONDS = 30 * 60;
+
+    /**
+     * Cache lifetime of a completed video's master playlist. It is kept short because
+     * a rendition deferred under load is added to the master when it is backfilled.
+     */
+    public static final int COMPLETED_MASTER_MAX_AGE_SECONDS = 60;
+
+    /**
+     * Cache lifetime for playlists of videos that are still transcoding. Their EVENT
+     * playlists grow as segments finish, so both the in-process cache and clients may
+     * only hold them briefly.
+     */
+    public static final int PROGRESSIVE_PLAYLIST_MAX_AGE_SECONDS = 2;
+
+    private static final byte[] ENDLIST_LINE = "#EXT-X-ENDLIST\n".getBytes(StandardCharsets.UTF_8);
+
+    public static final long DEFAULT_PLAYLIST_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final int SERVED_VIDEO_MEMO_MAX_ENTRIES = 10_000;
 
     private final ObjectStorageClient storageClient;
-    private final Map<String, CachedPlaylist> playlistCache = new ConcurrentHashMap<>();
+    private final PlaylistCache playlistCache;
+    private final SegmentCache segmentCache;
+    private final Options options;
+    /** Videos whose served copies were found, so later misses read them without a HEAD first. */
+    private final Set<String> videosWithServedCopies = Collections.synchronizedSet(Collections.newSetFromMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > SERVED_VIDEO_MEMO_MAX_ENTRIES;
+                }
+            }));
 
     public PlaylistService(ObjectStorageClient storageClient) {
+        this(storageClient, null, Options.defaults());
+    }
+
+    /**
+     * @param segmentCache cache used to serve segment bytes directly; {@code null} keeps
+     *                     the presigned-redirect mode
+     */
+    public PlaylistService(ObjectStorageClient storageClient, SegmentCache segmentCache, Options options) {
         this.storageClient = storageClient;
+        this.segmentCache = segmentCache;
+        this.options = options;
+        this.playlistCache = new PlaylistCache(options.playlistCacheMaxBytes());
     }
 
-    public String loadMasterManifest(String videoId) throws IOException {
-        String objectKey = videoId + "/manifest/master.m3u8";
-        try (InputStream is = storageClient.downloadFile(objectKey)) {
-            String content = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-            return rewriteMasterManifest(content);
-        } catch (NoSuchKeyException e) {
-            throw e;
-        }
+    /**
+     * Returns the rewritten master playlist.
+     *
+     * @param completed whether the video is COMPLETED; a progressive master lists only
+     *                  the renditions ready so far and is cached briefly
+     */
+    public Playlist loadMasterManifest(String videoId, boolean completed) throws IOException {
+        int maxAgeSeconds = completed ? COMPLETED_MASTER_MAX_AGE_SECONDS : PROGRESSIVE_PLAYLIST_MAX_AGE_SECONDS;
+        return playlistCache.get(videoId + "/master", () -> {
+            Playlist served = loadServed(videoId, videoId + "/served/master.m3u8", maxAgeSeconds);
+            if (served != null) {
+                return served;
+            }
+            String content = download(videoId + "/manifest/master.m3u8");
+            return Playlist.of(rewriteMasterManifest(content), maxAgeSeconds);
+        });
     }
 
     /**
      * Returns a variant playlist whose segment lines are proxy URLs that point
      * back to the streaming service ({@code /stream/{videoId}/segment/…}).
      * Because these URLs never expire, the cached manifest stays valid for its
-     * full cache TTL regardless of video length.
+     * full cache lifetime regardless of video length.
      */
-    public String loadVariantManifest(String videoId, String profile) throws IOException {
-        String cacheKey = videoId + "/" + profile;
-        CachedPlaylist cached = playlistCache.get(cacheKey);
-        if (cached != null && !cached.isExpired()) {
-            return cached.content();
-        }
-
-        String objectKey = videoId + "/manifest/" + profile + ".m3u8";
-        try (InputStream is = storageClient.downloadFile(objectKey)) {
-            String content = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+    public Playlist loadVariantManifest(String videoId, String profile) throws IOException {
+        return playlistCache.get(videoId + "/variant/" + profile, () -> {
+            Playlist served = loadServed(videoId, videoId + "/served/" + profile + ".m3u8", -1);
+            if (served != null) {
+                return served;
+            }
+            String content = download(videoId + "/manifest/" + profile + ".m3u8");
             String rewritten = rewriteVariantManifestWithProxyUrls(content, videoId, profile);
-            playlistCache.put(cacheKey, new CachedPlaylist(rewritten, System.currentTimeMillis()));
-            return rewritten;
-        } catch (NoSuchKeyException e) {
-            throw e;
-        }
+            return Playlist.of(rewritten, isEndedPlaylist(rewritten)
+                    ? ENDED_PLAYLIST_MAX_AGE_SECONDS
+                    : PROGRESSIVE_PLAYLIST_MAX_AGE_SECONDS);
+        });
+    }
+
+    public Map<String, Object> playlistCacheStats() {
+        return playlistCache.stats();
     }
 
     /**
@@ -64,13 +123,112 @@ public final class PlaylistService {
      * Called on every segment request so the client always receives a fresh URL.
      */
     public String generateSegmentUrl(String videoId, String profile, String segment) {
-        String objectKey = videoId + "/processed/" + profile + "/" + segment;
-        return storageClient.generatePresignedUrl(objectKey, SEGMENT_PRESIGNED_URL_TTL_SECONDS);
+        return storageClient.generatePresignedUrl(segmentObjectKey(videoId, profile, segment),
+                SEGMENT_PRESIGNED_URL_TTL_SECONDS);
+    }
+
+    public boolean isSegmentProxyEnabled() {
+        return segmentCache != null;
+    }
+
+    /** Opens a cached segment for proxy delivery; the caller closes it once the body is written. */
+    public SegmentCache.Segment openSegment(String videoId, String profile, String segment) throws IOException {
+        if (segmentCache == null) {
+            throw new IllegalStateException("Segment proxy mode is not enabled");
+        }
+        return segmentCache.open(segmentObjectKey(videoId, profile, segment));
+    }
+
+    public SegmentCache segmentCache() {
+        return segmentCache;
     }
 
     public void invalidateVideo(String videoId) {
-        String prefix = videoId + "/";
-        playlistCache.keySet().removeIf(key -> key.startsWith(prefix));
+        videosWithServedCopies.remove(videoId);
+        playlistCache.invalidatePrefix(videoId + "/");
+        if (segmentCache != null) {
+            segmentCache.invalidateVideo(videoId);
+        }
+    }
+
+    private String download(String objectKey) throws IOException {
+        return new String(downloadBytes(objectKey), StandardCharsets.UTF_8);
+    }
+
+    private byte[] downloadBytes(String objectKey) throws IOException {
+        try (InputStream is = storageClient.downloadFile(objectKey)) {
+            return is.readAllBytes();
+        }
+    }
+
+    /**
+     * Reads the client-ready copy the processing service writes under {@code served/},
+     * together with its {@code .gz} twin when gzip is enabled. The bytes are served as
+     * stored, without splitting or rewriting lines. The two objects are separate reads,
+     * so a twin that does not decompress to the plain body (one of them was rewritten in
+     * between) is dropped and the entry is cached briefly so the pair is re-read soon.
+     *
+     * <p>A video not yet known to have served copies is probed with
+     * {@link ObjectStorageClient#fileExists} first, so legacy videos fall back to
+     * {@code manifest/} without a failing GET on every cache miss.
+     *
+     * @param maxAgeSeconds cache lifetime, or a negative value to derive it from ENDLIST
+     * @return the playlist, or {@code null} when served copies are disabled or missing
+     */
+    private Playlist loadServed(String videoId, String objectKey, int maxAgeSeconds) throws IOException {
+        if (!options.servedPlaylistsEnabled()) {
+            return null;
+        }
+        if (!videosWithServedCopies.contains(videoId)) {
+            if (!storageClient.fileExists(objectKey)) {
+                return null;
+            }
+            videosWithServedCopies.add(videoId);
+        }
+        byte[] body;
+        try {
+            body = downloadBytes(objectKey);
+        } catch (NoSuchKeyException missing) {
+            videosWithServedCopies.remove(videoId);
+            return null;
+        }
+        if (maxAgeSeconds < 0) {
+            maxAgeSeconds = endsWith(body, ENDLIST_LINE)
+                    ? ENDED_PLAYLIST_MAX_AGE_SECONDS
+                    : PROGRESSIVE_PLAYLIST_MAX_AGE_SECONDS;
+        }
+        byte[] gzipBody = null;
+        if (options.servedPlaylistsGzip()) {
+            try {
+                gzipBody = downloadBytes(objectKey + ".gz");
+            } catch (NoSuchKeyException e) {
+                // Without the twin the playlist is served uncompressed.
+            }
+            if (gzipBody != null && !decompressesTo(gzipBody, body)) {
+                gzipBody = null;
+                maxAgeSeconds = Math.min(maxAgeSeconds, PROGRESSIVE_PLAYLIST_MAX_AGE_SECONDS);
+            }
+        }
+        return Playlist.of(body, gzipBody, maxAgeSeconds);
+    }
+
+    private static boolean decompressesTo(byte[] gzipBody, byte[] body) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipBody))) {
+            return Arrays.equals(in.readNBytes(body.length + 1), body);
+        } catch (IOException corrupt) {
+            return false;
+        }
+    }
+
+    private static boolean endsWith(byte[] body, byte[] suffix) {
+        if (body.length < suffix.length) {
+            return false;
+        }
+        return Arrays.equals(body, body.length - suffix.length, body.length, suffix, 0, suffix.length);
+    }
+
+    private static String segmentObjectKey(String videoId, String profile, String segment) {
+        return videoId + "/processed/" + profile + "/" + segment;
     }
 
     static String rewriteMasterManifest(String content) {
@@ -119,9 +277,64 @@ public final class PlaylistService {
     }
 
 
-    private record CachedPlaylist(String content, long createdAtMillis) {
-        boolean isExpired() {
-            return System.currentTimeMillis() - createdAtMillis > PLAYLIST_CACHE_TTL_MILLIS;
+    /** An EVENT playlist gains segments until the processing service appends ENDLIST. */
+    private static boolean isEndedPlaylist(String playlist) {
+        return playlist.contains("#EXT-X-ENDLIST");
+    }
+
+    /**
+     * Playlist settings from {@link StreamingServiceConfig}.
+     *
+     * @param playlistCacheMaxBytes   body bytes the in-process playlist cache may hold
+     * @param servedPlaylistsEnabled whether processing writes client-ready copies under
+     *                               {@code served/} ({@code SERVED_PLAYLISTS_ENABLED});
+     *                               when false only {@code manifest/} is read
+     * @param servedPlaylistsGzip    whether processing writes {@code .gz} twins of served
+     *                               playlists ({@code SERVED_PLAYLISTS_GZIP}); when false
+     *                               they are never fetched
+     */
+    public record Options(long playlistCacheMaxBytes, boolean servedPlaylistsEnabled, boolean servedPlaylistsGzip) {
+        public static Options defaults() {
+            return new Options(DEFAULT_PLAYLIST_CACHE_MAX_BYTES, true, true);
+        }
+
+        public Options withServedPlaylistsEnabled(boolean enabled) {
+            return new Options(playlistCacheMaxBytes, enabled, servedPlaylistsGzip);
+        }
+
+        public Options withServedPlaylistsGzip(boolean gzip) {
+            return new Options(playlistCacheMaxBytes, servedPlaylistsEnabled, gzip);
+        }
+    }
+
+    /**
+     * A rewritten playlist with the strong ETag of its body, computed once when it is
+     * loaded, and the max-age clients may cache it for.
+     */
+    public record Playlist(byte[] body, byte[] gzipBody, String etag, int maxAgeSeconds) {
+        static Playlist of(String content, int maxAgeSeconds) {
+            return of(content.getBytes(StandardCharsets.UTF_8), null, maxAgeSeconds);
+        }
+
+        static Playlist of(byte[] body, byte[] gzipBody, int maxAgeSeconds) {
+            CRC32C checksum = new CRC32C();
+            checksum.update(body);
+            String etag = String.format(Locale.ROOT, "\"%08x-%x\"", checksum.getValue(), body.length);
+            return new Playlist(body, gzipBody, etag, maxAgeSeconds);
+        }
+
+        /** The pre-compressed representation needs its own strong validator. */
+        public String gzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+
+        /** Bytes held in the playlist cache for this entry. */
+        long weight() {
+            return body.length + (gzipBody == null ? 0 : gzipBody.length);
+        }
+
+        public String content() {
+            return new String(body, StandardCharsets.UTF_8);
         }
     }
 }
@@ -0,0 +1,465 @@
+package com.distributed26.videostreaming.streaming.service;
+
+import com.distributed26.videostreaming.shared.storage.ObjectStorageClient;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Two-tier LRU cache of transcoded segments for the streaming proxy. Segments are
+ * immutable once uploaded, so entries never go stale and are only dropped by eviction
+ * or when their video is deleted.
+ *
+ * <p>The memory tier holds segments in direct (off-heap) buffers; the disk tier holds
+ * every filled segment under {@code root}. A disk hit is promoted into memory. Concurrent
+ * misses for the same key share one download (single-flight), and the strong ETag is
+ * computed from the bytes while they are filled. Disk entries are leased while a
+ * response is being written and are never deleted under a reader.
+ */
+public final class SegmentCache {
+    private static final Logger LOGGER = LogManager.getLogger(SegmentCache.class);
+
+    private final ObjectStorageClient storageClient;
+    private final Path root;
+    private final long memoryMaxBytes;
+    private final long memoryMaxEntryBytes;
+    private final long diskMaxBytes;
+    private final LinkedHashMap<String, MemoryEntry> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<String, DiskEntry> disk = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, CompletableFuture<Void>> inFlight = new HashMap<>();
+    private long memoryBytes;
+    private long diskBytes;
+    private final AtomicLong fileSequence = new AtomicLong();
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong fillFailures = new AtomicLong();
+
+    /**
+     * @param root directory for the disk tier, or {@code null} to cache in memory only
+     */
+    public SegmentCache(ObjectStorageClient storageClient, Path root, long memoryMaxBytes, long diskMaxBytes)
+            throws IOException {
+        this.storageClient = storageClient;
+        this.memoryMaxBytes = Math.max(0L, memoryMaxBytes);
+        // One oversized segment must not flush the whole memory tier.
+        this.memoryMaxEntryBytes = this.memoryMaxBytes / 4;
+        this.diskMaxBytes = root == null ? 0L : Math.max(0L, diskMaxBytes);
+        this.root = this.diskMaxBytes > 0 ? root : null;
+        if (this.root != null) {
+            Files.createDirectories(this.root);
+            purgeLeftovers(this.root);
+        }
+        LOGGER.info("Segment cache ready path={} memoryMaxBytes={} diskMaxBytes={}",
+                this.root, this.memoryMaxBytes, this.diskMaxBytes);
+    }
+
+    /**
+     * Returns the segment stored under {@code objectKey}, filling it from object storage
+     * if no tier holds it. The caller must close the returned segment once its bytes are
+     * written. A missing object surfaces as the storage client's exception.
+     */
+    public Segment open(String objectKey) throws IOException {
+        boolean waited = false;
+        while (true) {
+            CompletableFuture<Void> pending;
+            DiskEntry onDisk = null;
+            boolean leader = false;
+            synchronized (this) {
+                MemoryEntry inMemory = memory.get(objectKey);
+                if (inMemory != null) {
+                    if (!waited) {
+                        memoryHits.incrementAndGet();
+                    }
+                    return new Segment(inMemory.buffer, null, inMemory.etag);
+                }
+                DiskEntry entry = disk.get(objectKey);
+                if (entry != null) {
+                    if (!waited) {
+                        diskHits.incrementAndGet();
+                    }
+                    entry.refCount++;
+                    onDisk = entry;
+                    pending = null;
+                } else {
+                    pending = inFlight.get(objectKey);
+                    if (pending == null) {
+                        pending = new CompletableFuture<>();
+                        inFlight.put(objectKey, pending);
+                        misses.incrementAndGet();
+                        leader = true;
+                    } else if (!waited) {
+                        coalesced.incrementAndGet();
+                    }
+                }
+            }
+            if (onDisk != null) {
+                return promote(onDisk);
+            }
+            if (leader) {
+                return fill(objectKey, pending);
+            }
+            waited = true;
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for shared segment fill key=" + objectKey, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+                if (cause instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IOException("Shared segment fill failed key=" + objectKey, cause);
+            }
+        }
+    }
+
+    /** Drops every cached segment of {@code videoId}, e.g. after the video was deleted. */
+    public void invalidateVideo(String videoId) {
+        String prefix = videoId + "/";
+        List<Path> doomed = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, MemoryEntry>> memoryIterator = memory.entrySet().iterator();
+            while (memoryIterator.hasNext()) {
+                Map.Entry<String, MemoryEntry> entry = memoryIterator.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    memoryBytes -= entry.getValue().buffer.capacity();
+                    memoryIterator.remove();
+                }
+            }
+            Iterator<Map.Entry<String, DiskEntry>> diskIterator = disk.entrySet().iterator();
+            while (diskIterator.hasNext()) {
+                DiskEntry entry = diskIterator.next().getValue();
+                if (entry.objectKey.startsWith(prefix)) {
+                    diskIterator.remove();
+                    diskBytes -= entry.sizeBytes;
+                    entry.removed = true;
+                    if (entry.refCount == 0) {
+                        doomed.add(entry.path);
+                    }
+                }
+            }
+        }
+        deleteQuietly(doomed);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("memoryEntries", memory.size());
+            stats.put("memoryBytes", memoryBytes);
+            stats.put("diskEntries", disk.size());
+            stats.put("diskBytes", diskBytes);
+            stats.put("inFlight", inFlight.size());
+        }
+        stats.put("memoryMaxBytes", memoryMaxBytes);
+        stats.put("diskMaxBytes", diskMaxBytes);
+        long memoryHitCount = memoryHits.get();
+        long diskHitCount = diskHits.get();
+        long missCount = misses.get();
+        long lookups = memoryHitCount + diskHitCount + missCount;
+        stats.put("memoryHits", memoryHitCount);
+        stats.put("diskHits", diskHitCount);
+        stats.put("misses", missCount);
+        stats.put("coalesced", coalesced.get());
+        stats.put("hitRatio", lookups == 0 ? 0.0 : Math.round((memoryHitCount + diskHitCount) * 1000.0 / lookups) / 1000.0);
+        stats.put("evictions", evictions.get());
+        stats.put("fillFailures", fillFailures.get());
+        return stats;
+    }
+
+    private Segment fill(String objectKey, CompletableFuture<Void> pending) throws IOException {
+        DiskEntry diskEntry = null;
+        MemoryEntry memoryEntry = null;
+        Path partial = null;
+        try {
+            CRC32C checksum = new CRC32C();
+            if (root != null) {
+                Path target = root.resolve(fileSequence.incrementAndGet() + "-" + fileNameFor(objectKey));
+                partial = target.resolveSibling(target.getFileName() + ".part");
+                try (InputStream source = new CheckedInputStream(storageClient.downloadFile(objectKey), checksum)) {
+                    Files.copy(source, partial, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                long size = Files.size(target);
+                diskEntry = new DiskEntry(objectKey, target, size, etag(checksum.getValue(), size));
+                if (size <= memoryMaxEntryBytes) {
+                    memoryEntry = new MemoryEntry(readDirect(target, size), diskEntry.etag);
+                }
+            } else {
+                byte[] bytes;
+                try (InputStream source = new CheckedInputStream(storageClient.downloadFile(objectKey), checksum)) {
+                    bytes = source.readAllBytes();
+                }
+                ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+                memoryEntry = new MemoryEntry(buffer.asReadOnlyBuffer(), etag(checksum.getValue(), bytes.length));
+            }
+        } catch (IOException | RuntimeException e) {
+            fillFailures.incrementAndGet();
+            if (partial != null) {
+                Files.deleteIfExists(partial);
+            }
+            synchronized (this) {
+                inFlight.remove(objectKey);
+            }
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        List<Path> evicted;
+        Segment segment;
+        synchronized (this) {
+            if (diskEntry != null) {
+                disk.put(objectKey, diskEntry);
+                diskBytes += diskEntry.sizeBytes;
+            }
+            if (memoryEntry != null) {
+                putMemory(objectKey, memoryEntry);
+                segment = new Segment(memoryEntry.buffer, null, memoryEntry.etag);
+            } else {
+                diskEntry.refCount = 1;
+                segment = new Segment(null, diskEntry, diskEntry.etag);
+            }
+            inFlight.remove(objectKey);
+            evicted = evictDiskOverflow();
+        }
+        pending.complete(null);
+        deleteQuietly(evicted);
+        return segment;
+    }
+
+    /** Serves a leased disk entry, copying it into the memory tier first when it fits. */
+    private Segment promote(DiskEntry entry) throws IOException {
+        if (entry.sizeBytes > memoryMaxEntryBytes) {
+            return new Segment(null, entry, entry.etag);
+        }
+        MemoryEntry promoted;
+        try {
+            promoted = new MemoryEntry(readDirect(entry.path, entry.sizeBytes), entry.etag);
+        } catch (IOException e) {
+            release(entry);
+            throw e;
+        }
+        synchronized (this) {
+            if (!entry.removed) {
+                putMemory(entry.objectKey, promoted);
+            }
+        }
+        release(entry);
+        return new Segment(promoted.buffer, null, promoted.etag);
+    }
+
+    private void putMemory(String objectKey, MemoryEntry entry) {
+        MemoryEntry previous = memory.put(objectKey, entry);
+        if (previous != null) {
+            memoryBytes -= previous.buffer.capacity();
+        }
+        memoryBytes += entry.buffer.capacity();
+        Iterator<MemoryEntry> iterator = memory.values().iterator();
+        while (memoryBytes > memoryMaxBytes && iterator.hasNext()) {
+            MemoryEntry candidate = iterator.next();
+            iterator.remove();
+            memoryBytes -= candidate.buffer.capacity();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void release(DiskEntry entry) {
+        List<Path> doomed;
+        synchronized (this) {
+            entry.refCount--;
+            if (entry.refCount > 0) {
+                return;
+            }
+            doomed = entry.removed ? List.of(entry.path) : evictDiskOverflow();
+        }
+        deleteQuietly(doomed);
+    }
+
+    private List<Path> evictDiskOverflow() {
+        List<Path> evicted = new ArrayList<>();
+        Iterator<DiskEntry> iterator = disk.values().iterator();
+        while (diskBytes > diskMaxBytes && iterator.hasNext()) {
+            DiskEntry candidate = iterator.next();
+            if (candidate.refCount > 0) {
+                continue;
+            }
+            iterator.remove();
+            candidate.removed = true;
+            diskBytes -= candidate.sizeBytes;
+            evictions.incrementAndGet();
+            evicted.add(candidate.path);
+            LOGGER.debug("Evicted cached segment key={} bytes={}", candidate.objectKey, candidate.sizeBytes);
+        }
+        return evicted;
+    }
+
+    private static ByteBuffer map(DiskEntry entry) throws IOException {
+        try (FileChannel channel = FileChannel.open(entry.path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, entry.sizeBytes).asReadOnlyBuffer();
+        }
+    }
+
+    private static ByteBuffer readDirect(Path path, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(size));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read until full
+            }
+        }
+        return buffer.flip().asReadOnlyBuffer();
+    }
+
+    private static String etag(long checksum, long size) {
+        return String.format(Locale.ROOT, "\"%08x-%x\"", checksum, size);
+    }
+
+    private static String fileNameFor(String objectKey) {
+        return objectKey.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static void deleteQuietly(List<Path> paths) {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to delete cached segment path={}", path, e);
+            }
+        }
+    }
+
+    private static void purgeLeftovers(Path root) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private record MemoryEntry(ByteBuffer buffer, String etag) {
+    }
+
+    private static final class DiskEntry {
+        private final String objectKey;
+        private final Path path;
+        private final long sizeBytes;
+        private final String etag;
+        private int refCount;
+        private boolean removed;
+
+        private DiskEntry(String objectKey, Path path, long sizeBytes, String etag) {
+            this.objectKey = objectKey;
+            this.path = path;
+            this.sizeBytes = sizeBytes;
+            this.etag = etag;
+        }
+    }
+
+    /** One cached segment, backed by an off-heap buffer or a leased disk file. */
+    public final class Segment implements AutoCloseable {
+        private final ByteBuffer buffer;
+        private final DiskEntry diskEntry;
+        private final String etag;
+        private ByteBuffer mapping;
+        private boolean closed;
+
+        private Segment(ByteBuffer buffer, DiskEntry diskEntry, String etag) {
+            this.buffer = buffer;
+            this.diskEntry = diskEntry;
+            this.etag = etag;
+        }
+
+        public long size() {
+            return buffer != null ? buffer.capacity() : diskEntry.sizeBytes;
+        }
+
+        public String etag() {
+            return etag;
+        }
+
+        public boolean inMemory() {
+            return buffer != null;
+        }
+
+        /**
+         * Returns a read-only view of {@code length} bytes starting at {@code offset}. The view
+         * is off-heap: a slice of the direct buffer for memory entries, or of a read-only
+         * mapping of the file for disk entries, so handing it to the connection writes
+         * straight from native memory or the page cache. Valid until the segment is closed.
+         *
+         * <p>The file is mapped once per segment lease and the reference is dropped on close,
+         * so no mapping outlives the responses using it; a cached entry never pins the blocks
+         * of a file that eviction or invalidation has since deleted.
+         */
+        public ByteBuffer slice(long offset, long length) throws IOException {
+            ByteBuffer source = buffer != null ? buffer : mapping();
+            return source.duplicate()
+                    .position(Math.toIntExact(offset))
+                    .limit(Math.toIntExact(offset + length))
+                    .slice();
+        }
+
+        /** Writes {@code length} bytes starting at {@code offset} to {@code out}. */
+        public void writeTo(OutputStream out, long offset, long length) throws IOException {
+            ByteBuffer view = slice(offset, length);
+            WritableByteChannel sink = Channels.newChannel(out);
+            while (view.hasRemaining()) {
+                sink.write(view);
+            }
+        }
+
+        private synchronized ByteBuffer mapping() throws IOException {
+            if (closed) {
+                throw new IOException("Segment already closed key=" + diskEntry.objectKey);
+            }
+            if (mapping == null) {
+                mapping = map(diskEntry);
+            }
+            return mapping;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                mapping = null;
+            }
+            if (diskEntry != null) {
+                release(diskEntry);
+            }
+        }
+    }
+}
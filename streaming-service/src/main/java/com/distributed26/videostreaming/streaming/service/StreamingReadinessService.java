@@ -15,10 +15,24 @@ public final class StreamingReadinessService {
 
     private final VideoStatusRepository videoStatusRepository;
     private final ObjectStorageClient storageClient;
+    private final VideoStatusCache statusCache;
 
     public StreamingReadinessService(VideoStatusRepository videoStatusRepository, ObjectStorageClient storageClient) {
+        this(videoStatusRepository, storageClient, null);
+    }
+
+    /**
+     * @param statusCache serves playback status checks without a Postgres round trip;
+     *                    {@code null} queries the repository on every request
+     */
+    public StreamingReadinessService(
+            VideoStatusRepository videoStatusRepository,
+            ObjectStorageClient storageClient,
+            VideoStatusCache statusCache
+    ) {
         this.videoStatusRepository = videoStatusRepository;
         this.storageClient = storageClient;
+        this.statusCache = statusCache;
     }
 
     public boolean validateVideoId(Context ctx) {
@@ -40,29 +54,75 @@ public final class StreamingReadinessService {
         return false;
     }
 
-    public boolean requireCompleted(Context ctx) {
+    /**
+     * Decides whether the video can be played. COMPLETED videos play in full; PROCESSING
+     * videos play progressively once the processing service has published a master
+     * manifest for the renditions that are ready. Anything else gets an error response.
+     */
+    public Playback requirePlayable(Context ctx) {
+        String videoId = ctx.pathParam("videoId");
+        Optional<String> status = loadStatus(ctx, videoId);
+        if (status == null) {
+            return Playback.UNAVAILABLE;
+        }
+        if ("COMPLETED".equalsIgnoreCase(status.get())) {
+            return Playback.COMPLETE;
+        }
+        if ("PROCESSING".equalsIgnoreCase(status.get()) && hasMasterManifest(videoId)) {
+            return Playback.PROGRESSIVE;
+        }
+        ctx.status(409).result("Video is not ready");
+        return Playback.UNAVAILABLE;
+    }
+
+    /**
+     * Gate for segments served from the proxy cache, whose entries outlive deletes made
+     * through other replicas. The video must still exist as COMPLETED or PROCESSING; the
+     * manifest check is left to the playlist requests so segments cost no storage probe.
+     */
+    public boolean requireSegmentAccess(Context ctx) {
+        String videoId = ctx.pathParam("videoId");
+        Optional<String> status = loadStatus(ctx, videoId);
+        if (status == null) {
+            return false;
+        }
+        if ("COMPLETED".equalsIgnoreCase(status.get()) || "PROCESSING".equalsIgnoreCase(status.get())) {
+            return true;
+        }
+        ctx.status(409).result("Video is not ready");
+        return false;
+    }
+
+    /** The video's status, or {@code null} once an error response has been written. */
+    private Optional<String> loadStatus(Context ctx, String videoId) {
         if (videoStatusRepository == null) {
             ctx.status(500).result("Streaming status checks are not configured");
-            return false;
+            return null;
         }
-        String videoId = ctx.pathParam("videoId");
         Optional<String> status;
         try {
-            status = videoStatusRepository.findStatusByVideoId(videoId);
+            status = statusCache != null
+                    ? statusCache.findStatus(videoId)
+                    : videoStatusRepository.findStatusByVideoId(videoId);
         } catch (Exception e) {
             LOGGER.error("Failed to load video status for videoId={}", videoId, e);
             ctx.status(500).result("Failed to load video status");
-            return false;
+            return null;
         }
         if (status.isEmpty()) {
             ctx.status(404).result("Video not found");
-            return false;
+            return null;
         }
-        if (!"COMPLETED".equalsIgnoreCase(status.get())) {
-            ctx.status(409).result("Video is not ready");
+        return status;
+    }
+
+    private boolean hasMasterManifest(String videoId) {
+        try {
+            return storageClient.fileExists(videoId + "/manifest/master.m3u8");
+        } catch (Exception e) {
+            LOGGER.warn("Failed to check progressive manifest for videoId={}", videoId, e);
             return false;
         }
-        return true;
     }
 
     public List<ReadyVideoResponse> readyVideos(int limit) {
@@ -82,10 +142,12 @@ public final class StreamingReadinessService {
         if (videoStatusRepository == null) {
             throw new IllegalStateException("Streaming status checks are not configured");
         }
+        invalidateStatus(videoId);
         if (videoStatusRepository.findStatusByVideoId(videoId).isEmpty()) {
             return false;
         }
         videoStatusRepository.updateStatus(videoId, "DELETING");
+        invalidateStatus(videoId);
         try {
             List<String> objectKeys = new ArrayList<>(storageClient.listFiles(videoId + "/"));
             for (String objectKey : objectKeys) {
@@ -95,9 +157,27 @@ public final class StreamingReadinessService {
         } catch (RuntimeException e) {
             videoStatusRepository.updateStatus(videoId, "DELETE_FAILED");
             throw e;
+        } finally {
+            invalidateStatus(videoId);
         }
     }
 
+    public VideoStatusCache statusCache() {
+        return statusCache;
+    }
+
+    private void invalidateStatus(String videoId) {
+        if (statusCache != null) {
+            statusCache.invalidate(videoId);
+        }
+    }
+
+    public enum Playback {
+        UNAVAILABLE,
+        PROGRESSIVE,
+        COMPLETE
+    }
+
     public record ReadyVideoResponse(String videoId, String videoName) {
     }
 }
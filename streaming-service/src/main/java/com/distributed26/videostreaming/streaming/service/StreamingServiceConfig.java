@@ -6,15 +6,58 @@ import io.github.cdimascio.dotenv.Dotenv;
 public final class StreamingServiceConfig {
     private static final int DEFAULT_STREAMING_PORT = 8083;
     private static final int DEFAULT_DELETE_RETRY_INTERVAL_SECONDS = 120;
+    private static final String DEFAULT_SEGMENT_CACHE_DIR = "streaming-segment-cache";
+    private static final long DEFAULT_SEGMENT_CACHE_MEMORY_BYTES = 256L * 1024 * 1024;
+    private static final long DEFAULT_SEGMENT_CACHE_DISK_BYTES = 4L * 1024 * 1024 * 1024;
+    private static final long DEFAULT_STATUS_CACHE_NEGATIVE_TTL_MILLIS = 2000L;
+    private static final long DEFAULT_STATUS_CACHE_COMPLETED_TTL_MILLIS = 600_000L;
+    private static final int DEFAULT_STATUS_CACHE_MAX_ENTRIES = 10000;
 
     private final int port;
     private final int deleteRetryIntervalSeconds;
     private final StorageConfig storageConfig;
+    private final boolean segmentProxyEnabled;
+    private final String segmentCacheDir;
+    private final long segmentCacheMemoryBytes;
+    private final long segmentCacheDiskBytes;
+    private final boolean statusCacheEnabled;
+    private final long statusCacheNegativeTtlMillis;
+    private final long statusCacheCompletedTtlMillis;
+    private final int statusCacheMaxEntries;
+    private final long playlistCacheMaxBytes;
+    private final boolean servedPlaylistsEnabled;
+    private final boolean servedPlaylistsGzip;
 
-    private StreamingServiceConfig(int port, int deleteRetryIntervalSeconds, StorageConfig storageConfig) {
+    private StreamingServiceConfig(
+            int port,
+            int deleteRetryIntervalSeconds,
+            StorageConfig storageConfig,
+            boolean segmentProxyEnabled,
+            String segmentCacheDir,
+            long segmentCacheMemoryBytes,
+            long segmentCacheDiskBytes,
+            boolean statusCacheEnabled,
+            long statusCacheNegativeTtlMillis,
+            long statusCacheCompletedTtlMillis,
+            int statusCacheMaxEntries,
+            long playlistCacheMaxBytes,
+            boolean servedPlaylistsEnabled,
+            boolean servedPlaylistsGzip
+    ) {
         this.port = port;
         this.deleteRetryIntervalSeconds = deleteRetryIntervalSeconds;
         this.storageConfig = storageConfig;
+        this.segmentProxyEnabled = segmentProxyEnabled;
+        this.segmentCacheDir = segmentCacheDir;
+        this.segmentCacheMemoryBytes = segmentCacheMemoryBytes;
+        this.segmentCacheDiskBytes = segmentCacheDiskBytes;
+        this.statusCacheEnabled = statusCacheEnabled;
+        this.statusCacheNegativeTtlMillis = statusCacheNegativeTtlMillis;
+        this.statusCacheCompletedTtlMillis = statusCacheCompletedTtlMillis;
+        this.statusCacheMaxEntries = statusCacheMaxEntries;
+        this.playlistCacheMaxBytes = playlistCacheMaxBytes;
+        this.servedPlaylistsEnabled = servedPlaylistsEnabled;
+        this.servedPlaylistsGzip = servedPlaylistsGzip;
     }
 
     public static StreamingServiceConfig fromEnv() {
@@ -30,7 +73,24 @@ public final class StreamingServiceConfig {
                         getEnvOrDotenv(dotenv, "MINIO_SECRET_KEY", "minioadmin"),
                         getEnvOrDotenv(dotenv, "MINIO_BUCKET_NAME", "uploads"),
                         getEnvOrDotenv(dotenv, "MINIO_REGION", "us-east-1")
-                )
+                ),
+                Boolean.parseBoolean(getEnvOrDotenv(dotenv, "STREAMING_SEGMENT_PROXY_ENABLED", "false")),
+                getEnvOrDotenv(dotenv, "STREAMING_SEGMENT_CACHE_DIR", DEFAULT_SEGMENT_CACHE_DIR),
+                parseNonNegativeLong(getEnvOrDotenv(dotenv, "STREAMING_SEGMENT_CACHE_MEMORY_BYTES", null),
+                        DEFAULT_SEGMENT_CACHE_MEMORY_BYTES),
+                parseNonNegativeLong(getEnvOrDotenv(dotenv, "STREAMING_SEGMENT_CACHE_DISK_BYTES", null),
+                        DEFAULT_SEGMENT_CACHE_DISK_BYTES),
+                Boolean.parseBoolean(getEnvOrDotenv(dotenv, "STREAMING_STATUS_CACHE_ENABLED", "true")),
+                parseNonNegativeLong(getEnvOrDotenv(dotenv, "STREAMING_STATUS_CACHE_NEGATIVE_TTL_MILLIS", null),
+                        DEFAULT_STATUS_CACHE_NEGATIVE_TTL_MILLIS),
+                parseNonNegativeLong(getEnvOrDotenv(dotenv, "STREAMING_STATUS_CACHE_COMPLETED_TTL_MILLIS", null),
+                        DEFAULT_STATUS_CACHE_COMPLETED_TTL_MILLIS),
+                parsePositiveInt(getEnvOrDotenv(dotenv, "STREAMING_STATUS_CACHE_MAX_ENTRIES", null),
+                        DEFAULT_STATUS_CACHE_MAX_ENTRIES),
+                parseNonNegativeLong(getEnvOrDotenv(dotenv, "STREAMING_PLAYLIST_CACHE_MAX_BYTES", null),
+                        PlaylistService.DEFAULT_PLAYLIST_CACHE_MAX_BYTES),
+                Boolean.parseBoolean(getEnvOrDotenv(dotenv, "SERVED_PLAYLISTS_ENABLED", "true")),
+                Boolean.parseBoolean(getEnvOrDotenv(dotenv, "SERVED_PLAYLISTS_GZIP", "true"))
         );
     }
 
@@ -46,6 +106,54 @@ public final class StreamingServiceConfig {
         return storageConfig;
     }
 
+    public boolean segmentProxyEnabled() {
+        return segmentProxyEnabled;
+    }
+
+    public String segmentCacheDir() {
+        return segmentCacheDir;
+    }
+
+    public long segmentCacheMemoryBytes() {
+        return segmentCacheMemoryBytes;
+    }
+
+    public long segmentCacheDiskBytes() {
+        return segmentCacheDiskBytes;
+    }
+
+    public boolean statusCacheEnabled() {
+        return statusCacheEnabled;
+    }
+
+    public long statusCacheNegativeTtlMillis() {
+        return statusCacheNegativeTtlMillis;
+    }
+
+    public long statusCacheCompletedTtlMillis() {
+        return statusCacheCompletedTtlMillis;
+    }
+
+    public int statusCacheMaxEntries() {
+        return statusCacheMaxEntries;
+    }
+
+    public long playlistCacheMaxBytes() {
+        return playlistCacheMaxBytes;
+    }
+
+    public boolean servedPlaylistsEnabled() {
+        return servedPlaylistsEnabled;
+    }
+
+    public boolean servedPlaylistsGzip() {
+        return servedPlaylistsGzip;
+    }
+
+    public PlaylistService.Options playlistOptions() {
+        return new PlaylistService.Options(playlistCacheMaxBytes, servedPlaylistsEnabled, servedPlaylistsGzip);
+    }
+
     private static int parsePort(String rawPort) {
         if (rawPort == null || rawPort.isBlank()) {
             return DEFAULT_STREAMING_PORT;
@@ -68,6 +176,17 @@ public final class StreamingServiceConfig {
         }
     }
 
+    private static long parseNonNegativeLong(String rawValue, long defaultValue) {
+        if (rawValue == null || rawValue.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(0L, Long.parseLong(rawValue.trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     private static String getEnvOrDotenv(Dotenv dotenv, String key, String defaultValue) {
         String envVal = System.getenv(key);
         if (envVal != null && !envVal.isBlank()) {
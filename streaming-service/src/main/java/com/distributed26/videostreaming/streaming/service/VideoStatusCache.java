@@ -0,0 +1,191 @@
+package com.distributed26.videostreaming.streaming.service;
+
+import com.distributed26.videostreaming.shared.upload.JobEventListener;
+import com.distributed26.videostreaming.shared.upload.events.JobEvent;
+import com.distributed26.videostreaming.shared.upload.events.UploadFailedEvent;
+import com.distributed26.videostreaming.streaming.db.VideoStatusRepository;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Read-through cache of {@code video_upload.status} for playback checks. COMPLETED rarely
+ * changes, so it is held for a long TTL, cut short by a failure event or a delete on this
+ * replica; the TTL bounds how long a video deleted through another replica stays playable
+ * here. Every other answer (including "not found") expires after a short TTL so a video
+ * that finishes transcoding becomes playable within that window. Concurrent misses for
+ * one video share a single query, so a flash crowd costs one round trip.
+ */
+public final class VideoStatusCache implements JobEventListener {
+    private static final Logger LOGGER = LogManager.getLogger(VideoStatusCache.class);
+
+    private final VideoStatusRepository repository;
+    private final long negativeTtlNanos;
+    private final long completedTtlNanos;
+    private final int maxEntries;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, CompletableFuture<Optional<String>>> inFlight = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public VideoStatusCache(
+            VideoStatusRepository repository,
+            long negativeTtlMillis,
+            long completedTtlMillis,
+            int maxEntries
+    ) {
+        this(repository, negativeTtlMillis, completedTtlMillis, maxEntries, System::nanoTime);
+    }
+
+    VideoStatusCache(
+            VideoStatusRepository repository,
+            long negativeTtlMillis,
+            long completedTtlMillis,
+            int maxEntries,
+            LongSupplier nanoClock
+    ) {
+        this.repository = repository;
+        this.negativeTtlNanos = Math.max(0L, negativeTtlMillis) * 1_000_000L;
+        this.completedTtlNanos = Math.max(0L, completedTtlMillis) * 1_000_000L;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.nanoClock = nanoClock;
+    }
+
+    /** Same contract as {@link VideoStatusRepository#findStatusByVideoId}, served from cache when fresh. */
+    public Optional<String> findStatus(String videoId) {
+        CompletableFuture<Optional<String>> pending;
+        boolean leader = false;
+        synchronized (this) {
+            Entry entry = entries.get(videoId);
+            long ttlNanos = entry != null && entry.completed() ? completedTtlNanos : negativeTtlNanos;
+            if (entry != null && nanoClock.getAsLong() - entry.loadedAtNanos() < ttlNanos) {
+                hits.incrementAndGet();
+                return entry.status();
+            }
+            pending = inFlight.get(videoId);
+            if (pending == null) {
+                pending = new CompletableFuture<>();
+                inFlight.put(videoId, pending);
+                misses.incrementAndGet();
+                leader = true;
+            } else {
+                coalesced.incrementAndGet();
+            }
+        }
+        if (!leader) {
+            return await(videoId, pending);
+        }
+        Optional<String> status;
+        try {
+            status = repository.findStatusByVideoId(videoId);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                inFlight.remove(videoId);
+            }
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            // An invalidation that raced the query removed the in-flight marker; don't cache a stale answer.
+            if (inFlight.remove(videoId, pending)) {
+                entries.put(videoId, new Entry(status, nanoClock.getAsLong()));
+                trim();
+            }
+        }
+        pending.complete(status);
+        return status;
+    }
+
+    public void invalidate(String videoId) {
+        synchronized (this) {
+            inFlight.remove(videoId);
+            if (entries.remove(videoId) == null) {
+                return;
+            }
+        }
+        invalidations.incrementAndGet();
+        LOGGER.debug("Invalidated cached video status videoId={}", videoId);
+    }
+
+    /**
+     * Status bus listener. With SERVICE_MODE=streaming only failures are delivered; a
+     * failure can demote even a COMPLETED video, so it always invalidates. Any other event
+     * for a video that is not yet COMPLETED drops the short-lived entry early.
+     */
+    @Override
+    public void onEvent(JobEvent event) {
+        String videoId = event.getJobId();
+        if (videoId == null) {
+            return;
+        }
+        if (event instanceof UploadFailedEvent) {
+            invalidate(videoId);
+            return;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(videoId);
+            if (entry == null || entry.completed()) {
+                return;
+            }
+        }
+        invalidate(videoId);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("inFlight", inFlight.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("negativeTtlMillis", negativeTtlNanos / 1_000_000L);
+        stats.put("completedTtlMillis", completedTtlNanos / 1_000_000L);
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get() + coalesced.get();
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("hitRatio", lookups == 0 ? 0.0 : Math.round(hitCount * 1000.0 / lookups) / 1000.0);
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private void trim() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static Optional<String> await(String videoId, CompletableFuture<Optional<String>> pending) {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for video status videoId=" + videoId, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RuntimeException("Failed to load video status videoId=" + videoId, e.getCause());
+        }
+    }
+
+    private record Entry(Optional<String> status, long loadedAtNanos) {
+        boolean completed() {
+            return status.isPresent() && "COMPLETED".equalsIgnoreCase(status.get());
+        }
+    }
+}
@@ -1,29 +1,42 @@
 package com.distributed26.videostreaming.streaming.streaming;
 
 import com.distributed26.videostreaming.shared.config.StorageConfig;
+import com.distributed26.videostreaming.shared.db.ConnectionPools;
 import com.distributed26.videostreaming.shared.storage.ObjectStorageClient;
 import com.distributed26.videostreaming.shared.storage.S3StorageClient;
 import com.distributed26.videostreaming.shared.upload.RabbitMQDevLogPublisher;
+import com.distributed26.videostreaming.shared.upload.RabbitMQStatusEventBus;
 import com.distributed26.videostreaming.streaming.db.VideoStatusRepository;
+import com.distributed26.videostreaming.streaming.service.ByteRange;
 import com.distributed26.videostreaming.streaming.service.PlaylistService;
+import com.distributed26.videostreaming.streaming.service.PlaylistService.Playlist;
+import com.distributed26.videostreaming.streaming.service.SegmentCache;
 import com.distributed26.videostreaming.streaming.service.StreamingReadinessService;
+import com.distributed26.videostreaming.streaming.service.StreamingReadinessService.Playback;
 import com.distributed26.videostreaming.streaming.service.StreamingServiceConfig;
 import com.distributed26.videostreaming.streaming.service.VideoDeletionRetryWorker;
+import com.distributed26.videostreaming.streaming.service.VideoStatusCache;
 import io.javalin.Javalin;
+import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.server.HttpOutput;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
 public class StreamingServiceApplication {
     private static final Logger LOGGER = LogManager.getLogger(StreamingServiceApplication.class);
     private static final String DEV_LOG_SERVICE = "Streaming-service";
     private static final int DEFAULT_DELETE_RETRY_INTERVAL_SECONDS = 120;
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
 
     public static void main(String[] args) {
         StreamingServiceConfig config = StreamingServiceConfig.fromEnv();
@@ -32,6 +45,11 @@ public class StreamingServiceApplication {
         publishDevLogInfo(devLogPublisher, "Streaming service started");
         LOGGER.info("Starting streaming service on port {}", config.port());
         app.start(config.port());
+        // Javalin does not stop itself on SIGTERM; stopping runs the serverStopped cleanup before the pools close.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            app.stop();
+            ConnectionPools.closeAll();
+        }));
     }
 
     static Javalin createStreamingApp() {
@@ -52,44 +70,48 @@ public class StreamingServiceApplication {
             LOGGER.info("Presigned URLs will use public endpoint: {}", storageConfig.getPublicEndpointUrl());
         }
         ObjectStorageClient storageClient = new S3StorageClient(storageConfig);
-        return createStreamingApp(
+        VideoStatusRepository videoStatusRepository = createVideoStatusRepository(devLogPublisher);
+        VideoStatusCache statusCache = config.statusCacheEnabled() && videoStatusRepository != null
+                ? new VideoStatusCache(videoStatusRepository,
+                        config.statusCacheNegativeTtlMillis(), config.statusCacheCompletedTtlMillis(),
+                        config.statusCacheMaxEntries())
+                : null;
+        RabbitMQStatusEventBus statusEventBus = createStatusEventBus(statusCache, devLogPublisher);
+        Javalin app = createStreamingApp(
                 storageClient,
-                createVideoStatusRepository(devLogPublisher),
+                videoStatusRepository,
                 devLogPublisher,
-                config.deleteRetryIntervalSeconds()
+                new AppOptions(
+                        config.deleteRetryIntervalSeconds(),
+                        createSegmentCache(config, storageClient, devLogPublisher),
+                        statusCache,
+                        config.playlistOptions()
+                )
         );
+        app.events(event -> event.serverStopped(() -> closeStatusEventBus(statusEventBus)));
+        return app;
     }
 
     static Javalin createStreamingApp(ObjectStorageClient storageClient, VideoStatusRepository videoStatusRepository) {
-        return createStreamingApp(storageClient, videoStatusRepository, null, DEFAULT_DELETE_RETRY_INTERVAL_SECONDS);
-    }
-
-    static Javalin createStreamingApp(
-            ObjectStorageClient storageClient,
-            VideoStatusRepository videoStatusRepository,
-            RabbitMQDevLogPublisher devLogPublisher
-    ) {
-        return createStreamingApp(
-                storageClient,
-                videoStatusRepository,
-                devLogPublisher,
-                DEFAULT_DELETE_RETRY_INTERVAL_SECONDS
-        );
+        return createStreamingApp(storageClient, videoStatusRepository, null, AppOptions.defaults());
     }
 
     static Javalin createStreamingApp(
             ObjectStorageClient storageClient,
             VideoStatusRepository videoStatusRepository,
             RabbitMQDevLogPublisher devLogPublisher,
-            int deleteRetryIntervalSeconds
+            AppOptions options
     ) {
-        StreamingReadinessService readinessService = new StreamingReadinessService(videoStatusRepository, storageClient);
-        PlaylistService playlistService = new PlaylistService(storageClient);
+        VideoStatusCache statusCache = options.statusCache();
+        StreamingReadinessService readinessService =
+                new StreamingReadinessService(videoStatusRepository, storageClient, statusCache);
+        PlaylistService playlistService =
+                new PlaylistService(storageClient, options.segmentCache(), options.playlist());
         ScheduledExecutorService deletionRetryExecutor = startDeletionRetryWorker(
                 videoStatusRepository,
                 readinessService,
                 playlistService,
-                deleteRetryIntervalSeconds
+                options.deleteRetryIntervalSeconds()
         );
 
         Javalin app = Javalin.create(config -> config.http.prefer405over404 = true);
@@ -109,15 +131,17 @@ public class StreamingServiceApplication {
         app.get("/health", ctx -> ctx.json(java.util.Map.of("status", "ok")));
 
         app.get("/stream/{videoId}/manifest", ctx -> {
-            if (!readinessService.validateVideoId(ctx) || !readinessService.requireCompleted(ctx)) {
+            if (!readinessService.validateVideoId(ctx)) {
+                return;
+            }
+            Playback playback = readinessService.requirePlayable(ctx);
+            if (playback == Playback.UNAVAILABLE) {
                 return;
             }
             try {
-                String manifest = playlistService.loadMasterManifest(ctx.pathParam("videoId"));
-                ctx.status(HttpStatus.OK)
-                        .header("Cache-Control", "no-store, max-age=0")
-                        .contentType("application/vnd.apple.mpegurl")
-                        .result(manifest);
+                Playlist manifest = playlistService.loadMasterManifest(
+                        ctx.pathParam("videoId"), playback == Playback.COMPLETE);
+                respondWithPlaylist(ctx, manifest);
             } catch (NoSuchKeyException e) {
                 ctx.status(HttpStatus.NOT_FOUND).result("Manifest not found");
             } catch (IOException e) {
@@ -128,21 +152,20 @@ public class StreamingServiceApplication {
 
         app.get("/stream/{videoId}/variant/{profile}/playlist.m3u8", ctx -> {
             if (!readinessService.validateVideoId(ctx)
-                    || !readinessService.validateProfile(ctx, ctx.pathParam("profile"))
-                    || !readinessService.requireCompleted(ctx)) {
+                    || !readinessService.validateProfile(ctx, ctx.pathParam("profile"))) {
+                return;
+            }
+            Playback playback = readinessService.requirePlayable(ctx);
+            if (playback == Playback.UNAVAILABLE) {
                 return;
             }
             String videoId = ctx.pathParam("videoId");
             String profile = ctx.pathParam("profile");
             try {
-                String playlist = playlistService.loadVariantManifest(videoId, profile);
-                long segmentCount = playlist.lines().filter(line -> line.startsWith("/stream/")).count();
-                LOGGER.info("Generated variant playlist for videoId={} profile={} with {} proxy segment URLs",
-                        videoId, profile, segmentCount);
-                ctx.status(HttpStatus.OK)
-                        .header("Cache-Control", "no-store, max-age=0")
-                        .contentType("application/vnd.apple.mpegurl")
-                        .result(playlist);
+                Playlist playlist = playlistService.loadVariantManifest(videoId, profile);
+                LOGGER.debug("Serving variant playlist videoId={} profile={} etag={}",
+                        videoId, profile, playlist.etag());
+                respondWithPlaylist(ctx, playlist);
             } catch (NoSuchKeyException e) {
                 ctx.status(HttpStatus.NOT_FOUND).result("Variant manifest not found");
             } catch (IOException e) {
@@ -163,6 +186,17 @@ public class StreamingServiceApplication {
             }
             String videoId = ctx.pathParam("videoId");
             String profile = ctx.pathParam("profile");
+            if (playlistService.isSegmentProxyEnabled()) {
+                // Cached segments never expire, so the status check is what stops a deleted video.
+                if (!readinessService.requireSegmentAccess(ctx)) {
+                    if (ctx.status() == HttpStatus.NOT_FOUND) {
+                        playlistService.invalidateVideo(videoId);
+                    }
+                    return;
+                }
+                serveSegment(ctx, playlistService, videoId, profile, segment);
+                return;
+            }
             try {
                 String presignedUrl = playlistService.generateSegmentUrl(videoId, profile, segment);
                 ctx.redirect(presignedUrl, HttpStatus.FOUND);
@@ -173,6 +207,24 @@ public class StreamingServiceApplication {
             }
         });
 
+        app.get("/stream/segment-cache", ctx -> {
+            if (!playlistService.isSegmentProxyEnabled()) {
+                ctx.status(HttpStatus.NOT_FOUND).result("Segment proxy mode is not enabled");
+                return;
+            }
+            ctx.status(HttpStatus.OK).json(playlistService.segmentCache().stats());
+        });
+
+        app.get("/stream/playlist-cache", ctx -> ctx.status(HttpStatus.OK).json(playlistService.playlistCacheStats()));
+
+        app.get("/stream/status-cache", ctx -> {
+            if (statusCache == null) {
+                ctx.status(HttpStatus.NOT_FOUND).result("Status cache is not enabled");
+                return;
+            }
+            ctx.status(HttpStatus.OK).json(statusCache.stats());
+        });
+
         app.get("/stream/ready", ctx -> {
             if (videoStatusRepository == null) {
                 ctx.status(500).result("Streaming status checks are not configured");
@@ -244,6 +296,149 @@ public class StreamingServiceApplication {
         return app;
     }
 
+    /**
+     * Settings and optional collaborators of one app instance. {@code segmentCache} switches
+     * segments to proxy mode and {@code statusCache} fronts the status queries; either may
+     * be {@code null}.
+     */
+    record AppOptions(
+            int deleteRetryIntervalSeconds,
+            SegmentCache segmentCache,
+            VideoStatusCache statusCache,
+            PlaylistService.Options playlist
+    ) {
+        static AppOptions defaults() {
+            return new AppOptions(DEFAULT_DELETE_RETRY_INTERVAL_SECONDS, null, null, PlaylistService.Options.defaults());
+        }
+
+        AppOptions withSegmentCache(SegmentCache cache) {
+            return new AppOptions(deleteRetryIntervalSeconds, cache, statusCache, playlist);
+        }
+
+        AppOptions withPlaylist(PlaylistService.Options options) {
+            return new AppOptions(deleteRetryIntervalSeconds, segmentCache, statusCache, options);
+        }
+    }
+
+    /**
+     * Sends a cached playlist as stored. Clients that accept gzip get the pre-compressed
+     * copy written by the processing service, so nothing is compressed per request.
+     */
+    private static void respondWithPlaylist(Context ctx, Playlist playlist) {
+        String acceptEncoding = ctx.header("Accept-Encoding");
+        boolean gzip = playlist.gzipBody() != null
+                && acceptEncoding != null
+                && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+        String etag = gzip ? playlist.gzipEtag() : playlist.etag();
+        ctx.header("ETag", etag)
+                .header("Cache-Control", "public, max-age=" + playlist.maxAgeSeconds());
+        if (playlist.gzipBody() != null) {
+            ctx.header("Vary", "Accept-Encoding");
+        }
+        if (matchesEtag(ctx.header("If-None-Match"), etag)) {
+            ctx.status(HttpStatus.NOT_MODIFIED);
+            return;
+        }
+        ctx.status(HttpStatus.OK).contentType("application/vnd.apple.mpegurl");
+        if (gzip) {
+            ctx.header("Content-Encoding", "gzip").result(playlist.gzipBody());
+        } else {
+            ctx.result(playlist.body());
+        }
+    }
+
+    /**
+     * Writes a segment from the segment cache. The body bypasses Javalin's result pipeline:
+     * the direct or memory-mapped buffer is passed to Jetty's {@link HttpOutput} while the
+     * cache entry is held, so segment bytes never land on the heap and a disk entry cannot
+     * be evicted mid-response.
+     */
+    private static void serveSegment(
+            Context ctx,
+            PlaylistService playlistService,
+            String videoId,
+            String profile,
+            String segment
+    ) {
+        try (SegmentCache.Segment cached = playlistService.openSegment(videoId, profile, segment)) {
+            long size = cached.size();
+            ctx.header("ETag", cached.etag())
+                    .header("Cache-Control", IMMUTABLE_CACHE_CONTROL)
+                    .header("Accept-Ranges", "bytes");
+            if (matchesEtag(ctx.header("If-None-Match"), cached.etag())) {
+                ctx.status(HttpStatus.NOT_MODIFIED);
+                return;
+            }
+            String ifRange = ctx.header("If-Range");
+            ByteRange range = ifRange == null || ifRange.trim().equals(cached.etag())
+                    ? ByteRange.parse(ctx.header("Range"), size)
+                    : null;
+            if (range == ByteRange.UNSATISFIABLE) {
+                ctx.header("Content-Range", "bytes */" + size)
+                        .status(HttpStatus.RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            long offset = range == null ? 0L : range.start();
+            long length = range == null ? size : range.length();
+            if (range != null) {
+                ctx.header("Content-Range", range.contentRange(size));
+            }
+            ctx.status(range == null ? HttpStatus.OK : HttpStatus.PARTIAL_CONTENT).contentType("video/mp2t");
+            ctx.res().setContentLengthLong(length);
+            OutputStream out = ctx.res().getOutputStream();
+            if (out instanceof HttpOutput jettyOutput) {
+                // Hands the off-heap view to the connection in one blocking write: no heap copy.
+                jettyOutput.sendContent(cached.slice(offset, length));
+            } else {
+                cached.writeTo(out, offset, length);
+                out.flush();
+            }
+        } catch (NoSuchKeyException e) {
+            ctx.status(HttpStatus.NOT_FOUND).result("Segment not found");
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to serve segment videoId={} profile={} segment={}", videoId, profile, segment, e);
+            if (!ctx.res().isCommitted()) {
+                ctx.status(HttpStatus.INTERNAL_SERVER_ERROR).result("Failed to read segment");
+            }
+        }
+    }
+
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if ("*".equals(trimmed) || etag.equals(trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SegmentCache createSegmentCache(
+            StreamingServiceConfig config,
+            ObjectStorageClient storageClient,
+            RabbitMQDevLogPublisher devLogPublisher
+    ) {
+        if (!config.segmentProxyEnabled()) {
+            return null;
+        }
+        try {
+            Path cacheDir = config.segmentCacheDiskBytes() > 0 ? Path.of(config.segmentCacheDir()) : null;
+            return new SegmentCache(storageClient, cacheDir,
+                    config.segmentCacheMemoryBytes(), config.segmentCacheDiskBytes());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to initialize segment cache dir={}; serving presigned redirects",
+                    config.segmentCacheDir(), e);
+            publishDevLogWarn(devLogPublisher, "Segment proxy cache could not be created; using presigned redirects");
+            return null;
+        }
+    }
+
     private static void closeStorageClient(ObjectStorageClient storageClient) {
         try {
             storageClient.close();
@@ -273,6 +468,41 @@ public class StreamingServiceApplication {
         }
     }
 
+    /**
+     * Subscribes the status cache to failure events so they reach it without waiting for a
+     * TTL. Requires SERVICE_MODE=streaming, which gives each replica its own queue bound to
+     * the failure routing key only; without a bus the cache still works, relying on local
+     * deletes and its TTLs.
+     */
+    private static RabbitMQStatusEventBus createStatusEventBus(
+            VideoStatusCache statusCache,
+            RabbitMQDevLogPublisher devLogPublisher
+    ) {
+        if (statusCache == null) {
+            return null;
+        }
+        try {
+            RabbitMQStatusEventBus bus = RabbitMQStatusEventBus.fromEnv();
+            bus.subscribeAll(statusCache);
+            return bus;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to initialize status event bus; status cache relies on local invalidation", e);
+            publishDevLogWarn(devLogPublisher, "Streaming status cache is not receiving status events");
+            return null;
+        }
+    }
+
+    private static void closeStatusEventBus(RabbitMQStatusEventBus statusEventBus) {
+        if (statusEventBus == null) {
+            return;
+        }
+        try {
+            statusEventBus.close();
+        } catch (Exception e) {
+            LOGGER.warn("Error closing status event bus", e);
+        }
+    }
+
     private static RabbitMQDevLogPublisher createDevLogPublisher() {
         try {
             return RabbitMQDevLogPublisher.fromEnv();
@@ -0,0 +1,181 @@
+package com.distributed26.videostreaming.streaming.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.distributed26.videostreaming.shared.storage.ObjectStorageClient;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SegmentCacheTest {
+
+    @Test
+    void concurrentMissesShareOneDownload(@TempDir Path root) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger downloads = new AtomicInteger();
+        byte[] payload = new byte[4096];
+        SegmentCache cache = new SegmentCache(new StubStorage(key -> {
+            downloads.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return payload;
+        }), root, 1024 * 1024, 1024 * 1024);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> etags = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                etags.add(executor.submit(() -> {
+                    try (SegmentCache.Segment segment = cache.open("video/processed/low/000.ts")) {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        segment.writeTo(out, 0, segment.size());
+                        assertArrayEquals(payload, out.toByteArray());
+                        return segment.etag();
+                    }
+                }));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            String first = etags.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<String> etag : etags) {
+                assertEquals(first, etag.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, downloads.get());
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedDiskEntriesAndServesRangesFromDisk(@TempDir Path root) throws Exception {
+        byte[] payload = new byte[1000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        // Memory tier too small to hold any segment, so every hit is served from disk.
+        SegmentCache cache = new SegmentCache(new StubStorage(key -> payload), root, 100, 2500);
+
+        for (String key : List.of("a/processed/low/0.ts", "a/processed/low/1.ts", "a/processed/low/2.ts")) {
+            try (SegmentCache.Segment segment = cache.open(key)) {
+                assertFalse(segment.inMemory());
+            }
+        }
+        assertEquals(2, cache.stats().get("diskEntries"));
+        assertEquals(1L, cache.stats().get("evictions"));
+
+        try (SegmentCache.Segment segment = cache.open("a/processed/low/2.ts")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            segment.writeTo(out, 10, 5);
+            assertArrayEquals(new byte[] {10, 11, 12, 13, 14}, out.toByteArray());
+        }
+        assertEquals(1L, cache.stats().get("diskHits"));
+
+        cache.invalidateVideo("a");
+        assertEquals(0, cache.stats().get("diskEntries"));
+        try (var files = Files.list(root)) {
+            assertTrue(files.findAny().isEmpty());
+        }
+    }
+
+    @Test
+    void slicesAreOffHeapViewsOfTheRequestedRange(@TempDir Path root) throws Exception {
+        byte[] payload = new byte[1000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        SegmentCache memoryCache = new SegmentCache(new StubStorage(key -> payload), root.resolve("memory"), 4096, 4096);
+        SegmentCache diskCache = new SegmentCache(new StubStorage(key -> payload), root.resolve("disk"), 100, 4096);
+
+        for (SegmentCache cache : List.of(memoryCache, diskCache)) {
+            cache.open("b/processed/low/0.ts").close();
+            try (SegmentCache.Segment segment = cache.open("b/processed/low/0.ts")) {
+                ByteBuffer slice = segment.slice(20, 4);
+                assertTrue(slice.isDirect());
+                assertTrue(slice.isReadOnly());
+                assertEquals(4, slice.remaining());
+                byte[] bytes = new byte[4];
+                slice.get(bytes);
+                assertArrayEquals(new byte[] {20, 21, 22, 23}, bytes);
+                assertEquals((byte) 999, segment.slice(999, 1).get());
+            }
+        }
+
+        SegmentCache.Segment leased = diskCache.open("b/processed/low/0.ts");
+        leased.slice(0, 1);
+        diskCache.invalidateVideo("b");
+        leased.close();
+        assertThrows(IOException.class, () -> leased.slice(0, 1), "a closed lease holds no mapping");
+        try (var files = Files.list(root.resolve("disk"))) {
+            assertTrue(files.findAny().isEmpty());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Payloads {
+        byte[] get(String key) throws Exception;
+    }
+
+    private static final class StubStorage implements ObjectStorageClient {
+        private final Payloads payloads;
+
+        private StubStorage(Payloads payloads) {
+            this.payloads = payloads;
+        }
+
+        @Override
+        public InputStream downloadFile(String key) {
+            try {
+                return new ByteArrayInputStream(payloads.get(key));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void uploadFile(String key, InputStream data, long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteFile(String key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean fileExists(String key) {
+            return true;
+        }
+
+        @Override
+        public List<String> listFiles(String prefix) {
+            return List.of();
+        }
+
+        @Override
+        public void ensureBucketExists() {
+        }
+
+        @Override
+        public String generatePresignedUrl(String key, long durationSeconds) {
+            return "presigned://" + key;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.distributed26.videostreaming.streaming.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.distributed26.videostreaming.shared.upload.events.TranscodeProgressEvent;
+import com.distributed26.videostreaming.shared.upload.events.TranscodeSegmentState;
+import com.distributed26.videostreaming.shared.upload.events.UploadFailedEvent;
+import com.distributed26.videostreaming.streaming.db.VideoStatusRepository;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+
+class VideoStatusCacheTest {
+    private static final String VIDEO_ID = "11111111-1111-1111-1111-111111111111";
+
+    @Test
+    void holdsCompletedForItsLongTtlUntilFailureAndExpiresOtherStatuses() {
+        Map<String, String> statuses = new HashMap<>(Map.of(VIDEO_ID, "PROCESSING"));
+        CountingRepository repository = new CountingRepository(statuses);
+        AtomicLong now = new AtomicLong();
+        VideoStatusCache cache = new VideoStatusCache(repository, 1000, 600_000, 100, now::get);
+
+        assertEquals(Optional.of("PROCESSING"), cache.findStatus(VIDEO_ID));
+        statuses.put(VIDEO_ID, "COMPLETED");
+        assertEquals(Optional.of("PROCESSING"), cache.findStatus(VIDEO_ID), "served from cache within the TTL");
+
+        now.addAndGet(1_000_000_000L);
+        assertEquals(Optional.of("COMPLETED"), cache.findStatus(VIDEO_ID));
+        now.addAndGet(300_000_000_000L);
+        cache.onEvent(new TranscodeProgressEvent(VIDEO_ID, "high", 3, TranscodeSegmentState.DONE, 4, 10));
+        assertEquals(Optional.of("COMPLETED"), cache.findStatus(VIDEO_ID), "COMPLETED outlives the short TTL");
+        assertEquals(2, repository.queries.get());
+
+        statuses.put(VIDEO_ID, "FAILED");
+        cache.onEvent(new UploadFailedEvent(VIDEO_ID, "container_died", "m1", "c1"));
+        assertEquals(Optional.of("FAILED"), cache.findStatus(VIDEO_ID));
+
+        statuses.remove(VIDEO_ID);
+        cache.invalidate(VIDEO_ID);
+        assertEquals(Optional.empty(), cache.findStatus(VIDEO_ID));
+        assertEquals(4, repository.queries.get());
+        assertEquals(2L, cache.stats().get("invalidations"));
+
+        // A delete handled by another replica is only noticed once the COMPLETED TTL runs out.
+        statuses.put(VIDEO_ID, "COMPLETED");
+        now.addAndGet(1_000_000_000L);
+        assertEquals(Optional.of("COMPLETED"), cache.findStatus(VIDEO_ID));
+        statuses.remove(VIDEO_ID);
+        now.addAndGet(599_000_000_000L);
+        assertEquals(Optional.of("COMPLETED"), cache.findStatus(VIDEO_ID));
+        now.addAndGet(1_000_000_000L);
+        assertEquals(Optional.empty(), cache.findStatus(VIDEO_ID));
+        assertEquals(6, repository.queries.get());
+    }
+
+    private static final class CountingRepository extends VideoStatusRepository {
+        private final Map<String, String> statuses;
+        private final AtomicInteger queries = new AtomicInteger();
+
+        private CountingRepository(Map<String, String> statuses) {
+            super((DataSource) null);
+            this.statuses = statuses;
+        }
+
+        @Override
+        public Optional<String> findStatusByVideoId(String videoId) {
+            queries.incrementAndGet();
+            return Optional.ofNullable(statuses.get(videoId));
+        }
+    }
+}
@@ -2,8 +2,11 @@ package com.distributed26.videostreaming.streaming.streaming;
 
 import com.distributed26.videostreaming.shared.storage.ObjectStorageClient;
 import com.distributed26.videostreaming.streaming.db.VideoStatusRepository;
+import com.distributed26.videostreaming.streaming.service.PlaylistService;
+import com.distributed26.videostreaming.streaming.service.SegmentCache;
 import io.javalin.Javalin;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -16,23 +19,30 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -104,6 +114,146 @@ class StreamingServiceApplicationTest {
                 "Expected proxy segment URLs, got: " + body);
     }
 
+    @Test
+    void completedPlaylistsAreCachedAndRevalidatedWithEtags() throws Exception {
+        URI masterUri = URI.create("http://localhost:" + port + "/stream/" + VIDEO_ID + "/manifest");
+        HttpResponse<byte[]> first = httpClient.send(HttpRequest.newBuilder(masterUri).GET().build(),
+            HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(HttpURLConnection.HTTP_OK, first.statusCode());
+        assertEquals("public, max-age=60", first.headers().firstValue("Cache-Control").orElse(""));
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+
+        storage.remove(VIDEO_ID + "/manifest/master.m3u8");
+        HttpResponse<byte[]> revalidated = httpClient.send(HttpRequest.newBuilder(masterUri)
+            .header("If-None-Match", etag).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(304, revalidated.statusCode(), "served from the playlist cache without storage");
+        assertEquals(0, revalidated.body().length);
+
+        storage.put(VIDEO_ID + "/manifest/low.m3u8",
+            "#EXTM3U\n#EXTINF:10,\n000.ts\n#EXT-X-ENDLIST\n".getBytes(StandardCharsets.UTF_8));
+        HttpResponse<byte[]> variant = httpClient.send(HttpRequest.newBuilder(URI.create(
+                "http://localhost:" + port + "/stream/" + VIDEO_ID + "/variant/low/playlist.m3u8")).GET().build(),
+            HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals("public, max-age=1800", variant.headers().firstValue("Cache-Control").orElse(""));
+    }
+
+    @Test
+    void servedPlaylistsAreReturnedAsStoredIncludingTheGzipCopy() throws Exception {
+        String served = "#EXTM3U\n#EXTINF:10,\n/stream/" + VIDEO_ID + "/segment/low/000.ts\n#EXT-X-ENDLIST\n";
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(served.getBytes(StandardCharsets.UTF_8));
+        }
+        storage.put(VIDEO_ID + "/served/low.m3u8", served.getBytes(StandardCharsets.UTF_8));
+        storage.put(VIDEO_ID + "/served/low.m3u8.gz", compressed.toByteArray());
+        URI variantUri = URI.create("http://localhost:" + port + "/stream/" + VIDEO_ID + "/variant/low/playlist.m3u8");
+
+        HttpResponse<byte[]> gzipped = httpClient.send(HttpRequest.newBuilder(variantUri)
+            .header("Accept-Encoding", "gzip").GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(HttpURLConnection.HTTP_OK, gzipped.statusCode());
+        assertEquals("gzip", gzipped.headers().firstValue("Content-Encoding").orElse(""));
+        try (InputStream body = new GZIPInputStream(new ByteArrayInputStream(gzipped.body()))) {
+            assertEquals(served, new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        HttpResponse<byte[]> plain = httpClient.send(HttpRequest.newBuilder(variantUri).GET().build(),
+            HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(served, new String(plain.body(), StandardCharsets.UTF_8));
+        assertEquals("public, max-age=1800", plain.headers().firstValue("Cache-Control").orElse(""));
+        assertNotEquals(plain.headers().firstValue("ETag"), gzipped.headers().firstValue("ETag"));
+    }
+
+    @Test
+    void servedPlaylistsSkipTheGzipLookupWhenGzipIsDisabled() throws Exception {
+        String served = "#EXTM3U\n#EXTINF:10,\n/stream/" + VIDEO_ID + "/segment/low/000.ts\n#EXT-X-ENDLIST\n";
+        storage.put(VIDEO_ID + "/served/low.m3u8", served.getBytes(StandardCharsets.UTF_8));
+        List<String> downloads = new CopyOnWriteArrayList<>();
+        FakeStorageClient recordingStorage = new FakeStorageClient(storage) {
+            @Override
+            public InputStream downloadFile(String key) {
+                downloads.add(key);
+                return super.downloadFile(key);
+            }
+        };
+        Javalin plainApp = StreamingServiceApplication.createStreamingApp(recordingStorage,
+            new FakeStatusRepository(statuses), null, StreamingServiceApplication.AppOptions.defaults()
+                .withPlaylist(PlaylistService.Options.defaults().withServedPlaylistsGzip(false)));
+        plainApp.start(0);
+        try {
+            HttpResponse<byte[]> variant = httpClient.send(HttpRequest.newBuilder(URI.create("http://localhost:"
+                    + plainApp.port() + "/stream/" + VIDEO_ID + "/variant/low/playlist.m3u8"))
+                .header("Accept-Encoding", "gzip").GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(HttpURLConnection.HTTP_OK, variant.statusCode());
+            assertEquals(served, new String(variant.body(), StandardCharsets.UTF_8));
+            assertEquals(List.of(VIDEO_ID + "/served/low.m3u8"), downloads);
+        } finally {
+            plainApp.stop();
+        }
+    }
+
+    @Test
+    void legacyVideosFallBackToManifestWithoutFailingServedReads() throws Exception {
+        List<String> downloads = new CopyOnWriteArrayList<>();
+        FakeStorageClient recordingStorage = new FakeStorageClient(storage) {
+            @Override
+            public InputStream downloadFile(String key) {
+                downloads.add(key);
+                return super.downloadFile(key);
+            }
+        };
+        Javalin legacyApp = StreamingServiceApplication.createStreamingApp(recordingStorage,
+            new FakeStatusRepository(statuses), null, StreamingServiceApplication.AppOptions.defaults());
+        legacyApp.start(0);
+        try {
+            HttpResponse<byte[]> variant = httpClient.send(HttpRequest.newBuilder(URI.create("http://localhost:"
+                    + legacyApp.port() + "/stream/" + VIDEO_ID + "/variant/low/playlist.m3u8")).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(HttpURLConnection.HTTP_OK, variant.statusCode());
+            assertEquals(List.of(VIDEO_ID + "/manifest/low.m3u8"), downloads);
+        } finally {
+            legacyApp.stop();
+        }
+    }
+
+    @Test
+    void servedPlaylistsAreIgnoredWhenDisabled() throws Exception {
+        storage.put(VIDEO_ID + "/served/low.m3u8",
+            "#EXTM3U\n#EXTINF:10,\nstale-served.ts\n#EXT-X-ENDLIST\n".getBytes(StandardCharsets.UTF_8));
+        Javalin manifestOnlyApp = StreamingServiceApplication.createStreamingApp(new FakeStorageClient(storage),
+            new FakeStatusRepository(statuses), null, StreamingServiceApplication.AppOptions.defaults()
+                .withPlaylist(PlaylistService.Options.defaults().withServedPlaylistsEnabled(false)));
+        manifestOnlyApp.start(0);
+        try {
+            HttpResponse<byte[]> variant = httpClient.send(HttpRequest.newBuilder(URI.create("http://localhost:"
+                    + manifestOnlyApp.port() + "/stream/" + VIDEO_ID + "/variant/low/playlist.m3u8")).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            String body = new String(variant.body(), StandardCharsets.UTF_8);
+            assertTrue(body.contains("/stream/" + VIDEO_ID + "/segment/low/000.ts"), body);
+            assertFalse(body.contains("stale-served.ts"), body);
+        } finally {
+            manifestOnlyApp.stop();
+        }
+    }
+
+    @Test
+    void servedGzipTwinThatDoesNotMatchThePlainCopyIsDropped() throws Exception {
+        String served = "#EXTM3U\n#EXTINF:10,\n/stream/" + VIDEO_ID + "/segment/low/000.ts\n";
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write("#EXTM3U\n".getBytes(StandardCharsets.UTF_8));
+        }
+        storage.put(VIDEO_ID + "/served/low.m3u8", served.getBytes(StandardCharsets.UTF_8));
+        storage.put(VIDEO_ID + "/served/low.m3u8.gz", compressed.toByteArray());
+
+        HttpResponse<byte[]> variant = httpClient.send(HttpRequest.newBuilder(URI.create("http://localhost:"
+                + port + "/stream/" + VIDEO_ID + "/variant/low/playlist.m3u8"))
+            .header("Accept-Encoding", "gzip").GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(HttpURLConnection.HTTP_OK, variant.statusCode());
+        assertTrue(variant.headers().firstValue("Content-Encoding").isEmpty());
+        assertEquals(served, new String(variant.body(), StandardCharsets.UTF_8));
+        assertEquals("public, max-age=2", variant.headers().firstValue("Cache-Control").orElse(""));
+    }
+
     @Test
     void segmentEndpointRedirectsWithPresignedUrl() throws Exception {
         HttpClient noRedirectClient = HttpClient.newBuilder()
@@ -123,6 +273,94 @@ class StreamingServiceApplicationTest {
         assertTrue(location.contains(VIDEO_ID + "/processed/low/000.ts"));
     }
 
+    @Test
+    void proxyModeServesCachedSegmentWithEtagAndRanges(@TempDir Path cacheDir) throws Exception {
+        SegmentCache segmentCache = new SegmentCache(new FakeStorageClient(storage), cacheDir, 1024 * 1024, 1024 * 1024);
+        Javalin proxyApp = StreamingServiceApplication.createStreamingApp(
+            new FakeStorageClient(storage), new FakeStatusRepository(statuses), null,
+            StreamingServiceApplication.AppOptions.defaults().withSegmentCache(segmentCache));
+        proxyApp.start(0);
+        try {
+            URI segmentUri = URI.create("http://localhost:" + proxyApp.port() + "/stream/" + VIDEO_ID + "/segment/low/000.ts");
+
+            HttpResponse<byte[]> full = httpClient.send(HttpRequest.newBuilder(segmentUri).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(HttpURLConnection.HTTP_OK, full.statusCode());
+            assertEquals("segment-000", new String(full.body(), StandardCharsets.UTF_8));
+            assertEquals("video/mp2t", full.headers().firstValue("Content-Type").orElse(""));
+            assertTrue(full.headers().firstValue("Cache-Control").orElse("").contains("immutable"));
+            String etag = full.headers().firstValue("ETag").orElseThrow();
+
+            HttpResponse<byte[]> notModified = httpClient.send(HttpRequest.newBuilder(segmentUri)
+                .header("If-None-Match", etag).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(304, notModified.statusCode());
+
+            HttpResponse<byte[]> partial = httpClient.send(HttpRequest.newBuilder(segmentUri)
+                .header("Range", "bytes=8-").GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(206, partial.statusCode());
+            assertEquals("000", new String(partial.body(), StandardCharsets.UTF_8));
+            assertEquals("bytes 8-10/11", partial.headers().firstValue("Content-Range").orElse(""));
+
+            HttpResponse<byte[]> unsatisfiable = httpClient.send(HttpRequest.newBuilder(segmentUri)
+                .header("Range", "bytes=50-").GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(416, unsatisfiable.statusCode());
+
+            HttpResponse<byte[]> missing = httpClient.send(HttpRequest.newBuilder(URI.create(
+                    "http://localhost:" + proxyApp.port() + "/stream/" + VIDEO_ID + "/segment/low/999.ts")).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(HttpURLConnection.HTTP_NOT_FOUND, missing.statusCode());
+
+            Map<String, Object> stats = segmentCache.stats();
+            assertEquals(2L, stats.get("misses"), "only the first fetch and the missing key reach storage");
+            assertEquals(3L, stats.get("memoryHits"));
+            assertEquals(1L, stats.get("fillFailures"));
+
+            // Deleted through another replica: the cached copy must not outlive the video.
+            statuses.remove(VIDEO_ID);
+            HttpResponse<byte[]> deleted = httpClient.send(HttpRequest.newBuilder(segmentUri).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(HttpURLConnection.HTTP_NOT_FOUND, deleted.statusCode());
+            assertEquals(0, segmentCache.stats().get("memoryEntries"));
+        } finally {
+            proxyApp.stop();
+        }
+    }
+
+    @Test
+    void proxyModeServesRangesOfDiskCachedSegments(@TempDir Path cacheDir) throws Exception {
+        // A memory tier smaller than the segment forces every response through the file mapping.
+        SegmentCache segmentCache = new SegmentCache(new FakeStorageClient(storage), cacheDir, 4, 1024 * 1024);
+        Javalin proxyApp = StreamingServiceApplication.createStreamingApp(
+            new FakeStorageClient(storage), new FakeStatusRepository(statuses), null,
+            StreamingServiceApplication.AppOptions.defaults().withSegmentCache(segmentCache));
+        proxyApp.start(0);
+        try {
+            URI segmentUri = URI.create("http://localhost:" + proxyApp.port() + "/stream/" + VIDEO_ID + "/segment/low/000.ts");
+
+            HttpResponse<byte[]> full = httpClient.send(HttpRequest.newBuilder(segmentUri).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(HttpURLConnection.HTTP_OK, full.statusCode());
+            assertEquals("segment-000", new String(full.body(), StandardCharsets.UTF_8));
+
+            HttpResponse<byte[]> middle = httpClient.send(HttpRequest.newBuilder(segmentUri)
+                .header("Range", "bytes=2-5").GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(206, middle.statusCode());
+            assertEquals("gmen", new String(middle.body(), StandardCharsets.UTF_8));
+            assertEquals("bytes 2-5/11", middle.headers().firstValue("Content-Range").orElse(""));
+            assertEquals("4", middle.headers().firstValue("Content-Length").orElse(""));
+
+            HttpResponse<byte[]> suffix = httpClient.send(HttpRequest.newBuilder(segmentUri)
+                .header("Range", "bytes=-3").GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(206, suffix.statusCode());
+            assertEquals("000", new String(suffix.body(), StandardCharsets.UTF_8));
+
+            assertEquals(2L, segmentCache.stats().get("diskHits"));
+            assertEquals(0L, segmentCache.stats().get("memoryHits"));
+        } finally {
+            proxyApp.stop();
+        }
+    }
+
     @Test
     void segmentEndpointRejectsInvalidSegmentName() throws Exception {
         HttpRequest request = HttpRequest.newBuilder()
@@ -153,6 +391,30 @@ class StreamingServiceApplicationTest {
         assertEquals(HttpURLConnection.HTTP_CONFLICT, response.statusCode());
     }
 
+    @Test
+    void processingVideoPlaysProgressivelyOnceMasterIsPublished() throws Exception {
+        String videoId = "66666666-6666-6666-6666-666666666666";
+        statuses.put(videoId, "PROCESSING");
+        storage.put(videoId + "/manifest/master.m3u8",
+            "#EXTM3U\n#EXT-X-STREAM-INF:BANDWIDTH=800000\nlow/playlist.m3u8\n".getBytes(StandardCharsets.UTF_8));
+        storage.put(videoId + "/manifest/low.m3u8",
+            "#EXTM3U\n#EXT-X-PLAYLIST-TYPE:EVENT\n#EXTINF:4,\noutput0.ts\n".getBytes(StandardCharsets.UTF_8));
+
+        HttpResponse<byte[]> master = httpClient.send(HttpRequest.newBuilder()
+            .uri(URI.create("http://localhost:" + port + "/stream/" + videoId + "/manifest"))
+            .GET()
+            .build(), HttpResponse.BodyHandlers.ofByteArray());
+        HttpResponse<byte[]> variant = httpClient.send(HttpRequest.newBuilder()
+            .uri(URI.create("http://localhost:" + port + "/stream/" + videoId + "/variant/low/playlist.m3u8"))
+            .GET()
+            .build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(HttpURLConnection.HTTP_OK, master.statusCode());
+        assertEquals(HttpURLConnection.HTTP_OK, variant.statusCode());
+        assertEquals("public, max-age=2", variant.headers().firstValue("Cache-Control").orElse(""));
+        assertTrue(new String(variant.body(), StandardCharsets.UTF_8).contains("#EXT-X-PLAYLIST-TYPE:EVENT"));
+    }
+
     @Test
     void returns404WhenVideoNotFound() throws Exception {
         String videoId = "33333333-3333-3333-3333-333333333333";
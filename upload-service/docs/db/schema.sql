@@ -34,9 +34,22 @@ CREATE TABLE IF NOT EXISTS transcoded_segment_status (
     UNIQUE (video_id, profile, segment_number)
 );
 
+ALTER TABLE transcoded_segment_status
+    ADD COLUMN IF NOT EXISTS duration_seconds DOUBLE PRECISION,
+    ADD COLUMN IF NOT EXISTS encoder_preset VARCHAR(16);
+
 CREATE INDEX IF NOT EXISTS idx_transcoded_segment_status_video_profile_state
     ON transcoded_segment_status(video_id, profile, state);
 
+CREATE TABLE IF NOT EXISTS video_profile_progress (
+    video_id UUID NOT NULL REFERENCES video_upload(video_id) ON DELETE CASCADE,
+    profile VARCHAR(32) NOT NULL,
+    done_segments INTEGER NOT NULL DEFAULT 0,
+    deferred_segments INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (video_id, profile)
+);
+
 CREATE TABLE IF NOT EXISTS processing_upload_task (
     id SERIAL PRIMARY KEY,
     video_id UUID NOT NULL REFERENCES video_upload(video_id) ON DELETE CASCADE,
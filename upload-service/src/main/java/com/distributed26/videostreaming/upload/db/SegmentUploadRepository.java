@@ -1,24 +1,25 @@
 package com.distributed26.videostreaming.upload.db;
 
+import com.distributed26.videostreaming.shared.db.ConnectionPools;
 import io.github.cdimascio.dotenv.Dotenv;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
+import javax.sql.DataSource;
 
 public class SegmentUploadRepository {
-    private final String jdbcUrl;
-    private final String username;
-    private final String password;
+    private final DataSource dataSource;
 
     public SegmentUploadRepository(String jdbcUrl, String username, String password) {
-        this.jdbcUrl = jdbcUrl;
-        this.username = username;
-        this.password = password;
+        this(ConnectionPools.forUrl(jdbcUrl, username, password));
+    }
+
+    public SegmentUploadRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     public static SegmentUploadRepository fromEnv() {
@@ -50,7 +51,7 @@ public class SegmentUploadRepository {
             VALUES (?, ?)
             ON CONFLICT (video_id, segment_number) DO NOTHING
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setInt(2, segmentNumber);
@@ -62,7 +63,7 @@ public class SegmentUploadRepository {
 
     public int countByVideoId(String videoId) {
         String sql = "SELECT COUNT(*) FROM segment_upload WHERE video_id = ?";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             try (ResultSet rs = ps.executeQuery()) {
@@ -79,7 +80,7 @@ public class SegmentUploadRepository {
     public Set<Integer> findSegmentNumbers(String videoId) {
         String sql = "SELECT segment_number FROM segment_upload WHERE video_id = ?";
         Set<Integer> segments = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             try (ResultSet rs = ps.executeQuery()) {
@@ -1,22 +1,23 @@
 package com.distributed26.videostreaming.upload.db;
 
+import com.distributed26.videostreaming.shared.db.ConnectionPools;
 import io.github.cdimascio.dotenv.Dotenv;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.UUID;
+import javax.sql.DataSource;
 
 public class TranscodedSegmentStatusRepository {
-    private final String jdbcUrl;
-    private final String username;
-    private final String password;
+    private final DataSource dataSource;
 
     public TranscodedSegmentStatusRepository(String jdbcUrl, String username, String password) {
-        this.jdbcUrl = jdbcUrl;
-        this.username = username;
-        this.password = password;
+        this(ConnectionPools.forUrl(jdbcUrl, username, password));
+    }
+
+    public TranscodedSegmentStatusRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     public static TranscodedSegmentStatusRepository fromEnv() {
@@ -47,7 +48,7 @@ public class TranscodedSegmentStatusRepository {
             SELECT COUNT(*) FROM transcoded_segment_status
             WHERE video_id = ? AND profile = ? AND state = ?
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, profile);
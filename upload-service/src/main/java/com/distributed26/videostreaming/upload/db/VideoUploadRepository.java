@@ -1,13 +1,14 @@
 package com.distributed26.videostreaming.upload.db;
 
+import com.distributed26.videostreaming.shared.db.ConnectionPools;
 import io.github.cdimascio.dotenv.Dotenv;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.UUID;
 import java.util.Optional;
+import javax.sql.DataSource;
 
 public class VideoUploadRepository {
     public enum FailedTransitionResult {
@@ -18,14 +19,14 @@ public class VideoUploadRepository {
 
     private static final org.apache.logging.log4j.Logger logger =
         org.apache.logging.log4j.LogManager.getLogger(VideoUploadRepository.class);
-    private final String jdbcUrl;
-    private final String username;
-    private final String password;
+    private final DataSource dataSource;
 
     public VideoUploadRepository(String jdbcUrl, String username, String password) {
-        this.jdbcUrl = jdbcUrl;
-        this.username = username;
-        this.password = password;
+        this(ConnectionPools.forUrl(jdbcUrl, username, password));
+    }
+
+    public VideoUploadRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     public static VideoUploadRepository fromEnv() {
@@ -69,7 +70,7 @@ public class VideoUploadRepository {
                 machine_id = EXCLUDED.machine_id,
                 container_id = EXCLUDED.container_id
             """;
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             ps.setString(2, videoName);
@@ -85,7 +86,7 @@ public class VideoUploadRepository {
 
     public void updateStatus(String videoId, String status) {
         String sql = "UPDATE video_upload SET status = ? WHERE video_id = ?";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, status);
             ps.setObject(2, UUID.fromString(videoId));
@@ -98,7 +99,7 @@ public class VideoUploadRepository {
     public FailedTransitionResult markFailedIfProcessing(String videoId) {
         String selectSql = "SELECT status FROM video_upload WHERE video_id = ? FOR UPDATE";
         String updateSql = "UPDATE video_upload SET status = 'FAILED' WHERE video_id = ? AND status IN ('PROCESSING', 'UPLOADED', 'COMPLETED')";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password)) {
+        try (Connection conn = dataSource.getConnection()) {
             conn.setAutoCommit(false);
             try {
                 String currentStatus;
@@ -139,7 +140,7 @@ public class VideoUploadRepository {
 
     public void updateTotalSegments(String videoId, int totalSegments) {
         String sql = "UPDATE video_upload SET total_segments = ? WHERE video_id = ?";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, totalSegments);
             ps.setObject(2, UUID.fromString(videoId));
@@ -152,7 +153,7 @@ public class VideoUploadRepository {
 
     public boolean isFailed(String videoId) {
         String sql = "SELECT 1 FROM video_upload WHERE video_id = ? AND status = 'FAILED' LIMIT 1";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             try (ResultSet rs = ps.executeQuery()) {
@@ -165,7 +166,7 @@ public class VideoUploadRepository {
 
     public Optional<VideoUploadRecord> findByVideoId(String videoId) {
         String sql = "SELECT video_id, video_name, total_segments, status, machine_id, container_id FROM video_upload WHERE video_id = ?";
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setObject(1, UUID.fromString(videoId));
             try (ResultSet rs = ps.executeQuery()) {
@@ -44,6 +44,7 @@ public final class SegmentUploadCoordinator {
     private final ExecutorService segmentUploadExecutor;
     private final int maxInFlightSegmentUploads;
     private final int segmentDuration;
+    private final boolean ladderTranscodeTasks;
 
     public SegmentUploadCoordinator(
             ObjectStorageClient storageClient,
@@ -56,6 +57,34 @@ public final class SegmentUploadCoordinator {
             ExecutorService segmentUploadExecutor,
             int maxInFlightSegmentUploads,
             int segmentDuration
+    ) {
+        this(
+                storageClient,
+                statusEventBus,
+                transcodeTaskBus,
+                segmentUploadRepository,
+                failedVideoRegistry,
+                storageRetryExecutor,
+                storageStateTracker,
+                segmentUploadExecutor,
+                maxInFlightSegmentUploads,
+                segmentDuration,
+                false
+        );
+    }
+
+    public SegmentUploadCoordinator(
+            ObjectStorageClient storageClient,
+            StatusEventBus statusEventBus,
+            TranscodeTaskBus transcodeTaskBus,
+            SegmentUploadRepository segmentUploadRepository,
+            FailedVideoRegistry failedVideoRegistry,
+            StorageRetryExecutor storageRetryExecutor,
+            StorageStateTracker storageStateTracker,
+            ExecutorService segmentUploadExecutor,
+            int maxInFlightSegmentUploads,
+            int segmentDuration,
+            boolean ladderTranscodeTasks
     ) {
         this.storageClient = storageClient;
         this.statusEventBus = statusEventBus;
@@ -67,6 +96,7 @@ public final class SegmentUploadCoordinator {
         this.segmentUploadExecutor = segmentUploadExecutor;
         this.maxInFlightSegmentUploads = maxInFlightSegmentUploads;
         this.segmentDuration = segmentDuration;
+        this.ladderTranscodeTasks = ladderTranscodeTasks;
     }
 
     public int uploadReadySegments(
@@ -98,6 +128,10 @@ public final class SegmentUploadCoordinator {
     }
 
     public void uploadSegment(Path path, String videoId, double outputTsOffsetSeconds) {
+        uploadSegment(path, videoId, outputTsOffsetSeconds, -1d);
+    }
+
+    public void uploadSegment(Path path, String videoId, double outputTsOffsetSeconds, double segmentDurationSeconds) {
         ensureVideoActive(videoId);
         try {
             String fileName = path.getFileName().toString();
@@ -143,7 +177,7 @@ public final class SegmentUploadCoordinator {
 
             if (fileName.endsWith(".ts")) {
                 OptionalInt segmentNumber = extractSegmentNumber(fileName);
-                publishTranscodeTasks(videoId, objectKey, segmentNumber, outputTsOffsetSeconds);
+                publishTranscodeTasks(videoId, objectKey, segmentNumber, outputTsOffsetSeconds, segmentDurationSeconds);
                 statusEventBus.publish(new JobEvent(videoId, objectKey));
                 recordUploadedSegment(videoId, fileName, segmentNumber);
             }
@@ -199,13 +233,16 @@ public final class SegmentUploadCoordinator {
             double outputTsOffsetSeconds = timing != null
                     ? timing.startOffsetSeconds()
                     : fallbackOffsetForSegment(segmentNumber);
+            double segmentDurationSeconds = timing != null && timing.durationSeconds() > 0d
+                    ? timing.durationSeconds()
+                    : -1d;
             waitForUploadCapacity(videoId, inFlightUploads, uploadedFiles, uploadedSegmentNumbers);
             inFlightUploads.put(
                     path,
                     new PendingUpload(
                             segmentNumber,
                             CompletableFuture.runAsync(
-                                    () -> uploadSegment(path, videoId, outputTsOffsetSeconds),
+                                    () -> uploadSegment(path, videoId, outputTsOffsetSeconds, segmentDurationSeconds),
                                     segmentUploadExecutor
                             )
                     )
@@ -335,16 +372,33 @@ public final class SegmentUploadCoordinator {
             String videoId,
             String objectKey,
             OptionalInt segmentNumber,
-            double outputTsOffsetSeconds
+            double outputTsOffsetSeconds,
+            double segmentDurationSeconds
     ) {
         if (segmentNumber.isEmpty()) {
             logger.warn("Skipping transcode task publish because segment number could not be parsed for {}", objectKey);
             return;
         }
+        if (ladderTranscodeTasks) {
+            transcodeTaskBus.publish(new TranscodeTaskEvent(
+                    videoId,
+                    objectKey,
+                    TranscodeTaskEvent.LADDER_PROFILE,
+                    segmentNumber.getAsInt(),
+                    outputTsOffsetSeconds,
+                    segmentDurationSeconds
+            ));
+            return;
+        }
         for (String profile : TRANSCODE_PROFILES) {
-            transcodeTaskBus.publish(
-                    new TranscodeTaskEvent(videoId, objectKey, profile, segmentNumber.getAsInt(), outputTsOffsetSeconds)
-            );
+            transcodeTaskBus.publish(new TranscodeTaskEvent(
+                    videoId,
+                    objectKey,
+                    profile,
+                    segmentNumber.getAsInt(),
+                    outputTsOffsetSeconds,
+                    segmentDurationSeconds
+            ));
         }
     }
 
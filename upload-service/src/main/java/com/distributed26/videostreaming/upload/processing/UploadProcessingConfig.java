@@ -11,8 +11,34 @@ public record UploadProcessingConfig(
         int uploadPoolSize,
         int maxInFlightSegmentUploads,
         long storageRetryInitialDelayMillis,
-        long storageRetryMaxDelayMillis
+        long storageRetryMaxDelayMillis,
+        boolean ladderTranscodeTasks
 ) {
+    public UploadProcessingConfig(
+            int maxVideoNameLength,
+            int segmentDuration,
+            long processingTimeoutMillis,
+            long pollingIntervalMillis,
+            int ffmpegPoolSize,
+            int uploadPoolSize,
+            int maxInFlightSegmentUploads,
+            long storageRetryInitialDelayMillis,
+            long storageRetryMaxDelayMillis
+    ) {
+        this(
+                maxVideoNameLength,
+                segmentDuration,
+                processingTimeoutMillis,
+                pollingIntervalMillis,
+                ffmpegPoolSize,
+                uploadPoolSize,
+                maxInFlightSegmentUploads,
+                storageRetryInitialDelayMillis,
+                storageRetryMaxDelayMillis,
+                false
+        );
+    }
+
     public static UploadProcessingConfig fromDotenv(Dotenv dotenv) {
         int uploadPoolSize = envInt(
                 dotenv,
@@ -28,7 +54,8 @@ public record UploadProcessingConfig(
                 uploadPoolSize,
                 envInt(dotenv, "MAX_IN_FLIGHT_SEGMENT_UPLOADS", uploadPoolSize * 2),
                 envLong(dotenv, "STORAGE_RETRY_INITIAL_DELAY_MILLIS", 500L),
-                envLong(dotenv, "STORAGE_RETRY_MAX_DELAY_MILLIS", 30000L)
+                envLong(dotenv, "STORAGE_RETRY_MAX_DELAY_MILLIS", 30000L),
+                envBoolean(dotenv, "TRANSCODE_LADDER_MODE", false)
         );
     }
 
@@ -40,6 +67,14 @@ public record UploadProcessingConfig(
         return Integer.parseInt(value);
     }
 
+    private static boolean envBoolean(Dotenv dotenv, String key, boolean defaultValue) {
+        String value = dotenv.get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
     private static long envLong(Dotenv dotenv, String key, long defaultValue) {
         String value = dotenv.get(key);
         if (value == null || value.isEmpty()) {
@@ -124,6 +124,7 @@ public class UploadHandler implements AutoCloseable {
         logger.info("Upload-side segmentation mode: stream-copy only");
         logger.info("Initialized segment upload executor with pool size: {}", config.uploadPoolSize());
         logger.info("Initialized max in-flight segment uploads: {}", config.maxInFlightSegmentUploads());
+        logger.info("Transcode task mode: {}", config.ladderTranscodeTasks() ? "ladder" : "per-profile");
 
         this.requestParser = new UploadRequestParser(config.maxVideoNameLength());
         StorageRetryExecutor storageRetryExecutor = new StorageRetryExecutor(
@@ -149,7 +150,8 @@ public class UploadHandler implements AutoCloseable {
                 this.storageStateTracker,
                 this.segmentUploadExecutor,
                 config.maxInFlightSegmentUploads(),
-                config.segmentDuration()
+                config.segmentDuration(),
+                config.ladderTranscodeTasks()
         );
         this.workflow = new VideoSegmentationWorkflow(
                 initializationService,
@@ -1,6 +1,7 @@
 package com.distributed26.videostreaming.upload.upload;
 
 import com.distributed26.videostreaming.shared.config.StorageConfig;
+import com.distributed26.videostreaming.shared.db.ConnectionPools;
 import com.distributed26.videostreaming.shared.storage.ResilientStorageClient;
 import com.distributed26.videostreaming.shared.upload.FailedVideoRegistry;
 import com.distributed26.videostreaming.shared.upload.RabbitMQDevLogReader;
@@ -386,6 +387,7 @@ public class UploadServiceApplication {
         publishDevLogInfo(createDevLogPublisher(), DEV_LOG_UPLOAD_SERVICE, "Upload service started");
         logger.info("Starting upload app on port {}", uploadPort);
 		uploadApp.start(uploadPort);
+        stopOnShutdown(uploadApp);
 	}
 
     static void startStatusApp(int statusPort) {
@@ -394,6 +396,15 @@ public class UploadServiceApplication {
         publishDevLogInfo(createDevLogPublisher(), DEV_LOG_STATUS_SERVICE, "Status service started");
         logger.info("Starting status app on port {}", statusPort);
         statusApp.start(statusPort);
+        stopOnShutdown(statusApp);
+    }
+
+    /** Javalin does not stop itself on SIGTERM; stopping runs the serverStopped cleanup before the pools close. */
+    private static void stopOnShutdown(Javalin app) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            app.stop();
+            ConnectionPools.closeAll();
+        }));
     }
 
     private static RabbitMQDevLogPublisher createDevLogPublisher() {